@@ -0,0 +1,94 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookups served by the {@link OrderArchive} against the same lookups on orders still
+ * in memory. The market holds {@code size} orders: even ones are delivered and moved
+ * to the archive by a checkpoint, odd ones are paid and stay hot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArchiveBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Archived {
+        @Param({"100000", "1000000"})
+        public int size;
+
+        MarketService market;
+        Path dir;
+        int firstOrderId;
+        int firstPaymentId;
+
+        @Setup(Level.Trial)
+        public void populate() throws IOException, InterruptedException {
+            dir = Files.createTempDirectory("market-archive-bench");
+            market = MarketService.open(JournalConfig.defaults(dir).withSyncMode(JournalConfig.SyncMode.NONE).withArchiveAfter(1));
+            market.metrics().setEnabled(false);
+            market.analytics().stop();
+            market.stockMonitor().stop();
+            int vendors = Math.max(1, size / 1000);
+            int[] vendorIds = new int[vendors];
+            int[] productIds = new int[vendors];
+            for (int v = 0; v < vendors; v++) {
+                vendorIds[v] = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+                productIds[v] = market.addProduct(new MarketRequests.AddProduct(vendorIds[v], "Product " + v, 2.5, Integer.MAX_VALUE / 2))
+                        .getValue().getId();
+                market.setDeliveryCapacity(vendorIds[v], Integer.MAX_VALUE);
+            }
+            for (int i = 0; i < size; i++) {
+                int v = i % vendors;
+                Order o = market.placeOrder(new MarketRequests.PlaceOrder(vendorIds[v], List.of(new OrderLine(productIds[v], 1 + i % 3))))
+                        .getValue();
+                Payment p = market.recordPayment(new MarketRequests.RecordPayment(o.getId(), o.getTotalAmount(), "card")).getValue().payment();
+                if (i == 0) {
+                    firstOrderId = o.getId();
+                    firstPaymentId = p.getId();
+                }
+                if ((i & 1) == 0) market.scheduleDelivery(new MarketRequests.ScheduleDelivery(o.getId(), LocalDate.now().toString()));
+            }
+            for (DeliveryRoute r : market.dispatchDeliveries(LocalDate.now())) {
+                for (Delivery d : r.stops()) market.completeDelivery(d.getId());
+            }
+            Thread.sleep(2); // past the 1 ms archive age
+            market.checkpoint();
+            if (market.archivedOrderCount() != size / 2 + size % 2) throw new IllegalStateException("archived " + market.archivedOrderCount());
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            market.close();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+            }
+        }
+
+        int index(boolean archived) {
+            int i = ThreadLocalRandom.current().nextInt(size / 2) * 2;
+            return archived ? i : i + 1;
+        }
+    }
+
+    @Benchmark
+    public Order hotOrder(Archived a) { return a.market.getOrder(a.firstOrderId + a.index(false)); }
+
+    @Benchmark
+    public Order archivedOrder(Archived a) { return a.market.getOrder(a.firstOrderId + a.index(true)); }
+
+    @Benchmark
+    public Payment archivedPayment(Archived a) { return a.market.getPayment(a.firstPaymentId + a.index(true)); }
+}
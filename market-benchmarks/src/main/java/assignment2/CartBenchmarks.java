@@ -0,0 +1,56 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart holds across two vendors. Each thread keeps a ring of {@value #OUTSTANDING}
+ * live holds: every call releases the oldest and takes a new one,
+ * so the expiry wheel always carries thousands of pending deadlines. One call is
+ * one hold plus one release.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmarks {
+    static final int OUTSTANDING = 2048;
+
+    @State(Scope.Thread)
+    public static class Ring {
+        final int[] holds = new int[OUTSTANDING];
+        int next;
+
+        @Setup(Level.Iteration)
+        public void fill(MarketFixture f) {
+            for (int i = 0; i < OUTSTANDING; i++) holds[i] = hold(f);
+            next = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void drain(MarketFixture f) {
+            for (int id : holds) f.market.releaseCart(id);
+        }
+    }
+
+    static int hold(MarketFixture f) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int a = rnd.nextInt(f.vendorIds.length), b = rnd.nextInt(f.vendorIds.length);
+        List<OrderLine> lines = List.of(
+                new OrderLine(f.productIds[a][rnd.nextInt(MarketFixture.PRODUCTS_PER_VENDOR)], 1),
+                new OrderLine(f.productIds[b][rnd.nextInt(MarketFixture.PRODUCTS_PER_VENDOR)], 1));
+        return f.market.holdCart(new MarketRequests.HoldCart(lines, CartService.DEFAULT_TTL_MILLIS)).getValue().getId();
+    }
+
+    @Benchmark
+    public int holdThenRelease(MarketFixture f, Ring r) {
+        int i = r.next;
+        r.next = (i + 1) % OUTSTANDING;
+        f.market.releaseCart(r.holds[i]);
+        return r.holds[i] = hold(f);
+    }
+}
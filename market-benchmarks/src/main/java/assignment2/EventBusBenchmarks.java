@@ -0,0 +1,42 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw {@link EventBus} publish cost with one subscriber draining the ring on its own
+ * thread. Use {@code -t N} for several publishers contending on the sequence.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Bus {
+        EventBus bus;
+        EventBus.Subscription drain;
+        long consumed;
+        final MarketEvent event = new MarketEvent.StockChanged(1000, 2000, -1, 99);
+
+        @Setup(Level.Trial)
+        public void open() {
+            bus = new EventBus();
+            drain = bus.subscribe("drain", (e, seq, endOfBatch) -> consumed++);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() { bus.close(); }
+    }
+
+    @Benchmark
+    public long publish(Bus b) { return b.bus.publish(b.event); }
+
+    @Benchmark
+    public long publishNewEvent(Bus b) {
+        return b.bus.publish(new MarketEvent.StockChanged(1000, 2000, -1, (int) b.bus.cursor()));
+    }
+}
@@ -0,0 +1,297 @@
+package assignment2;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load against the {@link MarketHttpServer} API: each of {@code --clients}
+ * simulated terminals holds one keep-alive connection, sends a request, reads the
+ * whole answer and sends the next. The mix is 60% product lookups, 25% orders, 10%
+ * payments on orders the terminal placed and 5% order-list pages. After the warm-up,
+ * latency (send to last byte) and throughput are reported per request type.
+ * <pre>
+ * java -cp market-benchmarks/target/benchmarks.jar assignment2.HttpLoadGenerator [--url http://host:port]
+ *     [--clients 256] [--warmup 5] [--seconds 20] [--snapshot market.snap]
+ * </pre>
+ * Without {@code --url} it starts an in-memory market and server in the same JVM and
+ * seeds it with 16 vendors of 32 products, or loads it from an exported
+ * {@code --snapshot}; with {@code --url} it drives an existing server, taking
+ * products from {@code GET /inventory}, which must not be empty.
+ * <p>
+ * Terminals run on virtual threads where available and platform threads otherwise.
+ * They speak just enough HTTP/1.1 over plain sockets for this API: the JDK's
+ * {@code HttpClient} costs several times more CPU per request than the server does,
+ * which on a small machine measures the client rather than the market.
+ */
+public final class HttpLoadGenerator {
+    private static final String[] KINDS = {"GET /products/{id}", "POST /orders", "POST /payments", "GET /orders?vendor"};
+
+    private final InetSocketAddress target;
+    private final int[][] products; // {productId, vendorId}
+    private final LatencyHistogram[] latency = new LatencyHistogram[KINDS.length];
+    private final Map<Integer, AtomicLong> statuses = new TreeMap<>();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean stopping;
+
+    private HttpLoadGenerator(InetSocketAddress target, int[][] products) {
+        this.target = target;
+        this.products = products;
+        for (int i = 0; i < latency.length; i++) latency[i] = new LatencyHistogram();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        String snapshot = null;
+        int clients = 256, warmup = 5, seconds = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--warmup" -> warmup = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--snapshot" -> snapshot = args[i + 1];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        MarketService market = null;
+        MarketHttpServer server = null;
+        InetSocketAddress target;
+        if (url == null) {
+            market = snapshot == null ? seededMarket() : MarketService.load(Path.of(snapshot));
+            server = MarketHttpServer.start(market, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            target = server.address();
+            System.out.println("Embedded server on port " + server.port() + " ("
+                    + (server.usesVirtualThreads() ? "virtual threads" : "platform thread pool") + ")");
+        } else {
+            URI u = URI.create(url);
+            target = new InetSocketAddress(u.getHost(), u.getPort() < 0 ? 80 : u.getPort());
+        }
+        try {
+            int[][] products;
+            try (Connection c = new Connection(target)) {
+                products = inventory(c);
+            }
+            System.out.println(new HttpLoadGenerator(target, products).run(clients, warmup, seconds));
+        } finally {
+            if (server != null) server.close();
+            if (market != null) market.close();
+        }
+    }
+
+    private static MarketService seededMarket() {
+        MarketService market = new MarketService();
+        for (int v = 0; v < 16; v++) {
+            int vid = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+            for (int p = 0; p < 32; p++) {
+                market.addProduct(new MarketRequests.AddProduct(vid, "Product " + v + "-" + p, 1.25 + p, Integer.MAX_VALUE / 2));
+            }
+        }
+        return market;
+    }
+
+    private static int[][] inventory(Connection c) throws IOException {
+        if (c.exchange(get("/inventory?limit=100000")) != 200) throw new IOException("GET /inventory answered " + c.status);
+        List<int[]> rows = new ArrayList<>();
+        for (Object o : (List<?>) Json.parse(c.body)) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            rows.add(new int[]{((Number) m.get("productId")).intValue(), ((Number) m.get("vendorId")).intValue()});
+        }
+        if (rows.isEmpty()) throw new IOException("The market has no products to order");
+        return rows.toArray(new int[0][]);
+    }
+
+    private String run(int clients, int warmupSeconds, int seconds) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService virtual = MarketHttpServer.virtualThreadExecutor();
+        for (int i = 0; i < clients; i++) {
+            Runnable terminal = () -> {
+                try {
+                    terminal();
+                } finally {
+                    done.countDown();
+                }
+            };
+            if (virtual != null) {
+                virtual.execute(terminal);
+            } else {
+                Thread t = new Thread(terminal, "terminal-" + i);
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        Thread.sleep(warmupSeconds * 1000L);
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        stopping = true;
+        done.await();
+        if (virtual != null) virtual.shutdown();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d clients on %s threads, %d s measured after %d s warm-up%n",
+                clients, virtual != null ? "virtual" : "platform", seconds, warmupSeconds));
+        sb.append(String.format("%-22s %10s %10s %10s %10s %10s%n", "request", "count", "req/s", "p50 ms", "p99 ms", "max ms"));
+        for (int k = 0; k < KINDS.length; k++) row(sb, KINDS[k], latency[k], elapsed);
+        long total = 0;
+        for (LatencyHistogram h : latency) total += h.count();
+        sb.append(String.format("%-22s %10d %10.0f%n", "all", total, total / elapsed));
+        synchronized (statuses) {
+            sb.append("statuses ").append(statuses);
+        }
+        if (failures.get() > 0) sb.append(", connection failures ").append(failures.get());
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram h, double elapsed) {
+        sb.append(String.format("%-22s %10d %10.0f %10.2f %10.2f %10.2f%n", name, h.count(), h.count() / elapsed,
+                h.valueAtQuantile(0.50) / 1e6, h.valueAtQuantile(0.99) / 1e6, h.maxNanos() / 1e6));
+    }
+
+    /** One simulated terminal: a connection and a request in flight at a time until the run stops. */
+    private void terminal() {
+        List<Integer> unpaid = new ArrayList<>();
+        Connection c = null;
+        while (!stopping) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int[] p = products[rnd.nextInt(products.length)];
+            int dice = rnd.nextInt(100);
+            int kind;
+            byte[] req;
+            if (dice < 10 && !unpaid.isEmpty()) {
+                kind = 2;
+                req = post("/payments", "{\"orderId\":" + unpaid.remove(unpaid.size() - 1) + ",\"amount\":1.25,\"method\":\"card\"}");
+            } else if (dice < 35) {
+                kind = 1;
+                req = post("/orders", "{\"vendorId\":" + p[1] + ",\"items\":[{\"productId\":" + p[0] + ",\"quantity\":"
+                        + (1 + rnd.nextInt(3)) + "}]}");
+            } else if (dice < 40) {
+                kind = 3;
+                req = get("/orders?vendor=" + p[1] + "&limit=20");
+            } else {
+                kind = 0;
+                req = get("/products/" + p[0]);
+            }
+            boolean counted = measuring; // only requests that start and finish inside the window
+            long t0 = System.nanoTime();
+            int status;
+            try {
+                if (c == null) c = new Connection(target);
+                status = c.exchange(req);
+            } catch (IOException e) {
+                if (counted) failures.incrementAndGet();
+                if (c != null) c.close();
+                c = null;
+                continue;
+            }
+            long nanos = System.nanoTime() - t0;
+            if (counted && measuring) {
+                latency[kind].record(nanos);
+                synchronized (statuses) {
+                    statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+                }
+            }
+            if (kind == 1 && status == 201 && unpaid.size() < 64) unpaid.add(orderId(c.body));
+        }
+        if (c != null) c.close();
+    }
+
+    private static byte[] get(String path) {
+        return ("GET " + path + " HTTP/1.1\r\nHost: market\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] post(String path, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        return ("POST " + path + " HTTP/1.1\r\nHost: market\r\nContent-Type: application/json\r\nContent-Length: "
+                + body.length + "\r\n\r\n" + json).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // {"orderId":123,... is always the first field
+    private static int orderId(String json) {
+        int i = json.indexOf(':') + 1, v = 0;
+        while (i < json.length() && Character.isDigit(json.charAt(i))) v = v * 10 + (json.charAt(i++) - '0');
+        return v;
+    }
+
+    /** A keep-alive HTTP/1.1 connection reading fixed-length and chunked responses. */
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final StringBuilder line = new StringBuilder();
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int status;
+        String body;
+
+        Connection(InetSocketAddress target) throws IOException {
+            socket = new Socket(target.getAddress(), target.getPort());
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        }
+
+        /** Sends one request and reads the complete response; returns its status. */
+        int exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            String statusLine = readLine();
+            status = Integer.parseInt(statusLine.substring(9, 12));
+            long length = -1;
+            boolean chunked = false;
+            for (String h; !(h = readLine()).isEmpty(); ) {
+                int colon = h.indexOf(':');
+                String name = h.substring(0, colon).trim();
+                if (name.equalsIgnoreCase("Content-Length")) length = Long.parseLong(h.substring(colon + 1).trim());
+                else if (name.equalsIgnoreCase("Transfer-Encoding")) chunked = h.substring(colon + 1).trim().equalsIgnoreCase("chunked");
+            }
+            buf.reset();
+            if (chunked) {
+                for (int n; (n = Integer.parseInt(readLine().trim(), 16)) > 0; readLine()) buf.write(in.readNBytes(n));
+                readLine();
+            } else if (length > 0) {
+                buf.write(in.readNBytes((int) length));
+            }
+            body = buf.toString(StandardCharsets.UTF_8);
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            for (int ch; (ch = in.read()) != '\n'; ) {
+                if (ch < 0) throw new EOFException("Connection closed");
+                if (ch != '\r') line.append((char) ch);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+}
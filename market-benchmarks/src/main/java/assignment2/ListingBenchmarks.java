@@ -0,0 +1,95 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order and inventory listings: the original per-line {@code println(toString())}
+ * path, toString into memory, and {@link ReportEngine} streaming to a discarding
+ * stream. Divide {@code size} by the score for lines per millisecond.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Out {
+        final StringBuilder sb = new StringBuilder(1 << 20);
+        PrintStream console;
+        OutputStream discard;
+
+        // Real file descriptors (on /dev/null where it exists) so both paths pay for their
+        // write calls; the console stream autoflushes per line like System.out does
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            File devNull = new File("/dev/null");
+            boolean real = devNull.exists();
+            console = new PrintStream(real ? new FileOutputStream(devNull) : OutputStream.nullOutputStream(), true);
+            discard = real ? new FileOutputStream(devNull) : OutputStream.nullOutputStream();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            console.close();
+            discard.close();
+        }
+    }
+
+    @Benchmark
+    public int printlnOrders(MarketFixture f, Out out) {
+        int n = 0;
+        for (Order o : f.market.orders()) {
+            out.console.println(o);
+            n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public long reportOrdersText(MarketFixture f, Out out) throws IOException {
+        return new ReportEngine(f.market).writeOrders(ReportQuery.all(), ReportEngine.Format.TEXT, out.discard);
+    }
+
+    @Benchmark
+    public long reportOrdersCsv(MarketFixture f, Out out) throws IOException {
+        return new ReportEngine(f.market).writeOrders(ReportQuery.all(), ReportEngine.Format.CSV, out.discard);
+    }
+
+    @Benchmark
+    public long reportInventoryText(MarketFixture f, Out out) throws IOException {
+        return new ReportEngine(f.market).writeInventory(ReportQuery.all(), ReportEngine.Format.TEXT, out.discard);
+    }
+
+    @Benchmark
+    public int listOrders(MarketFixture f, Out out) {
+        StringBuilder sb = out.sb;
+        sb.setLength(0);
+        for (Order o : f.market.orders()) sb.append(o).append('\n');
+        return sb.length();
+    }
+
+    @Benchmark
+    public int listInventory(MarketFixture f, Out out) {
+        StringBuilder sb = out.sb;
+        sb.setLength(0);
+        for (Vendor v : f.market.vendors()) {
+            sb.append(v).append("\nProducts:\n");
+            for (int pid : v.getProductIds()) {
+                Product p = f.market.getProduct(pid);
+                if (p == null) continue;
+                sb.append("  ").append(p).append(" | Stock: ").append(v.getStockForProduct(pid)).append('\n');
+            }
+            sb.append('\n');
+        }
+        return sb.length();
+    }
+}
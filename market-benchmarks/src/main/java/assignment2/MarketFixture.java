@@ -0,0 +1,65 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * A populated in-memory market shared by the read-side benchmarks. {@code size} is
+ * the number of orders; there is one vendor per 1000 orders with 20 products each.
+ * Orders are spread over the payment states: a quarter unpaid (CONFIRMED), a
+ * quarter part-paid (PAYMENT_PENDING) and half fully PAID.
+ * <p>
+ * Run a single size with e.g. {@code -p size=100000}; the 10M case needs a few GB of heap.
+ */
+@State(Scope.Benchmark)
+public class MarketFixture {
+    static final int PRODUCTS_PER_VENDOR = 20;
+    static final int ORDERS_PER_VENDOR = 1000;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    MarketService market;
+    int[] vendorIds;
+    int[][] productIds; // per vendor
+    int firstOrderId;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        market = new MarketService();
+        market.metrics().setEnabled(false);
+        int vendors = Math.max(1, size / ORDERS_PER_VENDOR);
+        vendorIds = new int[vendors];
+        productIds = new int[vendors][PRODUCTS_PER_VENDOR];
+        for (int v = 0; v < vendors; v++) {
+            vendorIds[v] = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+            for (int p = 0; p < PRODUCTS_PER_VENDOR; p++) {
+                productIds[v][p] = market.addProduct(new MarketRequests.AddProduct(vendorIds[v], "Product " + v + "-" + p,
+                        1.25 + p, Integer.MAX_VALUE / 2)).getValue().getId();
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int v = i % vendors;
+            int[] ps = productIds[v];
+            Order o = market.placeOrder(new MarketRequests.PlaceOrder(vendorIds[v], List.of(
+                    new OrderLine(ps[i % PRODUCTS_PER_VENDOR], 1000),
+                    new OrderLine(ps[(i * 7 + 3) % PRODUCTS_PER_VENDOR], 2000)))).getValue();
+            if (i == 0) firstOrderId = o.getId();
+            switch (i & 3) {
+                case 0 -> { } // unpaid
+                case 1 -> market.recordPayment(new MarketRequests.RecordPayment(o.getId(), 1.00, "cash"));
+                default -> market.recordPayment(new MarketRequests.RecordPayment(o.getId(), o.getTotalAmount(), "card"));
+            }
+        }
+        market.metrics().setEnabled(true);
+    }
+
+    Order order(int index) { return market.getOrder(firstOrderId + index); }
+
+    Vendor vendor(int index) { return market.getVendor(vendorIds[index]); }
+}
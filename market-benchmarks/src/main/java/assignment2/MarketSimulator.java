@@ -0,0 +1,522 @@
+package assignment2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A market day against an in-memory {@link MarketService}, for capacity planning:
+ * customers arrive following an arrival-rate curve (a morning rush by default),
+ * search, order from one vendor or check out a cart across two, pay (sometimes in
+ * two parts, sometimes too much, sometimes never), book deliveries and now and then
+ * return a line. After the day the deliveries are dispatched and completed and the
+ * pending returns decided, then the market is checked against its invariants.
+ * <pre>
+ * java -Xmx4g -cp market-benchmarks/target/benchmarks.jar assignment2.MarketSimulator [--seed 1]
+ *     [--vendors 200] [--products 50] [--stock 250] [--customers 50000] [--orders 500000]
+ *     [--threads 4] [--curve 1,4,8,5,3,2,2,1] [--day-seconds 0] [--delivery-capacity 500]
+ * </pre>
+ * {@code --products} is per vendor, with {@code --stock} units each on average:
+ * popularity is skewed and vendors stock by expected demand, give or take half, so
+ * some products sell out during the day and others are left over. The
+ * curve gives the relative arrival rate of each equal slice of the day. With
+ * {@code --day-seconds 0} every thread works through its arrivals as fast as it can;
+ * otherwise the day is paced to last that long, for a steady load at a given rate.
+ * <p>
+ * Customers are split across the threads and each thread draws from its own
+ * {@link Random} seeded from {@code --seed}, so what every customer tries is fixed
+ * by the seed. With one thread the whole run is reproducible; with more, which of
+ * two customers gets the last unit depends on scheduling, so counts vary slightly.
+ * Latency is measured around each call, as a caller sees it.
+ */
+public final class MarketSimulator {
+    private static final String[] KINDS = {"search", "place order", "cart checkout", "payment", "book delivery", "return",
+            "complete delivery", "decide returns"};
+    private static final int SEARCH = 0, ORDER = 1, CART = 2, PAY = 3, BOOK = 4, RETURN = 5, COMPLETE = 6, DECIDE = 7;
+    private static final int ARRIVE = 0, PAY_PART = 1, DELIVER = 2, GIVE_BACK = 3; // timeline actions
+    private static final int DELIVERY_DAYS = 3, BOOKING_ATTEMPTS = 5, MAX_EXAMPLES = 10;
+
+    private final long seed;
+    private final int vendors, productsPerVendor, stock, customers, orders, threads, deliveryCapacity;
+    private final double[] curve;
+    private final double daySeconds;
+
+    private final MarketService market;
+    private final LocalDate today = LocalDate.now();
+    private int[] vendorIds;
+    private int productBase;
+    private int[] initialStock; // by product ID - productBase
+    private final LatencyHistogram[] latency = new LatencyHistogram[KINDS.length];
+    private final LongAdder[] rejected = new LongAdder[KINDS.length];
+    private LatencyHistogram[] orderLatencyBySlice;
+    private final Map<String, LongAdder> reasons = new ConcurrentHashMap<>();
+    private AtomicLongArray placedUnits;   // by product, as the customers saw their orders accepted
+    private AtomicLongArray returnedUnits; // by product, approved returns
+
+    /** One step of a customer's day, at a point of the day in [0, 1). */
+    private record Action(double at, int kind, int customer, Order order, int part) {}
+
+    private MarketSimulator(long seed, int vendors, int productsPerVendor, int stock, int customers, int orders, int threads,
+                            double[] curve, double daySeconds, int deliveryCapacity) {
+        if (vendors <= 0 || productsPerVendor <= 0 || stock <= 0 || customers <= 0 || orders < 0 || threads <= 0 || deliveryCapacity <= 0) {
+            throw new IllegalArgumentException("Counts must be positive.");
+        }
+        if (curve.length == 0 || Arrays.stream(curve).anyMatch(w -> w < 0) || Arrays.stream(curve).sum() <= 0) {
+            throw new IllegalArgumentException("The curve needs at least one positive weight and none negative.");
+        }
+        this.seed = seed; this.vendors = vendors; this.productsPerVendor = productsPerVendor; this.stock = stock;
+        this.customers = customers; this.orders = orders; this.threads = Math.min(threads, customers);
+        this.curve = curve; this.daySeconds = daySeconds; this.deliveryCapacity = deliveryCapacity;
+        this.market = new MarketService();
+        for (int k = 0; k < KINDS.length; k++) {
+            latency[k] = new LatencyHistogram();
+            rejected[k] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = 1;
+        int vendors = 200, products = 50, stock = 250, customers = 50_000, orders = 500_000, threads = 4, capacity = 500;
+        double[] curve = {1, 4, 8, 5, 3, 2, 2, 1};
+        double daySeconds = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--vendors" -> vendors = Integer.parseInt(args[i + 1]);
+                case "--products" -> products = Integer.parseInt(args[i + 1]);
+                case "--stock" -> stock = Integer.parseInt(args[i + 1]);
+                case "--customers" -> customers = Integer.parseInt(args[i + 1]);
+                case "--orders" -> orders = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--curve" -> curve = Arrays.stream(args[i + 1].split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+                case "--day-seconds" -> daySeconds = Double.parseDouble(args[i + 1]);
+                case "--delivery-capacity" -> capacity = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        MarketSimulator sim = new MarketSimulator(seed, vendors, products, stock, customers, orders, threads, curve, daySeconds, capacity);
+        try {
+            System.out.print(sim.run());
+        } finally {
+            sim.market.close();
+        }
+    }
+
+    private String run() throws InterruptedException {
+        long heapBefore = heapAfterGc();
+        long t0 = System.nanoTime();
+        populate();
+        double setupSeconds = (System.nanoTime() - t0) / 1e9;
+        long heapSetup = heapAfterGc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+
+        // The day starts once every thread has drawn its arrivals
+        CountDownLatch ready = new CountDownLatch(threads), go = new CountDownLatch(1), done = new CountDownLatch(threads);
+        long[] startNanos = new long[1];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                try {
+                    PriorityQueue<Action> timeline = timeline(thread);
+                    ready.countDown();
+                    go.await();
+                    runDay(thread, timeline, startNanos[0]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "customers-" + t).start();
+        }
+        ready.await();
+        startNanos[0] = System.nanoTime();
+        go.countDown();
+        done.await();
+        double daySecondsTaken = (System.nanoTime() - startNanos[0]) / 1e9;
+
+        long t1 = System.nanoTime();
+        closeDay();
+        double closeSeconds = (System.nanoTime() - t1) / 1e9;
+        long heapPeak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) heapPeak += pool.getPeakUsage().getUsed();
+        }
+        long heapAfter = heapAfterGc();
+        Violations violations = check();
+        return report(setupSeconds, daySecondsTaken, closeSeconds, heapBefore, heapSetup, heapPeak, heapAfter, violations);
+    }
+
+    // --- Setup ---
+
+    private void populate() {
+        Random rnd = new Random(seed);
+        vendorIds = new int[vendors];
+        initialStock = new int[vendors * productsPerVendor];
+        for (int v = 0; v < vendors; v++) {
+            vendorIds[v] = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+            market.setDeliveryCapacity(vendorIds[v], deliveryCapacity);
+            for (int p = 0; p < productsPerVendor; p++) {
+                String name = SearchBenchmarks.QUALITY[rnd.nextInt(SearchBenchmarks.QUALITY.length)] + " "
+                        + SearchBenchmarks.ITEM[rnd.nextInt(SearchBenchmarks.ITEM.length)] + " "
+                        + SearchBenchmarks.UNIT[rnd.nextInt(SearchBenchmarks.UNIT.length)];
+                double share = Math.sqrt((p + 1.0) / productsPerVendor) - Math.sqrt((double) p / productsPerVendor);
+                int units = 1 + (int) (stock * productsPerVendor * share * (0.5 + rnd.nextDouble()));
+                int id = market.addProduct(new MarketRequests.AddProduct(vendorIds[v], name, 0.5 + rnd.nextInt(2000) / 100.0, units))
+                        .getValue().getId();
+                int i = v * productsPerVendor + p;
+                if (i == 0) productBase = id;
+                if (id != productBase + i) throw new IllegalStateException("Product IDs are not contiguous.");
+                initialStock[i] = units;
+            }
+        }
+        placedUnits = new AtomicLongArray(initialStock.length);
+        returnedUnits = new AtomicLongArray(initialStock.length);
+        orderLatencyBySlice = new LatencyHistogram[curve.length];
+        for (int s = 0; s < curve.length; s++) orderLatencyBySlice[s] = new LatencyHistogram();
+    }
+
+    /** The arrivals of this thread's customers (customer % threads == thread), drawn from the curve. */
+    private PriorityQueue<Action> timeline(int thread) {
+        Random rnd = new Random(seed * 31 + thread);
+        int count = orders / threads + (thread < orders % threads ? 1 : 0);
+        int own = customers / threads + (thread < customers % threads ? 1 : 0);
+        double[] cumulative = new double[curve.length];
+        double sum = 0;
+        for (int s = 0; s < curve.length; s++) cumulative[s] = sum += curve[s];
+        PriorityQueue<Action> timeline = new PriorityQueue<>(Math.max(16, count * 2),
+                (a, b) -> a.at != b.at ? Double.compare(a.at, b.at) : Integer.compare(a.customer, b.customer));
+        for (int i = 0; i < count; i++) {
+            double x = rnd.nextDouble() * sum;
+            int slice = 0;
+            while (cumulative[slice] <= x) slice++;
+            double at = (slice + rnd.nextDouble()) / curve.length;
+            timeline.add(new Action(at, ARRIVE, thread + threads * rnd.nextInt(own), null, 0));
+        }
+        return timeline;
+    }
+
+    // --- The day ---
+
+    private void runDay(int thread, PriorityQueue<Action> timeline, long startNanos) {
+        Random rnd = new Random(seed * 31 + thread + 7919);
+        for (Action a; (a = timeline.poll()) != null; ) {
+            if (daySeconds > 0) {
+                long due = startNanos + (long) (a.at * daySeconds * 1e9);
+                for (long wait; (wait = due - System.nanoTime()) > 0; ) LockSupport.parkNanos(wait);
+            }
+            switch (a.kind) {
+                case ARRIVE -> arrive(a, rnd, timeline);
+                case PAY_PART -> pay(a, rnd, timeline);
+                case DELIVER -> book(a, rnd);
+                case GIVE_BACK -> giveBack(a, rnd);
+                default -> throw new IllegalStateException("Unknown action " + a.kind);
+            }
+        }
+    }
+
+    private void arrive(Action a, Random rnd, PriorityQueue<Action> timeline) {
+        // A customer mostly shops at one favourite vendor
+        Random own = new Random(seed ^ a.customer * 0x9E3779B97F4A7C15L);
+        int vendor = rnd.nextInt(10) < 7 ? own.nextInt(vendors) : rnd.nextInt(vendors);
+        String name = market.getProduct(productBase + vendor * productsPerVendor + popular(rnd)).getName();
+        List<String> words = ProductSearch.words(name);
+        String query = words.get(1).substring(0, Math.min(4, words.get(1).length()));
+        long t0 = System.nanoTime();
+        List<Product> hits = market.searchProducts(new MarketRequests.SearchProducts(query, 0, 0, true, 20));
+        record(SEARCH, t0, true, null);
+        if (hits.isEmpty() && rnd.nextInt(2) == 0) return; // nothing in stock, goes home
+
+        if (rnd.nextInt(100) < 15) {
+            cart(a, rnd, timeline, vendor);
+            return;
+        }
+        List<OrderLine> lines = lines(rnd, vendor);
+        t0 = System.nanoTime();
+        MarketResult<Order> r = market.placeOrder(new MarketRequests.PlaceOrder(vendorIds[vendor], lines));
+        long nanos = record(ORDER, t0, r.isOk(), r.getMessage());
+        orderLatencyBySlice[Math.min(curve.length - 1, (int) (a.at * curve.length))].record(nanos);
+        if (r.isOk()) placed(a, rnd, timeline, r.getValue());
+    }
+
+    /** Holds a cart across the favourite and one other vendor, then checks it out or changes their mind. */
+    private void cart(Action a, Random rnd, PriorityQueue<Action> timeline, int vendor) {
+        List<OrderLine> lines = lines(rnd, vendor);
+        lines.addAll(lines(rnd, rnd.nextInt(vendors)));
+        long t0 = System.nanoTime();
+        MarketResult<CartService.CartHold> hold = market.holdCart(new MarketRequests.HoldCart(lines, CartService.DEFAULT_TTL_MILLIS));
+        if (!hold.isOk()) {
+            record(CART, t0, false, hold.getMessage());
+            return;
+        }
+        if (rnd.nextInt(5) == 0) {
+            market.releaseCart(hold.getValue().getId());
+            record(CART, t0, true, null);
+            return;
+        }
+        MarketResult<List<Order>> r = market.checkoutCart(hold.getValue().getId());
+        record(CART, t0, r.isOk(), r.getMessage());
+        if (r.isOk()) for (Order o : r.getValue()) placed(a, rnd, timeline, o);
+    }
+
+    /** Up to four lines of one vendor's products, distinct, best sellers most likely. */
+    private List<OrderLine> lines(Random rnd, int vendor) {
+        int n = 1 + rnd.nextInt(Math.min(4, productsPerVendor));
+        List<OrderLine> lines = new ArrayList<>(n);
+        int[] taken = new int[n];
+        for (int i = 0; i < n; i++) {
+            int p = popular(rnd);
+            boolean dup = false;
+            for (int j = 0; j < i; j++) dup |= taken[j] == p;
+            if (dup) continue;
+            taken[i] = p;
+            lines.add(new OrderLine(productBase + vendor * productsPerVendor + p, 1 + rnd.nextInt(3)));
+        }
+        return lines;
+    }
+
+    // Skewed toward the first products of a vendor: index p is drawn sqrt((p+1)/n) - sqrt(p/n) of the time
+    private int popular(Random rnd) {
+        double u = rnd.nextDouble();
+        return (int) (productsPerVendor * u * u);
+    }
+
+    private void placed(Action a, Random rnd, PriorityQueue<Action> timeline, Order order) {
+        for (int i = 0; i < order.getItemCount(); i++) {
+            OrderItem it = order.getItem(i);
+            placedUnits.addAndGet(it.getProductId() - productBase, it.getQuantity());
+        }
+        int plan = rnd.nextInt(100);
+        if (plan < 8) return; // never pays
+        int parts = plan < 28 ? 2 : 1;
+        timeline.add(new Action(later(a.at, rnd), PAY_PART, a.customer, order, parts));
+    }
+
+    /** Pays one part of what is due, the last part sometimes with too much; part counts down to 1. */
+    private void pay(Action a, Random rnd, PriorityQueue<Action> timeline) {
+        long due = a.order.getAmountDueCents();
+        long cents = a.part > 1 ? Math.max(1, due / a.part) : due;
+        if (a.part == 1 && rnd.nextInt(100) < 5) cents += 1 + rnd.nextInt(500); // rounds up at the till
+        if (cents <= 0) cents = 100; // paid off meanwhile, e.g. by a return: the market should refuse this
+        String method = (a.customer & 1) == 0 ? "card" : "cash";
+        long t0 = System.nanoTime();
+        MarketResult<PaymentReceipt> r = market.recordPayment(new MarketRequests.RecordPayment(a.order.getId(), Money.toDouble(cents), method));
+        record(PAY, t0, r.isOk(), r.getMessage());
+        if (!r.isOk()) return;
+        if (a.part > 1) {
+            timeline.add(new Action(later(a.at, rnd), PAY_PART, a.customer, a.order, a.part - 1));
+            return;
+        }
+        if (rnd.nextInt(100) < 2) timeline.add(new Action(later(a.at, rnd), PAY_PART, a.customer, a.order, 1)); // pays twice
+        if (r.getValue().orderStatus() == Order.Status.PAID && rnd.nextInt(100) < 40) {
+            timeline.add(new Action(later(a.at, rnd), DELIVER, a.customer, a.order, 0));
+        }
+        if (rnd.nextInt(100) < 4) timeline.add(new Action(later(later(a.at, rnd), rnd), GIVE_BACK, a.customer, a.order, 0));
+    }
+
+    /** Books the customer's preferred day, or the next ones while they are full. */
+    private void book(Action a, Random rnd) {
+        LocalDate day = today.plusDays(1 + rnd.nextInt(DELIVERY_DAYS));
+        for (int attempt = 0; attempt < BOOKING_ATTEMPTS; attempt++, day = day.plusDays(1)) {
+            long t0 = System.nanoTime();
+            MarketResult<Delivery> r = market.scheduleDelivery(new MarketRequests.ScheduleDelivery(a.order.getId(), day.toString()));
+            record(BOOK, t0, r.isOk(), r.getMessage());
+            if (r.isOk() || !r.getMessage().startsWith("No delivery slots")) return;
+        }
+    }
+
+    private void giveBack(Action a, Random rnd) {
+        OrderItem it = a.order.getItem(rnd.nextInt(a.order.getItemCount()));
+        int qty = 1 + rnd.nextInt(Math.max(1, it.getQuantity()));
+        long t0 = System.nanoTime();
+        MarketResult<ReturnReceipt> r = market.requestReturn(new MarketRequests.RequestReturn(a.order.getId(), it.getProductId(), qty,
+                rnd.nextBoolean()));
+        record(RETURN, t0, r.isOk(), r.getMessage());
+        if (r.isOk() && r.getValue().request().getStatus() == ReturnRequest.Status.APPROVED) {
+            returnedUnits.addAndGet(it.getProductId() - productBase, qty);
+        }
+    }
+
+    // Follow-ups come a little later in the day, or just after closing for late arrivals
+    private static double later(double at, Random rnd) {
+        return at + 0.002 + rnd.nextDouble() * 0.05;
+    }
+
+    private long record(int kind, long t0, boolean ok, String message) {
+        long nanos = System.nanoTime() - t0;
+        latency[kind].record(nanos);
+        if (!ok) {
+            rejected[kind].increment();
+            reasons.computeIfAbsent(KINDS[kind] + ": " + reason(message), k -> new LongAdder()).increment();
+        }
+        return nanos;
+    }
+
+    // The message up to its first number, so one reason is counted once however many IDs it names
+    private static String reason(String message) {
+        if (message == null) return "?";
+        int i = 0;
+        while (i < message.length() && !Character.isDigit(message.charAt(i))) i++;
+        return message.substring(0, i).trim();
+    }
+
+    // --- After closing ---
+
+    /** Decides every pending return (about two in three approved) and sends out and completes every delivery. */
+    private void closeDay() {
+        Random rnd = new Random(seed * 31 - 1);
+        for (List<ReturnRequest> pending; !(pending = market.pendingReturns(100)).isEmpty(); ) {
+            List<Integer> approve = new ArrayList<>(), deny = new ArrayList<>();
+            for (ReturnRequest rr : pending) (rnd.nextInt(3) < 2 ? approve : deny).add(rr.getId());
+            long t0 = System.nanoTime();
+            ReturnBatchReceipt approved = market.approveReturns(approve.stream().mapToInt(Integer::intValue).toArray());
+            ReturnBatchReceipt denied = market.denyReturns(deny.stream().mapToInt(Integer::intValue).toArray());
+            int failures = approved.failures().size() + denied.failures().size();
+            record(DECIDE, t0, failures == 0, failures == 0 ? null : "Batch with failures");
+            for (ReturnReceipt rr : approved.decided()) returnedUnits.addAndGet(rr.request().getProductId() - productBase, rr.request().getQuantity());
+        }
+        for (int d = 1; d < DELIVERY_DAYS + BOOKING_ATTEMPTS; d++) {
+            for (DeliveryRoute route : market.dispatchDeliveries(today.plusDays(d))) {
+                for (Delivery stop : route.stops()) {
+                    long t0 = System.nanoTime();
+                    MarketResult<Delivery> r = market.completeDelivery(stop.getId());
+                    record(COMPLETE, t0, r.isOk(), r.getMessage());
+                }
+            }
+        }
+        market.analytics().sync(10_000);
+        market.stockMonitor().sync(10_000);
+    }
+
+    /** Counts of each broken invariant with the first few offenders. */
+    private static final class Violations {
+        final Map<String, Long> counts = new TreeMap<>();
+        final List<String> examples = new ArrayList<>();
+
+        void add(String invariant, Object subject) {
+            counts.merge(invariant, 1L, Long::sum);
+            if (examples.size() < MAX_EXAMPLES) examples.add(invariant + ": " + subject);
+        }
+    }
+
+    private Violations check() {
+        Violations v = new Violations();
+        long[] sold = new long[initialStock.length];
+        Map<Order.Status, Integer> byStatus = new HashMap<>();
+        Map<Integer, Long> ledger = new HashMap<>();
+        for (Payment p : market.payments()) ledger.merge(p.getOrderId(), p.getAmountCents(), Long::sum);
+        for (Order o : market.orders()) {
+            for (int i = 0; i < o.getItemCount(); i++) sold[o.getItem(i).getProductId() - productBase] += o.getItem(i).getQuantity();
+            byStatus.merge(o.getStatus(), 1, Integer::sum);
+            if (o.getPaidCents() > o.getTotalCents()) v.add("overpaid", o);
+            if (o.getPaidCents() < 0) v.add("refunded more than paid", o);
+            if (ledger.getOrDefault(o.getId(), 0L) != o.getPaidCents()) v.add("payments disagree with paid amount", o);
+            Order.Status s = o.getStatus();
+            if ((s == Order.Status.PAID || s == Order.Status.SCHEDULED_FOR_DELIVERY || s == Order.Status.DELIVERED)
+                    && o.getAmountDueCents() > 0) {
+                v.add("settled with an amount due", o);
+            }
+        }
+        for (int i = 0; i < initialStock.length; i++) {
+            int pid = productBase + i;
+            Product p = market.getProduct(pid);
+            int level = market.getVendor(p.getVendorId()).getStockForProduct(pid);
+            int held = market.heldStock(pid);
+            if (level < 0) v.add("oversold", p + " stock " + level);
+            if (level + held + sold[i] != initialStock[i]) {
+                v.add("stock not conserved", p + " started " + initialStock[i] + ", stock " + level + " held " + held + " sold " + sold[i]);
+            }
+            if (placedUnits.get(i) - returnedUnits.get(i) != sold[i]) {
+                v.add("orders disagree with accepted sales", p + " accepted " + placedUnits.get(i) + " returned "
+                        + returnedUnits.get(i) + " on orders " + sold[i]);
+            }
+        }
+        for (Order.Status s : Order.Status.values()) {
+            int scanned = byStatus.getOrDefault(s, 0);
+            if (market.countWithStatus(s) != scanned) v.add("status index out of step", s + " index " + market.countWithStatus(s) + " scan " + scanned);
+        }
+        Map<Integer, Integer> perOrder = new HashMap<>();
+        for (Delivery d : market.deliveries()) {
+            if (perOrder.merge(d.getOrderId(), 1, Integer::sum) > 1) v.add("order booked twice", d);
+            Order o = market.getOrder(d.getOrderId());
+            if (d.getStatus() == Delivery.Status.DELIVERED && o.getStatus() != Order.Status.DELIVERED) v.add("delivered, order not", d);
+        }
+        for (int vendorId : vendorIds) {
+            for (int d = 1; d < DELIVERY_DAYS + BOOKING_ATTEMPTS; d++) {
+                int booked = market.deliveriesBooked(vendorId, today.plusDays(d));
+                if (booked > deliveryCapacity) v.add("delivery capacity exceeded", "vendor " + vendorId + " " + today.plusDays(d) + " " + booked);
+            }
+        }
+        for (ReturnRequest rr : market.returns()) {
+            if (rr.getStatus() == ReturnRequest.Status.PENDING_APPROVAL) v.add("return left undecided", rr);
+        }
+        return v;
+    }
+
+    // --- Report ---
+
+    private String report(double setupSeconds, double daySecondsTaken, double closeSeconds, long heapBefore, long heapSetup,
+                          long heapPeak, long heapAfter, Violations v) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("seed %d: %d vendors x %d products, %d customers, %d arrivals on %d threads, curve %s%n",
+                seed, vendors, productsPerVendor, customers, orders, threads, Arrays.toString(curve)));
+        sb.append(String.format("setup %.1f s, day %.1f s%s, closing %.1f s%n", setupSeconds, daySecondsTaken,
+                daySeconds > 0 ? " (paced)" : "", closeSeconds));
+        sb.append(String.format("%-22s %10s %10s %10s %10s %10s %10s%n", "call", "count", "rejected", "calls/s", "p50 ms", "p99 ms", "max ms"));
+        long total = 0;
+        for (int k = 0; k < KINDS.length; k++) {
+            LatencyHistogram h = latency[k];
+            double elapsed = k >= COMPLETE ? closeSeconds : daySecondsTaken;
+            total += h.count();
+            sb.append(String.format("%-22s %10d %10d %10.0f %10.3f %10.3f %10.2f%n", KINDS[k], h.count(), rejected[k].sum(),
+                    h.count() / elapsed, h.valueAtQuantile(0.50) / 1e6, h.valueAtQuantile(0.99) / 1e6, h.maxNanos() / 1e6));
+        }
+        sb.append(String.format("%-22s %10d %10s %10.0f%n", "all", total, "", total / (daySecondsTaken + closeSeconds)));
+        sb.append("place order by slice of the day:\n");
+        sb.append(String.format("%-22s %10s %10s %10s %10s%n", "slice", "weight", "count", "p50 ms", "p99 ms"));
+        for (int s = 0; s < curve.length; s++) {
+            LatencyHistogram h = orderLatencyBySlice[s];
+            sb.append(String.format("%-22s %10.1f %10d %10.3f %10.3f%n", (s + 1) + "/" + curve.length, curve[s], h.count(),
+                    h.valueAtQuantile(0.50) / 1e6, h.valueAtQuantile(0.99) / 1e6));
+        }
+        sb.append("rejections:\n");
+        new TreeMap<>(reasons).forEach((r, n) -> sb.append(String.format("  %-70s %10d%n", r, n.sum())));
+        sb.append(String.format("orders %d: %s%n", market.orders().size(), statusCounts()));
+        sb.append(String.format("heap MB: %.0f empty, %.0f after setup, %.0f peak during day, %.0f after closing%n",
+                heapBefore / 1e6, heapSetup / 1e6, heapPeak / 1e6, heapAfter / 1e6));
+        if (v.counts.isEmpty()) {
+            sb.append("invariants: all held\n");
+        } else {
+            sb.append("invariant violations: ").append(v.counts).append('\n');
+            for (String e : v.examples) sb.append("  ").append(e).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String statusCounts() {
+        Map<Order.Status, Integer> m = new TreeMap<>();
+        for (Order.Status s : Order.Status.values()) {
+            int n = market.countWithStatus(s);
+            if (n > 0) m.put(s, n);
+        }
+        return m.toString();
+    }
+
+    private static long heapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
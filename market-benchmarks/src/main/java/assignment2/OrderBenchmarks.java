@@ -0,0 +1,30 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Order totals: cached running cents, read through the double API the console uses. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBenchmarks {
+
+    @Benchmark
+    public double getTotalAmount(MarketFixture f) {
+        return f.order(ThreadLocalRandom.current().nextInt(f.size)).getTotalAmount();
+    }
+
+    @Benchmark
+    public double getPaidAmount(MarketFixture f) {
+        return f.order(ThreadLocalRandom.current().nextInt(f.size)).getPaidAmount();
+    }
+
+    @Benchmark
+    public long getAmountDueCents(MarketFixture f) {
+        return f.order(ThreadLocalRandom.current().nextInt(f.size)).getAmountDueCents();
+    }
+}
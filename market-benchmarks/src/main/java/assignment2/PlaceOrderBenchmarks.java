@@ -0,0 +1,93 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end placeOrder (validation, CAS reservation, journaling, indexing) with and
+ * without instrumentation, the write-ahead journal and the event subscribers. Compare
+ * {@code metrics=on} against {@code off} for the instrumentation overhead, and
+ * {@code events=all} (the default market: sales analytics and the stock monitor)
+ * against {@code analytics} and {@code none} for the cost of each subscriber and of
+ * publishing events; use {@code -t N} for contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PlaceOrderBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Market {
+        @Param({"on", "off"})
+        public String metrics;
+
+        @Param({"memory", "journal"})
+        public String store;
+
+        @Param({"none", "analytics", "all"})
+        public String events;
+
+        @Param({"16"})
+        public int vendors;
+
+        MarketService market;
+        Path dir;
+        int[] vendorIds;
+        List<List<List<OrderLine>>> carts; // per vendor
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            if (store.equals("journal")) {
+                dir = Files.createTempDirectory("market-bench");
+                market = MarketService.open(JournalConfig.defaults(dir));
+            } else {
+                market = new MarketService();
+            }
+            market.metrics().setEnabled(metrics.equals("on"));
+            if (events.equals("none")) market.analytics().stop();
+            if (!events.equals("all")) market.stockMonitor().stop();
+            vendorIds = new int[vendors];
+            carts = new ArrayList<>(vendors);
+            for (int v = 0; v < vendors; v++) {
+                vendorIds[v] = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+                int[] ps = new int[8];
+                for (int p = 0; p < ps.length; p++) {
+                    ps[p] = market.addProduct(new MarketRequests.AddProduct(vendorIds[v], "P" + p, 2.5, Integer.MAX_VALUE / 2)).getValue().getId();
+                }
+                List<List<OrderLine>> vendorCarts = new ArrayList<>();
+                carts.add(vendorCarts);
+                for (int c = 0; c < 64; c++) {
+                    vendorCarts.add(List.of(new OrderLine(ps[c % 8], 1), new OrderLine(ps[(c * 3 + 1) % 8], 2)));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            market.close();
+            if (dir != null) {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Order placeOrder(Market m) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int v = rnd.nextInt(m.vendors);
+        return m.market.placeOrder(new MarketRequests.PlaceOrder(m.vendorIds[v], m.carts.get(v).get(rnd.nextInt(64)))).getValue();
+    }
+}
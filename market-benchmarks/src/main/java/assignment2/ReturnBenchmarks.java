@@ -0,0 +1,49 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * approveReturn (restock, refund, reduce the purchased quantity). Each iteration
+ * first files a batch of pending single-unit returns spread over the orders and
+ * then approves them, so every measured call does the full approval. The reported
+ * score is the time for the whole batch of {@value #BATCH} approvals, one by one or
+ * in a single {@link MarketService#approveReturns} call.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, batchSize = ReturnBenchmarks.BATCH)
+@Measurement(iterations = 5, batchSize = ReturnBenchmarks.BATCH)
+@Fork(1)
+public class ReturnBenchmarks {
+    static final int BATCH = 10_000;
+
+    @State(Scope.Thread)
+    public static class PendingReturns {
+        int[] ids = new int[BATCH];
+        int next;
+
+        @Setup(Level.Iteration)
+        public void file(MarketFixture f) {
+            for (int i = 0; i < BATCH; i++) {
+                Order o = f.order((int) ((long) i * 7919 % f.size));
+                int pid = o.getItems().get(0).getProductId();
+                ids[i] = f.market.requestReturn(new MarketRequests.RequestReturn(o.getId(), pid, 1, false)).getValue().request().getId();
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public long approveReturn(MarketFixture f, PendingReturns pending) {
+        return f.market.approveReturn(pending.ids[pending.next++]).getValue().refundCents();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public int approveReturnsBulk(MarketFixture f, PendingReturns pending) {
+        return f.market.approveReturns(pending.ids).decided().size();
+    }
+}
@@ -0,0 +1,40 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The status filters behind the record-payment and schedule-delivery menus, through
+ * the status index, against a plain filter over every order for reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmarks {
+
+    @Benchmark
+    public int unpaidOrders(MarketFixture f) {
+        return f.market.ordersWithStatus(Order.Status.CONFIRMED, Order.Status.PAYMENT_PENDING).size();
+    }
+
+    @Benchmark
+    public int paidOrders(MarketFixture f) {
+        return f.market.ordersWithStatus(Order.Status.PAID).size();
+    }
+
+    @Benchmark
+    public int countPaid(MarketFixture f) {
+        return f.market.countWithStatus(Order.Status.PAID);
+    }
+
+    @Benchmark
+    public void paidOrdersFullScan(MarketFixture f, Blackhole bh) {
+        for (Order o : f.market.orders()) {
+            if (o.getStatus() == Order.Status.PAID) bh.consume(o);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type-ahead product search over {@code size} products spread across 1000 vendors.
+ * Names are built from small word lists ("Organic Honeycrisp Apples 500g"), so short
+ * prefixes match hundreds of thousands of products; a third of the products are out
+ * of stock. Queries are typed prefixes of one or two words, with and without the
+ * price and in-stock filters, returning the first 20 matches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmarks {
+    static final String[] QUALITY = {"Organic", "Fresh", "Local", "Heirloom", "Wild", "Smoked", "Dried", "Baby", "Giant", "Spicy"};
+    static final String[] ITEM = {"Honeycrisp Apples", "Gala Apples", "Pears", "Plums", "Peaches", "Strawberries", "Blueberries",
+            "Raspberries", "Carrots", "Beets", "Potatoes", "Sweet Potatoes", "Onions", "Garlic", "Leeks", "Kale", "Spinach",
+            "Lettuce", "Tomatoes", "Cherry Tomatoes", "Peppers", "Zucchini", "Pumpkin", "Squash", "Corn", "Beans", "Peas",
+            "Honey", "Maple Syrup", "Eggs", "Goat Cheese", "Cheddar", "Sourdough Bread", "Rye Bread", "Apple Cider",
+            "Salmon", "Trout", "Sausages", "Bacon", "Mushrooms", "Basil", "Mint", "Lavender", "Sunflowers", "Jam",
+            "Pickles", "Salsa", "Granola", "Walnuts", "Hazelnuts"};
+    static final String[] UNIT = {"250g", "500g", "1kg", "2kg", "dozen", "bunch", "jar", "loaf", "pint", "box"};
+    static final String[] QUERIES = {"a", "ap", "appl", "honeyc", "org", "organic sal", "sw pot", "heirloom tom", "lav", "1kg",
+            "chee", "wild mush", "sourdough", "pi", "smoked tr"};
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"1000000"})
+        public int size;
+
+        MarketService market;
+
+        @Setup(Level.Trial)
+        public void populate() {
+            market = new MarketService();
+            market.metrics().setEnabled(false);
+            market.analytics().stop();
+            market.stockMonitor().stop();
+            Random rnd = new Random(42);
+            int vendors = 1000;
+            int[] vendorIds = new int[vendors];
+            for (int v = 0; v < vendors; v++) vendorIds[v] = market.addVendor(new MarketRequests.AddVendor("Vendor " + v)).getValue().getId();
+            for (int i = 0; i < size; i++) {
+                String name = QUALITY[rnd.nextInt(QUALITY.length)] + " " + ITEM[rnd.nextInt(ITEM.length)] + " " + UNIT[rnd.nextInt(UNIT.length)];
+                market.addProduct(new MarketRequests.AddProduct(vendorIds[i % vendors], name, 0.5 + rnd.nextInt(4000) / 100.0,
+                        rnd.nextInt(3) == 0 ? 0 : 1 + rnd.nextInt(100)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException { market.close(); }
+
+        String query() { return QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)]; }
+    }
+
+    @Benchmark
+    public List<Product> prefix(Catalog c) {
+        return c.market.searchProducts(new MarketRequests.SearchProducts(c.query(), 0, 0, false, 20));
+    }
+
+    @Benchmark
+    public List<Product> prefixInStockUnder5(Catalog c) {
+        return c.market.searchProducts(new MarketRequests.SearchProducts(c.query(), 0, 5, true, 20));
+    }
+
+    /** A narrow price band: most candidates are rejected, so far more postings are scanned per hit. */
+    @Benchmark
+    public List<Product> prefixNarrowPrice(Catalog c) {
+        return c.market.searchProducts(new MarketRequests.SearchProducts(c.query(), 12.00, 12.05, true, 20));
+    }
+}
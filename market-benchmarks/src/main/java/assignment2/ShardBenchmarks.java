@@ -0,0 +1,90 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * placeOrder and search on a {@link ShardedMarket} of {@code shards} shards against a
+ * single {@link MarketService} ({@code shards=0}), from four caller threads. Each
+ * sharded write is handed to its shard's writer thread and the caller waits for it,
+ * so sharding pays off once shards have cores of their own; with fewer cores than
+ * shards the handoff is pure cost. Search asks every shard and merges the answers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class ShardBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Market {
+        @Param({"0", "1", "4"})
+        public int shards;
+
+        @Param({"64"})
+        public int vendors;
+
+        MarketService single;
+        ShardedMarket sharded;
+        int[] vendorIds;
+        List<List<List<OrderLine>>> carts; // per vendor
+
+        @Setup(Level.Trial)
+        public void open() {
+            if (shards == 0) single = new MarketService();
+            else sharded = new ShardedMarket(shards);
+            vendorIds = new int[vendors];
+            carts = new ArrayList<>(vendors);
+            for (int v = 0; v < vendors; v++) {
+                vendorIds[v] = addVendor("Vendor " + v).getId();
+                int[] ps = new int[8];
+                for (int p = 0; p < ps.length; p++) {
+                    ps[p] = addProduct(vendorIds[v], SearchBenchmarks.QUALITY[p] + " " + SearchBenchmarks.ITEM[(v + p) % SearchBenchmarks.ITEM.length]).getId();
+                }
+                List<List<OrderLine>> vendorCarts = new ArrayList<>();
+                carts.add(vendorCarts);
+                for (int c = 0; c < 64; c++) {
+                    vendorCarts.add(List.of(new OrderLine(ps[c % 8], 1), new OrderLine(ps[(c * 3 + 1) % 8], 2)));
+                }
+            }
+        }
+
+        private Vendor addVendor(String name) {
+            MarketRequests.AddVendor req = new MarketRequests.AddVendor(name);
+            return (single != null ? single.addVendor(req) : sharded.addVendor(req)).getValue();
+        }
+
+        private Product addProduct(int vendorId, String name) {
+            MarketRequests.AddProduct req = new MarketRequests.AddProduct(vendorId, name, 2.5, Integer.MAX_VALUE / 2);
+            return (single != null ? single.addProduct(req) : sharded.addProduct(req)).getValue();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (single != null) single.close();
+            else sharded.close();
+        }
+    }
+
+    @Benchmark
+    public Order placeOrder(Market m) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int v = rnd.nextInt(m.vendors);
+        MarketRequests.PlaceOrder req = new MarketRequests.PlaceOrder(m.vendorIds[v], m.carts.get(v).get(rnd.nextInt(64)));
+        return (m.single != null ? m.single.placeOrder(req) : m.sharded.placeOrder(req)).getValue();
+    }
+
+    @Benchmark
+    public List<Product> search(Market m) {
+        MarketRequests.SearchProducts req = new MarketRequests.SearchProducts(
+                SearchBenchmarks.QUERIES[ThreadLocalRandom.current().nextInt(SearchBenchmarks.QUERIES.length)], 0, 0, true, 20);
+        return m.single != null ? m.single.searchProducts(req) : m.sharded.searchProducts(req);
+    }
+}
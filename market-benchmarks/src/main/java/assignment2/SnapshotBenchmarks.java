@@ -0,0 +1,55 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and loading a full snapshot of the {@link MarketFixture} market
+ * ({@code size} orders of two items, three quarters of them with a payment). Each
+ * load builds a fresh market, as recovery and imports do. Single shots, since one
+ * 10M-order write or load takes seconds; run e.g. {@code -p size=1000000}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Saved {
+        Path dir;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void create(MarketFixture f) throws IOException {
+            dir = Files.createTempDirectory("market-snapshot-bench");
+            file = dir.resolve("market.snap");
+            MarketSnapshot.write(f.market, file);
+            System.out.printf("%nsnapshot: %,d bytes%n", Files.size(file));
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir.resolve("out.snap"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Benchmark
+    public void write(MarketFixture f, Saved s) throws IOException {
+        MarketSnapshot.write(f.market, s.dir.resolve("out.snap"));
+    }
+
+    @Benchmark
+    public MarketService load(Saved s) throws IOException {
+        MarketService m = MarketService.load(s.file);
+        m.close();
+        return m;
+    }
+}
@@ -0,0 +1,48 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vendor inventory counters. Each operation takes a unit and puts it back, so stock
+ * stays level however long the run. Use {@code -t N} to measure contention: with
+ * few vendors (small {@code size}) threads collide on the same counters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockBenchmarks {
+
+    @Benchmark
+    public int decreaseThenAddStock(MarketFixture f) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int v = rnd.nextInt(f.vendorIds.length);
+        int pid = f.productIds[v][rnd.nextInt(MarketFixture.PRODUCTS_PER_VENDOR)];
+        Vendor vendor = f.vendor(v);
+        vendor.decreaseStock(pid, 1);
+        vendor.addStock(pid, 1);
+        return pid;
+    }
+
+    @Benchmark
+    public boolean tryReserveThenRelease(MarketFixture f) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int v = rnd.nextInt(f.vendorIds.length);
+        int pid = f.productIds[v][rnd.nextInt(MarketFixture.PRODUCTS_PER_VENDOR)];
+        Vendor vendor = f.vendor(v);
+        boolean ok = vendor.tryReserve(pid, 1);
+        if (ok) vendor.increaseStock(pid, 1);
+        return ok;
+    }
+
+    @Benchmark
+    public int getStockForProduct(MarketFixture f) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int v = rnd.nextInt(f.vendorIds.length);
+        return f.vendor(v).getStockForProduct(f.productIds[v][rnd.nextInt(MarketFixture.PRODUCTS_PER_VENDOR)]);
+    }
+}
@@ -0,0 +1,61 @@
+package assignment2;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The primitive stores against the boxed ConcurrentHashMap layouts they replaced:
+ * DenseStore for ID -> entity and IntCounterMap for product -> stock.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StoreBenchmarks {
+    private static final int BASE = 3000;
+
+    @State(Scope.Benchmark)
+    public static class Stores {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        DenseStore<Object> dense;
+        ConcurrentHashMap<Integer, Object> chm;
+        IntCounterMap counters;
+        ConcurrentHashMap<Integer, AtomicInteger> boxedCounters;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            dense = new DenseStore<>(BASE);
+            chm = new ConcurrentHashMap<>();
+            counters = new IntCounterMap();
+            boxedCounters = new ConcurrentHashMap<>();
+            Object v = new Object();
+            for (int i = 0; i < size; i++) {
+                dense.put(BASE + i, v);
+                chm.put(BASE + i, v);
+                counters.addAndGet(BASE + i, 100);
+                boxedCounters.put(BASE + i, new AtomicInteger(100));
+            }
+        }
+
+        int randomKey() { return BASE + ThreadLocalRandom.current().nextInt(size); }
+    }
+
+    @Benchmark
+    public Object denseStoreGet(Stores s) { return s.dense.get(s.randomKey()); }
+
+    @Benchmark
+    public Object concurrentHashMapGet(Stores s) { return s.chm.get(s.randomKey()); }
+
+    @Benchmark
+    public int intCounterMapAdd(Stores s) { return s.counters.addAndGet(s.randomKey(), 0); }
+
+    @Benchmark
+    public int boxedCounterAdd(Stores s) { return s.boxedCounters.get(s.randomKey()).addAndGet(0); }
+}
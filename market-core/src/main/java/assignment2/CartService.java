@@ -0,0 +1,233 @@
+package assignment2;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Multi-vendor carts. {@link #hold} takes stock for every line of a cart, across
+ * any number of vendors, or for none of them: lines are reserved with the same
+ * per-product CAS as {@link OrderService} in ascending product ID and rolled back on
+ * the first shortage. A hold lasts until it is checked out (one CONFIRMED order per
+ * vendor), released, or its TTL runs out, when the {@link TimerWheel} hands the
+ * stock back without scanning other holds.
+ * <p>
+ * Holds are not journaled: a restart releases them all. Snapshots therefore count
+ * held units as in stock (see {@link #heldStock}).
+ */
+class CartService implements AutoCloseable {
+    static final long DEFAULT_TTL_MILLIS = 15 * 60_000L;
+    static final long MAX_TTL_MILLIS = 24 * 3_600_000L;
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 1024;
+
+    private static final int ACTIVE = 0, CHECKED_OUT = 1, RELEASED = 2, EXPIRED = 3;
+
+    /** Stock held for one cart. Lines are grouped by vendor, each group in ascending product ID. */
+    static final class CartHold {
+        private final int id;
+        private final long expiresAtMillis;
+        private final int[] vendorIds;
+        private final List<List<OrderLine>> groups;
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+        private volatile TimerWheel.Timeout<CartHold> timeout;
+
+        private CartHold(int id, long expiresAtMillis, int[] vendorIds, List<List<OrderLine>> groups) {
+            this.id = id; this.expiresAtMillis = expiresAtMillis; this.vendorIds = vendorIds; this.groups = groups;
+        }
+
+        public int getId() { return id; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+        public int getVendorCount() { return vendorIds.length; }
+        public boolean isActive() { return state.get() == ACTIVE; }
+
+        public List<OrderLine> getLines() {
+            List<OrderLine> all = new ArrayList<>();
+            for (List<OrderLine> g : groups) all.addAll(g);
+            return all;
+        }
+
+        @Override
+        public String toString() {
+            return "Hold[" + id + "] Vendors=" + vendorIds.length + " Lines=" + getLines() + " Expires=" + new Date(expiresAtMillis);
+        }
+    }
+
+    private final DenseStore<Vendor> vendors;
+    private final DenseStore<Product> products;
+    private final OrderService orderService;
+    private final Supplier<Lock> mutationGate;
+    private final MarketMetrics metrics;
+    private final IdSequence holdIdGen;
+    private final Map<Integer, CartHold> holds = new ConcurrentHashMap<>();
+    private final IntCounterMap held = new IntCounterMap(); // productId -> units in active holds
+    private final TimerWheel<CartHold> expiry;
+
+    CartService(DenseStore<Vendor> vendors, DenseStore<Product> products, OrderService orderService,
+                Supplier<Lock> mutationGate, MarketMetrics metrics, IdSequence holdIdGen) {
+        this.vendors = vendors; this.products = products; this.orderService = orderService;
+        this.mutationGate = mutationGate; this.metrics = metrics;
+        this.holdIdGen = holdIdGen;
+        this.expiry = new TimerWheel<>(TICK_MILLIS, WHEEL_SIZE, this::expire);
+    }
+
+    /**
+     * Reserves every line, or none, for {@code ttlMillis}.
+     *
+     * @throws IllegalArgumentException if a product is unknown, a quantity or the TTL is out of range, or stock is insufficient
+     */
+    public CartHold hold(List<OrderLine> lines, long ttlMillis) {
+        if (lines.isEmpty()) throw new IllegalArgumentException("No items selected.");
+        if (ttlMillis <= 0 || ttlMillis > MAX_TTL_MILLIS) {
+            throw new IllegalArgumentException("Hold time must be between 1 ms and " + MAX_TTL_MILLIS / 3_600_000L + " hours.");
+        }
+        TreeMap<Integer, Integer> wanted = new TreeMap<>();
+        for (OrderLine l : lines) {
+            if (l.getQuantity() <= 0) throw new IllegalArgumentException("Quantity must be positive.");
+            if (products.get(l.getProductId()) == null) throw new IllegalArgumentException("Product " + l.getProductId() + " not found.");
+            try {
+                wanted.merge(l.getProductId(), l.getQuantity(), Math::addExact);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Quantity too large for product " + l.getProductId() + ".");
+            }
+        }
+
+        Lock gate = mutationGate.get();
+        try {
+            List<Map.Entry<Integer, Integer>> reserved = new ArrayList<>(wanted.size());
+            for (Map.Entry<Integer, Integer> e : wanted.entrySet()) {
+                Vendor v = vendors.get(products.get(e.getKey()).getVendorId());
+                if (v == null || !v.tryReserve(e.getKey(), e.getValue())) {
+                    for (Map.Entry<Integer, Integer> r : reserved) returnStock(new OrderLine(r.getKey(), r.getValue()));
+                    metrics.stockRejected(e.getKey());
+                    throw new IllegalArgumentException("Insufficient stock for product " + e.getKey()
+                            + " (available " + (v == null ? 0 : v.getStockForProduct(e.getKey())) + ").");
+                }
+                held.addAndGet(e.getKey(), e.getValue());
+                reserved.add(e);
+            }
+        } finally {
+            gate.unlock();
+        }
+
+        TreeMap<Integer, List<OrderLine>> byVendor = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> e : wanted.entrySet()) {
+            byVendor.computeIfAbsent(products.get(e.getKey()).getVendorId(), k -> new ArrayList<>())
+                    .add(new OrderLine(e.getKey(), e.getValue()));
+        }
+        int[] vendorIds = byVendor.keySet().stream().mapToInt(Integer::intValue).toArray();
+        CartHold h = new CartHold(holdIdGen.next(), expiry.now() + ttlMillis, vendorIds, new ArrayList<>(byVendor.values()));
+        holds.put(h.id, h);
+        h.timeout = expiry.schedule(h, h.expiresAtMillis);
+        return h;
+    }
+
+    /**
+     * Turns an active hold into one CONFIRMED order per vendor, using the stock already
+     * reserved. Orders are returned in vendor ID order.
+     *
+     * @throws IllegalArgumentException if the hold is unknown, or was already checked out, released or expired
+     */
+    public List<Order> checkout(int holdId) {
+        CartHold h = claim(holdId, CHECKED_OUT);
+        List<Order> orders = new ArrayList<>(h.vendorIds.length);
+        int g = 0;
+        Lock gate = mutationGate.get();
+        try {
+            for (; g < h.vendorIds.length; g++) {
+                List<OrderLine> group = h.groups.get(g);
+                orders.add(orderService.recordReserved(h.vendorIds[g], group));
+                for (OrderLine l : group) held.addAndGet(l.getProductId(), -l.getQuantity());
+            }
+        } finally {
+            // A journal failure part-way leaves the later vendors without an order; give their stock back
+            for (int k = g; k < h.vendorIds.length; k++) {
+                for (OrderLine l : h.groups.get(k)) returnStock(l);
+            }
+            gate.unlock();
+        }
+        return orders;
+    }
+
+    /**
+     * Hands an active hold's stock back.
+     *
+     * @throws IllegalArgumentException if the hold is unknown, or was already checked out, released or expired
+     */
+    public CartHold release(int holdId) {
+        CartHold h = claim(holdId, RELEASED);
+        returnAll(h);
+        return h;
+    }
+
+    /** Units of the product currently held by carts (not yet ordered, no longer in vendor stock). */
+    int heldStock(int productId) { return held.get(productId); }
+
+    public int activeHolds() { return holds.size(); }
+
+    public CartHold getHold(int holdId) { return holds.get(holdId); }
+
+    /** Holds pending in the expiry wheel; lags {@link #activeHolds} by up to one tick. */
+    int scheduledExpiries() { return expiry.size(); }
+
+    /** Expiries that threw instead of releasing their hold; see {@link TimerWheel#lastFailure}. */
+    long expiryFailures() { return expiry.failures(); }
+
+    /** Runs the expiry wheel up to {@code nowMillis} on the calling thread. */
+    void expireUpTo(long nowMillis) { expiry.advance(nowMillis); }
+
+    @Override
+    public void close() { expiry.close(); }
+
+    private CartHold claim(int holdId, int to) {
+        CartHold h = holds.get(holdId);
+        if (h == null) throw new IllegalArgumentException("Hold not found (it may have expired).");
+        if (!h.state.compareAndSet(ACTIVE, to)) {
+            throw new IllegalArgumentException("Hold " + holdId + " is already " + stateName(h.state.get()) + ".");
+        }
+        holds.remove(holdId);
+        TimerWheel.Timeout<CartHold> t = h.timeout;
+        if (t != null) expiry.cancel(t);
+        return h;
+    }
+
+    // Runs on the wheel's ticker thread
+    private void expire(CartHold h) {
+        if (!h.state.compareAndSet(ACTIVE, EXPIRED)) return;
+        holds.remove(h.id);
+        returnAll(h);
+        metrics.holdExpired();
+    }
+
+    private void returnAll(CartHold h) {
+        Lock gate = mutationGate.get();
+        try {
+            for (List<OrderLine> group : h.groups) {
+                for (OrderLine l : group) returnStock(l);
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    private void returnStock(OrderLine l) {
+        held.addAndGet(l.getProductId(), -l.getQuantity());
+        unreserve(l.getProductId(), l.getQuantity());
+    }
+
+    private void unreserve(int productId, int qty) {
+        Vendor v = vendors.get(products.get(productId).getVendorId());
+        if (v != null) v.increaseStock(productId, qty);
+    }
+
+    private static String stateName(int state) {
+        return switch (state) {
+            case CHECKED_OUT -> "checked out";
+            case RELEASED -> "released";
+            case EXPIRED -> "expired";
+            default -> "active";
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package assignment2;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-vendor delivery calendars with a fixed number of slots per day. Each calendar
+ * keeps the booked count and stops of every day it has seen, plus a sorted set of
+ * the days in its look-ahead window that still have room, so "earliest day on or
+ * after X with capacity" is a {@code ceiling} lookup rather than a walk over days.
+ * Days are keyed by {@link LocalDate#toEpochDay()}.
+ * <p>
+ * Owned by {@link MarketService}, which books slots under the order's lock and
+ * journals the resulting {@link Delivery}; recovery re-registers stored deliveries
+ * through {@link #restore} regardless of the current capacity.
+ */
+final class DeliveryScheduler {
+    static final int DEFAULT_DAILY_CAPACITY = 20;
+    private static final int HORIZON_DAYS = 28; // open days materialized per extension
+
+    private final Map<Integer, Calendar> calendars = new ConcurrentHashMap<>();
+    private volatile int defaultCapacity = DEFAULT_DAILY_CAPACITY;
+
+    /** Accepts ISO dates ({@code 2026-05-01}) and "today". */
+    static LocalDate parseDate(String s) {
+        String t = s.trim();
+        if (t.equalsIgnoreCase("today")) return LocalDate.now();
+        try {
+            return LocalDate.parse(t);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Delivery date must be YYYY-MM-DD or 'today': '" + s + "'");
+        }
+    }
+
+    /** Capacity for vendors that have not been given their own. */
+    void setDefaultCapacity(int perDay) {
+        if (perDay <= 0) throw new IllegalArgumentException("Daily capacity must be positive.");
+        defaultCapacity = perDay;
+    }
+
+    void setDailyCapacity(int vendorId, int perDay) {
+        if (perDay <= 0) throw new IllegalArgumentException("Daily capacity must be positive.");
+        calendar(vendorId).setCapacity(perDay);
+    }
+
+    /** Capacities set for individual vendors, by vendor ID; vendors on the default are left out. */
+    SortedMap<Integer, Integer> configuredCapacities() {
+        SortedMap<Integer, Integer> out = new TreeMap<>();
+        calendars.forEach((vendorId, c) -> {
+            int perDay = c.configuredCapacity();
+            if (perDay > 0) out.put(vendorId, perDay);
+        });
+        return out;
+    }
+
+    int getDailyCapacity(int vendorId) {
+        Calendar c = calendars.get(vendorId);
+        return c == null ? defaultCapacity : c.capacity;
+    }
+
+    int booked(int vendorId, LocalDate day) {
+        Calendar c = calendars.get(vendorId);
+        return c == null ? 0 : c.booked(day.toEpochDay());
+    }
+
+    /**
+     * Books a delivery on exactly {@code day}, taking its ID from {@code nextId} only once
+     * a slot is free, so a full day uses up no ID. Returns the ID, or -1 if the vendor
+     * has no slot left that day.
+     */
+    int tryBook(int vendorId, LocalDate day, IntSupplier nextId) {
+        return calendar(vendorId).tryBook(day.toEpochDay(), nextId);
+    }
+
+    /** Books deliveryId on the vendor's earliest day on or after {@code from} with a free slot. */
+    LocalDate bookEarliest(int vendorId, LocalDate from, int deliveryId) {
+        return LocalDate.ofEpochDay(calendar(vendorId).bookEarliest(from.toEpochDay(), deliveryId));
+    }
+
+    /** Returns a slot taken by a booking that was not applied after all. */
+    void cancel(int vendorId, LocalDate day, int deliveryId) {
+        calendar(vendorId).cancel(day.toEpochDay(), deliveryId);
+    }
+
+    /** Registers an already-stored delivery; may exceed capacity if it was lowered since. */
+    void restore(int vendorId, LocalDate day, int deliveryId) {
+        calendar(vendorId).restore(day.toEpochDay(), deliveryId);
+    }
+
+    /** Delivery IDs booked on {@code day}, per vendor in ascending vendor ID, in booking order. */
+    SortedMap<Integer, int[]> stopsOn(LocalDate day) {
+        long d = day.toEpochDay();
+        SortedMap<Integer, int[]> out = new TreeMap<>();
+        calendars.forEach((vendorId, c) -> {
+            int[] stops = c.stops(d);
+            if (stops.length > 0) out.put(vendorId, stops);
+        });
+        return out;
+    }
+
+    private Calendar calendar(int vendorId) {
+        return calendars.computeIfAbsent(vendorId, k -> new Calendar(defaultCapacity));
+    }
+
+    /** One vendor's days. All access is synchronized on the calendar. */
+    private static final class Calendar {
+        private int capacity;
+        private boolean configured; // capacity was set for this vendor rather than taken from the default
+        private final Map<Long, Day> days = new HashMap<>();
+        // Days in [windowStart, windowEnd) with spare capacity
+        private final TreeSet<Long> open = new TreeSet<>();
+        private long windowStart = Long.MAX_VALUE;
+        private long windowEnd = Long.MAX_VALUE;
+
+        Calendar(int capacity) { this.capacity = capacity; }
+
+        synchronized void setCapacity(int perDay) {
+            capacity = perDay;
+            configured = true;
+            open.clear();
+            for (long d = windowStart; d < windowEnd; d++) {
+                if (booked(d) < capacity) open.add(d);
+            }
+        }
+
+        synchronized int configuredCapacity() { return configured ? capacity : 0; }
+
+        synchronized int booked(long day) {
+            Day d = days.get(day);
+            return d == null ? 0 : d.stops.size();
+        }
+
+        synchronized int[] stops(long day) {
+            Day d = days.get(day);
+            if (d == null) return new int[0];
+            int[] out = new int[d.stops.size()];
+            for (int i = 0; i < out.length; i++) out[i] = d.stops.get(i);
+            return out;
+        }
+
+        synchronized int tryBook(long day, IntSupplier nextId) {
+            if (booked(day) >= capacity) return -1;
+            int deliveryId = nextId.getAsInt();
+            add(day, deliveryId);
+            return deliveryId;
+        }
+
+        synchronized long bookEarliest(long from, int deliveryId) {
+            cover(from);
+            Long day;
+            while ((day = open.ceiling(from)) == null) extend();
+            add(day, deliveryId);
+            return day;
+        }
+
+        synchronized void cancel(long day, int deliveryId) {
+            Day d = days.get(day);
+            if (d == null || !d.stops.remove(Integer.valueOf(deliveryId))) return;
+            if (d.stops.size() < capacity && day >= windowStart && day < windowEnd) open.add(day);
+        }
+
+        synchronized void restore(long day, int deliveryId) {
+            add(day, deliveryId);
+        }
+
+        private void add(long day, int deliveryId) {
+            Day d = days.computeIfAbsent(day, k -> new Day());
+            d.stops.add(deliveryId);
+            if (d.stops.size() >= capacity) open.remove(day);
+        }
+
+        /** Grows the window down to {@code from}, adding the non-full days it uncovers. */
+        private void cover(long from) {
+            if (windowStart == Long.MAX_VALUE) {
+                windowStart = windowEnd = from;
+                return;
+            }
+            for (long d = from; d < windowStart; d++) {
+                if (booked(d) < capacity) open.add(d);
+            }
+            windowStart = Math.min(windowStart, from);
+        }
+
+        private void extend() {
+            long end = windowEnd + HORIZON_DAYS;
+            for (long d = windowEnd; d < end; d++) {
+                if (booked(d) < capacity) open.add(d);
+            }
+            windowEnd = end;
+        }
+    }
+
+    private static final class Day {
+        final List<Integer> stops = new ArrayList<>(4);
+    }
+}
+
+/** One vendor's deliveries for a day, dispatched together. */
+record DeliveryRoute(int vendorId, LocalDate day, List<Delivery> stops) {}
@@ -0,0 +1,122 @@
+package assignment2;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent int -> object registry for entities whose IDs are handed out
+ * sequentially from a fixed base (vendors from 1000, products from 2000, ...).
+ * An ID maps straight to {@code (id - base)} in a paged array, so there are no hash
+ * nodes or boxed keys; pages are allocated on first use and never move, so lookups
+ * are lock-free. Iteration order is ascending ID.
+ */
+final class DenseStore<T> {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int base;
+    private volatile AtomicReferenceArray<T>[] pages = newPages(4);
+    private final AtomicInteger size = new AtomicInteger();
+    private final Collection<T> values = new ValuesView();
+
+    DenseStore(int base) { this.base = base; }
+
+    public T get(int id) {
+        int idx = id - base;
+        if (idx < 0) return null;
+        AtomicReferenceArray<T>[] ps = pages;
+        int p = idx >>> PAGE_SHIFT;
+        if (p >= ps.length || ps[p] == null) return null;
+        return ps[p].get(idx & PAGE_MASK);
+    }
+
+    /** Stores value under id and returns the previous value, if any. */
+    public T put(int id, T value) {
+        Objects.requireNonNull(value);
+        T prev = page(id).getAndSet((id - base) & PAGE_MASK, value);
+        if (prev == null) size.incrementAndGet();
+        return prev;
+    }
+
+    public T remove(int id) {
+        int idx = id - base;
+        if (idx < 0) return null;
+        AtomicReferenceArray<T>[] ps = pages;
+        int p = idx >>> PAGE_SHIFT;
+        if (p >= ps.length || ps[p] == null) return null;
+        T prev = ps[p].getAndSet(idx & PAGE_MASK, null);
+        if (prev != null) size.decrementAndGet();
+        return prev;
+    }
+
+    public int size() { return size.get(); }
+
+    public boolean isEmpty() { return size.get() == 0; }
+
+    /** Live read-only view in ascending ID order; weakly consistent like the concurrent collections. */
+    public Collection<T> values() { return values; }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> AtomicReferenceArray<T>[] newPages(int n) { return new AtomicReferenceArray[n]; }
+
+    private AtomicReferenceArray<T> page(int id) {
+        int idx = id - base;
+        if (idx < 0) throw new IllegalArgumentException("ID " + id + " is below store base " + base);
+        int p = idx >>> PAGE_SHIFT;
+        AtomicReferenceArray<T>[] ps = pages;
+        if (p < ps.length && ps[p] != null) return ps[p];
+        synchronized (this) {
+            ps = pages;
+            if (p >= ps.length) ps = Arrays.copyOf(ps, Math.max(ps.length * 2, p + 1));
+            if (ps[p] == null) ps[p] = new AtomicReferenceArray<>(PAGE_SIZE);
+            pages = ps; // volatile write publishes the grown array and the new page
+            return ps[p];
+        }
+    }
+
+    private final class ValuesView extends AbstractCollection<T> {
+        @Override
+        public int size() { return size.get(); }
+
+        @Override
+        public boolean isEmpty() { return size.get() == 0; }
+
+        @Override
+        public Iterator<T> iterator() {
+            final AtomicReferenceArray<T>[] ps = pages;
+            return new Iterator<T>() {
+                private int page;
+                private int slot = -1;
+                private T next = advance();
+
+                private T advance() {
+                    while (page < ps.length) {
+                        AtomicReferenceArray<T> arr = ps[page];
+                        if (arr != null) {
+                            while (++slot < PAGE_SIZE) {
+                                T v = arr.get(slot);
+                                if (v != null) return v;
+                            }
+                        }
+                        page++;
+                        slot = -1;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() { return next != null; }
+
+                @Override
+                public T next() {
+                    if (next == null) throw new NoSuchElementException();
+                    T v = next;
+                    next = advance();
+                    return v;
+                }
+            };
+        }
+    }
+}
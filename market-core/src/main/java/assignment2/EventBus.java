@@ -0,0 +1,213 @@
+package assignment2;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, multi-subscriber ring of {@link MarketEvent}s in the style
+ * of the LMAX Disruptor. Publishing claims a sequence with one atomic increment,
+ * stores the event in its slot and marks the slot available with a release write:
+ * no locks, no wake-ups and no allocation beyond the event itself. Each subscriber
+ * runs on its own daemon thread, reads every available event in order, and hands
+ * them to its handler in batches.
+ * <p>
+ * The ring is shared, so a publisher waits only when the slowest subscriber is a
+ * full ring behind. With no subscribers, publishing is a single volatile read and
+ * callers can skip building the event (see {@link #hasSubscribers}).
+ */
+final class EventBus implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** Receives events on the subscriber's thread, in publication order. */
+    interface Handler {
+        /** @param endOfBatch true for the last event currently available, a good point to flush */
+        void onEvent(MarketEvent event, long sequence, boolean endOfBatch);
+    }
+
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int SPIN_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    private final int mask;
+    private final int shift;
+    private final MarketEvent[] ring;
+    private final int[] available; // per slot: the lap (sequence >>> shift) last published into it
+    private final AtomicLong cursor = new AtomicLong(-1); // highest claimed sequence
+    private final LongAdder publisherWaits = new LongAdder();
+    private volatile Subscription[] subscribers = new Subscription[0];
+    private volatile long gatingCache = -1; // lower bound on every subscriber's sequence
+
+    EventBus() { this(DEFAULT_CAPACITY); }
+
+    EventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two.");
+        mask = capacity - 1;
+        shift = Integer.numberOfTrailingZeros(capacity);
+        ring = new MarketEvent[capacity];
+        available = new int[capacity];
+        Arrays.fill(available, -1);
+    }
+
+    boolean hasSubscribers() { return subscribers.length != 0; }
+
+    /** Publishes one event; returns its sequence, or -1 if nobody is subscribed. */
+    long publish(MarketEvent event) {
+        if (subscribers.length == 0) return -1;
+        long seq = cursor.incrementAndGet();
+        long wrap = seq - ring.length;
+        if (wrap > gatingCache) awaitCapacity(wrap);
+        int i = (int) seq & mask;
+        ring[i] = event;
+        AVAILABLE.setRelease(available, i, (int) (seq >>> shift));
+        return seq;
+    }
+
+    private void awaitCapacity(long wrap) {
+        long min;
+        boolean waited = false;
+        while (wrap > (min = minSequence())) {
+            if (!waited) {
+                publisherWaits.increment();
+                waited = true;
+            }
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+        gatingCache = min;
+    }
+
+    private long minSequence() {
+        long min = cursor.get();
+        for (Subscription s : subscribers) min = Math.min(min, s.sequence.get());
+        return min;
+    }
+
+    private boolean isAvailable(long seq) {
+        return (int) AVAILABLE.getAcquire(available, (int) seq & mask) == (int) (seq >>> shift);
+    }
+
+    /** Starts delivering events published from now on to {@code handler} on a new thread named {@code name}. */
+    synchronized Subscription subscribe(String name, Handler handler) {
+        Subscription s = new Subscription(name, handler);
+        // Start after everything claimed so far; earlier sequences may be overwritten at any time
+        s.sequence.set(cursor.get());
+        Subscription[] grown = Arrays.copyOf(subscribers, subscribers.length + 1);
+        grown[grown.length - 1] = s;
+        subscribers = grown;
+        s.thread.start();
+        return s;
+    }
+
+    private synchronized void unsubscribe(Subscription s) {
+        Subscription[] cur = subscribers;
+        int n = 0;
+        Subscription[] kept = new Subscription[cur.length];
+        for (Subscription x : cur) if (x != s) kept[n++] = x;
+        subscribers = Arrays.copyOf(kept, n);
+    }
+
+    long cursor() { return cursor.get(); }
+
+    int capacity() { return ring.length; }
+
+    /** How often a publisher found the ring full and had to wait for a subscriber. */
+    long publisherWaits() { return publisherWaits.sum(); }
+
+    /** Stops every subscriber once it has handled what was published before this call. */
+    @Override
+    public void close() {
+        for (Subscription s : subscribers) s.close();
+    }
+
+    /** One subscriber: its handler, thread and position in the ring. */
+    final class Subscription implements AutoCloseable {
+        private final String name;
+        private final Handler handler;
+        private final AtomicLong sequence = new AtomicLong(); // last sequence handled
+        private final LongAdder failures = new LongAdder();
+        private final Thread thread;
+        private volatile long stopAt = Long.MAX_VALUE;
+
+        private Subscription(String name, Handler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+        }
+
+        String name() { return name; }
+
+        /** Events published but not yet handled. */
+        long lag() { return Math.max(0, cursor.get() - sequence.get()); }
+
+        long handled() { return sequence.get(); }
+
+        /**
+         * Waits up to {@code timeoutMillis} until every event published before this call
+         * has been handled; false on timeout.
+         */
+        boolean awaitCaughtUp(long timeoutMillis) {
+            long target = cursor.get();
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+            while (sequence.get() < target) {
+                if (System.nanoTime() - deadline > 0) return false;
+                LockSupport.parkNanos(50_000);
+            }
+            return true;
+        }
+
+        /** Handler exceptions; the event is skipped and delivery continues. */
+        long failures() { return failures.sum(); }
+
+        private void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (next <= stopAt) {
+                long hi = next - 1;
+                long limit = Math.min(cursor.get(), stopAt);
+                while (hi < limit && isAvailable(hi + 1)) hi++;
+                if (hi < next) {
+                    // Nothing ready: spin briefly, then park for longer and longer (up to ~1.6 ms)
+                    idle = Math.min(idle + 1, SPIN_TRIES + 5);
+                    if (idle < SPIN_TRIES) Thread.onSpinWait();
+                    else LockSupport.parkNanos(PARK_NANOS << (idle - SPIN_TRIES));
+                    continue;
+                }
+                idle = 0;
+                for (long seq = next; seq <= hi; seq++) {
+                    MarketEvent e = ring[(int) seq & mask];
+                    try {
+                        handler.onEvent(e, seq, seq == hi);
+                    } catch (RuntimeException ex) {
+                        failures.increment();
+                    }
+                }
+                sequence.set(hi);
+                next = hi + 1;
+            }
+            unsubscribe(this);
+        }
+
+        /** Drains what was published before this call, then stops the thread. */
+        @Override
+        public void close() {
+            if (stopAt != Long.MAX_VALUE) return;
+            stopAt = cursor.get();
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public String toString() { return name + " handled=" + handled() + " lag=" + lag(); }
+    }
+}
@@ -0,0 +1,766 @@
+package assignment2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FarmersMarket {
+    private static final int MAX_LISTED_RETURNS = 20;
+
+    private final MarketService market;
+
+    private final Scanner scanner = new Scanner(System.in);
+
+    FarmersMarket(MarketService market) { this.market = market; }
+
+    /**
+     * Usage: {@code FarmersMarket [--data <dir> [--archive-after-days <n>]] [--import <file>] [--export <file>]
+     * [--batch <file>] [--settle <file>]
+     * [--metrics-file <path> | --metrics-port <n>] [--http-port <n> [--http-host <addr>]]}.
+     * With {@code --data} the market is journaled to (and recovered from) that
+     * directory; with {@code --batch} the command file is run headless instead of the
+     * menu; {@code --settle} then applies a terminal settlement file and prints the
+     * reconciliation report. {@code --metrics-file <path>} rewrites a Prometheus dump
+     * every five seconds and {@code --metrics-port <n>} serves it on localhost.
+     * {@code --http-port <n>} serves the {@link MarketHttpServer} API (on loopback unless
+     * {@code --http-host} names another interface) until the process is stopped,
+     * after any batch or settlement file has run.
+     * <p>
+     * {@code --archive-after-days <n>} checkpoints a {@code --data} market every 15
+     * minutes and moves delivered and cancelled orders older than n days to the archive.
+     * <p>
+     * {@code --report <orders|inventory>} writes a report instead of opening the menu:
+     * {@code [--format text|csv|json] [--out <file>] [--vendor <id>] [--status PAID,...]
+     * [--from <date>] [--to <date>] [--offset <n>] [--limit <n>]}.
+     * <p>
+     * {@code --import <file>} starts from a snapshot written by {@code --export <file>}
+     * (into the {@code --data} directory, which must then be empty); {@code --export}
+     * writes the whole market, after any batch or settlement file, instead of opening
+     * the menu.
+     */
+    public static void main(String[] args) throws IOException {
+        String dataDir = null;
+        String batchFile = null;
+        String settleFile = null;
+        String metricsFile = null;
+        int metricsPort = -1;
+        int httpPort = -1;
+        String httpHost = "127.0.0.1";
+        int archiveAfterDays = 0;
+        String importFile = null;
+        String exportFile = null;
+        Map<String, String> report = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--data" -> dataDir = args[i + 1];
+                case "--batch" -> batchFile = args[i + 1];
+                case "--settle" -> settleFile = args[i + 1];
+                case "--metrics-file" -> metricsFile = args[i + 1];
+                case "--metrics-port" -> metricsPort = Integer.parseInt(args[i + 1]);
+                case "--http-port" -> httpPort = Integer.parseInt(args[i + 1]);
+                case "--http-host" -> httpHost = args[i + 1];
+                case "--archive-after-days" -> archiveAfterDays = Integer.parseInt(args[i + 1]);
+                case "--import" -> importFile = args[i + 1];
+                case "--export" -> exportFile = args[i + 1];
+                case "--report", "--format", "--out", "--vendor", "--status", "--from", "--to", "--offset", "--limit" ->
+                        report.put(args[i].substring(2), args[i + 1]);
+                default -> {
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+                }
+            }
+        }
+        JournalConfig journal = dataDir == null ? null : JournalConfig.defaults(Path.of(dataDir));
+        if (journal != null && archiveAfterDays > 0) {
+            journal = journal.withArchiveAfter(TimeUnit.DAYS.toMillis(archiveAfterDays)).withSnapshotInterval(TimeUnit.MINUTES.toMillis(15));
+        }
+        try (MarketService market = importFile != null
+                ? journal == null ? MarketService.load(Path.of(importFile)) : MarketService.importInto(journal, Path.of(importFile))
+                : journal == null ? new MarketService() : MarketService.open(journal);
+             MetricsExporter exporter = metricsFile != null
+                     ? MetricsExporter.toFile(market.metrics(), MetricsExporter.Format.PROMETHEUS, Path.of(metricsFile), 5000)
+                     : metricsPort >= 0 ? MetricsExporter.onPort(market.metrics(), MetricsExporter.Format.PROMETHEUS, metricsPort) : null) {
+            if (exporter != null) market.metrics().countEvents(market.events());
+            if (exporter != null && metricsPort >= 0) System.out.println("Metrics on http://localhost:" + exporter.port() + "/metrics");
+            if (batchFile != null || settleFile != null || !report.isEmpty() || exportFile != null) {
+                // Headless bulk mode: no demo data, no prompts
+                if (batchFile != null) System.out.println(new MarketBatch(market).run(Path.of(batchFile)));
+                if (settleFile != null) System.out.println(new PaymentPipeline(market).submit(Path.of(settleFile)));
+                if (!report.isEmpty()) writeReport(market, report);
+                if (exportFile != null) {
+                    market.exportSnapshot(Path.of(exportFile));
+                    System.out.println("Exported to " + exportFile);
+                }
+                if (httpPort < 0) return;
+            }
+            if (httpPort >= 0) {
+                try (MarketHttpServer http = MarketHttpServer.start(market, new InetSocketAddress(httpHost, httpPort))) {
+                    System.out.println("Serving http://" + httpHost + ":" + http.port() + "/ on "
+                            + (http.usesVirtualThreads() ? "virtual threads" : "a platform thread pool") + "; Ctrl-C to stop");
+                    awaitShutdown();
+                }
+                return;
+            }
+            FarmersMarket app = new FarmersMarket(market);
+            if (market.vendors().isEmpty()) app.seedDemoData(); // optional demo data
+            app.runMenu();
+        }
+    }
+
+    /** Blocks until the JVM is asked to exit, then holds the exit until this thread has closed the market. */
+    private static void awaitShutdown() {
+        CountDownLatch stop = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop.countDown();
+            try {
+                main.join(10_000);
+            } catch (InterruptedException ignored) {
+                // exiting anyway
+            }
+        }, "shutdown"));
+        try {
+            stop.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeReport(MarketService market, Map<String, String> opts) throws IOException {
+        ReportQuery q;
+        ReportEngine.Format format;
+        try {
+            format = ReportEngine.Format.valueOf(opts.getOrDefault("format", "text").toUpperCase());
+            q = ReportQuery.fromOptions(opts, Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid report option: " + e.getMessage());
+            return;
+        }
+        boolean inventory = "inventory".equals(opts.getOrDefault("report", "orders"));
+        ReportEngine engine = new ReportEngine(market);
+        String out = opts.get("out");
+        if (out == null) {
+            if (inventory) engine.writeInventory(q, format, System.out);
+            else engine.writeOrders(q, format, System.out);
+        } else {
+            long rows = inventory ? engine.writeInventory(q, format, Path.of(out)) : engine.writeOrders(q, format, Path.of(out));
+            System.out.println("Wrote " + rows + " rows to " + out);
+        }
+    }
+
+    private void runMenu() {
+        while (true) {
+            System.out.println("\n=== Farmers' Market Menu ===");
+            System.out.println("1. Add Vendor");
+            System.out.println("2. Add Product");
+            System.out.println("3. Place Order");
+            System.out.println("4. Record Payment");
+            System.out.println("5. Schedule Delivery");
+            System.out.println("6. Request Return");
+            System.out.println("7. Review Returns");
+            System.out.println("8. Display Inventory");
+            System.out.println("9. Display Orders");
+            System.out.println("10. Exit");
+            System.out.print("Choose an option: ");
+
+            int choice = readIntInRange(1, 10);
+            switch (choice) {
+                case 1 -> addVendor();
+                case 2 -> addProduct();
+                case 3 -> placeOrder();
+                case 4 -> recordPayment();
+                case 5 -> scheduleDelivery();
+                case 6 -> requestReturn();
+                case 7 -> reviewReturns();
+                case 8 -> displayInventory();
+                case 9 -> displayOrders();
+                case 10 -> {
+                    System.out.println("Exiting. Goodbye!");
+                    return;
+                }
+            }
+        }
+    }
+
+    private void addVendor() {
+        System.out.println("\n-- Add Vendor --");
+        System.out.print("Vendor name: ");
+        String name = readNonEmptyString();
+        MarketResult<Vendor> r = market.addVendor(new MarketRequests.AddVendor(name));
+        System.out.println(r.isOk() ? "Added vendor: " + r.getValue() : r.getMessage());
+    }
+
+    private void addProduct() {
+        System.out.println("\n-- Add Product --");
+        if (market.vendors().isEmpty()) {
+            System.out.println("No vendors available. Add a vendor first.");
+            return;
+        }
+        System.out.println("Available vendors:");
+        market.vendors().forEach(System.out::println);
+        System.out.print("Vendor ID to add product to: ");
+        int vendorId = readInt();
+        Vendor vendor = market.getVendor(vendorId);
+        if (vendor == null) {
+            System.out.println("Invalid vendor ID.");
+            return;
+        }
+        System.out.print("Product name: ");
+        String pname = readNonEmptyString();
+        System.out.print("Unit price (positive number): ");
+        double price = readPositiveDouble();
+        System.out.print("Initial stock (integer >=0): ");
+        int stock = readNonNegativeInt();
+
+        MarketResult<Product> r = market.addProduct(new MarketRequests.AddProduct(vendorId, pname, price, stock));
+        if (!r.isOk()) { System.out.println(r.getMessage()); return; }
+        System.out.println("Added product: " + r.getValue() + " with stock " + stock + " for vendor " + vendor.getName());
+    }
+
+    private void placeOrder() {
+        System.out.println("\n-- Place Order --");
+        if (market.vendors().isEmpty() || market.products().isEmpty()) {
+            System.out.println("Need at least one vendor and one product to place orders.");
+            return;
+        }
+        System.out.println("Vendors:");
+        market.vendors().forEach(System.out::println);
+        System.out.print("Choose Vendor ID to order from: ");
+        int vendorId = readInt();
+        Vendor vendor = market.getVendor(vendorId);
+        if (vendor == null) {
+            System.out.println("Invalid vendor.");
+            return;
+        }
+        // List vendor's products
+        List<Product> vendorProducts = market.productsForVendor(vendorId);
+        if (vendorProducts.isEmpty()) {
+            System.out.println("This vendor has no products.");
+            return;
+        }
+        System.out.println("Products for vendor " + vendor.getName() + ":");
+        vendorProducts.forEach(p -> System.out.println(p + " | Stock: " + vendor.getStockForProduct(p.getId())));
+
+        List<OrderLine> lines = new ArrayList<>();
+        while (true) {
+            System.out.print("Enter Product ID to add (or 0 to finish): ");
+            int pid = readInt();
+            if (pid == 0) break;
+            Product prod = market.getProduct(pid);
+            if (prod == null || prod.getVendorId() != vendorId) {
+                System.out.println("Product not found for this vendor.");
+                continue;
+            }
+            System.out.print("Enter quantity: ");
+            int qty = readPositiveInt();
+            int avail = vendor.getStockForProduct(pid);
+            if (qty > avail) {
+                System.out.println("Requested quantity exceeds available stock (" + avail + ").");
+                continue;
+            }
+            lines.add(new OrderLine(pid, qty));
+            System.out.println("Added " + qty + " x " + prod.getName());
+        }
+        if (lines.isEmpty()) {
+            System.out.println("No items selected. Cancelling order.");
+            return;
+        }
+        // Confirm order: stock is reserved atomically per business rule (on order confirmation)
+        MarketResult<Order> r = market.placeOrder(new MarketRequests.PlaceOrder(vendorId, lines));
+        if (!r.isOk()) {
+            System.out.println("Order not placed: " + r.getMessage());
+            return;
+        }
+        Order order = r.getValue();
+        System.out.println("Order placed and confirmed. Order ID: " + order.getId() + ". Total: " + Money.format(order.getTotalCents()));
+        System.out.println("Note: Payment must be recorded before scheduling delivery.");
+    }
+
+    private void recordPayment() {
+        System.out.println("\n-- Record Payment --");
+        System.out.println("Pending/Confirmed orders:");
+        market.ordersWithStatus(Order.Status.CONFIRMED, Order.Status.PAYMENT_PENDING).forEach(System.out::println);
+        System.out.print("Enter Order ID to record payment for: ");
+        int oid = readInt();
+        Order order = market.getOrder(oid);
+        if (order == null) {
+            System.out.println("Order not found.");
+            return;
+        }
+        if (order.getStatus() == Order.Status.DELIVERED) {
+            System.out.println("Order already delivered; no payment required.");
+            return;
+        }
+        long amountDue = order.getAmountDueCents();
+        if (amountDue <= 0) {
+            System.out.println("Order already fully paid.");
+            return;
+        }
+        System.out.println("Amount due: " + Money.format(amountDue));
+        System.out.print("Enter payment amount: ");
+        double paid = readPositiveDouble();
+        System.out.print("Payment method (cash/upi/card): ");
+        String method = readNonEmptyString();
+        MarketResult<PaymentReceipt> r = market.recordPayment(new MarketRequests.RecordPayment(oid, paid, method));
+        if (!r.isOk()) { System.out.println(r.getMessage()); return; }
+        if (r.getMessage() != null) System.out.println(r.getMessage());
+        PaymentReceipt receipt = r.getValue();
+        System.out.println("Payment recorded: " + receipt.payment());
+        if (receipt.orderStatus() == Order.Status.PAID) {
+            System.out.println("Order fully paid.");
+        } else {
+            System.out.println("Order partially paid. Remaining: " + Money.format(receipt.remainingCents()));
+        }
+    }
+
+    private void scheduleDelivery() {
+        System.out.println("\n-- Schedule Delivery --");
+        System.out.println("Orders ready for delivery (PAID):");
+        market.ordersWithStatus(Order.Status.PAID).forEach(System.out::println);
+        System.out.print("Enter Order ID to schedule delivery for: ");
+        int oid = readInt();
+        Order order = market.getOrder(oid);
+        if (order == null) { System.out.println("Order not found."); return; }
+        if (order.getStatus() != Order.Status.PAID) {
+            System.out.println("Payments must be settled before scheduling delivery.");
+            return;
+        }
+        System.out.print("Enter delivery date (YYYY-MM-DD) or 'today': ");
+        String date = readNonEmptyString();
+        MarketResult<Delivery> r = market.scheduleDelivery(new MarketRequests.ScheduleDelivery(oid, date));
+        System.out.println(r.isOk() ? "Delivery scheduled: " + r.getValue() : r.getMessage());
+    }
+
+    private void requestReturn() {
+        System.out.println("\n-- Request Return --");
+        System.out.println("Delivered orders:");
+        market.ordersWithStatus(Order.Status.DELIVERED, Order.Status.SCHEDULED_FOR_DELIVERY).forEach(System.out::println);
+        System.out.print("Enter Order ID to request return for: ");
+        int oid = readInt();
+        Order order = market.getOrder(oid);
+        if (order == null) { System.out.println("Order not found."); return; }
+        System.out.println("Order items:");
+        order.getItems().forEach(System.out::println);
+        System.out.print("Enter Product ID from this order to return: ");
+        int pid = readInt();
+        Optional<OrderItem> opt = order.getItems().stream().filter(i -> i.getProductId() == pid).findFirst();
+        if (opt.isEmpty()) { System.out.println("Product not in order."); return; }
+        OrderItem oitem = opt.get();
+        System.out.print("Enter quantity to return (max " + oitem.getQuantity() + "): ");
+        int qty = readPositiveInt();
+        if (qty > oitem.getQuantity()) { System.out.println("Cannot return more than purchased."); return; }
+        // Create return request (will be "PENDING_APPROVAL")
+        MarketResult<ReturnReceipt> created = market.requestReturn(new MarketRequests.RequestReturn(oid, pid, qty, false));
+        if (!created.isOk()) { System.out.println(created.getMessage()); return; }
+        int rid = created.getValue().request().getId();
+        System.out.println("Return request created with ID " + rid + ". Admin must approve to restock.");
+        // For this simple app we'll ask admin to approve immediately for demo
+        System.out.print("Approve return now? (y/n): ");
+        String ans = scanner.nextLine().trim().toLowerCase();
+        if (ans.equals("y") || ans.equals("yes")) {
+            approveReturn(rid);
+        } else {
+            System.out.println("Return kept pending; decide it later under Review Returns.");
+        }
+    }
+
+    private void approveReturn(int returnId) {
+        MarketResult<ReturnReceipt> r = market.approveReturn(returnId);
+        if (!r.isOk()) { System.out.println(r.getMessage()); return; }
+        ReturnRequest rr = r.getValue().request();
+        Product p = market.getProduct(rr.getProductId());
+        System.out.println("Return approved. Restocked " + rr.getQuantity() + " x " + p.getName() + ". Refund: " + Money.format(r.getValue().refundCents()));
+    }
+
+    private void reviewReturns() {
+        System.out.println("\n-- Review Returns --");
+        int pending = market.pendingReturnCount();
+        if (pending == 0) { System.out.println("No returns awaiting approval."); return; }
+        System.out.println(pending + " pending (oldest first):");
+        market.pendingReturns(MAX_LISTED_RETURNS).forEach(System.out::println);
+        if (pending > MAX_LISTED_RETURNS) System.out.println("... and " + (pending - MAX_LISTED_RETURNS) + " more");
+        System.out.print("Enter Return ID, 'a' to approve all, 'd' to deny all, or 0 to go back: ");
+        String ans = scanner.nextLine().trim().toLowerCase();
+        if (ans.equals("a") || ans.equals("d")) {
+            int[] ids = market.pendingReturnIds(Integer.MAX_VALUE);
+            ReturnBatchReceipt b = ans.equals("a") ? market.approveReturns(ids) : market.denyReturns(ids);
+            System.out.println((ans.equals("a") ? "Approved " : "Denied ") + b.decided().size() + " returns. Refunded: " + Money.format(b.refundCents()));
+            b.failures().forEach(f -> System.out.println("  " + f));
+            return;
+        }
+        int rid;
+        try {
+            rid = Integer.parseInt(ans);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid choice.");
+            return;
+        }
+        if (rid == 0) return;
+        System.out.print("Approve or deny return " + rid + "? (a/d): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("a")) {
+            approveReturn(rid);
+        } else {
+            MarketResult<ReturnRequest> r = market.denyReturn(rid);
+            System.out.println(r.isOk() ? "Return denied." : r.getMessage());
+        }
+    }
+
+    private void displayInventory() {
+        System.out.println("\n-- Display Inventory --");
+        if (market.vendors().isEmpty()) { System.out.println("No vendors."); return; }
+        try {
+            new ReportEngine(market).writeInventory(ReportQuery.all(), ReportEngine.Format.TEXT, System.out);
+        } catch (IOException e) {
+            System.out.println("Could not write inventory: " + e.getMessage());
+        }
+    }
+
+    private void displayOrders() {
+        System.out.println("\n-- Orders --");
+        if (market.orders().isEmpty()) { System.out.println("No orders."); return; }
+        try {
+            new ReportEngine(market).writeOrders(ReportQuery.all(), ReportEngine.Format.TEXT, System.out);
+        } catch (IOException e) {
+            System.out.println("Could not write orders: " + e.getMessage());
+        }
+    }
+
+    // --- Utilities & validators ---
+    private int readInt() {
+        while (true) {
+            String s = scanner.nextLine().trim();
+            try { return Integer.parseInt(s); } catch (Exception e) { System.out.print("Enter a valid integer: "); }
+        }
+    }
+
+    private int readIntInRange(int low, int high) {
+        while (true) {
+            int v = readInt();
+            if (v >= low && v <= high) return v;
+            System.out.print("Enter a number between " + low + " and " + high + ": ");
+        }
+    }
+
+    private int readPositiveInt() {
+        while (true) {
+            int v = readInt();
+            if (v > 0) return v;
+            System.out.print("Enter a positive integer: ");
+        }
+    }
+
+    private int readNonNegativeInt() {
+        while (true) {
+            int v = readInt();
+            if (v >= 0) return v;
+            System.out.print("Enter a non-negative integer: ");
+        }
+    }
+
+    private double readPositiveDouble() {
+        while (true) {
+            String s = scanner.nextLine().trim();
+            try {
+                double d = Double.parseDouble(s);
+                if (d > 0) return d;
+            } catch (Exception e) { /* fallthrough */ }
+            System.out.print("Enter a positive number: ");
+        }
+    }
+
+    private String readNonEmptyString() {
+        while (true) {
+            String s = scanner.nextLine().trim();
+            if (!s.isEmpty()) return s;
+            System.out.print("Input cannot be empty. Try again: ");
+        }
+    }
+
+    // Seed demo data for convenience
+    private void seedDemoData() {
+        int v1 = market.addVendor(new MarketRequests.AddVendor("Green Valley Produce")).getValue().getId();
+        int v2 = market.addVendor(new MarketRequests.AddVendor("Sunny Farms")).getValue().getId();
+        market.addProduct(new MarketRequests.AddProduct(v1, "Tomato", 30.0, 100));
+        market.addProduct(new MarketRequests.AddProduct(v1, "Potato", 20.0, 200));
+        market.addProduct(new MarketRequests.AddProduct(v2, "Carrot", 25.0, 150));
+    }
+
+}
+
+// ---------------------- Domain classes ----------------------
+class Vendor {
+    private final int id;
+    private final String name;
+    // productId -> stock; primitive CAS counters so concurrent orders never oversell
+    private final IntCounterMap inventory = new IntCounterMap();
+    private volatile StockListener stockListener;
+
+    public Vendor(int id, String name) { this.id = id; this.name = name; }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+
+    /** Registers the store's listener, told of every later stock change. */
+    void setStockListener(StockListener listener) { this.stockListener = listener; }
+
+    public void addStock(int productId, int qty) {
+        int level = inventory.addAndGet(productId, qty);
+        StockListener l = stockListener;
+        if (l != null && qty != 0) l.onStockChange(this, productId, qty, level);
+    }
+
+    public void decreaseStock(int productId, int qty) {
+        if (qty <= 0) return;
+        if (!tryReserve(productId, qty)) throw new IllegalArgumentException("Insufficient stock");
+    }
+
+    /** Takes qty units if that many are available; never drives stock below zero. */
+    public boolean tryReserve(int productId, int qty) {
+        int level = inventory.tryDecrementAndGet(productId, qty);
+        if (level < 0) return false;
+        StockListener l = stockListener;
+        if (l != null && qty != 0) l.onStockChange(this, productId, -qty, level);
+        return true;
+    }
+
+    public void increaseStock(int productId, int qty) {
+        addStock(productId, qty);
+    }
+
+    public int getStockForProduct(int productId) { return inventory.get(productId); }
+
+    /** IDs of the products this vendor stocks, in the order they were added. */
+    public int[] getProductIds() { return inventory.keys(); }
+
+    @Override
+    public String toString() { return "Vendor[" + id + "] " + name; }
+}
+
+class Product {
+    private final int id;
+    private final String name;
+    private final long priceCents;
+    private final int vendorId;
+
+    public Product(int id, String name, double price, int vendorId) {
+        this(id, name, vendorId, Money.toCents(price));
+    }
+
+    private Product(int id, String name, int vendorId, long priceCents) {
+        this.id = id; this.name = name; this.priceCents = priceCents; this.vendorId = vendorId;
+    }
+
+    static Product ofCents(int id, String name, long priceCents, int vendorId) { return new Product(id, name, vendorId, priceCents); }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public double getPrice() { return Money.toDouble(priceCents); }
+    public long getPriceCents() { return priceCents; }
+    public int getVendorId() { return vendorId; }
+
+    @Override
+    public String toString() { return "Product[" + id + "] " + name + " (" + Money.format(priceCents) + ")"; }
+}
+
+class Order {
+    public enum Status {CREATED, CONFIRMED, PAYMENT_PENDING, PAID, SCHEDULED_FOR_DELIVERY, DELIVERED, CANCELLED}
+    private final int id;
+    private final int vendorId;
+    private final long placedAtMillis;
+    private final List<OrderItem> items = new ArrayList<>();
+    private volatile Status status;
+    private final List<Payment> paymentHistory = new ArrayList<>();
+    private OrderStatusListener statusListener;
+    // Running totals in cents, maintained by the mutators below instead of recomputed per read
+    private volatile long totalCents;
+    private volatile long paidCents;
+    private volatile long refundedCents;
+
+    public Order(int id, int vendorId, List<OrderItem> items) { this(id, vendorId, items, System.currentTimeMillis()); }
+
+    public Order(int id, int vendorId, List<OrderItem> items, long placedAtMillis) {
+        this.id = id; this.vendorId = vendorId; this.placedAtMillis = placedAtMillis; this.items.addAll(items); this.status = Status.CREATED;
+        long t = 0; for (OrderItem i : items) t += i.getLineTotalCents();
+        this.totalCents = t;
+    }
+
+    public int getId() { return id; }
+    public int getVendorId() { return vendorId; }
+    public long getPlacedAtMillis() { return placedAtMillis; }
+    public List<OrderItem> getItems() { return Collections.unmodifiableList(items); }
+    // Index access for renderers that should not allocate a view per order; the item list itself never changes size
+    int getItemCount() { return items.size(); }
+    OrderItem getItem(int index) { return items.get(index); }
+    /** The line for a product, or null if the order has none. */
+    OrderItem findItem(int productId) {
+        for (OrderItem i : items) if (i.getProductId() == productId) return i;
+        return null;
+    }
+    public Status getStatus() { return status; }
+
+    public synchronized void setStatus(Status s) {
+        Status old = this.status;
+        this.status = s;
+        if (statusListener != null) statusListener.onStatusChange(this, old, s);
+    }
+
+    /** Registers the store's listener; it is notified of the current status straight away. */
+    public synchronized void setStatusListener(OrderStatusListener listener) {
+        this.statusListener = listener;
+        if (listener != null) listener.onStatusChange(this, null, status);
+    }
+
+    /** Registers (or with null, detaches) the store's listener without a notification, for a status it already knows. */
+    synchronized void resumeStatusListener(OrderStatusListener listener) { this.statusListener = listener; }
+
+    public double getTotalAmount() { return Money.toDouble(totalCents); }
+    public long getTotalCents() { return totalCents; }
+
+    public synchronized void addPayment(Payment p) {
+        paymentHistory.add(p);
+        paidCents += p.getAmountCents();
+    }
+    public double getPaidAmount() { return Money.toDouble(paidCents); }
+    public long getPaidCents() { return paidCents; }
+    public synchronized List<Payment> getPaymentHistory() { return new ArrayList<>(paymentHistory); }
+
+    /** Outstanding balance in cents; never negative. */
+    public long getAmountDueCents() { return Math.max(0L, totalCents - paidCents); }
+
+    public synchronized void addRefund(long cents) { refundedCents += cents; }
+    public long getRefundedCents() { return refundedCents; }
+
+    public synchronized void decreasePurchasedQuantityForProduct(int productId, int qty) {
+        for (OrderItem i : items) {
+            if (i.getProductId() == productId) {
+                int before = i.getQuantity();
+                i.decreaseQuantity(qty);
+                totalCents -= (before - i.getQuantity()) * i.getUnitPriceCents();
+                break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Order[" + id + "] Vendor=" + vendorId + " Status=" + status + " Total=" + Money.format(totalCents) + " Paid=" + Money.format(paidCents) + " Items=" + items;
+    }
+}
+
+/** Notified, under the order's lock, of every {@link Order#setStatus} transition. */
+interface OrderStatusListener {
+    void onStatusChange(Order order, Order.Status from, Order.Status to);
+}
+
+/** Notified, after the change, of every stock movement on a vendor; {@code level} is the stock it left. */
+interface StockListener {
+    void onStockChange(Vendor vendor, int productId, int delta, int level);
+}
+
+class OrderItem {
+    private final int productId;
+    private final String productName;
+    private int quantity;
+    private final long unitPriceCents;
+
+    public OrderItem(int productId, String productName, int quantity, double unitPrice) {
+        this(productId, productName, quantity, Money.toCents(unitPrice));
+    }
+
+    public OrderItem(int productId, String productName, int quantity, long unitPriceCents) {
+        this.productId = productId; this.productName = productName; this.quantity = quantity; this.unitPriceCents = unitPriceCents;
+    }
+
+    public int getProductId() { return productId; }
+    public String getProductName() { return productName; }
+    public int getQuantity() { return quantity; }
+    public double getUnitPrice() { return Money.toDouble(unitPriceCents); }
+    public long getUnitPriceCents() { return unitPriceCents; }
+    public long getLineTotalCents() { return quantity * unitPriceCents; }
+
+    public void decreaseQuantity(int q) {
+        if (q <= 0) return;
+        this.quantity = Math.max(0, this.quantity - q);
+    }
+
+    @Override
+    public String toString() { return "{" + productName + "[" + productId + "] x" + quantity + " @" + Money.format(unitPriceCents) + "}"; }
+}
+
+class Payment {
+    public enum Status {RECEIVED}
+    private final int id;
+    private final int orderId;
+    private final long amountCents;
+    private final String method;
+    private final Date timestamp;
+    private final String reference; // external settlement reference, null for counter payments
+
+    public Payment(int id, int orderId, long amountCents, String method) {
+        this(id, orderId, amountCents, method, System.currentTimeMillis(), null);
+    }
+
+    public Payment(int id, int orderId, long amountCents, String method, long timestampMillis, String reference) {
+        this.id = id; this.orderId = orderId; this.amountCents = amountCents; this.method = method; this.timestamp = new Date(timestampMillis);
+        this.reference = reference;
+    }
+
+    public int getId() { return id; }
+    public int getOrderId() { return orderId; }
+    public double getAmount() { return Money.toDouble(amountCents); }
+    public long getAmountCents() { return amountCents; }
+    public String getMethod() { return method; }
+    public long getTimestampMillis() { return timestamp.getTime(); }
+    public String getReference() { return reference; }
+
+    @Override
+    public String toString() { return "Payment[" + id + "] Order=" + orderId + " Amt=" + Money.format(amountCents) + " Method=" + method; }
+}
+
+class Delivery {
+    public enum Status {SCHEDULED, OUT_FOR_DELIVERY, DELIVERED}
+    private final int id;
+    private final int orderId;
+    private final LocalDate date;
+    private volatile Status status;
+
+    public Delivery(int id, int orderId, LocalDate date) { this.id = id; this.orderId = orderId; this.date = date; this.status = Status.SCHEDULED; }
+
+    public int getId() { return id; }
+    public int getOrderId() { return orderId; }
+    public LocalDate getDate() { return date; }
+    public String getScheduledDate() { return date.toString(); }
+    public Status getStatus() { return status; }
+    public void setStatus(Status s) { this.status = s; }
+
+    @Override
+    public String toString() { return "Delivery[" + id + "] Order=" + orderId + " Date=" + date + " Status=" + status; }
+}
+
+class ReturnRequest {
+    public enum Status {PENDING_APPROVAL, APPROVED, DENIED}
+    private final int id;
+    private final int orderId;
+    private final int productId;
+    private final int quantity;
+    private Status status;
+
+    public ReturnRequest(int id, int orderId, int productId, int quantity) {
+        this.id = id; this.orderId = orderId; this.productId = productId; this.quantity = quantity; this.status = Status.PENDING_APPROVAL;
+    }
+
+    public int getId() { return id; }
+    public int getOrderId() { return orderId; }
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public Status getStatus() { return status; }
+    public void setStatus(Status s) { this.status = s; }
+
+    @Override
+    public String toString() { return "Return[" + id + "] Order=" + orderId + " Product=" + productId + " Qty=" + quantity + " Status=" + status; }
+}
+
@@ -0,0 +1,60 @@
+package assignment2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Block-allocated ID ranges for the shards of a {@link ShardedMarket}. Each kind of
+ * entity has its own ID space from its base; a shard that runs out of IDs leases the
+ * next free block of that space, and the lease is recorded before any ID in it is
+ * handed out, so {@link #owner} routes every ID that exists. Blocks are a multiple of
+ * the {@link DenseStore} page, so a shard's stores only allocate pages for its own
+ * blocks however the blocks interleave.
+ * <p>
+ * One instance is the authority for a whole market: shards in other processes would
+ * lease through the router rather than hold their own.
+ */
+final class IdLeases {
+    static final int VENDOR = 0, PRODUCT = 1, ORDER = 2, PAYMENT = 3, DELIVERY = 4, RETURN = 5, HOLD = 6;
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    private static final int PAGE_SIZE = 1 << 12;
+
+    private final int[] bases;
+    private final int blockSize;
+    private final AtomicInteger[] nextBlock;
+    private final DenseStore<Integer>[] owners; // per kind: block index -> shard
+
+    IdLeases(int[] bases, int blockSize) {
+        if (blockSize <= 0 || blockSize % PAGE_SIZE != 0) throw new IllegalArgumentException("Block size must be a positive multiple of " + PAGE_SIZE + ".");
+        this.bases = bases.clone();
+        this.blockSize = blockSize;
+        this.nextBlock = new AtomicInteger[bases.length];
+        this.owners = newOwners(bases.length);
+        for (int k = 0; k < bases.length; k++) {
+            nextBlock[k] = new AtomicInteger();
+            owners[k] = new DenseStore<>(0);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static DenseStore<Integer>[] newOwners(int n) { return new DenseStore[n]; }
+
+    int blockSize() { return blockSize; }
+
+    /** Leases the next free block of {@code kind} to {@code shard}; returns its first ID. */
+    int lease(int kind, int shard) {
+        int block = nextBlock[kind].getAndIncrement();
+        if ((long) bases[kind] + (long) (block + 1) * blockSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("IDs of kind " + kind + " are exhausted.");
+        }
+        owners[kind].put(block, shard);
+        return bases[kind] + block * blockSize;
+    }
+
+    /** The shard owning {@code id}, or -1 if no shard has leased its block. */
+    int owner(int kind, int id) {
+        int offset = id - bases[kind];
+        if (offset < 0) return -1;
+        Integer shard = owners[kind].get(offset / blockSize);
+        return shard == null ? -1 : shard;
+    }
+}
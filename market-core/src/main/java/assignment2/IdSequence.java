@@ -0,0 +1,61 @@
+package assignment2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Hands out the IDs of one kind of entity. A standalone market counts up from the
+ * kind's base. A shard of a {@link ShardedMarket} counts through blocks leased from
+ * {@link IdLeases} instead, so shards never contend on a shared counter and the block
+ * an ID falls in names the shard that owns it.
+ */
+final class IdSequence {
+    private final AtomicInteger next;
+    private final IntSupplier leases; // start of a newly leased block; null for one unbounded range
+    private final int blockSize;
+    private volatile int end = Integer.MAX_VALUE;
+
+    IdSequence(int base) {
+        this.next = new AtomicInteger(base);
+        this.leases = null;
+        this.blockSize = 0;
+    }
+
+    IdSequence(IntSupplier leases, int blockSize) {
+        this.leases = leases;
+        this.blockSize = blockSize;
+        int start = leases.getAsInt();
+        this.next = new AtomicInteger(start);
+        this.end = start + blockSize;
+    }
+
+    int next() {
+        if (leases == null) return next.getAndIncrement();
+        for (;;) {
+            int id = next.get();
+            if (id < end) {
+                if (next.compareAndSet(id, id + 1)) return id;
+            } else {
+                refill(id);
+            }
+        }
+    }
+
+    /** The next ID to be handed out. */
+    int position() { return next.get(); }
+
+    /** Moves past an ID restored from elsewhere; a shard only ever sees IDs from its own blocks here. */
+    void advancePast(int usedId) { next.accumulateAndGet(usedId + 1, Math::max); }
+
+    // Leased blocks only ever lie above earlier ones, and next moves before end: a caller
+    // that reads the old position with the new end fails its CAS unless the new block
+    // directly follows the old one, when that ID is in the new block anyway. A caller
+    // that read the new position but the old end lands here too; end is only written
+    // under this lock, so it sees the block still has room and leaves it be.
+    private synchronized void refill(int exhausted) {
+        if (next.get() < end) return;
+        int start = leases.getAsInt();
+        next.set(start);
+        end = start + blockSize;
+    }
+}
@@ -0,0 +1,144 @@
+package assignment2;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Concurrent int -> int counter map with no boxing, used for vendor inventory.
+ * <p>
+ * Keys live in an open-addressing table that maps each key to a fixed slot in
+ * paged {@link AtomicIntegerArray}s. Slots never move, so reads and CAS updates are
+ * lock-free and unaffected by a concurrent resize of the key table; only inserting a
+ * new key takes the map's monitor. Key 0 is reserved as the empty marker.
+ */
+final class IntCounterMap {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final class Table {
+        final AtomicIntegerArray keys;
+        final int[] slots; // written before the key is published, read after it is seen
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicIntegerArray(capacity);
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table = new Table(16);
+    private volatile AtomicIntegerArray[] pages = new AtomicIntegerArray[1];
+    private int size; // guarded by this
+
+    /** Current value for key, or 0 if absent. */
+    public int get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? 0 : value(slot).get(slot & PAGE_MASK);
+    }
+
+    public boolean containsKey(int key) { return slotOf(key) >= 0; }
+
+    /** Adds delta (creating the key at 0 if needed) and returns the new value. */
+    public int addAndGet(int key, int delta) {
+        int slot = slotOf(key);
+        if (slot < 0) slot = insert(key);
+        return value(slot).addAndGet(slot & PAGE_MASK, delta);
+    }
+
+    /** Subtracts qty only if the current value is at least qty; never goes below zero. */
+    public boolean tryDecrement(int key, int qty) { return tryDecrementAndGet(key, qty) >= 0; }
+
+    /**
+     * As {@link #tryDecrement}, returning the value left, or -1 if there was not enough.
+     *
+     * @throws IllegalArgumentException if qty is negative, which would be an unchecked increment
+     */
+    public int tryDecrementAndGet(int key, int qty) {
+        if (qty < 0) throw new IllegalArgumentException("Quantity cannot be negative: " + qty);
+        int slot = slotOf(key);
+        if (slot < 0) return qty <= 0 ? 0 : -1;
+        AtomicIntegerArray page = value(slot);
+        int i = slot & PAGE_MASK;
+        while (true) {
+            int cur = page.get(i);
+            if (qty > cur) return -1;
+            if (page.compareAndSet(i, cur, cur - qty)) return cur - qty;
+        }
+    }
+
+    public synchronized int size() { return size; }
+
+    /** Snapshot of the keys present; insertion-ordered. */
+    public synchronized int[] keys() {
+        int[] out = new int[size];
+        Table t = table;
+        for (int i = 0; i < t.slots.length; i++) {
+            int k = t.keys.get(i);
+            if (k != 0) out[t.slots[i]] = k;
+        }
+        return out;
+    }
+
+    public void forEachKey(IntConsumer action) {
+        for (int k : keys()) action.accept(k);
+    }
+
+    private int slotOf(int key) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved");
+        Table t = table;
+        int i = mix(key) & t.mask;
+        while (true) {
+            int k = t.keys.get(i);
+            if (k == key) return t.slots[i];
+            if (k == 0) return -1;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private synchronized int insert(int key) {
+        int existing = slotOf(key);
+        if (existing >= 0) return existing;
+        int slot = size;
+        if ((slot >>> PAGE_SHIFT) >= pages.length) {
+            AtomicIntegerArray[] grown = Arrays.copyOf(pages, pages.length * 2);
+            pages = grown;
+        }
+        AtomicIntegerArray[] ps = pages;
+        if (ps[slot >>> PAGE_SHIFT] == null) ps[slot >>> PAGE_SHIFT] = new AtomicIntegerArray(PAGE_SIZE);
+        pages = ps; // republish so readers see the new page
+        Table t = table;
+        if ((size + 1) * 2 > t.slots.length) {
+            t = rehash(t, t.slots.length * 2);
+            table = t;
+        }
+        place(t, key, slot);
+        size++;
+        return slot;
+    }
+
+    private static Table rehash(Table old, int capacity) {
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.slots.length; i++) {
+            int k = old.keys.get(i);
+            if (k != 0) place(t, k, old.slots[i]);
+        }
+        return t;
+    }
+
+    private static void place(Table t, int key, int slot) {
+        int i = mix(key) & t.mask;
+        while (t.keys.get(i) != 0) i = (i + 1) & t.mask;
+        t.slots[i] = slot;
+        t.keys.set(i, key); // volatile write publishes the slot
+    }
+
+    private AtomicIntegerArray value(int slot) { return pages[slot >>> PAGE_SHIFT]; }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
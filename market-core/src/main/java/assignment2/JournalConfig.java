@@ -0,0 +1,50 @@
+package assignment2;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for {@link MarketJournal}.
+ *
+ * @param dir                    directory holding journal segments and snapshots
+ * @param syncMode               whether each group commit is forced to disk
+ * @param maxBatchBytes          a group commit is started once this many bytes are buffered
+ * @param maxDelayMillis         ...or once the oldest buffered record is this old
+ * @param awaitDurable           if true, each mutation waits until its group commit completes
+ * @param snapshotIntervalMillis how often to checkpoint in the background; 0 disables it
+ * @param archiveAfterMillis     at each checkpoint, DELIVERED and CANCELLED orders placed longer
+ *                               ago than this move to the {@link OrderArchive}; 0 disables it
+ */
+record JournalConfig(Path dir, SyncMode syncMode, int maxBatchBytes, long maxDelayMillis,
+                     boolean awaitDurable, long snapshotIntervalMillis, long archiveAfterMillis) {
+
+    enum SyncMode {
+        /** Leave flushed batches in the OS page cache; survives a JVM crash but not power loss. */
+        NONE,
+        /** fsync after every group commit. */
+        BATCH
+    }
+
+    static JournalConfig defaults(Path dir) {
+        return new JournalConfig(dir, SyncMode.BATCH, 256 * 1024, 2, false, 0, 0);
+    }
+
+    JournalConfig withSyncMode(SyncMode mode) {
+        return new JournalConfig(dir, mode, maxBatchBytes, maxDelayMillis, awaitDurable, snapshotIntervalMillis, archiveAfterMillis);
+    }
+
+    JournalConfig withBatching(int bytes, long delayMillis) {
+        return new JournalConfig(dir, syncMode, bytes, delayMillis, awaitDurable, snapshotIntervalMillis, archiveAfterMillis);
+    }
+
+    JournalConfig withAwaitDurable(boolean await) {
+        return new JournalConfig(dir, syncMode, maxBatchBytes, maxDelayMillis, await, snapshotIntervalMillis, archiveAfterMillis);
+    }
+
+    JournalConfig withSnapshotInterval(long millis) {
+        return new JournalConfig(dir, syncMode, maxBatchBytes, maxDelayMillis, awaitDurable, millis, archiveAfterMillis);
+    }
+
+    JournalConfig withArchiveAfter(long millis) {
+        return new JournalConfig(dir, syncMode, maxBatchBytes, maxDelayMillis, awaitDurable, snapshotIntervalMillis, millis);
+    }
+}
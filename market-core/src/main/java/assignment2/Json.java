@@ -0,0 +1,217 @@
+package assignment2;
+
+import java.util.*;
+
+/**
+ * Minimal JSON reader/writer for the headless front ends. Objects parse to
+ * {@code LinkedHashMap<String,Object>}, arrays to {@code ArrayList<Object>},
+ * integral numbers to {@code Long} and other numbers to {@code Double}.
+ */
+final class Json {
+    private final String src;
+    private int pos;
+
+    private Json(String src) { this.src = src; }
+
+    static Object parse(String text) {
+        Json p = new Json(text);
+        p.skipWs();
+        Object v = p.readValue();
+        p.skipWs();
+        if (p.pos != p.src.length()) throw p.error("Trailing characters");
+        return v;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String text) {
+        Object v = parse(text);
+        if (!(v instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) v;
+    }
+
+    private Object readValue() {
+        if (pos >= src.length()) throw error("Unexpected end of input");
+        char c = src.charAt(pos);
+        switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': expect("true"); return Boolean.TRUE;
+            case 'f': expect("false"); return Boolean.FALSE;
+            case 'n': expect("null"); return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        pos++;
+        skipWs();
+        if (peek() == '}') { pos++; return m; }
+        while (true) {
+            skipWs();
+            if (peek() != '"') throw error("Expected field name");
+            String key = readString();
+            skipWs();
+            if (peek() != ':') throw error("Expected ':'");
+            pos++;
+            skipWs();
+            m.put(key, readValue());
+            skipWs();
+            char c = peek();
+            pos++;
+            if (c == '}') return m;
+            if (c != ',') throw error("Expected ',' or '}'");
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> l = new ArrayList<>();
+        pos++;
+        skipWs();
+        if (peek() == ']') { pos++; return l; }
+        while (true) {
+            skipWs();
+            l.add(readValue());
+            skipWs();
+            char c = peek();
+            pos++;
+            if (c == ']') return l;
+            if (c != ',') throw error("Expected ',' or ']'");
+        }
+    }
+
+    private String readString() {
+        pos++;
+        StringBuilder sb = null;
+        int start = pos;
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if (c == '"') {
+                String s = sb == null ? src.substring(start, pos) : sb.append(src, start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c == '\\') {
+                if (sb == null) sb = new StringBuilder();
+                sb.append(src, start, pos);
+                if (pos + 1 >= src.length()) break;
+                char e = src.charAt(pos + 1);
+                pos += 2;
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > src.length()) throw error("Bad unicode escape");
+                        sb.append((char) Integer.parseInt(src.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+                start = pos;
+                continue;
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object readNumber() {
+        int start = pos;
+        boolean integral = true;
+        if (peek() == '-') pos++;
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if (c >= '0' && c <= '9') { pos++; continue; }
+            if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') { integral = false; pos++; continue; }
+            break;
+        }
+        String n = src.substring(start, pos);
+        try {
+            return integral ? (Object) Long.parseLong(n) : (Object) Double.parseDouble(n);
+        } catch (NumberFormatException e) {
+            throw error("Bad number '" + n + "'");
+        }
+    }
+
+    private void expect(String word) {
+        if (!src.startsWith(word, pos)) throw error("Expected '" + word + "'");
+        pos += word.length();
+    }
+
+    private char peek() {
+        if (pos >= src.length()) throw error("Unexpected end of input");
+        return src.charAt(pos);
+    }
+
+    private void skipWs() {
+        while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(msg + " at offset " + pos);
+    }
+
+    // --- Writing ---
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String s) {
+            writeString(sb, s);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map<?, ?> m) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                writeString(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Collection<?> c) {
+            sb.append('[');
+            boolean first = true;
+            for (Object o : c) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, o);
+            }
+            sb.append(']');
+        } else {
+            writeString(sb, value.toString());
+        }
+    }
+
+    static void writeString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
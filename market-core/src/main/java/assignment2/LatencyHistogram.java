@@ -0,0 +1,81 @@
+package assignment2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear latency histogram in the spirit of HdrHistogram: values
+ * below 2^SUB_BITS nanoseconds get one bucket each, and every power of two above
+ * that is split into 2^SUB_BITS equal buckets, so any recorded value is reported
+ * within about 3% of its true value. Recording is one array increment plus two
+ * atomic adds and never allocates; concurrent readers see a weakly consistent view.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 44; // ~4.9 hours in ns; larger values are clamped
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        total.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry until we publish a larger max or someone beats us to it
+        }
+    }
+
+    long count() { return total.get(); }
+
+    long sumNanos() { return sumNanos.get(); }
+
+    long maxNanos() { return maxNanos.get(); }
+
+    double meanNanos() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sumNanos.get() / n;
+    }
+
+    /** Upper bound of the bucket holding the given quantile (0..1), in nanoseconds; 0 if empty. */
+    long valueAtQuantile(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+
+    /** Cumulative count of values at or below {@code nanos} (for Prometheus {@code le} buckets). */
+    long countAtOrBelow(long nanos) {
+        int last = bucket(nanos);
+        long c = 0;
+        for (int i = 0; i <= last; i++) c += counts.get(i);
+        return c;
+    }
+
+    static int bucket(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+        if (exp > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+}
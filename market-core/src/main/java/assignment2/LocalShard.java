@@ -0,0 +1,90 @@
+package assignment2;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A shard in this JVM: an in-memory {@link MarketService} drawing its IDs from the
+ * market's {@link IdLeases}, and one writer thread. Every mutation runs on that
+ * thread in arrival order, so a shard's writes never contend with each other while
+ * shards proceed in parallel. Reads run on the caller's thread against the
+ * thread-safe stores and complete at once.
+ */
+final class LocalShard implements MarketShard {
+    private final int index;
+    private final MarketService market;
+    private final ExecutorService writer;
+
+    LocalShard(int index, IdLeases leases) {
+        this.index = index;
+        this.market = MarketService.shard(leases, index);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "market-shard-" + index);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public int index() { return index; }
+
+    /** The shard's own market, for metrics and tests; mutate it only through the shard. */
+    MarketService market() { return market; }
+
+    private <T> CompletableFuture<T> write(Supplier<T> op) { return CompletableFuture.supplyAsync(op, writer); }
+
+    private static <T> CompletableFuture<T> read(T value) { return CompletableFuture.completedFuture(value); }
+
+    // --- Writes ---
+    @Override public CompletableFuture<MarketResult<Vendor>> addVendor(MarketRequests.AddVendor req) { return write(() -> market.addVendor(req)); }
+    @Override public CompletableFuture<MarketResult<Product>> addProduct(MarketRequests.AddProduct req) { return write(() -> market.addProduct(req)); }
+    @Override public CompletableFuture<MarketResult<Order>> placeOrder(MarketRequests.PlaceOrder req) { return write(() -> market.placeOrder(req)); }
+    @Override public CompletableFuture<MarketResult<CartService.CartHold>> holdCart(MarketRequests.HoldCart req) { return write(() -> market.holdCart(req)); }
+    @Override public CompletableFuture<MarketResult<List<Order>>> checkoutCart(int holdId) { return write(() -> market.checkoutCart(holdId)); }
+    @Override public CompletableFuture<MarketResult<CartService.CartHold>> releaseCart(int holdId) { return write(() -> market.releaseCart(holdId)); }
+    @Override public CompletableFuture<MarketResult<PaymentReceipt>> recordPayment(MarketRequests.RecordPayment req) { return write(() -> market.recordPayment(req)); }
+    @Override public CompletableFuture<MarketResult<Delivery>> scheduleDelivery(MarketRequests.ScheduleDelivery req) { return write(() -> market.scheduleDelivery(req)); }
+    @Override public CompletableFuture<List<Delivery>> autoScheduleDeliveries(LocalDate from) { return write(() -> market.autoScheduleDeliveries(from)); }
+    @Override public CompletableFuture<List<DeliveryRoute>> dispatchDeliveries(LocalDate day) { return write(() -> market.dispatchDeliveries(day)); }
+    @Override public CompletableFuture<MarketResult<Delivery>> completeDelivery(int deliveryId) { return write(() -> market.completeDelivery(deliveryId)); }
+    @Override public CompletableFuture<MarketResult<Integer>> setDeliveryCapacity(int vendorId, int perDay) { return write(() -> market.setDeliveryCapacity(vendorId, perDay)); }
+    @Override public CompletableFuture<MarketResult<ReturnReceipt>> requestReturn(MarketRequests.RequestReturn req) { return write(() -> market.requestReturn(req)); }
+    @Override public CompletableFuture<MarketResult<ReturnReceipt>> approveReturn(int returnId) { return write(() -> market.approveReturn(returnId)); }
+    @Override public CompletableFuture<MarketResult<ReturnRequest>> denyReturn(int returnId) { return write(() -> market.denyReturn(returnId)); }
+    @Override public CompletableFuture<ReturnBatchReceipt> approveReturns(int[] returnIds) { return write(() -> market.approveReturns(returnIds)); }
+    @Override public CompletableFuture<ReturnBatchReceipt> denyReturns(int[] returnIds) { return write(() -> market.denyReturns(returnIds)); }
+
+    // --- Reads ---
+    @Override public CompletableFuture<Vendor> getVendor(int id) { return read(market.getVendor(id)); }
+    @Override public CompletableFuture<Product> getProduct(int id) { return read(market.getProduct(id)); }
+    @Override public CompletableFuture<Order> getOrder(int id) { return read(market.getOrder(id)); }
+    @Override public CompletableFuture<Payment> getPayment(int id) { return read(market.getPayment(id)); }
+    @Override public CompletableFuture<Delivery> getDelivery(int id) { return read(market.getDelivery(id)); }
+    @Override public CompletableFuture<ReturnRequest> getReturn(int id) { return read(market.getReturn(id)); }
+    @Override public CompletableFuture<List<Vendor>> vendors() { return read(new ArrayList<>(market.vendors())); }
+    @Override public CompletableFuture<List<Product>> productsForVendor(int vendorId) { return read(market.productsForVendor(vendorId)); }
+    @Override public CompletableFuture<List<Product>> searchProducts(MarketRequests.SearchProducts req) { return read(market.searchProducts(req)); }
+    @Override public CompletableFuture<List<Order>> ordersWithStatus(Order.Status... statuses) { return read(market.ordersWithStatus(statuses)); }
+    @Override public CompletableFuture<Integer> countWithStatus(Order.Status status) { return read(market.countWithStatus(status)); }
+    @Override public CompletableFuture<List<ReturnRequest>> pendingReturns(int max) { return read(market.pendingReturns(max)); }
+
+    /** Finishes the writes already submitted, then closes the market. */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) writer.shutdownNow();
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        market.close();
+    }
+}
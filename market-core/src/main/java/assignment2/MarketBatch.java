@@ -0,0 +1,306 @@
+package assignment2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streams a command file through {@link MarketService} with no console I/O.
+ * Each non-blank line that does not start with '#' is one operation, either CSV
+ * or a JSON object (lines starting with '{'):
+ * <pre>
+ * addVendor,Green Valley Produce,@gv
+ * addProduct,@gv,Tomato,30.0,100,@tomato
+ * placeOrder,@gv,@tomato:5;2001:2,@o1
+ * recordPayment,@o1,150.0,upi
+ * scheduleDelivery,@o1,2027-05-01
+ * deliveryCapacity,@gv,40
+ * autoSchedule,today
+ * dispatchDeliveries,2027-05-01
+ * completeDelivery,5000
+ * requestReturn,@o1,@tomato,1,approve
+ * approveReturn,6000
+ * denyReturn,6001
+ * approveReturns,6002;6003
+ * denyReturns,pending
+ * holdCart,@tomato:2;2005:1,600,@cart
+ * checkoutCart,@cart
+ * {"op":"addProduct","vendorId":"@gv","name":"Potato","price":20.0,"stock":200,"as":"potato"}
+ * </pre>
+ * ID fields accept either a number or an {@code @alias} bound by an earlier create
+ * operation (trailing {@code @alias} column in CSV, {@code "as"} field in JSON), so
+ * catalog imports do not need to know the generated IDs up front.
+ */
+class MarketBatch {
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    // CSV column names per operation, after the op column
+    private static final Map<String, String[]> CSV_COLUMNS = Map.ofEntries(
+            Map.entry("addVendor", new String[]{"name"}),
+            Map.entry("addProduct", new String[]{"vendorId", "name", "price", "stock"}),
+            Map.entry("placeOrder", new String[]{"vendorId", "items"}),
+            Map.entry("holdCart", new String[]{"items", "ttl"}),
+            Map.entry("checkoutCart", new String[]{"holdId"}),
+            Map.entry("releaseCart", new String[]{"holdId"}),
+            Map.entry("recordPayment", new String[]{"orderId", "amount", "method"}),
+            Map.entry("scheduleDelivery", new String[]{"orderId", "date"}),
+            Map.entry("deliveryCapacity", new String[]{"vendorId", "perDay"}),
+            Map.entry("autoSchedule", new String[]{"from"}),
+            Map.entry("dispatchDeliveries", new String[]{"date"}),
+            Map.entry("completeDelivery", new String[]{"deliveryId"}),
+            Map.entry("requestReturn", new String[]{"orderId", "productId", "quantity", "approve"}),
+            Map.entry("approveReturn", new String[]{"returnId"}),
+            Map.entry("denyReturn", new String[]{"returnId"}),
+            Map.entry("approveReturns", new String[]{"returnIds"}),
+            Map.entry("denyReturns", new String[]{"returnIds"}));
+
+    private final MarketService market;
+    private final Map<String, Integer> aliases = new HashMap<>();
+
+    MarketBatch(MarketService market) { this.market = market; }
+
+    public Summary run(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return run(in);
+        }
+    }
+
+    public Summary run(Reader source) throws IOException {
+        BufferedReader in = source instanceof BufferedReader b ? b : new BufferedReader(source);
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String op = "?";
+            String error;
+            try {
+                Map<String, Object> cmd = line.startsWith("{") ? Json.parseObject(line) : parseCsv(line);
+                op = String.valueOf(cmd.get("op"));
+                error = execute(op, cmd);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            summary.record(op, lineNo, error);
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /** Runs one command; returns null on success or the failure message. */
+    private String execute(String op, Map<String, Object> cmd) {
+        MarketResult<?> r;
+        Integer createdId = null;
+        switch (op) {
+            case "addVendor" -> {
+                MarketResult<Vendor> v = market.addVendor(new MarketRequests.AddVendor(str(cmd, "name")));
+                if (v.isOk()) createdId = v.getValue().getId();
+                r = v;
+            }
+            case "addProduct" -> {
+                MarketResult<Product> p = market.addProduct(new MarketRequests.AddProduct(
+                        id(cmd, "vendorId"), str(cmd, "name"), num(cmd, "price"), (int) num(cmd, "stock")));
+                if (p.isOk()) createdId = p.getValue().getId();
+                r = p;
+            }
+            case "placeOrder" -> {
+                MarketResult<Order> o = market.placeOrder(new MarketRequests.PlaceOrder(id(cmd, "vendorId"), lines(cmd.get("items"))));
+                if (o.isOk()) createdId = o.getValue().getId();
+                r = o;
+            }
+            case "holdCart" -> {
+                // ttl in seconds, optional
+                long ttl = cmd.get("ttl") == null ? CartService.DEFAULT_TTL_MILLIS : (long) (num(cmd, "ttl") * 1000);
+                MarketResult<CartService.CartHold> h = market.holdCart(new MarketRequests.HoldCart(lines(cmd.get("items")), ttl));
+                if (h.isOk()) createdId = h.getValue().getId();
+                r = h;
+            }
+            case "checkoutCart" -> r = market.checkoutCart(id(cmd, "holdId"));
+            case "releaseCart" -> r = market.releaseCart(id(cmd, "holdId"));
+            case "recordPayment" -> r = market.recordPayment(new MarketRequests.RecordPayment(
+                    id(cmd, "orderId"), num(cmd, "amount"), str(cmd, "method")));
+            case "scheduleDelivery" -> r = market.scheduleDelivery(new MarketRequests.ScheduleDelivery(id(cmd, "orderId"), str(cmd, "date")));
+            case "deliveryCapacity" -> r = market.setDeliveryCapacity(id(cmd, "vendorId"), (int) num(cmd, "perDay"));
+            case "autoSchedule" -> r = MarketResult.ok(market.autoScheduleDeliveries(DeliveryScheduler.parseDate(str(cmd, "from"))));
+            case "dispatchDeliveries" -> r = MarketResult.ok(market.dispatchDeliveries(DeliveryScheduler.parseDate(str(cmd, "date"))));
+            case "completeDelivery" -> r = market.completeDelivery(id(cmd, "deliveryId"));
+            case "requestReturn" -> {
+                MarketResult<ReturnReceipt> rr = market.requestReturn(new MarketRequests.RequestReturn(
+                        id(cmd, "orderId"), id(cmd, "productId"), (int) num(cmd, "quantity"), flag(cmd.get("approve"))));
+                if (rr.isOk()) createdId = rr.getValue().request().getId();
+                r = rr;
+            }
+            case "approveReturn" -> r = market.approveReturn(id(cmd, "returnId"));
+            case "denyReturn" -> r = market.denyReturn(id(cmd, "returnId"));
+            case "approveReturns", "denyReturns" -> {
+                int[] ids = returnIds(cmd.get("returnIds"));
+                ReturnBatchReceipt b = op.equals("approveReturns") ? market.approveReturns(ids) : market.denyReturns(ids);
+                r = b.failures().isEmpty() ? MarketResult.ok(b)
+                        : MarketResult.fail(b.failures().size() + " not decided, first: " + b.failures().get(0));
+            }
+            default -> throw new IllegalArgumentException("Unknown operation '" + op + "'");
+        }
+        if (!r.isOk()) return r.getMessage();
+        Object alias = cmd.get("as");
+        if (alias != null && createdId != null) aliases.put(stripAt(alias.toString()), createdId);
+        return null;
+    }
+
+    private static Map<String, Object> parseCsv(String line) {
+        List<String> cols = splitCsv(line);
+        String op = cols.get(0);
+        String[] names = CSV_COLUMNS.get(op);
+        if (names == null) throw new IllegalArgumentException("Unknown operation '" + op + "'");
+        Map<String, Object> cmd = new HashMap<>();
+        cmd.put("op", op);
+        int n = cols.size() - 1;
+        // A trailing @alias column names the created entity
+        String last = cols.get(n);
+        if (n > 0 && last.startsWith("@") && last.indexOf(':') < 0 && !(n <= names.length && names[n - 1].endsWith("Id"))) {
+            cmd.put("as", cols.get(n));
+            n--;
+        }
+        if (n > names.length) throw new IllegalArgumentException("Too many columns for " + op);
+        for (int i = 0; i < n; i++) cmd.put(names[i], cols.get(i + 1));
+        return cmd;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
+                    else quoted = false;
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(cur.toString().trim());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quote");
+        out.add(cur.toString().trim());
+        return out;
+    }
+
+    private List<OrderLine> lines(Object items) {
+        if (items == null) throw new IllegalArgumentException("Missing field 'items'");
+        List<OrderLine> lines = new ArrayList<>();
+        if (items instanceof List<?> list) {
+            for (Object o : list) {
+                if (!(o instanceof Map<?, ?> m)) throw new IllegalArgumentException("Bad item " + o);
+                lines.add(new OrderLine(resolveId(m.get("productId"), "productId"), (int) toNumber(m.get("quantity"), "quantity")));
+            }
+            return lines;
+        }
+        for (String part : items.toString().split(";")) {
+            if (part.isBlank()) continue;
+            int colon = part.lastIndexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Bad item '" + part + "', expected productId:quantity");
+            lines.add(new OrderLine(resolveId(part.substring(0, colon).trim(), "productId"),
+                    (int) toNumber(part.substring(colon + 1).trim(), "quantity")));
+        }
+        return lines;
+    }
+
+    /** {@code id;id;...}, a JSON array of IDs, or {@code pending} for every return awaiting a decision. */
+    private int[] returnIds(Object v) {
+        if (v == null) throw new IllegalArgumentException("Missing field 'returnIds'");
+        if ("pending".equals(v)) return market.pendingReturnIds(Integer.MAX_VALUE);
+        List<?> parts = v instanceof List<?> list ? list : Arrays.asList(v.toString().split(";"));
+        int[] ids = new int[parts.size()];
+        int n = 0;
+        for (Object part : parts) {
+            if (part instanceof String s && s.isBlank()) continue;
+            ids[n++] = resolveId(part instanceof String s ? s.trim() : part, "returnIds");
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    private int id(Map<String, Object> cmd, String field) { return resolveId(cmd.get(field), field); }
+
+    private int resolveId(Object v, String field) {
+        if (v instanceof String s && s.startsWith("@")) {
+            Integer id = aliases.get(stripAt(s));
+            if (id == null) throw new IllegalArgumentException("Unknown alias " + s + " for " + field);
+            return id;
+        }
+        return (int) toNumber(v, field);
+    }
+
+    static String str(Map<String, Object> cmd, String field) {
+        Object v = cmd.get(field);
+        if (v == null) throw new IllegalArgumentException("Missing field '" + field + "'");
+        return v.toString();
+    }
+
+    static double num(Map<String, Object> cmd, String field) { return toNumber(cmd.get(field), field); }
+
+    static double toNumber(Object v, String field) {
+        if (v == null) throw new IllegalArgumentException("Missing field '" + field + "'");
+        if (v instanceof Number n) return n.doubleValue();
+        try {
+            return Double.parseDouble(v.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field '" + field + "' is not a number: " + v);
+        }
+    }
+
+    static boolean flag(Object v) {
+        if (v == null) return false;
+        if (v instanceof Boolean b) return b;
+        String s = v.toString().toLowerCase();
+        return s.equals("y") || s.equals("yes") || s.equals("true") || s.equals("approve");
+    }
+
+    private static String stripAt(String s) { return s.startsWith("@") ? s.substring(1) : s; }
+
+    /** Per-operation counts and the first few failures of a batch run. */
+    static final class Summary {
+        private final Map<String, int[]> counts = new TreeMap<>(); // op -> {ok, failed}
+        private final List<String> errors = new ArrayList<>();
+        private int ok;
+        private int failed;
+        private long elapsedNanos;
+
+        void record(String op, int lineNo, String error) {
+            int[] c = counts.computeIfAbsent(op, k -> new int[2]);
+            if (error == null) { c[0]++; ok++; return; }
+            c[1]++;
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add("line " + lineNo + " (" + op + "): " + error);
+        }
+
+        public int getOk() { return ok; }
+        public int getFailed() { return failed; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Batch: ").append(ok).append(" ok, ").append(failed).append(" failed in ")
+              .append(String.format("%.3f", elapsedNanos / 1e6)).append(" ms");
+            counts.forEach((op, c) -> sb.append("\n  ").append(op).append(": ").append(c[0]).append(" ok, ").append(c[1]).append(" failed"));
+            for (String e : errors) sb.append("\n  ").append(e);
+            if (failed > errors.size()) sb.append("\n  ... ").append(failed - errors.size()).append(" more failures");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package assignment2;
+
+/**
+ * Immutable record of one state change, published on the {@link EventBus} after the
+ * change has been journaled and applied. Events carry IDs and values rather than
+ * the mutable domain objects, so subscribers on other threads see exactly what
+ * happened.
+ */
+sealed interface MarketEvent {
+
+    /** The lines as placed, in parallel arrays; later returns do not change them. */
+    record OrderPlaced(int orderId, int vendorId, long totalCents, int[] productIds, int[] quantities, long[] unitPriceCents,
+                       long placedAtMillis) implements MarketEvent {
+        int lineCount() { return productIds.length; }
+    }
+
+    /** {@code from} is null when the order first enters the store. */
+    record OrderStatusChanged(int orderId, int vendorId, Order.Status from, Order.Status to) implements MarketEvent {}
+
+    /** {@code delta} units moved in (positive) or out of a vendor's stock, leaving {@code level}. */
+    record StockChanged(int vendorId, int productId, int delta, int level) implements MarketEvent {}
+
+    /** Refunds are negative payments. */
+    record PaymentRecorded(int paymentId, int orderId, int vendorId, long amountCents, String method, long atMillis) implements MarketEvent {}
+
+    /** On approval {@code valueCents} came off the order total and {@code refundCents} was paid back; both are 0 on denial. */
+    record ReturnDecided(int returnId, int orderId, int vendorId, int productId, int quantity, boolean approved,
+                         long valueCents, long refundCents, long atMillis) implements MarketEvent {}
+}
@@ -0,0 +1,550 @@
+package assignment2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * HTTP/JSON front end over {@link MarketService} for stall tablets and POS terminals,
+ * built on the JDK's {@code com.sun.net.httpserver}. Each request runs on its own
+ * virtual thread when the runtime has them (JDK 21+), otherwise on a bounded pool of
+ * platform threads; the service itself is thread-safe, so requests never queue
+ * behind one another here.
+ * <pre>
+ * GET  /vendors                       POST /vendors            {"name"}
+ * GET  /vendors/{id}                  GET  /vendors/{id}/products
+ * GET  /products/{id}                 POST /products           {"vendorId","name","price","stock"}
+ * GET  /products?q=&amp;minPrice=&amp;maxPrice=&amp;inStock=true&amp;limit=   (search, all vendors)
+ * GET  /inventory?vendor=&amp;offset=&amp;limit=
+ * GET  /orders?vendor=&amp;status=PAID,..&amp;from=&amp;to=&amp;offset=&amp;limit=
+ * GET  /orders/{id}                   POST /orders             {"vendorId","items":[{"productId","quantity"}]}
+ * POST /carts {"items","ttl"}         POST /carts/{id}/checkout            DELETE /carts/{id}
+ * GET  /payments/{id}                 POST /payments           {"orderId","amount","method"}
+ * GET  /deliveries/{id}               POST /deliveries         {"orderId","date"}
+ * POST /deliveries/{id}/complete
+ * GET  /returns?limit= (pending)      POST /returns            {"orderId","productId","quantity","approve"}
+ * GET  /returns/{id}                  POST /returns/{id}/approve           POST /returns/{id}/deny
+ * POST /returns/approve, /returns/deny {"returnIds":[..] or "pending"}
+ * GET  /analytics                     GET  /analytics/vendors?limit=  (leaderboard)
+ * GET  /analytics/vendors/{id}?day=   GET  /analytics/products?limit=      GET /analytics/products/{id}
+ * GET  /stock/low?vendor=             GET  /stock/alerts?limit=
+ * GET  /vendors/{id}/replenishment    POST /products/{id}/threshold        {"units"} (-1 for the default)
+ * </pre>
+ * Listings stream through {@link ReportEngine} and return at most
+ * {@value #DEFAULT_PAGE} rows unless {@code limit} says otherwise. Money is in
+ * currency units, as in the reports. A rejected operation answers 422 with
+ * {@code {"error":...}}, a malformed request 400 and an unknown ID 404.
+ */
+final class MarketHttpServer implements Closeable {
+    static final int DEFAULT_PAGE = 1000;
+    private static final int MAX_BODY = 1 << 20;
+    private static final int BACKLOG = 1024;
+    private static final int PLATFORM_THREADS = 64;
+    private static final int MAX_IDLE_CONNECTIONS = 10_000;
+    private static final byte[] NO_BODY = new byte[0];
+
+    /** What a route produces: a status and JSON body, or {@link #STREAMED} if it already wrote the response. */
+    private record Reply(int status, String json) {}
+
+    private static final Reply STREAMED = new Reply(200, null);
+
+    private interface Handler {
+        Reply handle(Call call) throws IOException;
+    }
+
+    /** One method and path pattern; {@code {id}} segments match a positive integer. */
+    private record Route(String method, String[] pattern, Handler handler) {}
+
+    private final MarketService market;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final List<Route> routes = new ArrayList<>();
+    private final long zoneOffsetMillis = ZoneId.systemDefault().getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+
+    private MarketHttpServer(MarketService market, InetSocketAddress address) throws IOException {
+        this.market = market;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : platformThreadExecutor();
+        defineRoutes();
+        tuneJdkServer();
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+    }
+
+    /** Binds {@code address} (port 0 picks a free one, see {@link #port()}) and starts serving. */
+    static MarketHttpServer start(MarketService market, InetSocketAddress address) throws IOException {
+        MarketHttpServer s = new MarketHttpServer(market, address);
+        s.server.start();
+        return s;
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    InetSocketAddress address() { return server.getAddress(); }
+
+    boolean usesVirtualThreads() { return virtualThreads; }
+
+    /** Stops accepting, gives in-flight requests up to a second to finish, then stops the request threads. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tunes the JDK server for many small keep-alive requests unless configured
+     * otherwise: TCP_NODELAY, since Nagle's algorithm would hold each small response
+     * until the client's delayed ACK (about 40 ms, capping a connection near 25
+     * requests a second), and room for {@value #MAX_IDLE_CONNECTIONS} idle keep-alive
+     * connections instead of 200, past which every terminal would reconnect per
+     * request. Both are read once, when the first server in the JVM starts.
+     */
+    static void tuneJdkServer() {
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    /** One new virtual thread per task; looked up reflectively so the build still targets 17. Null before JDK 21. */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService platformThreadExecutor() {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "http-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // --- Routes ---
+
+    private void defineRoutes() {
+        route("GET", "/vendors", c -> ok(array(market.vendors(), this::vendor)));
+        route("POST", "/vendors", c -> created(market.addVendor(new MarketRequests.AddVendor(c.str("name"))), this::vendor));
+        route("GET", "/vendors/{id}", c -> found(market.getVendor(c.id()), this::vendor));
+        route("GET", "/vendors/{id}/products", c -> market.getVendor(c.id()) == null ? notFound()
+                : ok(array(market.productsForVendor(c.id()), this::product)));
+
+        route("GET", "/products", c -> {
+            String q = c.query().get("q");
+            if (q == null || q.isBlank()) throw new IllegalArgumentException("Query parameter 'q' is required");
+            return ok(array(market.searchProducts(new MarketRequests.SearchProducts(q, c.queryNum("minPrice", 0), c.queryNum("maxPrice", 0),
+                    "true".equals(c.query().get("inStock")), c.queryInt("limit", 20))), this::product));
+        });
+        route("GET", "/products/{id}", c -> found(market.getProduct(c.id()), this::product));
+        route("POST", "/products", c -> created(market.addProduct(new MarketRequests.AddProduct(
+                c.intField("vendorId"), c.str("name"), c.num("price"), c.intField("stock"))), this::product));
+        route("GET", "/inventory", c -> report(c, true));
+
+        route("GET", "/orders", c -> report(c, false));
+        route("GET", "/orders/{id}", c -> found(market.getOrder(c.id()), this::order));
+        route("POST", "/orders", c -> created(market.placeOrder(new MarketRequests.PlaceOrder(c.intField("vendorId"), c.lines())), this::order));
+
+        route("POST", "/carts", c -> {
+            // ttl in seconds, optional
+            long ttl = c.body().get("ttl") == null ? CartService.DEFAULT_TTL_MILLIS : (long) (c.num("ttl") * 1000);
+            return created(market.holdCart(new MarketRequests.HoldCart(c.lines(), ttl)), this::hold);
+        });
+        route("POST", "/carts/{id}/checkout", c -> result(market.checkoutCart(c.id()), 201, orders -> array(orders, this::order)));
+        route("DELETE", "/carts/{id}", c -> result(market.releaseCart(c.id()), 200, this::hold));
+
+        route("GET", "/payments/{id}", c -> found(market.getPayment(c.id()), this::payment));
+        route("POST", "/payments", c -> created(market.recordPayment(new MarketRequests.RecordPayment(
+                c.intField("orderId"), c.num("amount"), c.str("method"))), this::paymentReceipt));
+
+        route("GET", "/deliveries/{id}", c -> found(market.getDelivery(c.id()), this::delivery));
+        route("POST", "/deliveries", c -> created(market.scheduleDelivery(new MarketRequests.ScheduleDelivery(
+                c.intField("orderId"), c.str("date"))), this::delivery));
+        route("POST", "/deliveries/{id}/complete", c -> result(market.completeDelivery(c.id()), 200, this::delivery));
+
+        route("GET", "/returns", c -> ok(array(market.pendingReturns(c.queryInt("limit", DEFAULT_PAGE)), this::returnRequest)));
+        route("POST", "/returns", c -> created(market.requestReturn(new MarketRequests.RequestReturn(
+                c.intField("orderId"), c.intField("productId"), c.intField("quantity"),
+                MarketBatch.flag(c.body().get("approve")))), this::returnReceipt));
+        route("POST", "/returns/approve", c -> ok(batchReceipt(market.approveReturns(c.returnIds()))));
+        route("POST", "/returns/deny", c -> ok(batchReceipt(market.denyReturns(c.returnIds()))));
+        route("GET", "/returns/{id}", c -> found(market.getReturn(c.id()), this::returnRequest));
+        route("POST", "/returns/{id}/approve", c -> result(market.approveReturn(c.id()), 200, this::returnReceipt));
+        route("POST", "/returns/{id}/deny", c -> result(market.denyReturn(c.id()), 200, this::returnRequest));
+
+        SalesAnalytics sales = market.analytics();
+        route("GET", "/analytics", c -> ok(rollup(new StringBuilder("{"), sales.total()).append('}').toString()));
+        route("GET", "/analytics/vendors", c -> ok(array(sales.topVendors(c.queryInt("limit", 10)),
+                r -> rollup(new StringBuilder("{\"vendorId\":").append(r.id()).append(','), sales.vendor(r.id())).append('}').toString())));
+        route("GET", "/analytics/vendors/{id}", c -> {
+            if (market.getVendor(c.id()) == null) return notFound();
+            String day = c.query().get("day");
+            SalesAnalytics.Rollup r = day == null ? sales.vendor(c.id()) : sales.vendorOn(c.id(), localDate(day));
+            return ok(rollup(new StringBuilder("{\"vendorId\":").append(c.id()).append(','), r).append('}').toString());
+        });
+        route("GET", "/analytics/products", c -> ok(array(sales.topProducts(c.queryInt("limit", 10)),
+                r -> rollup(new StringBuilder("{\"productId\":").append(r.id()).append(','), sales.product(r.id())).append('}').toString())));
+        route("GET", "/analytics/products/{id}", c -> market.getProduct(c.id()) == null ? notFound()
+                : ok(rollup(new StringBuilder("{\"productId\":").append(c.id()).append(','), sales.product(c.id())).append('}').toString()));
+
+        StockMonitor stock = market.stockMonitor();
+        route("GET", "/stock/low", c -> ok(array(stock.lowStock(c.queryInt("vendor", 0)), this::stockAlert)));
+        route("GET", "/stock/alerts", c -> ok(array(stock.recentAlerts(c.queryInt("limit", 100)), this::stockAlert)));
+        route("GET", "/vendors/{id}/replenishment", c -> market.getVendor(c.id()) == null ? notFound()
+                : ok(array(market.replenishment(c.id()), MarketHttpServer::replenishment)));
+        route("POST", "/products/{id}/threshold", c -> result(market.setStockThreshold(c.id(), c.intField("units")), 200,
+                t -> "{\"productId\":" + c.id() + ",\"threshold\":" + t + "}"));
+    }
+
+    private void route(String method, String path, Handler handler) {
+        routes.add(new Route(method, path.substring(1).split("/"), handler));
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        Reply reply;
+        try {
+            reply = dispatch(ex);
+        } catch (IllegalArgumentException e) {
+            reply = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP " + ex.getRequestMethod() + " " + ex.getRequestURI() + " failed: " + e);
+            reply = error(500, "Internal error");
+        }
+        try (ex) {
+            if (reply == STREAMED) return;
+            byte[] body = reply.json() == null ? NO_BODY : reply.json().getBytes(StandardCharsets.UTF_8);
+            if (body.length > 0) ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        }
+    }
+
+    private Reply dispatch(HttpExchange ex) throws IOException {
+        String[] path = segments(ex.getRequestURI().getRawPath());
+        boolean pathMatched = false;
+        for (Route r : routes) {
+            int id = match(r.pattern(), path);
+            if (id < 0) continue;
+            pathMatched = true;
+            if (r.method().equals(ex.getRequestMethod())) return r.handler().handle(new Call(ex, id));
+        }
+        return pathMatched ? error(405, "Method not allowed") : notFound();
+    }
+
+    /** 0 if the path matches with no ID, the ID if it matches with one, -1 if it does not match. */
+    private static int match(String[] pattern, String[] path) {
+        if (pattern.length != path.length) return -1;
+        int id = 0;
+        for (int i = 0; i < pattern.length; i++) {
+            if (pattern[i].equals("{id}")) {
+                id = parseId(path[i]);
+                if (id <= 0) return -1;
+            } else if (!pattern[i].equals(path[i])) {
+                return -1;
+            }
+        }
+        return id;
+    }
+
+    private static int parseId(String s) {
+        if (s.isEmpty() || s.length() > 9) return -1;
+        int v = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static String[] segments(String rawPath) {
+        int start = 0, end = rawPath.length();
+        while (start < end && rawPath.charAt(start) == '/') start++;
+        while (end > start && rawPath.charAt(end - 1) == '/') end--;
+        return start == end ? new String[0] : rawPath.substring(start, end).split("/");
+    }
+
+    private Reply report(Call c, boolean inventory) throws IOException {
+        ReportQuery q = ReportQuery.fromOptions(c.query(), DEFAULT_PAGE);
+        c.exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        c.exchange.sendResponseHeaders(200, 0); // chunked
+        try (OutputStream out = c.exchange.getResponseBody()) {
+            ReportEngine engine = new ReportEngine(market);
+            if (inventory) engine.writeInventory(q, ReportEngine.Format.JSON, out);
+            else engine.writeOrders(q, ReportEngine.Format.JSON, out);
+        }
+        return STREAMED;
+    }
+
+    // --- Replies ---
+
+    private static Reply ok(String json) { return new Reply(200, json); }
+
+    private static Reply notFound() { return error(404, "Not found"); }
+
+    private static Reply error(int status, String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.writeString(sb, message == null ? "" : message);
+        return new Reply(status, sb.append('}').toString());
+    }
+
+    private static <T> Reply found(T value, Function<T, String> render) {
+        return value == null ? notFound() : ok(render.apply(value));
+    }
+
+    private static <T> Reply created(MarketResult<T> r, Function<T, String> render) { return result(r, 201, render); }
+
+    private static <T> Reply result(MarketResult<T> r, int status, Function<T, String> render) {
+        return r.isOk() ? new Reply(status, render.apply(r.getValue())) : error(422, r.getMessage());
+    }
+
+    // --- JSON views; field names and money format follow the JSON reports ---
+
+    private static <T> String array(Iterable<T> items, Function<T, String> render) {
+        StringBuilder sb = new StringBuilder("[");
+        for (T t : items) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(render.apply(t));
+        }
+        return sb.append(']').toString();
+    }
+
+    private String vendor(Vendor v) {
+        StringBuilder sb = new StringBuilder("{\"vendorId\":").append(v.getId()).append(",\"name\":");
+        Json.writeString(sb, v.getName());
+        return sb.append(",\"products\":").append(v.getProductIds().length).append('}').toString();
+    }
+
+    private String product(Product p) {
+        Vendor v = market.getVendor(p.getVendorId());
+        StringBuilder sb = new StringBuilder("{\"productId\":").append(p.getId()).append(",\"vendorId\":").append(p.getVendorId())
+                .append(",\"name\":");
+        Json.writeString(sb, p.getName());
+        Money.append(sb.append(",\"price\":"), p.getPriceCents());
+        sb.append(",\"stock\":").append(v == null ? 0 : v.getStockForProduct(p.getId()));
+        return sb.append(",\"held\":").append(market.heldStock(p.getId())).append('}').toString();
+    }
+
+    private String order(Order o) {
+        StringBuilder sb = new StringBuilder("{\"orderId\":").append(o.getId()).append(",\"vendorId\":").append(o.getVendorId())
+                .append(",\"status\":\"").append(o.getStatus()).append("\",\"placedAt\":\"");
+        ReportEngine.appendDateTime(sb, o.getPlacedAtMillis() + zoneOffsetMillis, 'T');
+        Money.append(sb.append("\",\"total\":"), o.getTotalCents());
+        Money.append(sb.append(",\"paid\":"), o.getPaidCents());
+        Money.append(sb.append(",\"due\":"), o.getAmountDueCents());
+        Money.append(sb.append(",\"refunded\":"), o.getRefundedCents());
+        sb.append(",\"items\":[");
+        for (int i = 0, n = o.getItemCount(); i < n; i++) {
+            OrderItem it = o.getItem(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"productId\":").append(it.getProductId()).append(",\"name\":");
+            Json.writeString(sb, it.getProductName());
+            Money.append(sb.append(",\"quantity\":").append(it.getQuantity()).append(",\"unitPrice\":"), it.getUnitPriceCents());
+            sb.append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String hold(CartService.CartHold h) {
+        StringBuilder sb = new StringBuilder("{\"holdId\":").append(h.getId()).append(",\"active\":").append(h.isActive())
+                .append(",\"expiresAt\":\"").append(Instant.ofEpochMilli(h.getExpiresAtMillis())).append("\",\"items\":[");
+        boolean first = true;
+        for (OrderLine l : h.getLines()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append("{\"productId\":").append(l.getProductId()).append(",\"quantity\":").append(l.getQuantity()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String payment(Payment p) {
+        StringBuilder sb = new StringBuilder("{\"paymentId\":").append(p.getId()).append(",\"orderId\":").append(p.getOrderId());
+        Money.append(sb.append(",\"amount\":"), p.getAmountCents()).append(",\"method\":");
+        Json.writeString(sb, p.getMethod());
+        sb.append(",\"reference\":");
+        Json.write(sb, p.getReference());
+        return sb.append(",\"at\":\"").append(Instant.ofEpochMilli(p.getTimestampMillis())).append("\"}").toString();
+    }
+
+    private String paymentReceipt(PaymentReceipt r) {
+        StringBuilder sb = new StringBuilder("{\"payment\":").append(payment(r.payment()))
+                .append(",\"orderStatus\":\"").append(r.orderStatus()).append('"');
+        return Money.append(sb.append(",\"due\":"), r.remainingCents()).append('}').toString();
+    }
+
+    private String delivery(Delivery d) {
+        return "{\"deliveryId\":" + d.getId() + ",\"orderId\":" + d.getOrderId() + ",\"date\":\"" + d.getDate()
+                + "\",\"status\":\"" + d.getStatus() + "\"}";
+    }
+
+    private String returnRequest(ReturnRequest rr) {
+        return "{\"returnId\":" + rr.getId() + ",\"orderId\":" + rr.getOrderId() + ",\"productId\":" + rr.getProductId()
+                + ",\"quantity\":" + rr.getQuantity() + ",\"status\":\"" + rr.getStatus() + "\"}";
+    }
+
+    private String returnReceipt(ReturnReceipt r) {
+        StringBuilder sb = new StringBuilder("{\"return\":").append(returnRequest(r.request()));
+        return Money.append(sb.append(",\"refund\":"), r.refundCents()).append('}').toString();
+    }
+
+    private String batchReceipt(ReturnBatchReceipt b) {
+        StringBuilder sb = new StringBuilder("{\"decided\":").append(array(b.decided(), r -> String.valueOf(r.request().getId())))
+                .append(",\"failures\":");
+        Json.write(sb, b.failures());
+        return Money.append(sb.append(",\"refund\":"), b.refundCents()).append('}').toString();
+    }
+
+    private static LocalDate localDate(String s) {
+        try {
+            return s.equalsIgnoreCase("today") ? LocalDate.now() : LocalDate.parse(s);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected YYYY-MM-DD or 'today': '" + s + "'");
+        }
+    }
+
+    private static StringBuilder rollup(StringBuilder sb, SalesAnalytics.Rollup r) {
+        sb.append("\"orders\":").append(r.getOrders()).append(",\"unitsSold\":").append(r.getUnitsSold());
+        Money.append(sb.append(",\"sales\":"), r.getSalesCents());
+        sb.append(",\"unitsReturned\":").append(r.getUnitsReturned());
+        Money.append(sb.append(",\"returned\":"), r.getReturnedCents());
+        Money.append(sb.append(",\"netSales\":"), r.getNetSalesCents());
+        Money.append(sb.append(",\"refunded\":"), r.getRefundedCents());
+        Money.append(sb.append(",\"collected\":"), r.getCollectedCents());
+        return Money.append(sb.append(",\"outstanding\":"), r.getOutstandingCents());
+    }
+
+    private String stockAlert(StockMonitor.Alert a) {
+        StringBuilder sb = new StringBuilder("{\"vendorId\":").append(a.vendorId()).append(",\"productId\":").append(a.productId())
+                .append(",\"stock\":").append(a.level()).append(",\"threshold\":").append(a.threshold()).append(",\"at\":\"");
+        ReportEngine.appendDateTime(sb, a.atMillis() + zoneOffsetMillis, 'T');
+        return sb.append("\"}").toString();
+    }
+
+    private static String replenishment(StockMonitor.Replenishment r) {
+        StringBuilder sb = new StringBuilder("{\"productId\":").append(r.productId()).append(",\"stock\":").append(r.level())
+                .append(",\"threshold\":").append(r.threshold()).append(",\"unitsPerDay\":").append(Math.round(r.unitsPerDay() * 100) / 100.0)
+                .append(",\"daysLeft\":");
+        if (Double.isInfinite(r.daysLeft())) sb.append("null");
+        else sb.append(Math.round(r.daysLeft() * 10) / 10.0);
+        return sb.append(",\"suggestedUnits\":").append(r.suggestedUnits()).append('}').toString();
+    }
+
+    /** One request: the exchange, the {id} path segment, and the JSON body and query string, parsed on first use. */
+    private final class Call {
+        private final HttpExchange exchange;
+        private final int id;
+        private Map<String, Object> body;
+        private Map<String, String> query;
+
+        Call(HttpExchange exchange, int id) {
+            this.exchange = exchange;
+            this.id = id;
+        }
+
+        int id() { return id; }
+
+        Map<String, Object> body() throws IOException {
+            if (body == null) {
+                byte[] bytes;
+                try (InputStream in = exchange.getRequestBody()) {
+                    bytes = in.readNBytes(MAX_BODY + 1);
+                }
+                if (bytes.length > MAX_BODY) throw new IllegalArgumentException("Request body over " + MAX_BODY + " bytes");
+                body = bytes.length == 0 ? Map.of() : Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return body;
+        }
+
+        Map<String, String> query() {
+            if (query == null) {
+                query = new HashMap<>();
+                String raw = exchange.getRequestURI().getRawQuery();
+                if (raw != null) {
+                    for (String pair : raw.split("&")) {
+                        if (pair.isEmpty()) continue;
+                        int eq = pair.indexOf('=');
+                        String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                        query.put(k, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            return query;
+        }
+
+        int queryInt(String name, int dflt) {
+            String v = query().get(name);
+            return v == null ? dflt : (int) MarketBatch.toNumber(v, name);
+        }
+
+        double queryNum(String name, double dflt) {
+            String v = query().get(name);
+            return v == null ? dflt : MarketBatch.toNumber(v, name);
+        }
+
+        String str(String field) throws IOException { return MarketBatch.str(body(), field); }
+
+        double num(String field) throws IOException { return MarketBatch.num(body(), field); }
+
+        int intField(String field) throws IOException { return (int) num(field); }
+
+        List<OrderLine> lines() throws IOException {
+            if (!(body().get("items") instanceof List<?> items)) throw new IllegalArgumentException("Field 'items' must be an array");
+            List<OrderLine> lines = new ArrayList<>(items.size());
+            for (Object o : items) {
+                if (!(o instanceof Map<?, ?> m)) throw new IllegalArgumentException("Bad item " + o);
+                lines.add(new OrderLine((int) MarketBatch.toNumber(m.get("productId"), "productId"),
+                        (int) MarketBatch.toNumber(m.get("quantity"), "quantity")));
+            }
+            return lines;
+        }
+
+        int[] returnIds() throws IOException {
+            Object v = body().get("returnIds");
+            if ("pending".equals(v)) return market.pendingReturnIds(Integer.MAX_VALUE);
+            if (!(v instanceof List<?> list)) throw new IllegalArgumentException("Field 'returnIds' must be an array or \"pending\"");
+            int[] ids = new int[list.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = (int) MarketBatch.toNumber(list.get(i), "returnIds");
+            return ids;
+        }
+    }
+}
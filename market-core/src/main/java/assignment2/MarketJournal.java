@@ -0,0 +1,657 @@
+package assignment2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead journal of market mutations.
+ * <p>
+ * Callers encode records into an in-memory batch under the journal's monitor; a
+ * background flusher swaps the batch out and writes it through a {@link FileChannel}
+ * (group commit), forcing it to disk according to {@link JournalConfig.SyncMode}.
+ * The journal is split into numbered segments; a checkpoint starts a new segment and
+ * writes {@code snapshot-N.bin} covering every segment before N, so recovery loads the
+ * newest snapshot and replays only the segments after it.
+ * <p>
+ * Record layout: {@code int length | byte type | payload[length] | int crc32(type, payload)}.
+ */
+class MarketJournal implements Closeable {
+    static final byte VENDOR_ADDED = 1;
+    static final byte PRODUCT_ADDED = 2;
+    static final byte ORDER_PLACED = 3;
+    static final byte PAYMENT_RECORDED = 4;
+    static final byte DELIVERY_SCHEDULED = 5;
+    static final byte RETURN_REQUESTED = 6;
+    static final byte RETURN_APPROVED = 7;
+    static final byte DELIVERY_STATUS = 8;
+    static final byte RETURN_REFUNDED = 9;
+    static final byte RETURN_DENIED = 10;
+    static final byte DELIVERY_CAPACITY = 11;
+
+    /** Longest string a record can carry, in UTF-8 bytes; callers reject longer input up front. */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final JournalConfig config;
+    private final int maxBufferedBytes;
+
+    // Guarded by this
+    private RecordBuffer active = new RecordBuffer();
+    private RecordBuffer flushing = new RecordBuffer();
+    private boolean flushInProgress;
+    private boolean hasWaiters; // someone is blocked in awaitSeq, so flush without waiting out maxDelay
+    private long firstPendingNanos;
+    private long appendedSeq;
+    private long durableSeq;
+    private FileChannel channel;
+    private long segment;
+    private boolean closed;
+    private IOException failure;
+
+    private Thread flusher;
+    private ScheduledExecutorService snapshotter;
+    private long recoveredRecords;
+    private volatile Exception lastSnapshotError;
+
+    MarketJournal(JournalConfig config) {
+        this.config = config;
+        this.maxBufferedBytes = Math.max(config.maxBatchBytes() * 4, 1 << 20);
+    }
+
+    // --- Recovery and lifecycle ---
+
+    /** Loads the newest snapshot (if any) into the market, then replays the journal segments after it. */
+    void recover(MarketService market) throws IOException {
+        Files.createDirectories(config.dir());
+        long snapshotSeg = -1;
+        for (long n : numbered(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) snapshotSeg = n;
+        if (snapshotSeg >= 0) MarketSnapshot.read(snapshotPath(snapshotSeg), market);
+        long last = Math.max(snapshotSeg, 0);
+        for (long n : numbered(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (n < snapshotSeg) continue;
+            recoveredRecords += replay(segmentPath(n), market);
+            last = Math.max(last, n + 1);
+        }
+        segment = last;
+    }
+
+    /**
+     * Installs {@code snapshot} as the starting state of the journal in {@code dir},
+     * which must hold no journal, snapshot or archive yet.
+     */
+    static void seed(Path dir, Path snapshot) throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                "{" + SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + "," + SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX + ",archive}")) {
+            if (ds.iterator().hasNext()) throw new IllegalStateException("Market directory " + dir + " is not empty.");
+        }
+        Path tmp = dir.resolve(SNAPSHOT_PREFIX + "0.tmp");
+        Files.copy(snapshot, tmp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, dir.resolve(SNAPSHOT_PREFIX + 0 + SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Opens a fresh segment for appends and starts the flusher (and snapshot timer, if configured). */
+    void start(MarketService market) throws IOException {
+        synchronized (this) {
+            channel = openSegment(segment);
+        }
+        flusher = new Thread(this::flushLoop, "market-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        if (config.snapshotIntervalMillis() > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "market-snapshotter");
+                t.setDaemon(true);
+                return t;
+            });
+            long every = config.snapshotIntervalMillis();
+            snapshotter.scheduleWithFixedDelay(() -> {
+                try {
+                    market.checkpoint();
+                    lastSnapshotError = null;
+                } catch (IOException | RuntimeException e) {
+                    // The journal still holds everything; retry on the next tick
+                    lastSnapshotError = e;
+                }
+            }, every, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts a new segment and snapshots the market into it. The caller must have
+     * stopped all mutations (see {@link MarketService#checkpoint()}).
+     */
+    void checkpoint(MarketService market) throws IOException {
+        sync();
+        long next;
+        synchronized (this) {
+            checkFailure();
+            channel.close();
+            next = ++segment;
+            channel = openSegment(next);
+        }
+        Path tmp = config.dir().resolve(SNAPSHOT_PREFIX + next + ".tmp");
+        MarketSnapshot.write(market, tmp);
+        Files.move(tmp, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long n : numbered(SEGMENT_PREFIX, SEGMENT_SUFFIX)) if (n < next) Files.deleteIfExists(segmentPath(n));
+        for (long n : numbered(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) if (n < next) Files.deleteIfExists(snapshotPath(n));
+    }
+
+    /** Blocks until everything appended so far has been written (and forced, per sync mode). */
+    void sync() throws IOException {
+        synchronized (this) {
+            awaitSeq(appendedSeq);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) snapshotter.shutdownNow();
+        synchronized (this) {
+            if (closed) return;
+            if (channel != null) awaitSeq(appendedSeq);
+            closed = true;
+            notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) channel.close();
+        }
+    }
+
+    /** Number of records replayed by {@link #recover}. */
+    long getRecoveredRecords() { return recoveredRecords; }
+
+    /** Failure of the most recent background checkpoint, or null if it succeeded. */
+    Exception getLastSnapshotError() { return lastSnapshotError; }
+
+    /** Whether {@code s} fits in a journal string field. */
+    static boolean fits(String s) {
+        return s.length() <= MAX_STRING_BYTES / 3 || s.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES;
+    }
+
+    // --- Typed appends; each is called before the mutation becomes visible ---
+
+    void vendorAdded(Vendor v) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(VENDOR_ADDED);
+            b.putInt(v.getId());
+            b.putString(v.getName());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void productAdded(Product p, int initialStock) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(PRODUCT_ADDED);
+            b.putInt(p.getId());
+            b.putInt(p.getVendorId());
+            b.putString(p.getName());
+            b.putLong(p.getPriceCents());
+            b.putInt(initialStock);
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void orderPlaced(Order o) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(ORDER_PLACED);
+            b.putInt(o.getId());
+            b.putInt(o.getVendorId());
+            List<OrderItem> items = o.getItems();
+            b.putInt(items.size());
+            for (OrderItem i : items) {
+                b.putInt(i.getProductId());
+                b.putInt(i.getQuantity());
+                b.putLong(i.getUnitPriceCents());
+            }
+            b.putLong(o.getPlacedAtMillis());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void paymentRecorded(Payment p, Order.Status resultingStatus) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(PAYMENT_RECORDED);
+            b.putInt(p.getId());
+            b.putInt(p.getOrderId());
+            b.putLong(p.getAmountCents());
+            b.putString(p.getMethod());
+            b.putLong(p.getTimestampMillis());
+            b.putString(p.getReference() == null ? "" : p.getReference());
+            b.putByte(resultingStatus.ordinal());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void deliveryScheduled(Delivery d) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(DELIVERY_SCHEDULED);
+            b.putInt(d.getId());
+            b.putInt(d.getOrderId());
+            b.putString(d.getScheduledDate());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void deliveryStatusChanged(Delivery d, Delivery.Status status) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(DELIVERY_STATUS);
+            b.putInt(d.getId());
+            b.putByte(status.ordinal());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void returnRequested(ReturnRequest rr) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(RETURN_REQUESTED);
+            b.putInt(rr.getId());
+            b.putInt(rr.getOrderId());
+            b.putInt(rr.getProductId());
+            b.putInt(rr.getQuantity());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    /** An approval and its refund payment (null when nothing was refunded). Replaces RETURN_APPROVED. */
+    void returnApproved(ReturnRequest rr, Payment refund) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(RETURN_REFUNDED);
+            b.putInt(rr.getId());
+            b.putInt(refund == null ? 0 : refund.getId());
+            b.putLong(refund == null ? 0L : refund.getAmountCents());
+            b.putLong(refund == null ? 0L : refund.getTimestampMillis());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void returnDenied(ReturnRequest rr) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(RETURN_DENIED);
+            b.putInt(rr.getId());
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    void deliveryCapacitySet(int vendorId, int perDay) {
+        long seq;
+        synchronized (this) {
+            RecordBuffer b = begin(DELIVERY_CAPACITY);
+            b.putInt(vendorId);
+            b.putInt(perDay);
+            seq = commit(b);
+        }
+        maybeAwait(seq);
+    }
+
+    // --- Group commit ---
+
+    // Caller holds this
+    private RecordBuffer begin(byte type) {
+        checkFailure();
+        if (closed || channel == null) throw new IllegalStateException("Journal is not open.");
+        while (active.size >= maxBufferedBytes && flushInProgress) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for journal space", e);
+            }
+            checkFailure();
+        }
+        if (active.size == 0) firstPendingNanos = System.nanoTime();
+        active.begin(type);
+        return active;
+    }
+
+    // Caller holds this
+    private long commit(RecordBuffer b) {
+        b.end();
+        long seq = ++appendedSeq;
+        if (b.size >= config.maxBatchBytes()) notifyAll();
+        return seq;
+    }
+
+    private void maybeAwait(long seq) {
+        if (!config.awaitDurable()) return;
+        synchronized (this) {
+            try {
+                awaitSeq(seq);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Caller holds this
+    private void awaitSeq(long seq) throws IOException {
+        boolean interrupted = false;
+        while (durableSeq < seq && failure == null) {
+            hasWaiters = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+    }
+
+    private void flushLoop() {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.maxDelayMillis());
+        while (true) {
+            RecordBuffer batch;
+            FileChannel ch;
+            long seq;
+            synchronized (this) {
+                while (true) {
+                    if (active.size == 0) {
+                        if (closed) return;
+                        waitQuietly(0);
+                        continue;
+                    }
+                    long waited = System.nanoTime() - firstPendingNanos;
+                    if (closed || hasWaiters || active.size >= config.maxBatchBytes() || waited >= maxDelayNanos) break;
+                    waitQuietly(Math.max(1, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos - waited)));
+                }
+                batch = active;
+                active = flushing;
+                flushing = batch;
+                flushInProgress = true;
+                hasWaiters = false;
+                ch = channel;
+                seq = appendedSeq;
+            }
+            try {
+                ByteBuffer bb = ByteBuffer.wrap(batch.buf, 0, batch.size);
+                while (bb.hasRemaining()) ch.write(bb);
+                if (config.syncMode() == JournalConfig.SyncMode.BATCH) ch.force(false);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } finally {
+                batch.size = 0;
+            }
+            synchronized (this) {
+                flushInProgress = false;
+                durableSeq = seq;
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) failure = e;
+        flushInProgress = false;
+        notifyAll();
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+    }
+
+    // --- Replay ---
+
+    /** Applies every intact record of a segment; a torn or corrupt tail is truncated away. */
+    private long replay(Path file, MarketService market) throws IOException {
+        long count = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+            buf.flip();
+            long validEnd = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                buf = fill(ch, buf, 5);
+                if (buf.remaining() < 5) break;
+                int start = buf.position();
+                int len = buf.getInt();
+                if (len < 0 || len > ch.size() - validEnd) break;
+                buf.position(start);
+                buf = fill(ch, buf, 5 + len + 4);
+                if (buf.remaining() < 5 + len + 4) break;
+                start = buf.position();
+                crc.reset();
+                crc.update(buf.array(), start + 4, len + 1);
+                if ((int) crc.getValue() != buf.getInt(start + 5 + len)) break;
+                buf.position(start + 4);
+                byte type = buf.get();
+                apply(type, buf, market);
+                buf.position(start + 5 + len + 4);
+                validEnd += 5 + len + 4;
+                count++;
+            }
+            if (validEnd < ch.size()) ch.truncate(validEnd);
+        }
+        return count;
+    }
+
+    /** Ensures at least n readable bytes, compacting/growing the buffer; fewer remain only at EOF. */
+    private static ByteBuffer fill(FileChannel ch, ByteBuffer buf, int n) throws IOException {
+        if (buf.remaining() >= n) return buf;
+        if (buf.capacity() < n) {
+            ByteBuffer bigger = ByteBuffer.allocate(Integer.highestOneBit(n) << 1);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < n) {
+            if (ch.read(buf) < 0) break;
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void apply(byte type, ByteBuffer in, MarketService m) {
+        switch (type) {
+            case VENDOR_ADDED -> m.restoreVendor(new Vendor(in.getInt(), getString(in)));
+            case PRODUCT_ADDED -> {
+                int id = in.getInt();
+                int vendorId = in.getInt();
+                Product p = Product.ofCents(id, getString(in), in.getLong(), vendorId);
+                m.restoreProduct(p);
+                m.getVendor(vendorId).addStock(id, in.getInt());
+            }
+            case ORDER_PLACED -> {
+                int id = in.getInt();
+                int vendorId = in.getInt();
+                int n = in.getInt();
+                Vendor vendor = m.getVendor(vendorId);
+                List<OrderItem> items = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    int pid = in.getInt();
+                    int qty = in.getInt();
+                    items.add(new OrderItem(pid, m.getProduct(pid).getName(), qty, in.getLong()));
+                    // Replay applies deltas unchecked: records may be logged in a different order than their CAS
+                    vendor.addStock(pid, -qty);
+                }
+                Order o = new Order(id, vendorId, items, in.getLong());
+                m.restoreOrder(o);
+                o.setStatus(Order.Status.CONFIRMED);
+            }
+            case PAYMENT_RECORDED -> {
+                Payment p = new Payment(in.getInt(), in.getInt(), in.getLong(), getString(in), in.getLong(), emptyToNull(getString(in)));
+                m.applyPayment(m.hotOrder(p.getOrderId()), p, Order.Status.values()[in.get()]);
+            }
+            case DELIVERY_SCHEDULED -> {
+                Delivery d = new Delivery(in.getInt(), in.getInt(), LocalDate.parse(getString(in)));
+                m.applyDelivery(m.hotOrder(d.getOrderId()), d);
+            }
+            case RETURN_REQUESTED -> m.restoreReturn(new ReturnRequest(in.getInt(), in.getInt(), in.getInt(), in.getInt()));
+            case RETURN_APPROVED -> {
+                // Written before refunds became payments: the full value was tallied as refunded
+                ReturnRequest rr = m.getReturn(in.getInt());
+                Order o = m.hotOrder(rr.getOrderId());
+                o.addRefund(rr.getQuantity() * m.getProduct(rr.getProductId()).getPriceCents());
+                m.applyReturnApproval(rr, o, null);
+                m.restock(rr.getProductId(), rr.getQuantity());
+            }
+            case RETURN_REFUNDED -> {
+                ReturnRequest rr = m.getReturn(in.getInt());
+                int paymentId = in.getInt();
+                long cents = in.getLong();
+                long ts = in.getLong();
+                Payment refund = paymentId == 0 ? null : new Payment(paymentId, rr.getOrderId(), cents, MarketService.REFUND_METHOD, ts, null);
+                m.applyReturnApproval(rr, m.hotOrder(rr.getOrderId()), refund);
+                m.restock(rr.getProductId(), rr.getQuantity());
+            }
+            case RETURN_DENIED -> m.applyReturnDenial(m.getReturn(in.getInt()));
+            case DELIVERY_CAPACITY -> m.restoreDeliveryCapacity(in.getInt(), in.getInt());
+            case DELIVERY_STATUS -> {
+                Delivery d = m.getDelivery(in.getInt());
+                m.applyDeliveryStatus(m.hotOrder(d.getOrderId()), d, Delivery.Status.values()[in.get()]);
+            }
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String emptyToNull(String s) { return s.isEmpty() ? null : s; }
+
+    private static String getString(ByteBuffer in) {
+        int len = in.getShort() & 0xFFFF;
+        String s = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+
+    // --- Files ---
+
+    private FileChannel openSegment(long n) throws IOException {
+        return FileChannel.open(segmentPath(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long n) { return config.dir().resolve(SEGMENT_PREFIX + n + SEGMENT_SUFFIX); }
+
+    private Path snapshotPath(long n) { return config.dir().resolve(SNAPSHOT_PREFIX + n + SNAPSHOT_SUFFIX); }
+
+    /** Sorted numbers N of the files named prefix + N + suffix in the journal directory. */
+    private List<Long> numbered(String prefix, String suffix) throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(config.dir(), prefix + "*" + suffix)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                try {
+                    out.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /** Growable big-endian byte buffer holding a batch of encoded records. */
+    private static final class RecordBuffer {
+        private final CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        int size;
+        private int recordStart;
+
+        void begin(byte type) {
+            recordStart = size;
+            ensure(5);
+            size += 4; // length, filled in by end()
+            buf[size++] = type;
+        }
+
+        void end() {
+            int len = size - recordStart - 5;
+            writeInt(recordStart, len);
+            crc.reset();
+            crc.update(buf, recordStart + 4, len + 1);
+            putInt((int) crc.getValue());
+        }
+
+        void putByte(int v) {
+            ensure(1);
+            buf[size++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            writeInt(size, v);
+            size += 4;
+        }
+
+        void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        /** Drops the record being built before throwing, so a rejected string never leaves half a record in the batch. */
+        void putString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > MAX_STRING_BYTES) {
+                size = recordStart;
+                throw new IllegalArgumentException("String too long for journal: " + b.length + " bytes");
+            }
+            ensure(2 + b.length);
+            buf[size++] = (byte) (b.length >>> 8);
+            buf[size++] = (byte) b.length;
+            System.arraycopy(b, 0, buf, size, b.length);
+            size += b.length;
+        }
+
+        private void writeInt(int at, int v) {
+            buf[at] = (byte) (v >>> 24);
+            buf[at + 1] = (byte) (v >>> 16);
+            buf[at + 2] = (byte) (v >>> 8);
+            buf[at + 3] = (byte) v;
+        }
+
+        private void ensure(int n) {
+            if (size + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+        }
+    }
+}
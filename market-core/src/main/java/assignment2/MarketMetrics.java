@@ -0,0 +1,178 @@
+package assignment2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Built-in instrumentation for {@link MarketService}: a call counter, failure counter
+ * and {@link LatencyHistogram} per operation, stock-rejection counts per product, and
+ * gauges sampled only when exported. Recording never allocates; when disabled it is
+ * a single volatile read.
+ * <p>
+ * Call and failure counts are exact, but only one call in {@link #setLatencySampling}
+ * (default 32) is timed: reading the clock twice costs more than the rest of the
+ * bookkeeping together and would otherwise dominate the overhead on placeOrder.
+ */
+final class MarketMetrics {
+    enum Op {
+        ADD_VENDOR, ADD_PRODUCT, PLACE_ORDER, RECORD_PAYMENT, SETTLE_PAYMENTS,
+        SCHEDULE_DELIVERY, AUTO_SCHEDULE_DELIVERIES, DISPATCH_DELIVERIES, COMPLETE_DELIVERY,
+        REQUEST_RETURN, APPROVE_RETURN, DENY_RETURN, APPROVE_RETURNS, DENY_RETURNS, LIST_ORDERS_BY_STATUS, LIST_PRODUCTS_FOR_VENDOR,
+        HOLD_CART, CHECKOUT_CART, RELEASE_CART, SEARCH_PRODUCTS;
+
+        final String metricName = name().toLowerCase();
+    }
+
+    private static final Op[] OPS = Op.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+    private final LongAdder[] calls = new LongAdder[OPS.length];
+    private final LongAdder[] failures = new LongAdder[OPS.length];
+    private final IntCounterMap stockRejections = new IntCounterMap(); // productId -> rejected orders
+    private final LongAdder holdsExpired = new LongAdder();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private volatile boolean enabled = true;
+    private volatile int sampleMask = 31;
+
+    MarketMetrics() {
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i] = new LatencyHistogram();
+            calls[i] = new LongAdder();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    void setEnabled(boolean on) { enabled = on; }
+
+    boolean isEnabled() { return enabled; }
+
+    /** Times one call in {@code every} (a power of two; 1 times every call). */
+    void setLatencySampling(int every) {
+        if (every <= 0 || Integer.bitCount(every) != 1) throw new IllegalArgumentException("Sampling rate must be a power of two.");
+        sampleMask = every - 1;
+    }
+
+    /**
+     * Start timestamp for {@link #record}: 0 when disabled, 1 when this call is counted
+     * but not timed, otherwise the clock.
+     */
+    long start() {
+        if (!enabled) return 0L;
+        return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 ? System.nanoTime() : 1L;
+    }
+
+    void record(Op op, long startNanos, boolean ok) {
+        if (startNanos == 0L) return;
+        int i = op.ordinal();
+        calls[i].increment();
+        if (!ok) failures[i].increment();
+        if (startNanos != 1L) latency[i].record(System.nanoTime() - startNanos);
+    }
+
+    void stockRejected(int productId) {
+        if (enabled) stockRejections.addAndGet(productId, 1);
+    }
+
+    void holdExpired() {
+        if (enabled) holdsExpired.increment();
+    }
+
+    long holdsExpired() { return holdsExpired.sum(); }
+
+    /**
+     * Counts {@link MarketEvent}s by type on a bus subscriber thread, so the publishing
+     * side pays nothing extra; exported as {@code events_<type>} gauges along with the
+     * subscriber's lag and how often publishers found the ring full.
+     */
+    EventBus.Subscription countEvents(EventBus bus) {
+        Class<?>[] types = MarketEvent.class.getPermittedSubclasses();
+        LongAdder[] counts = new LongAdder[types.length];
+        for (int i = 0; i < types.length; i++) {
+            counts[i] = new LongAdder();
+            gauge("events_" + types[i].getSimpleName().replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase(), counts[i]::sum);
+        }
+        EventBus.Subscription s = bus.subscribe("metrics-events", (e, seq, endOfBatch) -> {
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == e.getClass()) {
+                    counts[i].increment();
+                    break;
+                }
+            }
+        });
+        gauge("event_bus_lag", s::lag);
+        gauge("event_bus_publisher_waits", bus::publisherWaits);
+        return s;
+    }
+
+    /** Registers a gauge read at export time, e.g. a store size. */
+    synchronized void gauge(String name, LongSupplier value) { gauges.put(name, value); }
+
+    long calls(Op op) { return calls[op.ordinal()].sum(); }
+
+    long failures(Op op) { return failures[op.ordinal()].sum(); }
+
+    LatencyHistogram latency(Op op) { return latency[op.ordinal()]; }
+
+    int stockRejections(int productId) { return stockRejections.get(productId); }
+
+    int[] productsWithStockRejections() { return stockRejections.keys(); }
+
+    synchronized Map<String, Long> sampleGauges() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        gauges.forEach((name, g) -> out.put(name, g.getAsLong()));
+        return out;
+    }
+
+    /** Human-readable summary: one line per operation that has been called. */
+    String toText() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("%-26s %10s %8s %10s %10s %10s %10s%n", "operation", "calls", "failed", "mean_us", "p50_us", "p99_us", "max_us"));
+        for (Op op : OPS) {
+            LatencyHistogram h = latency(op);
+            if (h.count() == 0) continue;
+            sb.append(String.format("%-26s %10d %8d %10.1f %10.1f %10.1f %10.1f%n", op.metricName, calls(op), failures(op),
+                    h.meanNanos() / 1e3, h.valueAtQuantile(0.5) / 1e3, h.valueAtQuantile(0.99) / 1e3, h.maxNanos() / 1e3));
+        }
+        sampleGauges().forEach((name, v) -> sb.append(name).append(' ').append(v).append('\n'));
+        sb.append("cart_holds_expired ").append(holdsExpired()).append('\n');
+        for (int pid : productsWithStockRejections()) {
+            sb.append("stock_rejections{product=").append(pid).append("} ").append(stockRejections(pid)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Prometheus histogram bucket bounds, in seconds
+    private static final double[] LE_SECONDS = {1e-6, 5e-6, 1e-5, 5e-5, 1e-4, 5e-4, 1e-3, 5e-3, 1e-2, 5e-2, 0.1, 0.5, 1};
+
+    /** Prometheus text exposition format (version 0.0.4). */
+    String toPrometheus() {
+        StringBuilder sb = new StringBuilder(8192);
+        sb.append("# TYPE market_operation_calls_total counter\n");
+        for (Op op : OPS) sb.append("market_operation_calls_total{op=\"").append(op.metricName).append("\"} ").append(calls(op)).append('\n');
+        sb.append("# TYPE market_operation_failures_total counter\n");
+        for (Op op : OPS) sb.append("market_operation_failures_total{op=\"").append(op.metricName).append("\"} ").append(failures(op)).append('\n');
+        sb.append("# HELP market_operation_seconds Latency of sampled calls (1 in ").append(sampleMask + 1).append(")\n");
+        sb.append("# TYPE market_operation_seconds histogram\n");
+        for (Op op : OPS) {
+            LatencyHistogram h = latency(op);
+            long n = h.count();
+            for (double le : LE_SECONDS) {
+                sb.append("market_operation_seconds_bucket{op=\"").append(op.metricName).append("\",le=\"").append(le).append("\"} ")
+                  .append(Math.min(n, h.countAtOrBelow((long) (le * 1e9)))).append('\n');
+            }
+            sb.append("market_operation_seconds_bucket{op=\"").append(op.metricName).append("\",le=\"+Inf\"} ").append(n).append('\n');
+            sb.append("market_operation_seconds_sum{op=\"").append(op.metricName).append("\"} ").append(h.sumNanos() / 1e9).append('\n');
+            sb.append("market_operation_seconds_count{op=\"").append(op.metricName).append("\"} ").append(n).append('\n');
+        }
+        sampleGauges().forEach((name, v) -> sb.append("# TYPE market_").append(name).append(" gauge\nmarket_").append(name).append(' ').append(v).append('\n'));
+        sb.append("# TYPE market_cart_holds_expired_total counter\nmarket_cart_holds_expired_total ").append(holdsExpired()).append('\n');
+        sb.append("# TYPE market_stock_rejections_total counter\n");
+        for (int pid : productsWithStockRejections()) {
+            sb.append("market_stock_rejections_total{product=\"").append(pid).append("\"} ").append(stockRejections(pid)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package assignment2;
+
+import java.util.List;
+
+/** Typed inputs for each {@link MarketService} operation. */
+final class MarketRequests {
+    private MarketRequests() {}
+
+    record AddVendor(String name) {}
+
+    record AddProduct(int vendorId, String name, double price, int initialStock) {}
+
+    record PlaceOrder(int vendorId, List<OrderLine> lines) {}
+
+    /** Lines may come from any vendors; the hold lasts {@code ttlMillis}. */
+    record HoldCart(List<OrderLine> lines, long ttlMillis) {}
+
+    record RecordPayment(int orderId, double amount, String method) {}
+
+    record ScheduleDelivery(int orderId, String date) {}
+
+    record RequestReturn(int orderId, int productId, int quantity, boolean approveNow) {}
+
+    /** Words of {@code text} match as prefixes of name words; a {@code maxPrice} of 0 means no upper bound. */
+    record SearchProducts(String text, double minPrice, double maxPrice, boolean inStockOnly, int limit) {}
+}
+
+/** Outcome of a {@link MarketService} operation: either a value or a failure message. */
+final class MarketResult<T> {
+    private final T value;
+    private final String message;
+    private final boolean ok;
+
+    private MarketResult(boolean ok, T value, String message) { this.ok = ok; this.value = value; this.message = message; }
+
+    static <T> MarketResult<T> ok(T value) { return new MarketResult<>(true, value, null); }
+    static <T> MarketResult<T> ok(T value, String message) { return new MarketResult<>(true, value, message); }
+    static <T> MarketResult<T> fail(String message) { return new MarketResult<>(false, null, message); }
+
+    public boolean isOk() { return ok; }
+    public T getValue() { return value; }
+    /** Failure reason, or an optional note on success (e.g. a capped payment). */
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() { return ok ? "OK " + value + (message == null ? "" : " (" + message + ")") : "FAILED " + message; }
+}
+
+/** Result of recording a payment: the payment and where it left the order. */
+record PaymentReceipt(Payment payment, Order.Status orderStatus, long remainingCents) {}
+
+/** Result of creating (and possibly approving) a return. */
+record ReturnReceipt(ReturnRequest request, long refundCents) {}
+
+/** Result of a bulk approve or deny: the returns decided, why the others were not, and the total refunded. */
+record ReturnBatchReceipt(List<ReturnReceipt> decided, List<String> failures, long refundCents) {}
@@ -0,0 +1,1155 @@
+package assignment2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import assignment2.MarketMetrics.Op;
+
+/**
+ * Headless market operations. Owns the in-memory stores and ID generators; the
+ * console menu and the batch interpreter are both thin front ends over this class.
+ * No method here reads from stdin or writes to stdout.
+ * <p>
+ * When opened with a {@link MarketJournal} every mutation is journaled before it
+ * becomes visible, and {@link #checkpoint()} writes a snapshot so recovery only
+ * replays the journal tail.
+ */
+class MarketService implements AutoCloseable {
+    private static final int VENDOR_ID_BASE = 1000;
+    private static final int PRODUCT_ID_BASE = 2000;
+    private static final int ORDER_ID_BASE = 3000;
+    private static final int PAYMENT_ID_BASE = 4000;
+    private static final int DELIVERY_ID_BASE = 5000;
+    private static final int RETURN_ID_BASE = 6000;
+    private static final int HOLD_ID_BASE = 7000;
+    private static final int MAX_DELIVERY_LEAD_DAYS = 366;
+    static final String REFUND_METHOD = "REFUND";
+    private static final Order.Status[] ARCHIVED_STATUSES = {Order.Status.DELIVERED, Order.Status.CANCELLED};
+
+    // --- Storage (in-memory, safe for concurrent access; dense arrays keyed by ID - base) ---
+    private final DenseStore<Vendor> vendors = new DenseStore<>(VENDOR_ID_BASE);
+    private final DenseStore<Product> products = new DenseStore<>(PRODUCT_ID_BASE);
+    // Product name words -> product IDs, for type-ahead search
+    private final ProductSearch productSearch = new ProductSearch(products, vendors);
+    private final DenseStore<Order> orders = new DenseStore<>(ORDER_ID_BASE);
+    private final DenseStore<Payment> payments = new DenseStore<>(PAYMENT_ID_BASE);
+    private final DenseStore<Delivery> deliveries = new DenseStore<>(DELIVERY_ID_BASE);
+    private final DenseStore<ReturnRequest> returns = new DenseStore<>(RETURN_ID_BASE);
+
+    // ID generators; leased blocks in a shard of a ShardedMarket
+    private final IdSequence vendorIdGen;
+    private final IdSequence productIdGen;
+    private final IdSequence orderIdGen;
+    private final IdSequence paymentIdGen;
+    private final IdSequence deliveryIdGen;
+    private final IdSequence returnIdGen;
+
+    // Secondary index: order status -> order IDs (a vendor's catalog is the key set of its inventory)
+    private final OrderStatusIndex statusIndex = new OrderStatusIndex();
+    // External settlement reference -> payment ID; REF_CLAIMED while a batch is applying it
+    private final Map<String, Integer> paymentRefs = new ConcurrentHashMap<>();
+    private static final Integer REF_CLAIMED = -1;
+    // Every applied change is published here for asynchronous subscribers (analytics, alerts, metrics)
+    private final EventBus events = new EventBus();
+    private final OrderStatusListener orderListener = (o, from, to) -> {
+        statusIndex.onStatusChange(o, from, to);
+        if (events.hasSubscribers()) events.publish(new MarketEvent.OrderStatusChanged(o.getId(), o.getVendorId(), from, to));
+    };
+    private final StockListener stockListener = (v, pid, delta, level) -> {
+        if (events.hasSubscribers()) events.publish(new MarketEvent.StockChanged(v.getId(), pid, delta, level));
+    };
+    // Returns awaiting approval or denial
+    private final ReturnQueue returnQueue = new ReturnQueue();
+    // Per-vendor daily delivery slots and the stops booked on each day
+    private final DeliveryScheduler deliveryScheduler = new DeliveryScheduler();
+
+    // Durability: mutations hold the shared side, checkpoints the exclusive side
+    private final MarketJournal journal;
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    // Completed orders moved out of the stores above at checkpoints; null when not configured
+    private final OrderArchive archive;
+    private final long archiveAfterMillis;
+
+    private final OrderService orderService;
+    private final CartService cartService;
+    private final MarketMetrics metrics = new MarketMetrics();
+    private final SalesAnalytics analytics = new SalesAnalytics(VENDOR_ID_BASE, PRODUCT_ID_BASE, ZoneId.systemDefault());
+    private final StockMonitor stockMonitor = new StockMonitor(PRODUCT_ID_BASE, StockMonitor.DEFAULT_HALF_LIFE_MILLIS);
+
+    MarketService() {
+        this(null, null, 0, null, 0);
+        analytics.start(this, events);
+        stockMonitor.start(this, events);
+    }
+
+    private MarketService(MarketJournal journal, OrderArchive archive, long archiveAfterMillis) {
+        this(journal, archive, archiveAfterMillis, null, 0);
+    }
+
+    /** With {@code leases}, IDs come from blocks leased to {@code shard}; otherwise they count up from the bases. */
+    private MarketService(MarketJournal journal, OrderArchive archive, long archiveAfterMillis, IdLeases leases, int shard) {
+        this.journal = journal;
+        this.archive = archive;
+        this.archiveAfterMillis = archiveAfterMillis;
+        this.vendorIdGen = sequence(leases, IdLeases.VENDOR, shard);
+        this.productIdGen = sequence(leases, IdLeases.PRODUCT, shard);
+        this.orderIdGen = sequence(leases, IdLeases.ORDER, shard);
+        this.paymentIdGen = sequence(leases, IdLeases.PAYMENT, shard);
+        this.deliveryIdGen = sequence(leases, IdLeases.DELIVERY, shard);
+        this.returnIdGen = sequence(leases, IdLeases.RETURN, shard);
+        this.orderService = new OrderService(vendors, products, orders, orderIdGen, orderListener, journal, metrics, events);
+        this.cartService = new CartService(vendors, products, orderService, this::mutationGate, metrics, sequence(leases, IdLeases.HOLD, shard));
+        metrics.gauge("vendors", vendors::size);
+        metrics.gauge("products", products::size);
+        metrics.gauge("orders", orders::size);
+        if (archive != null) metrics.gauge("orders_archived", archive::size);
+        metrics.gauge("payments", payments::size);
+        metrics.gauge("deliveries", deliveries::size);
+        metrics.gauge("returns", returns::size);
+        metrics.gauge("returns_pending", returnQueue::size);
+        metrics.gauge("cart_holds_active", cartService::activeHolds);
+        metrics.gauge("cart_expiry_failures", cartService::expiryFailures);
+        metrics.gauge("stock_low", stockMonitor::lowCount);
+        for (Order.Status st : Order.Status.values()) {
+            metrics.gauge("orders_" + st.name().toLowerCase(), () -> countWithStatus(st));
+        }
+    }
+
+    /** An in-memory shard of a {@link ShardedMarket}, drawing its IDs from {@code leases}. */
+    static MarketService shard(IdLeases leases, int shard) {
+        MarketService market = new MarketService(null, null, 0, leases, shard);
+        market.analytics.start(market, market.events);
+        market.stockMonitor.start(market, market.events);
+        return market;
+    }
+
+    /** First ID of each kind, indexed by the {@link IdLeases} kinds. */
+    static int[] idBases() {
+        return new int[]{VENDOR_ID_BASE, PRODUCT_ID_BASE, ORDER_ID_BASE, PAYMENT_ID_BASE, DELIVERY_ID_BASE, RETURN_ID_BASE, HOLD_ID_BASE};
+    }
+
+    private static IdSequence sequence(IdLeases leases, int kind, int shard) {
+        return leases == null ? new IdSequence(idBases()[kind]) : new IdSequence(() -> leases.lease(kind, shard), leases.blockSize());
+    }
+
+    /** An in-memory market holding the state in a snapshot written by {@link #exportSnapshot} or a checkpoint. */
+    static MarketService load(Path snapshot) throws IOException {
+        MarketService market = new MarketService(null, null, 0);
+        MarketSnapshot.read(snapshot, market);
+        market.analytics.start(market, market.events);
+        market.stockMonitor.start(market, market.events);
+        return market;
+    }
+
+    /** Opens a journaled market in an empty directory, starting from an exported snapshot. */
+    static MarketService importInto(JournalConfig config, Path snapshot) throws IOException {
+        MarketJournal.seed(config.dir(), snapshot);
+        return open(config);
+    }
+
+    /**
+     * Opens a journaled market, recovering state from the latest snapshot plus the journal tail.
+     * The order archive in {@code dir/archive} is opened if archiving is configured or it already exists.
+     */
+    static MarketService open(JournalConfig config) throws IOException {
+        MarketJournal journal = new MarketJournal(config);
+        Path archiveDir = config.dir().resolve("archive");
+        OrderArchive archive = config.archiveAfterMillis() > 0 || Files.isDirectory(archiveDir)
+                ? OrderArchive.open(archiveDir, ORDER_ID_BASE, PAYMENT_ID_BASE, DELIVERY_ID_BASE) : null;
+        MarketService market = new MarketService(journal, archive, config.archiveAfterMillis());
+        try {
+            journal.recover(market);
+        } catch (IOException | RuntimeException e) {
+            if (archive != null) archive.close();
+            throw e;
+        }
+        market.analytics.start(market, market.events);
+        market.stockMonitor.start(market, market.events);
+        journal.start(market);
+        return market;
+    }
+
+    // --- Operations ---
+    public MarketResult<Vendor> addVendor(MarketRequests.AddVendor req) {
+        long t0 = metrics.start();
+        MarketResult<Vendor> r = doAddVendor(req);
+        metrics.record(Op.ADD_VENDOR, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<Vendor> doAddVendor(MarketRequests.AddVendor req) {
+        if (req.name() == null || req.name().isBlank()) return MarketResult.fail("Vendor name cannot be empty.");
+        if (!MarketJournal.fits(req.name())) return MarketResult.fail("Vendor name is too long.");
+        Lock gate = mutationGate();
+        try {
+            Vendor v = new Vendor(vendorIdGen.next(), req.name().trim());
+            if (journal != null) journal.vendorAdded(v);
+            restoreVendor(v);
+            return MarketResult.ok(v);
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    public MarketResult<Product> addProduct(MarketRequests.AddProduct req) {
+        long t0 = metrics.start();
+        MarketResult<Product> r = doAddProduct(req);
+        metrics.record(Op.ADD_PRODUCT, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<Product> doAddProduct(MarketRequests.AddProduct req) {
+        Vendor vendor = vendors.get(req.vendorId());
+        if (vendor == null) return MarketResult.fail("Invalid vendor ID.");
+        if (req.name() == null || req.name().isBlank()) return MarketResult.fail("Product name cannot be empty.");
+        if (!MarketJournal.fits(req.name())) return MarketResult.fail("Product name is too long.");
+        if (!(req.price() > 0)) return MarketResult.fail("Unit price must be positive.");
+        if (req.initialStock() < 0) return MarketResult.fail("Initial stock cannot be negative.");
+        Lock gate = mutationGate();
+        try {
+            Product p = new Product(productIdGen.next(), req.name().trim(), req.price(), req.vendorId());
+            if (journal != null) journal.productAdded(p, req.initialStock());
+            vendor.addStock(p.getId(), req.initialStock());
+            restoreProduct(p);
+            return MarketResult.ok(p);
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    public MarketResult<Order> placeOrder(MarketRequests.PlaceOrder req) {
+        long t0 = metrics.start();
+        MarketResult<Order> r = doPlaceOrder(req);
+        metrics.record(Op.PLACE_ORDER, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<Order> doPlaceOrder(MarketRequests.PlaceOrder req) {
+        Lock gate = mutationGate();
+        try {
+            return MarketResult.ok(orderService.placeOrder(req.vendorId(), req.lines()));
+        } catch (IllegalArgumentException e) {
+            return MarketResult.fail(e.getMessage());
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /** Reserves stock for a cart that may span vendors; all lines or none. */
+    public MarketResult<CartService.CartHold> holdCart(MarketRequests.HoldCart req) {
+        long t0 = metrics.start();
+        MarketResult<CartService.CartHold> r = doHoldCart(req);
+        metrics.record(Op.HOLD_CART, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<CartService.CartHold> doHoldCart(MarketRequests.HoldCart req) {
+        try {
+            return MarketResult.ok(cartService.hold(req.lines(), req.ttlMillis()));
+        } catch (IllegalArgumentException e) {
+            return MarketResult.fail(e.getMessage());
+        }
+    }
+
+    /** Places one CONFIRMED order per vendor in an active hold, from the stock it holds. */
+    public MarketResult<List<Order>> checkoutCart(int holdId) {
+        long t0 = metrics.start();
+        MarketResult<List<Order>> r = doCheckoutCart(holdId);
+        metrics.record(Op.CHECKOUT_CART, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<List<Order>> doCheckoutCart(int holdId) {
+        try {
+            return MarketResult.ok(cartService.checkout(holdId));
+        } catch (IllegalArgumentException e) {
+            return MarketResult.fail(e.getMessage());
+        }
+    }
+
+    /** Gives an active hold's stock back before its TTL runs out. */
+    public MarketResult<CartService.CartHold> releaseCart(int holdId) {
+        long t0 = metrics.start();
+        MarketResult<CartService.CartHold> r = doReleaseCart(holdId);
+        metrics.record(Op.RELEASE_CART, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<CartService.CartHold> doReleaseCart(int holdId) {
+        try {
+            return MarketResult.ok(cartService.release(holdId));
+        } catch (IllegalArgumentException e) {
+            return MarketResult.fail(e.getMessage());
+        }
+    }
+
+    public MarketResult<PaymentReceipt> recordPayment(MarketRequests.RecordPayment req) {
+        long t0 = metrics.start();
+        MarketResult<PaymentReceipt> r = doRecordPayment(req);
+        metrics.record(Op.RECORD_PAYMENT, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<PaymentReceipt> doRecordPayment(MarketRequests.RecordPayment req) {
+        if (!(Money.toCents(req.amount()) > 0)) return MarketResult.fail("Payment amount must be positive.");
+        if (req.method() == null || req.method().isBlank()) return MarketResult.fail("Payment method is required.");
+        if (!MarketJournal.fits(req.method())) return MarketResult.fail("Payment method is too long.");
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(req.orderId());
+            if (order == null) return MarketResult.fail("Order not found.");
+            synchronized (order) {
+                if (order.getStatus() == Order.Status.DELIVERED) return MarketResult.fail("Order already delivered; no payment required.");
+                long amountDue = order.getAmountDueCents();
+                if (amountDue <= 0) return MarketResult.fail("Order already fully paid.");
+                long paid = Money.toCents(req.amount());
+                String note = null;
+                if (paid > amountDue) {
+                    note = "Payment exceeds amount due; recorded up to due amount, return change to customer.";
+                    paid = amountDue;
+                }
+                Payment pay = new Payment(paymentIdGen.next(), order.getId(), paid, req.method().trim());
+                Order.Status status = paid == amountDue ? Order.Status.PAID : Order.Status.PAYMENT_PENDING;
+                if (journal != null) journal.paymentRecorded(pay, status);
+                applyPayment(order, pay, status);
+                return MarketResult.ok(new PaymentReceipt(pay, status, order.getAmountDueCents()), note);
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Applies one order's share of a settlement batch (see {@link PaymentPipeline})
+     * under a single lock: references already accepted are reported as duplicates,
+     * each payment is capped at the remaining amount due, and the order's status is
+     * set once after the whole group.
+     */
+    void settlePayments(int orderId, List<PaymentInstruction> group, ReconciliationReport report) {
+        long now = System.currentTimeMillis();
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(orderId);
+            if (order == null) {
+                for (PaymentInstruction p : group) report.reject(p.externalRef(), orderId, "Order not found.");
+                return;
+            }
+            synchronized (order) {
+                long due = order.getAmountDueCents();
+                boolean applied = false;
+                try {
+                    for (PaymentInstruction p : group) {
+                        if (paymentRefs.putIfAbsent(p.externalRef(), REF_CLAIMED) != null) {
+                            report.duplicate(p);
+                            continue;
+                        }
+                        String reason = order.getStatus() == Order.Status.DELIVERED ? "Order already delivered; no payment required."
+                                : due <= 0 ? "Order already fully paid." : null;
+                        if (reason != null) {
+                            paymentRefs.remove(p.externalRef());
+                            report.reject(p.externalRef(), orderId, reason);
+                            continue;
+                        }
+                        long paid = Math.min(p.amountCents(), due);
+                        Payment pay = new Payment(paymentIdGen.next(), orderId, paid, p.method().trim(), now, p.externalRef());
+                        try {
+                            if (journal != null) journal.paymentRecorded(pay, due == paid ? Order.Status.PAID : Order.Status.PAYMENT_PENDING);
+                        } catch (RuntimeException e) {
+                            // Not applied, so the reference stays free for a retry
+                            paymentRefs.remove(p.externalRef());
+                            throw e;
+                        }
+                        if (paid < p.amountCents()) report.capped(p.amountCents() - paid);
+                        due -= paid;
+                        restorePayment(pay);
+                        order.addPayment(pay);
+                        publishPayment(order, pay);
+                        report.applied(paid);
+                        applied = true;
+                    }
+                } finally {
+                    // Also after a failure part-way, so the status matches the payments already journaled
+                    if (applied) {
+                        Order.Status status = due == 0 ? Order.Status.PAID : Order.Status.PAYMENT_PENDING;
+                        order.setStatus(status);
+                        report.orderSettled(status);
+                    }
+                }
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    public MarketResult<Delivery> scheduleDelivery(MarketRequests.ScheduleDelivery req) {
+        long t0 = metrics.start();
+        MarketResult<Delivery> r = doScheduleDelivery(req);
+        metrics.record(Op.SCHEDULE_DELIVERY, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<Delivery> doScheduleDelivery(MarketRequests.ScheduleDelivery req) {
+        if (getOrder(req.orderId()) == null) return MarketResult.fail("Order not found.");
+        if (req.date() == null || req.date().isBlank()) return MarketResult.fail("Delivery date is required.");
+        LocalDate date;
+        try {
+            date = DeliveryScheduler.parseDate(req.date());
+        } catch (IllegalArgumentException e) {
+            return MarketResult.fail(e.getMessage());
+        }
+        if (date.isBefore(LocalDate.now())) return MarketResult.fail("Delivery date " + date + " is in the past.");
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(req.orderId());
+            synchronized (order) {
+                if (order.getStatus() != Order.Status.PAID) return MarketResult.fail("Payments must be settled before scheduling delivery.");
+                int id = deliveryScheduler.tryBook(order.getVendorId(), date, deliveryIdGen::next);
+                if (id < 0) {
+                    return MarketResult.fail("No delivery slots left for vendor " + order.getVendorId() + " on " + date
+                            + " (capacity " + deliveryScheduler.getDailyCapacity(order.getVendorId()) + " per day).");
+                }
+                return MarketResult.ok(commitDelivery(order, new Delivery(id, order.getId(), date)));
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Books every PAID order, oldest first, on its vendor's earliest day on or after
+     * {@code from} (never before today) that still has a free slot.
+     */
+    public List<Delivery> autoScheduleDeliveries(LocalDate from) {
+        long t0 = metrics.start();
+        List<Delivery> r = doAutoScheduleDeliveries(from);
+        metrics.record(Op.AUTO_SCHEDULE_DELIVERIES, t0, true);
+        return r;
+    }
+
+    private List<Delivery> doAutoScheduleDeliveries(LocalDate from) {
+        LocalDate today = LocalDate.now();
+        LocalDate start = from.isBefore(today) ? today : from;
+        if (start.isAfter(today.plusDays(MAX_DELIVERY_LEAD_DAYS))) {
+            throw new IllegalArgumentException("Deliveries can be booked at most " + MAX_DELIVERY_LEAD_DAYS + " days ahead.");
+        }
+        int[] ids = statusIndex.idsWithStatus(Order.Status.PAID).stream().mapToInt(Integer::intValue).sorted().toArray();
+        List<Delivery> scheduled = new ArrayList<>(ids.length);
+        for (int oid : ids) {
+            Lock gate = mutationGate();
+            try {
+                Order order = hotOrder(oid);
+                if (order == null) continue;
+                synchronized (order) {
+                    if (order.getStatus() != Order.Status.PAID) continue; // scheduled by someone else meanwhile
+                    int id = deliveryIdGen.next();
+                    LocalDate day = deliveryScheduler.bookEarliest(order.getVendorId(), start, id);
+                    scheduled.add(commitDelivery(order, new Delivery(id, order.getId(), day)));
+                }
+            } finally {
+                gate.unlock();
+            }
+        }
+        return scheduled;
+    }
+
+    /** Journals and applies a delivery whose slot is already booked; releases the slot if journaling fails. */
+    private Delivery commitDelivery(Order order, Delivery d) {
+        try {
+            if (journal != null) journal.deliveryScheduled(d);
+        } catch (RuntimeException e) {
+            deliveryScheduler.cancel(order.getVendorId(), d.getDate(), d.getId());
+            throw e;
+        }
+        deliveries.put(d.getId(), d);
+        bump(deliveryIdGen, d.getId());
+        order.setStatus(Order.Status.SCHEDULED_FOR_DELIVERY);
+        return d;
+    }
+
+    /**
+     * Sends out every SCHEDULED delivery booked on {@code day}: each vendor's stops
+     * become one route and move to OUT_FOR_DELIVERY.
+     */
+    public List<DeliveryRoute> dispatchDeliveries(LocalDate day) {
+        long t0 = metrics.start();
+        List<DeliveryRoute> r = doDispatchDeliveries(day);
+        metrics.record(Op.DISPATCH_DELIVERIES, t0, true);
+        return r;
+    }
+
+    private List<DeliveryRoute> doDispatchDeliveries(LocalDate day) {
+        List<DeliveryRoute> routes = new ArrayList<>();
+        deliveryScheduler.stopsOn(day).forEach((vendorId, stopIds) -> {
+            List<Delivery> stops = new ArrayList<>(stopIds.length);
+            for (int id : stopIds) {
+                Delivery d = deliveries.get(id);
+                if (d != null && advanceDelivery(d, Delivery.Status.SCHEDULED, Delivery.Status.OUT_FOR_DELIVERY)) stops.add(d);
+            }
+            if (!stops.isEmpty()) routes.add(new DeliveryRoute(vendorId, day, stops));
+        });
+        return routes;
+    }
+
+    /** Marks a dispatched delivery DELIVERED, and its order with it. */
+    public MarketResult<Delivery> completeDelivery(int deliveryId) {
+        long t0 = metrics.start();
+        MarketResult<Delivery> r = doCompleteDelivery(deliveryId);
+        metrics.record(Op.COMPLETE_DELIVERY, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<Delivery> doCompleteDelivery(int deliveryId) {
+        Delivery d = getDelivery(deliveryId);
+        if (d == null) return MarketResult.fail("Delivery not found.");
+        if (!advanceDelivery(d, Delivery.Status.OUT_FOR_DELIVERY, Delivery.Status.DELIVERED)) {
+            return MarketResult.fail("Delivery is " + d.getStatus() + "; only deliveries out for delivery can be completed.");
+        }
+        return MarketResult.ok(d);
+    }
+
+    private boolean advanceDelivery(Delivery d, Delivery.Status from, Delivery.Status to) {
+        if (d.getStatus() != from) return false; // also covers archived (DELIVERED) copies
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(d.getOrderId());
+            synchronized (order) {
+                if (d.getStatus() != from) return false;
+                if (journal != null) journal.deliveryStatusChanged(d, to);
+                applyDeliveryStatus(order, d, to);
+                return true;
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /** Sets the stock level at or below which a product raises a low-stock alert; -1 reverts to the default. */
+    public MarketResult<Integer> setStockThreshold(int productId, int units) {
+        Product p = products.get(productId);
+        Vendor v = p == null ? null : vendors.get(p.getVendorId());
+        if (v == null) return MarketResult.fail("Product not found.");
+        if (units < -1) return MarketResult.fail("Threshold cannot be negative.");
+        stockMonitor.setThreshold(v.getId(), productId, v.getStockForProduct(productId), units);
+        return MarketResult.ok(stockMonitor.threshold(productId));
+    }
+
+    /** The vendor's products due for reordering, soonest stock-out first; empty for an unknown vendor. */
+    public List<StockMonitor.Replenishment> replenishment(int vendorId) {
+        Vendor v = vendors.get(vendorId);
+        return v == null ? Collections.emptyList() : stockMonitor.replenishment(v, System.currentTimeMillis());
+    }
+
+    public MarketResult<Integer> setDeliveryCapacity(int vendorId, int perDay) {
+        if (vendors.get(vendorId) == null) return MarketResult.fail("Invalid vendor ID.");
+        if (perDay <= 0) return MarketResult.fail("Daily capacity must be positive.");
+        Lock gate = mutationGate();
+        try {
+            if (journal != null) journal.deliveryCapacitySet(vendorId, perDay);
+            restoreDeliveryCapacity(vendorId, perDay);
+        } finally {
+            gate.unlock();
+        }
+        return MarketResult.ok(perDay);
+    }
+
+    public MarketResult<ReturnReceipt> requestReturn(MarketRequests.RequestReturn req) {
+        long t0 = metrics.start();
+        MarketResult<ReturnReceipt> r = doRequestReturn(req);
+        metrics.record(Op.REQUEST_RETURN, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<ReturnReceipt> doRequestReturn(MarketRequests.RequestReturn req) {
+        ReturnRequest rr;
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(req.orderId());
+            if (order == null) return MarketResult.fail("Order not found.");
+            synchronized (order) {
+                Optional<OrderItem> opt = order.getItems().stream().filter(i -> i.getProductId() == req.productId()).findFirst();
+                if (opt.isEmpty()) return MarketResult.fail("Product not in order.");
+                if (req.quantity() <= 0) return MarketResult.fail("Return quantity must be positive.");
+                if (req.quantity() > opt.get().getQuantity()) return MarketResult.fail("Cannot return more than purchased.");
+                rr = new ReturnRequest(returnIdGen.next(), order.getId(), req.productId(), req.quantity());
+                if (journal != null) journal.returnRequested(rr);
+                restoreReturn(rr);
+            }
+        } finally {
+            gate.unlock();
+        }
+        if (!req.approveNow()) return MarketResult.ok(new ReturnReceipt(rr, 0L));
+        return approveReturn(rr.getId());
+    }
+
+    public MarketResult<ReturnReceipt> approveReturn(int returnId) {
+        long t0 = metrics.start();
+        MarketResult<ReturnReceipt> r = doApproveReturn(returnId);
+        metrics.record(Op.APPROVE_RETURN, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<ReturnReceipt> doApproveReturn(int returnId) {
+        ReturnRequest rr = returns.get(returnId);
+        if (rr == null) return MarketResult.fail("Return not found.");
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(rr.getOrderId());
+            if (order == null) return MarketResult.fail("Order missing; cannot approve.");
+            long refund;
+            synchronized (order) {
+                String error = checkDecidable(rr, order, true);
+                if (error != null) return MarketResult.fail(error);
+                refund = approveLocked(rr, order, System.currentTimeMillis());
+            }
+            restock(rr.getProductId(), rr.getQuantity());
+            return MarketResult.ok(new ReturnReceipt(rr, refund));
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    public MarketResult<ReturnRequest> denyReturn(int returnId) {
+        long t0 = metrics.start();
+        MarketResult<ReturnRequest> r = doDenyReturn(returnId);
+        metrics.record(Op.DENY_RETURN, t0, r.isOk());
+        return r;
+    }
+
+    private MarketResult<ReturnRequest> doDenyReturn(int returnId) {
+        ReturnRequest rr = returns.get(returnId);
+        if (rr == null) return MarketResult.fail("Return not found.");
+        Lock gate = mutationGate();
+        try {
+            Order order = hotOrder(rr.getOrderId());
+            if (order == null) return MarketResult.fail("Order missing; cannot deny.");
+            synchronized (order) {
+                String error = checkDecidable(rr, order, false);
+                if (error != null) return MarketResult.fail(error);
+                if (journal != null) journal.returnDenied(rr);
+                applyReturnDenial(rr);
+                return MarketResult.ok(rr);
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /** Approves each listed return that is still pending; see {@link #decideReturns}. */
+    public ReturnBatchReceipt approveReturns(int[] returnIds) {
+        long t0 = metrics.start();
+        ReturnBatchReceipt r = decideReturns(returnIds, true);
+        metrics.record(Op.APPROVE_RETURNS, t0, r.failures().isEmpty());
+        return r;
+    }
+
+    /** Denies each listed return that is still pending. */
+    public ReturnBatchReceipt denyReturns(int[] returnIds) {
+        long t0 = metrics.start();
+        ReturnBatchReceipt r = decideReturns(returnIds, false);
+        metrics.record(Op.DENY_RETURNS, t0, r.failures().isEmpty());
+        return r;
+    }
+
+    /**
+     * Decides many returns at once. Returns are grouped by order so each order is
+     * locked once, and approved units are restocked with one update per product at
+     * the end of the batch rather than one per return. Returns that cannot be decided
+     * (unknown, no longer pending, more than is left on the order) are reported in
+     * the receipt's failures; the rest still go through.
+     */
+    private ReturnBatchReceipt decideReturns(int[] returnIds, boolean approve) {
+        int[] ids = returnIds.clone();
+        Arrays.sort(ids);
+        List<String> failures = new ArrayList<>();
+        Map<Integer, List<ReturnRequest>> byOrder = new LinkedHashMap<>();
+        for (int id : ids) {
+            ReturnRequest rr = returns.get(id);
+            if (rr == null) failures.add("Return " + id + ": not found.");
+            else byOrder.computeIfAbsent(rr.getOrderId(), k -> new ArrayList<>()).add(rr);
+        }
+        List<ReturnReceipt> decided = new ArrayList<>(ids.length);
+        Map<Integer, Integer> restock = new HashMap<>(); // productId -> units to put back
+        long refunded = 0;
+        long now = System.currentTimeMillis();
+        Lock gate = mutationGate();
+        try {
+            for (Map.Entry<Integer, List<ReturnRequest>> e : byOrder.entrySet()) {
+                Order order = hotOrder(e.getKey());
+                if (order == null) {
+                    for (ReturnRequest rr : e.getValue()) failures.add("Return " + rr.getId() + ": order missing.");
+                    continue;
+                }
+                synchronized (order) {
+                    for (ReturnRequest rr : e.getValue()) {
+                        String error = checkDecidable(rr, order, approve);
+                        if (error != null) {
+                            failures.add("Return " + rr.getId() + ": " + error);
+                            continue;
+                        }
+                        long refund = 0;
+                        if (approve) {
+                            refund = approveLocked(rr, order, now);
+                            restock.merge(rr.getProductId(), rr.getQuantity(), Integer::sum);
+                            refunded += refund;
+                        } else {
+                            if (journal != null) journal.returnDenied(rr);
+                            applyReturnDenial(rr);
+                        }
+                        decided.add(new ReturnReceipt(rr, refund));
+                    }
+                }
+            }
+        } finally {
+            // Also on a journal failure part-way: every approval applied so far gets its stock back
+            restock.forEach(this::restock);
+            gate.unlock();
+        }
+        return new ReturnBatchReceipt(decided, failures, refunded);
+    }
+
+    // Caller holds the order's lock
+    private String checkDecidable(ReturnRequest rr, Order order, boolean approve) {
+        if (rr.getStatus() != ReturnRequest.Status.PENDING_APPROVAL) return "Return not pending.";
+        if (!approve) return null;
+        Product p = products.get(rr.getProductId());
+        if (p == null) return "Product missing; cannot approve.";
+        if (vendors.get(p.getVendorId()) == null) return "Vendor missing; cannot approve.";
+        OrderItem item = order.findItem(rr.getProductId());
+        // Several pending returns for one line may together exceed what is left of it
+        if (item == null || rr.getQuantity() > item.getQuantity()) return "Cannot return more than purchased.";
+        return null;
+    }
+
+    // Caller holds the order's lock and has checked the return; restocking is left to the caller
+    private long approveLocked(ReturnRequest rr, Order order, long now) {
+        long refund = refundFor(rr, order);
+        Payment pay = refund == 0 ? null : new Payment(paymentIdGen.next(), order.getId(), -refund, REFUND_METHOD, now, null);
+        if (journal != null) journal.returnApproved(rr, pay);
+        applyReturnApproval(rr, order, pay);
+        return refund;
+    }
+
+    /**
+     * Money to hand back for a return: the value of the returned units, but only as
+     * much of it as the customer has paid beyond the order's reduced total. Returning
+     * goods from an unpaid order just lowers what is due.
+     */
+    private static long refundFor(ReturnRequest rr, Order order) {
+        long value = rr.getQuantity() * order.findItem(rr.getProductId()).getUnitPriceCents();
+        long overpaid = order.getPaidCents() - (order.getTotalCents() - value);
+        return Math.max(0L, Math.min(value, overpaid));
+    }
+
+    /**
+     * Writes the whole market, archived orders included, to {@code file} for
+     * {@link #load} or {@link #importInto}. A journaled market is paused for the
+     * write, as for a checkpoint; an in-memory one keeps taking requests and the
+     * snapshot is a fuzzy cut that is still referentially complete.
+     */
+    public void exportSnapshot(Path file) throws IOException {
+        checkpointLock.writeLock().lock();
+        try {
+            MarketSnapshot.export(this, file);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the whole market and drops the journal segments it covers.
+     * Mutations are paused while the snapshot is written. With archiving configured,
+     * completed orders old enough are first moved to the archive, which is forced to
+     * disk before the snapshot that no longer holds them.
+     */
+    public void checkpoint() throws IOException {
+        if (journal == null) throw new IllegalStateException("Market is not journaled.");
+        checkpointLock.writeLock().lock();
+        try {
+            if (archive != null && archiveAfterMillis > 0) archiveCompleted(System.currentTimeMillis() - archiveAfterMillis);
+            journal.checkpoint(this);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves DELIVERED and CANCELLED orders placed before {@code placedBefore}, with
+     * their payments and delivery, from the stores to the archive; returns how many.
+     * Orders with more items or payments than a record can count stay in memory.
+     * Caller holds the checkpoint lock's exclusive side.
+     */
+    private int archiveCompleted(long placedBefore) throws IOException {
+        Map<Integer, Delivery> delivered = new HashMap<>(); // orderId -> its delivery
+        for (Delivery d : deliveries.values()) if (d.getStatus() == Delivery.Status.DELIVERED) delivered.put(d.getOrderId(), d);
+        int moved = 0;
+        for (Order.Status st : ARCHIVED_STATUSES) {
+            for (int oid : statusIndex.idsWithStatus(st).stream().mapToInt(Integer::intValue).sorted().toArray()) {
+                Order o = orders.get(oid);
+                if (o == null || o.getPlacedAtMillis() >= placedBefore || !OrderArchive.fits(o)) continue;
+                Delivery d = delivered.get(oid);
+                archive.append(o, d);
+                // The archived copy is readable before the in-memory one goes
+                statusIndex.remove(o);
+                o.resumeStatusListener(null);
+                orders.remove(oid);
+                for (Payment p : o.getPaymentHistory()) payments.remove(p.getId());
+                if (d != null) deliveries.remove(d.getId());
+                moved++;
+            }
+        }
+        if (moved > 0) archive.force();
+        return moved;
+    }
+
+    /**
+     * The stored order to mutate: if it was archived, it is loaded back into memory
+     * with its payments and delivery first. Null if there is no such order. Callers
+     * hold the mutation gate (or are recovering), so a checkpoint cannot archive it again meanwhile.
+     */
+    Order hotOrder(int id) {
+        Order o = orders.get(id);
+        if (o != null || archive == null) return o;
+        synchronized (archive) {
+            o = orders.get(id);
+            if (o != null) return o;
+            OrderArchive.Archived a = archive.thaw(id);
+            if (a == null) return null;
+            o = a.order();
+            for (Payment p : o.getPaymentHistory()) restorePayment(p);
+            if (a.delivery() != null) deliveries.put(a.delivery().getId(), a.delivery());
+            // Indexed under its current status without republishing a transition
+            statusIndex.onStatusChange(o, null, o.getStatus());
+            o.resumeStatusListener(orderListener);
+            orders.put(id, o);
+            return o;
+        }
+    }
+
+    /** Stops hold expiry, drains event subscribers, and flushes and closes the journal and archive, if any. */
+    @Override
+    public void close() throws IOException {
+        cartService.close();
+        events.close();
+        try (archive) {
+            if (journal != null) journal.close();
+        }
+    }
+
+    private Lock mutationGate() {
+        Lock gate = journal == null ? NO_GATE : checkpointLock.readLock();
+        gate.lock();
+        return gate;
+    }
+
+    // --- State application, shared by live operations and journal/snapshot recovery ---
+    void restoreVendor(Vendor v) {
+        v.setStockListener(stockListener);
+        vendors.put(v.getId(), v);
+        bump(vendorIdGen, v.getId());
+    }
+
+    void restoreProduct(Product p) {
+        products.put(p.getId(), p);
+        productSearch.add(p);
+        bump(productIdGen, p.getId());
+    }
+
+    /** Stores an order as-is (status, items and refunds already set); payments are restored separately. */
+    void restoreOrder(Order o) {
+        orders.put(o.getId(), o);
+        o.setStatusListener(orderListener);
+        bump(orderIdGen, o.getId());
+        // A snapshot copy supersedes one archived by a checkpoint that did not finish
+        if (archive != null) archive.thaw(o.getId());
+    }
+
+    void restorePayment(Payment pay) {
+        payments.put(pay.getId(), pay);
+        if (pay.getReference() != null) paymentRefs.put(pay.getReference(), pay.getId());
+        bump(paymentIdGen, pay.getId());
+    }
+
+    void restoreDelivery(Delivery d) {
+        deliveries.put(d.getId(), d);
+        deliveryScheduler.restore(hotOrder(d.getOrderId()).getVendorId(), d.getDate(), d.getId());
+        bump(deliveryIdGen, d.getId());
+    }
+
+    void restoreReturn(ReturnRequest rr) {
+        returns.put(rr.getId(), rr);
+        if (rr.getStatus() == ReturnRequest.Status.PENDING_APPROVAL) returnQueue.add(rr.getId());
+        bump(returnIdGen, rr.getId());
+    }
+
+    void restoreDeliveryCapacity(int vendorId, int perDay) {
+        deliveryScheduler.setDailyCapacity(vendorId, perDay);
+    }
+
+    void applyPayment(Order order, Payment pay, Order.Status status) {
+        restorePayment(pay);
+        order.addPayment(pay);
+        publishPayment(order, pay);
+        order.setStatus(status);
+    }
+
+    void applyDelivery(Order order, Delivery d) {
+        restoreDelivery(d);
+        order.setStatus(Order.Status.SCHEDULED_FOR_DELIVERY);
+    }
+
+    void applyDeliveryStatus(Order order, Delivery d, Delivery.Status status) {
+        d.setStatus(status);
+        if (status == Delivery.Status.DELIVERED) order.setStatus(Order.Status.DELIVERED);
+    }
+
+    /**
+     * Marks the return approved, takes the units off the order and books the refund
+     * (null when nothing is refunded) as a negative payment. Stock is put back
+     * separately with {@link #restock}.
+     */
+    void applyReturnApproval(ReturnRequest rr, Order order, Payment refund) {
+        rr.setStatus(ReturnRequest.Status.APPROVED);
+        returnQueue.remove(rr.getId());
+        long totalBefore = order.getTotalCents();
+        order.decreasePurchasedQuantityForProduct(rr.getProductId(), rr.getQuantity());
+        if (refund != null) {
+            restorePayment(refund);
+            order.addPayment(refund);
+            order.addRefund(-refund.getAmountCents());
+            publishPayment(order, refund);
+        }
+        if (events.hasSubscribers()) {
+            events.publish(new MarketEvent.ReturnDecided(rr.getId(), order.getId(), order.getVendorId(), rr.getProductId(), rr.getQuantity(),
+                    true, totalBefore - order.getTotalCents(), refund == null ? 0L : -refund.getAmountCents(), System.currentTimeMillis()));
+        }
+        // A smaller total may settle a part-paid order
+        if (order.getStatus() == Order.Status.PAYMENT_PENDING && order.getAmountDueCents() == 0) order.setStatus(Order.Status.PAID);
+    }
+
+    void applyReturnDenial(ReturnRequest rr) {
+        rr.setStatus(ReturnRequest.Status.DENIED);
+        returnQueue.remove(rr.getId());
+        if (events.hasSubscribers()) {
+            Order order = getOrder(rr.getOrderId());
+            events.publish(new MarketEvent.ReturnDecided(rr.getId(), rr.getOrderId(), order == null ? 0 : order.getVendorId(),
+                    rr.getProductId(), rr.getQuantity(), false, 0L, 0L, System.currentTimeMillis()));
+        }
+    }
+
+    private void publishPayment(Order order, Payment p) {
+        if (events.hasSubscribers()) {
+            events.publish(new MarketEvent.PaymentRecorded(p.getId(), p.getOrderId(), order.getVendorId(), p.getAmountCents(),
+                    p.getMethod(), p.getTimestampMillis()));
+        }
+    }
+
+    void restock(int productId, int qty) {
+        Product p = products.get(productId);
+        Vendor v = p == null ? null : vendors.get(p.getVendorId());
+        if (v != null) v.increaseStock(productId, qty);
+    }
+
+    /** Next IDs each generator will hand out: vendor, product, order, payment, delivery, return. */
+    int[] idPositions() {
+        return new int[]{vendorIdGen.position(), productIdGen.position(), orderIdGen.position(),
+                paymentIdGen.position(), deliveryIdGen.position(), returnIdGen.position()};
+    }
+
+    void restoreIdPositions(int[] next) {
+        bump(vendorIdGen, next[0] - 1);
+        bump(productIdGen, next[1] - 1);
+        bump(orderIdGen, next[2] - 1);
+        bump(paymentIdGen, next[3] - 1);
+        bump(deliveryIdGen, next[4] - 1);
+        bump(returnIdGen, next[5] - 1);
+    }
+
+    private static void bump(IdSequence gen, int usedId) { gen.advancePast(usedId); }
+
+    // --- Queries ---
+    // Orders, payments and deliveries fall back to the archive; archived ones come back as detached copies
+    public Vendor getVendor(int id) { return vendors.get(id); }
+    public Product getProduct(int id) { return products.get(id); }
+    public Order getOrder(int id) {
+        Order o = orders.get(id);
+        return o != null || archive == null ? o : archive.order(id);
+    }
+    public Payment getPayment(int id) {
+        Payment p = payments.get(id);
+        return p != null || archive == null ? p : archive.payment(id);
+    }
+    public Delivery getDelivery(int id) {
+        Delivery d = deliveries.get(id);
+        return d != null || archive == null ? d : archive.delivery(id);
+    }
+    public ReturnRequest getReturn(int id) { return returns.get(id); }
+
+    public Collection<Vendor> vendors() { return vendors.values(); }
+    public Collection<Product> products() { return products.values(); }
+    public Collection<Order> orders() { return archive == null ? orders.values() : archive.withOrders(orders); }
+    public Collection<Payment> payments() { return archive == null ? payments.values() : archive.withPayments(payments); }
+    public Collection<Delivery> deliveries() { return archive == null ? deliveries.values() : archive.withDeliveries(deliveries); }
+    public Collection<ReturnRequest> returns() { return returns.values(); }
+
+    // In memory only: what a snapshot holds
+    Collection<Order> hotOrders() { return orders.values(); }
+    Collection<Payment> hotPayments() { return payments.values(); }
+    Collection<Delivery> hotDeliveries() { return deliveries.values(); }
+
+    /** Orders currently in the archive (not loaded back into memory); 0 without one. */
+    public int archivedOrderCount() { return archive == null ? 0 : archive.size(); }
+
+    public List<Product> productsForVendor(int vendorId) {
+        long t0 = metrics.start();
+        List<Product> r = doProductsForVendor(vendorId);
+        metrics.record(Op.LIST_PRODUCTS_FOR_VENDOR, t0, true);
+        return r;
+    }
+
+    private List<Product> doProductsForVendor(int vendorId) {
+        Vendor v = vendors.get(vendorId);
+        if (v == null) return Collections.emptyList();
+        int[] ids = v.getProductIds();
+        List<Product> list = new ArrayList<>(ids.length);
+        for (int pid : ids) {
+            Product p = products.get(pid);
+            if (p != null) list.add(p);
+        }
+        return list;
+    }
+
+    /** Products of any vendor whose name matches the search text, best word matches first; see {@link ProductSearch}. */
+    public List<Product> searchProducts(MarketRequests.SearchProducts req) {
+        long t0 = metrics.start();
+        List<Product> r = doSearchProducts(req);
+        metrics.record(Op.SEARCH_PRODUCTS, t0, true);
+        return r;
+    }
+
+    private List<Product> doSearchProducts(MarketRequests.SearchProducts req) {
+        long min = req.minPrice() > 0 ? Money.toCents(req.minPrice()) : 0;
+        long max = req.maxPrice() > 0 ? Money.toCents(req.maxPrice()) : Long.MAX_VALUE;
+        int limit = Math.min(req.limit(), ProductSearch.MAX_LIMIT);
+        return productSearch.search(req.text(), min, max, req.inStockOnly(), limit);
+    }
+
+    public List<Order> ordersWithStatus(Order.Status... statuses) {
+        long t0 = metrics.start();
+        List<Order> r = doOrdersWithStatus(statuses);
+        metrics.record(Op.LIST_ORDERS_BY_STATUS, t0, true);
+        return r;
+    }
+
+    private List<Order> doOrdersWithStatus(Order.Status... statuses) {
+        int size = 0;
+        for (Order.Status s : statuses) size += statusIndex.count(s);
+        List<Order> list = new ArrayList<>(size);
+        for (Order.Status s : statuses) {
+            for (Integer oid : statusIndex.idsWithStatus(s)) {
+                Order o = orders.get(oid);
+                if (o != null) list.add(o);
+            }
+            if (archive != null && archive.count(s) > 0) {
+                for (int oid : archive.idsWithStatus(s)) {
+                    Order o = getOrder(oid);
+                    if (o != null) list.add(o);
+                }
+            }
+        }
+        return list;
+    }
+
+    public int countWithStatus(Order.Status status) {
+        return statusIndex.count(status) + (archive == null ? 0 : archive.count(status));
+    }
+
+    /** Up to {@code max} returns awaiting a decision, oldest first. */
+    public List<ReturnRequest> pendingReturns(int max) {
+        int[] ids = returnQueue.oldest(max);
+        List<ReturnRequest> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            ReturnRequest rr = returns.get(id);
+            if (rr != null) list.add(rr);
+        }
+        return list;
+    }
+
+    int[] pendingReturnIds(int max) { return returnQueue.oldest(max); }
+
+    public int pendingReturnCount() { return returnQueue.size(); }
+
+    /** IDs of orders currently in any of the given states, ascending. */
+    int[] orderIdsWithStatus(Order.Status... statuses) {
+        int size = 0;
+        for (Order.Status s : statuses) size += statusIndex.count(s);
+        int[] ids = new int[size];
+        int n = 0;
+        for (Order.Status s : statuses) {
+            for (Integer oid : statusIndex.idsWithStatus(s)) {
+                if (n == ids.length) ids = Arrays.copyOf(ids, n * 2 + 16);
+                ids[n++] = oid;
+            }
+            if (archive != null && archive.count(s) > 0) {
+                int[] cold = archive.idsWithStatus(s);
+                if (n + cold.length > ids.length) ids = Arrays.copyOf(ids, n + cold.length);
+                System.arraycopy(cold, 0, ids, n, cold.length);
+                n += cold.length;
+            }
+        }
+        ids = Arrays.copyOf(ids, n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    MarketMetrics metrics() { return metrics; }
+
+    CartService carts() { return cartService; }
+
+    /**
+     * Bus carrying a {@link MarketEvent} for every change applied from now on.
+     * Subscribers see events after the change is journaled and visible; changes
+     * replayed during recovery are not published.
+     */
+    EventBus events() { return events; }
+
+    /** Sales rollups and leaderboards, following {@link #events()} from the moment the market opened. */
+    SalesAnalytics analytics() { return analytics; }
+
+    /** Low-stock alerts and sales-rate forecasts, following {@link #events()} likewise. */
+    StockMonitor stockMonitor() { return stockMonitor; }
+
+    /** Units of a product taken out of vendor stock by active cart holds. */
+    int heldStock(int productId) { return cartService.heldStock(productId); }
+
+    public int deliveryCapacity(int vendorId) { return deliveryScheduler.getDailyCapacity(vendorId); }
+
+    /** Vendor ID to daily delivery capacity, for vendors given their own; snapshots persist these. */
+    SortedMap<Integer, Integer> configuredDeliveryCapacities() { return deliveryScheduler.configuredCapacities(); }
+
+    public int deliveriesBooked(int vendorId, LocalDate day) { return deliveryScheduler.booked(vendorId, day); }
+
+    /** Payment already accepted under an external settlement reference, or null. */
+    public Payment findPaymentByReference(String externalRef) {
+        Integer id = paymentRefs.get(externalRef);
+        return id == null || id.equals(REF_CLAIMED) ? null : getPayment(id);
+    }
+
+    // Stand-in for the checkpoint lock when nothing is journaled
+    private static final Lock NO_GATE = new Lock() {
+        @Override public void lock() {}
+        @Override public void lockInterruptibly() {}
+        @Override public boolean tryLock() { return true; }
+        @Override public boolean tryLock(long time, TimeUnit unit) { return true; }
+        @Override public void unlock() {}
+        @Override public Condition newCondition() { throw new UnsupportedOperationException(); }
+    };
+}
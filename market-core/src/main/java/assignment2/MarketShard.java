@@ -0,0 +1,53 @@
+package assignment2;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One partition of a {@link ShardedMarket}: a set of vendors with their products,
+ * orders, payments, deliveries, returns and cart holds, all with IDs from blocks the
+ * shard leased. Requests are the {@link MarketRequests} records and IDs, and every
+ * answer is a future, so the router is the same whether a shard is a
+ * {@link LocalShard} in this JVM or a market in another process behind a transport.
+ */
+interface MarketShard extends AutoCloseable {
+    int index();
+
+    // --- Writes ---
+    CompletableFuture<MarketResult<Vendor>> addVendor(MarketRequests.AddVendor req);
+    CompletableFuture<MarketResult<Product>> addProduct(MarketRequests.AddProduct req);
+    CompletableFuture<MarketResult<Order>> placeOrder(MarketRequests.PlaceOrder req);
+    CompletableFuture<MarketResult<CartService.CartHold>> holdCart(MarketRequests.HoldCart req);
+    CompletableFuture<MarketResult<List<Order>>> checkoutCart(int holdId);
+    CompletableFuture<MarketResult<CartService.CartHold>> releaseCart(int holdId);
+    CompletableFuture<MarketResult<PaymentReceipt>> recordPayment(MarketRequests.RecordPayment req);
+    CompletableFuture<MarketResult<Delivery>> scheduleDelivery(MarketRequests.ScheduleDelivery req);
+    CompletableFuture<List<Delivery>> autoScheduleDeliveries(LocalDate from);
+    CompletableFuture<List<DeliveryRoute>> dispatchDeliveries(LocalDate day);
+    CompletableFuture<MarketResult<Delivery>> completeDelivery(int deliveryId);
+    CompletableFuture<MarketResult<Integer>> setDeliveryCapacity(int vendorId, int perDay);
+    CompletableFuture<MarketResult<ReturnReceipt>> requestReturn(MarketRequests.RequestReturn req);
+    CompletableFuture<MarketResult<ReturnReceipt>> approveReturn(int returnId);
+    CompletableFuture<MarketResult<ReturnRequest>> denyReturn(int returnId);
+    CompletableFuture<ReturnBatchReceipt> approveReturns(int[] returnIds);
+    CompletableFuture<ReturnBatchReceipt> denyReturns(int[] returnIds);
+
+    // --- Reads ---
+    CompletableFuture<Vendor> getVendor(int id);
+    CompletableFuture<Product> getProduct(int id);
+    CompletableFuture<Order> getOrder(int id);
+    CompletableFuture<Payment> getPayment(int id);
+    CompletableFuture<Delivery> getDelivery(int id);
+    CompletableFuture<ReturnRequest> getReturn(int id);
+    CompletableFuture<List<Vendor>> vendors();
+    CompletableFuture<List<Product>> productsForVendor(int vendorId);
+    CompletableFuture<List<Product>> searchProducts(MarketRequests.SearchProducts req);
+    CompletableFuture<List<Order>> ordersWithStatus(Order.Status... statuses);
+    CompletableFuture<Integer> countWithStatus(Order.Status status);
+    CompletableFuture<List<ReturnRequest>> pendingReturns(int max);
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,582 @@
+package assignment2;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Full-state snapshot used by {@link MarketJournal} checkpoints and by market
+ * export/import: ID generator positions, then every vendor (with stock), product,
+ * order (with items), payment, delivery and return, and the vendors' own delivery
+ * capacities. A checkpoint covers what is in
+ * memory (archived orders live in the {@link OrderArchive}); an export covers
+ * archived orders too. Written with fsync.
+ * <p>
+ * Version 4 is columnar. Each table is cut into blocks of up to {@value #BLOCK_ROWS}
+ * rows; within a block every column is a run of fixed-width values, a row's nested
+ * rows (a vendor's stock, an order's items) sit in their own columns after the
+ * rows, and strings are codes into the block's dictionary, so an item name or
+ * payment method is stored once per block rather than once per row. A directory at
+ * the end of the file locates the blocks. Blocks are encoded and decoded in parallel
+ * on the common fork-join pool and moved with positional {@link FileChannel} I/O;
+ * on load, payments and deliveries are attached in ID order once the orders are in,
+ * since an order's payment history and a day's delivery stops keep that order.
+ * Version 4 (columnar, without capacities) and version 3 row-oriented snapshots can
+ * still be read.
+ */
+final class MarketSnapshot {
+    private static final int MAGIC = 0x464D534E; // "FMSN"
+    private static final int VERSION = 5; // 2: payment references, 3: order placement time, 4: columnar blocks, 5: delivery capacities
+    private static final int NO_CAPACITY_VERSION = 4;
+    private static final int ROW_VERSION = 3;
+    private static final int ID_GENERATORS = 6;
+    private static final int HEADER_BYTES = 8 + ID_GENERATORS * 4;
+    private static final int FOOTER_BYTES = 12; // directory offset, magic
+    private static final int BLOCK_ROWS = 1 << 16;
+    private static final int BLOCK_HEADER_BYTES = 12; // rows, nested rows, dictionary offset
+    private static final int NO_STRING = -1;
+
+    /** Tables in the order they are written; column widths of the rows, then of the nested rows. */
+    private enum Table {
+        RETURNS(new int[]{4, 4, 4, 4, 1}, new int[0]),          // id, order, product, quantity, status
+        DELIVERIES(new int[]{4, 4, 4, 1}, new int[0]),          // id, order, epoch day, status
+        PAYMENTS(new int[]{4, 4, 8, 4, 8, 4}, new int[0]),      // id, order, cents, method, time, reference
+        ORDERS(new int[]{4, 4, 8, 1, 8, 4}, new int[]{4, 4, 4, 8}), // id, vendor, placed, status, refunded, items; product, name, quantity, unit price
+        PRODUCTS(new int[]{4, 4, 4, 8}, new int[0]),            // id, vendor, name, price
+        VENDORS(new int[]{4, 4, 4}, new int[]{4, 4}),           // id, name, products; product, stock
+        CAPACITIES(new int[]{4, 4}, new int[0]);                // vendor, deliveries per day
+
+        final int[] widths;
+        final int columns;
+        final int rowBytes;
+        final int nestedBytes;
+
+        Table(int[] rowWidths, int[] nestedWidths) {
+            widths = new int[rowWidths.length + nestedWidths.length];
+            System.arraycopy(rowWidths, 0, widths, 0, rowWidths.length);
+            System.arraycopy(nestedWidths, 0, widths, rowWidths.length, nestedWidths.length);
+            columns = rowWidths.length;
+            rowBytes = Arrays.stream(rowWidths).sum();
+            nestedBytes = Arrays.stream(nestedWidths).sum();
+        }
+    }
+
+    private static final Table[] TABLES = Table.values();
+    private static final Order.Status[] ORDER_STATUSES = Order.Status.values();
+    private static final Delivery.Status[] DELIVERY_STATUSES = Delivery.Status.values();
+    private static final ReturnRequest.Status[] RETURN_STATUSES = ReturnRequest.Status.values();
+
+    private record Entry(Table table, int seq, long offset, int length) {}
+
+    private MarketSnapshot() {}
+
+    /** Writes what is in memory, for a checkpoint; the caller has stopped mutations. */
+    static void write(MarketService m, Path file) throws IOException {
+        write(m, file, m.hotOrders(), m.hotPayments(), m.hotDeliveries());
+    }
+
+    /**
+     * Writes the whole market, archived orders included. Rows are captured from the
+     * leaves up (returns, deliveries and payments before orders, orders before
+     * products and vendors), so a market that is still taking requests yields a
+     * snapshot in which everything referenced is present.
+     */
+    static void export(MarketService m, Path file) throws IOException {
+        write(m, file, m.orders(), m.payments(), m.deliveries());
+    }
+
+    private static void write(MarketService m, Path file, Collection<Order> orders, Collection<Payment> payments,
+                              Collection<Delivery> deliveries) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter w = new BlockWriter(ch);
+            w.table(Table.RETURNS, m.returns(), MarketSnapshot::encodeReturns);
+            w.table(Table.DELIVERIES, deliveries, MarketSnapshot::encodeDeliveries);
+            w.table(Table.PAYMENTS, payments, MarketSnapshot::encodePayments);
+            w.table(Table.ORDERS, orders, MarketSnapshot::encodeOrders);
+            w.table(Table.PRODUCTS, m.products(), MarketSnapshot::encodeProducts);
+            w.table(Table.VENDORS, m.vendors(), rows -> encodeVendors(rows, m));
+            w.table(Table.CAPACITIES, m.configuredDeliveryCapacities().entrySet(), MarketSnapshot::encodeCapacities);
+            List<Entry> entries = new ArrayList<>();
+            for (ForkJoinTask<Entry> t : w.tasks) entries.add(join(t));
+
+            long dirOffset = w.end.get();
+            ByteBuffer dir = ByteBuffer.allocate(4 + entries.size() * 17 + FOOTER_BYTES);
+            dir.putInt(entries.size());
+            for (Entry e : entries) dir.put((byte) e.table().ordinal()).putInt(e.seq()).putLong(e.offset()).putInt(e.length());
+            dir.putLong(dirOffset).putInt(MAGIC);
+            writeFully(ch, dir.flip(), dirOffset);
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+            for (int next : m.idPositions()) head.putInt(next);
+            writeFully(ch, head.flip(), 0);
+            ch.force(true);
+        }
+    }
+
+    static void read(Path file, MarketService m) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) throw new IOException("Not a market snapshot: " + file);
+            ByteBuffer head = readFully(ch, 0, HEADER_BYTES);
+            if (head.getInt() != MAGIC) throw new IOException("Not a market snapshot: " + file);
+            int version = head.getInt();
+            if (version == ROW_VERSION) {
+                readRows(file, m);
+                return;
+            }
+            if (version != VERSION && version != NO_CAPACITY_VERSION) throw new IOException("Unsupported snapshot version " + version);
+            int[] next = new int[ID_GENERATORS];
+            for (int i = 0; i < next.length; i++) next[i] = head.getInt();
+
+            long size = ch.size();
+            ByteBuffer foot = readFully(ch, size - FOOTER_BYTES, FOOTER_BYTES);
+            long dirOffset = foot.getLong();
+            if (foot.getInt() != MAGIC || dirOffset < HEADER_BYTES || dirOffset > size - FOOTER_BYTES) {
+                throw new IOException("Truncated market snapshot: " + file);
+            }
+            ByteBuffer dir = readFully(ch, dirOffset, (int) (size - FOOTER_BYTES - dirOffset));
+            List<List<Entry>> byTable = new ArrayList<>();
+            for (int i = 0; i < TABLES.length; i++) byTable.add(new ArrayList<>());
+            for (int n = dir.getInt(); n > 0; n--) {
+                Entry e = new Entry(TABLES[dir.get()], dir.getInt(), dir.getLong(), dir.getInt());
+                byTable.get(e.table().ordinal()).add(e);
+            }
+            for (List<Entry> es : byTable) es.sort(Comparator.comparingInt(Entry::seq));
+
+            // Rows that only refer to IDs load in any order
+            List<ForkJoinTask<Void>> loads = new ArrayList<>();
+            for (Table t : new Table[]{Table.VENDORS, Table.PRODUCTS, Table.ORDERS, Table.RETURNS, Table.CAPACITIES}) {
+                for (Entry e : byTable.get(t.ordinal())) {
+                    loads.add(fork(() -> {
+                        Block b = Block.read(ch, e);
+                        switch (t) {
+                            case VENDORS -> decodeVendors(b, m);
+                            case PRODUCTS -> decodeProducts(b, m);
+                            case ORDERS -> decodeOrders(b, m);
+                            case CAPACITIES -> decodeCapacities(b, m);
+                            default -> decodeReturns(b, m);
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (ForkJoinTask<Void> t : loads) join(t);
+
+            // Payments and deliveries are decoded in parallel but attached in ID order
+            List<ForkJoinTask<Payment[]>> payments = new ArrayList<>();
+            for (Entry e : byTable.get(Table.PAYMENTS.ordinal())) payments.add(fork(() -> decodePayments(Block.read(ch, e))));
+            List<ForkJoinTask<Delivery[]>> deliveries = new ArrayList<>();
+            for (Entry e : byTable.get(Table.DELIVERIES.ordinal())) deliveries.add(fork(() -> decodeDeliveries(Block.read(ch, e))));
+            List<Delivery[]> decoded = new ArrayList<>(deliveries.size());
+            for (ForkJoinTask<Delivery[]> t : deliveries) decoded.add(join(t));
+            ForkJoinTask<Void> scheduled = fork(() -> {
+                for (Delivery[] ds : decoded) for (Delivery d : ds) m.restoreDelivery(d);
+                return null;
+            });
+            for (ForkJoinTask<Payment[]> t : payments) {
+                for (Payment p : join(t)) {
+                    m.restorePayment(p);
+                    m.hotOrder(p.getOrderId()).addPayment(p);
+                }
+            }
+            join(scheduled);
+            m.restoreIdPositions(next);
+        }
+    }
+
+    // --- Tables ---
+
+    private static Block encodeReturns(List<ReturnRequest> rows) {
+        Block b = Block.create(Table.RETURNS, rows.size(), 0);
+        for (int r = 0; r < rows.size(); r++) {
+            ReturnRequest rr = rows.get(r);
+            b.putInt(0, r, rr.getId());
+            b.putInt(1, r, rr.getOrderId());
+            b.putInt(2, r, rr.getProductId());
+            b.putInt(3, r, rr.getQuantity());
+            b.putByte(4, r, rr.getStatus().ordinal());
+        }
+        return b;
+    }
+
+    private static void decodeReturns(Block b, MarketService m) {
+        for (int r = 0; r < b.rows; r++) {
+            ReturnRequest rr = new ReturnRequest(b.getInt(0, r), b.getInt(1, r), b.getInt(2, r), b.getInt(3, r));
+            rr.setStatus(RETURN_STATUSES[b.getByte(4, r)]);
+            m.restoreReturn(rr);
+        }
+    }
+
+    private static Block encodeDeliveries(List<Delivery> rows) {
+        Block b = Block.create(Table.DELIVERIES, rows.size(), 0);
+        for (int r = 0; r < rows.size(); r++) {
+            Delivery d = rows.get(r);
+            b.putInt(0, r, d.getId());
+            b.putInt(1, r, d.getOrderId());
+            b.putInt(2, r, (int) d.getDate().toEpochDay());
+            b.putByte(3, r, d.getStatus().ordinal());
+        }
+        return b;
+    }
+
+    private static Delivery[] decodeDeliveries(Block b) {
+        Delivery[] out = new Delivery[b.rows];
+        for (int r = 0; r < b.rows; r++) {
+            out[r] = new Delivery(b.getInt(0, r), b.getInt(1, r), LocalDate.ofEpochDay(b.getInt(2, r)));
+            out[r].setStatus(DELIVERY_STATUSES[b.getByte(3, r)]);
+        }
+        return out;
+    }
+
+    private static Block encodePayments(List<Payment> rows) {
+        Block b = Block.create(Table.PAYMENTS, rows.size(), 0);
+        for (int r = 0; r < rows.size(); r++) {
+            Payment p = rows.get(r);
+            b.putInt(0, r, p.getId());
+            b.putInt(1, r, p.getOrderId());
+            b.putLong(2, r, p.getAmountCents());
+            b.putString(3, r, p.getMethod());
+            b.putLong(4, r, p.getTimestampMillis());
+            b.putString(5, r, p.getReference());
+        }
+        return b;
+    }
+
+    private static Payment[] decodePayments(Block b) {
+        Payment[] out = new Payment[b.rows];
+        for (int r = 0; r < b.rows; r++) {
+            out[r] = new Payment(b.getInt(0, r), b.getInt(1, r), b.getLong(2, r), b.getString(3, r), b.getLong(4, r), b.getString(5, r));
+        }
+        return out;
+    }
+
+    private static Block encodeOrders(List<Order> rows) {
+        int items = 0;
+        for (Order o : rows) items += o.getItemCount();
+        Block b = Block.create(Table.ORDERS, rows.size(), items);
+        int n = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            Order o = rows.get(r);
+            int count = o.getItemCount();
+            b.putInt(0, r, o.getId());
+            b.putInt(1, r, o.getVendorId());
+            b.putLong(2, r, o.getPlacedAtMillis());
+            b.putByte(3, r, o.getStatus().ordinal());
+            b.putLong(4, r, o.getRefundedCents());
+            b.putInt(5, r, count);
+            for (int i = 0; i < count; i++, n++) {
+                OrderItem it = o.getItem(i);
+                b.putInt(6, n, it.getProductId());
+                b.putString(7, n, it.getProductName());
+                b.putInt(8, n, it.getQuantity());
+                b.putLong(9, n, it.getUnitPriceCents());
+            }
+        }
+        return b;
+    }
+
+    private static void decodeOrders(Block b, MarketService m) {
+        int n = 0;
+        for (int r = 0; r < b.rows; r++) {
+            int count = b.getInt(5, r);
+            List<OrderItem> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++, n++) {
+                items.add(new OrderItem(b.getInt(6, n), b.getString(7, n), b.getInt(8, n), b.getLong(9, n)));
+            }
+            Order o = new Order(b.getInt(0, r), b.getInt(1, r), items, b.getLong(2, r));
+            o.setStatus(ORDER_STATUSES[b.getByte(3, r)]);
+            o.addRefund(b.getLong(4, r));
+            m.restoreOrder(o);
+        }
+    }
+
+    private static Block encodeProducts(List<Product> rows) {
+        Block b = Block.create(Table.PRODUCTS, rows.size(), 0);
+        for (int r = 0; r < rows.size(); r++) {
+            Product p = rows.get(r);
+            b.putInt(0, r, p.getId());
+            b.putInt(1, r, p.getVendorId());
+            b.putString(2, r, p.getName());
+            b.putLong(3, r, p.getPriceCents());
+        }
+        return b;
+    }
+
+    private static void decodeProducts(Block b, MarketService m) {
+        for (int r = 0; r < b.rows; r++) m.restoreProduct(Product.ofCents(b.getInt(0, r), b.getString(2, r), b.getLong(3, r), b.getInt(1, r)));
+    }
+
+    private static Block encodeVendors(List<Vendor> rows, MarketService m) {
+        int[][] pids = new int[rows.size()][];
+        int stock = 0;
+        for (int r = 0; r < pids.length; r++) stock += (pids[r] = rows.get(r).getProductIds()).length;
+        Block b = Block.create(Table.VENDORS, rows.size(), stock);
+        int n = 0;
+        for (int r = 0; r < pids.length; r++) {
+            Vendor v = rows.get(r);
+            b.putInt(0, r, v.getId());
+            b.putString(1, r, v.getName());
+            b.putInt(2, r, pids[r].length);
+            for (int pid : pids[r]) {
+                b.putInt(3, n, pid);
+                // Holds are not persisted, so units they have taken are written back as stock
+                b.putInt(4, n++, v.getStockForProduct(pid) + m.heldStock(pid));
+            }
+        }
+        return b;
+    }
+
+    private static void decodeVendors(Block b, MarketService m) {
+        int n = 0;
+        for (int r = 0; r < b.rows; r++) {
+            Vendor v = new Vendor(b.getInt(0, r), b.getString(1, r));
+            for (int k = b.getInt(2, r); k > 0; k--, n++) v.addStock(b.getInt(3, n), b.getInt(4, n));
+            m.restoreVendor(v);
+        }
+    }
+
+    private static Block encodeCapacities(List<Map.Entry<Integer, Integer>> rows) {
+        Block b = Block.create(Table.CAPACITIES, rows.size(), 0);
+        for (int r = 0; r < rows.size(); r++) {
+            b.putInt(0, r, rows.get(r).getKey());
+            b.putInt(1, r, rows.get(r).getValue());
+        }
+        return b;
+    }
+
+    private static void decodeCapacities(Block b, MarketService m) {
+        for (int r = 0; r < b.rows; r++) m.restoreDeliveryCapacity(b.getInt(0, r), b.getInt(1, r));
+    }
+
+    // --- Blocks ---
+
+    /** Cuts each table into blocks, encoding and writing them on the fork-join pool as they fill. */
+    private static final class BlockWriter {
+        final FileChannel ch;
+        final AtomicLong end = new AtomicLong(HEADER_BYTES);
+        final List<ForkJoinTask<Entry>> tasks = new ArrayList<>();
+
+        BlockWriter(FileChannel ch) { this.ch = ch; }
+
+        <T> void table(Table t, Collection<T> rows, Function<List<T>, Block> encode) {
+            int seq = 0;
+            List<T> chunk = new ArrayList<>(Math.min(rows.size(), BLOCK_ROWS));
+            for (T row : rows) {
+                chunk.add(row);
+                if (chunk.size() == BLOCK_ROWS) {
+                    submit(t, seq++, chunk, encode);
+                    chunk = new ArrayList<>(BLOCK_ROWS);
+                }
+            }
+            if (!chunk.isEmpty()) submit(t, seq, chunk, encode);
+        }
+
+        private <T> void submit(Table t, int seq, List<T> rows, Function<List<T>, Block> encode) {
+            tasks.add(fork(() -> {
+                ByteBuffer[] parts = encode.apply(rows).finish();
+                int length = parts[0].remaining() + parts[1].remaining();
+                long at = end.getAndAdd(length);
+                writeFully(ch, parts[0], at);
+                writeFully(ch, parts[1], at + parts[0].limit());
+                return new Entry(t, seq, at, length);
+            }));
+        }
+    }
+
+    /**
+     * One block of a table: a header, each column's values back to back (rows, then
+     * nested rows), then the string dictionary. Built for writing with
+     * {@link #create} or parsed from a read with {@link #read}.
+     */
+    private static final class Block {
+        final Table table;
+        final ByteBuffer buf;
+        final int rows;
+        private final int[] columnAt;
+        // Writing
+        private Map<String, Integer> codes;
+        private List<byte[]> strings;
+        private int stringBytes;
+        // Reading
+        private String[] dictionary;
+
+        private Block(Table table, ByteBuffer buf, int rows, int nested) {
+            this.table = table;
+            this.buf = buf;
+            this.rows = rows;
+            columnAt = new int[table.widths.length];
+            int at = BLOCK_HEADER_BYTES;
+            for (int c = 0; c < columnAt.length; c++) {
+                columnAt[c] = at;
+                at += table.widths[c] * (c < table.columns ? rows : nested);
+            }
+        }
+
+        static Block create(Table t, int rows, int nested) {
+            Block b = new Block(t, ByteBuffer.allocate(BLOCK_HEADER_BYTES + t.rowBytes * rows + t.nestedBytes * nested), rows, nested);
+            b.buf.putInt(0, rows).putInt(4, nested).putInt(8, b.buf.capacity());
+            b.codes = new HashMap<>();
+            b.strings = new ArrayList<>();
+            return b;
+        }
+
+        static Block read(FileChannel ch, Entry e) throws IOException {
+            ByteBuffer buf = readFully(ch, e.offset(), e.length());
+            Block b = new Block(e.table(), buf, buf.getInt(0), buf.getInt(4));
+            int at = buf.getInt(8);
+            b.dictionary = new String[buf.getInt(at)];
+            at += 4;
+            for (int i = 0; i < b.dictionary.length; i++) {
+                int len = buf.getInt(at);
+                b.dictionary[i] = new String(buf.array(), at + 4, len, StandardCharsets.UTF_8);
+                at += 4 + len;
+            }
+            return b;
+        }
+
+        void putInt(int column, int row, int v) { buf.putInt(columnAt[column] + row * 4, v); }
+
+        void putLong(int column, int row, long v) { buf.putLong(columnAt[column] + row * 8, v); }
+
+        void putByte(int column, int row, int v) { buf.put(columnAt[column] + row, (byte) v); }
+
+        void putString(int column, int row, String s) {
+            int code = NO_STRING;
+            if (s != null) {
+                code = codes.computeIfAbsent(s, k -> {
+                    byte[] bytes = k.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    stringBytes += 4 + bytes.length;
+                    return strings.size() - 1;
+                });
+            }
+            putInt(column, row, code);
+        }
+
+        int getInt(int column, int row) { return buf.getInt(columnAt[column] + row * 4); }
+
+        long getLong(int column, int row) { return buf.getLong(columnAt[column] + row * 8); }
+
+        int getByte(int column, int row) { return buf.get(columnAt[column] + row); }
+
+        String getString(int column, int row) {
+            int code = getInt(column, row);
+            return code == NO_STRING ? null : dictionary[code];
+        }
+
+        /** The columns and the dictionary, ready to write back to back. */
+        ByteBuffer[] finish() {
+            ByteBuffer dict = ByteBuffer.allocate(4 + stringBytes).putInt(strings.size());
+            for (byte[] s : strings) dict.putInt(s.length).put(s);
+            return new ByteBuffer[]{buf.clear(), dict.flip()};
+        }
+    }
+
+    // --- I/O and tasks ---
+
+    private static <T> ForkJoinTask<T> fork(Callable<T> work) {
+        return ForkJoinPool.commonPool().submit(() -> {
+            try {
+                return work.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof UncheckedIOException u) throw u.getCause();
+            if (c instanceof RuntimeException r) throw r;
+            if (c instanceof Error err) throw err;
+            throw new IOException(c);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during snapshot I/O");
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long at) throws IOException {
+        while (buf.hasRemaining()) at += ch.write(buf, at);
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long at, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, at + buf.position()) < 0) throw new EOFException("Truncated market snapshot");
+        }
+        return buf.flip();
+    }
+
+    // --- Version 3: one row after another through a data stream ---
+
+    private static void readRows(Path file, MarketService m) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            in.skipNBytes(8);
+            int[] next = new int[ID_GENERATORS];
+            for (int i = 0; i < next.length; i++) next[i] = in.readInt();
+
+            for (int n = in.readInt(); n > 0; n--) {
+                Vendor v = new Vendor(in.readInt(), in.readUTF());
+                for (int k = in.readInt(); k > 0; k--) v.addStock(in.readInt(), in.readInt());
+                m.restoreVendor(v);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int vendorId = in.readInt();
+                m.restoreProduct(Product.ofCents(id, in.readUTF(), in.readLong(), vendorId));
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int vendorId = in.readInt();
+                long placedAt = in.readLong();
+                Order.Status status = ORDER_STATUSES[in.readByte()];
+                long refunded = in.readLong();
+                int count = in.readInt();
+                List<OrderItem> items = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) items.add(new OrderItem(in.readInt(), in.readUTF(), in.readInt(), in.readLong()));
+                Order o = new Order(id, vendorId, items, placedAt);
+                o.setStatus(status);
+                o.addRefund(refunded);
+                m.restoreOrder(o);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int orderId = in.readInt();
+                long cents = in.readLong();
+                String method = in.readUTF();
+                long ts = in.readLong();
+                String ref = in.readUTF();
+                Payment p = new Payment(id, orderId, cents, method, ts, ref.isEmpty() ? null : ref);
+                m.restorePayment(p);
+                m.hotOrder(p.getOrderId()).addPayment(p);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                Delivery d = new Delivery(in.readInt(), in.readInt(), LocalDate.parse(in.readUTF()));
+                d.setStatus(DELIVERY_STATUSES[in.readByte()]);
+                m.restoreDelivery(d);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                ReturnRequest rr = new ReturnRequest(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                rr.setStatus(RETURN_STATUSES[in.readByte()]);
+                m.restoreReturn(rr);
+            }
+            m.restoreIdPositions(next);
+        }
+    }
+}
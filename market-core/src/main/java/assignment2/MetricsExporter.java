@@ -0,0 +1,92 @@
+package assignment2;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link MarketMetrics} locally, either by rewriting a file every few
+ * seconds (written to a temp file and moved into place, so readers never see a
+ * partial dump) or by serving {@code GET /metrics} on a loopback port.
+ */
+final class MetricsExporter implements Closeable {
+    enum Format { TEXT, PROMETHEUS }
+
+    private final MarketMetrics metrics;
+    private final Format format;
+    private ScheduledExecutorService writer;
+    private Path file;
+    private HttpServer server;
+
+    private MetricsExporter(MarketMetrics metrics, Format format) {
+        this.metrics = metrics;
+        this.format = format;
+    }
+
+    static MetricsExporter toFile(MarketMetrics metrics, Format format, Path file, long intervalMillis) {
+        MetricsExporter e = new MetricsExporter(metrics, format);
+        e.file = file;
+        e.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        e.writer.scheduleWithFixedDelay(() -> {
+            try {
+                e.writeTo(file);
+            } catch (IOException ex) {
+                System.err.println("Metrics export to " + file + " failed: " + ex.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return e;
+    }
+
+    /** Serves the dump on 127.0.0.1; pass port 0 to pick a free one (see {@link #port()}). */
+    static MetricsExporter onPort(MarketMetrics metrics, Format format, int port) throws IOException {
+        MetricsExporter e = new MetricsExporter(metrics, format);
+        MarketHttpServer.tuneJdkServer(); // may be the first JDK server in this JVM
+        e.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        e.server.createContext("/metrics", exchange -> {
+            byte[] body = e.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    format == Format.PROMETHEUS ? "text/plain; version=0.0.4; charset=utf-8" : "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        e.server.start();
+        return e;
+    }
+
+    int port() { return server == null ? -1 : server.getAddress().getPort(); }
+
+    String render() { return format == Format.PROMETHEUS ? metrics.toPrometheus() : metrics.toText(); }
+
+    void writeTo(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, render(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Stops exporting; a file exporter writes one final dump first. */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.shutdownNow();
+            writeTo(file);
+        }
+        if (server != null) server.stop(0);
+    }
+}
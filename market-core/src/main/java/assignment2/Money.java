@@ -0,0 +1,58 @@
+package assignment2;
+
+/**
+ * Fixed-point money helpers. Amounts are held as long minor units (cents) so
+ * totals stay exact; doubles only appear at the console/API boundary.
+ */
+final class Money {
+    private Money() {}
+
+    /** Converts a decimal amount to cents, rounding half-up to the nearest cent. */
+    static long toCents(double amount) { return Math.round(amount * 100.0); }
+
+    static double toDouble(long cents) { return cents / 100.0; }
+
+    /**
+     * Parses a decimal string such as "12", "12.5" or "-0.05" into exact cents.
+     *
+     * @throws IllegalArgumentException if it is not a number or has more than two decimals
+     */
+    static long parseCents(String s) {
+        String t = s.trim();
+        boolean neg = t.startsWith("-");
+        if (neg || t.startsWith("+")) t = t.substring(1);
+        int dot = t.indexOf('.');
+        String units = dot < 0 ? t : t.substring(0, dot);
+        String frac = dot < 0 ? "" : t.substring(dot + 1);
+        if ((units.isEmpty() && frac.isEmpty()) || frac.length() > 2 || !digits(units) || !digits(frac)) {
+            throw new IllegalArgumentException("Not a money amount: '" + s + "'");
+        }
+        long cents = (units.isEmpty() ? 0 : Long.parseLong(units)) * 100;
+        if (frac.length() == 1) cents += (frac.charAt(0) - '0') * 10;
+        else if (frac.length() == 2) cents += Integer.parseInt(frac);
+        return neg ? -cents : cents;
+    }
+
+    private static boolean digits(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
+        return s.length() <= 15;
+    }
+
+    /** Formats cents as e.g. "1234.50" or "-0.05", without going through String.format. */
+    static String format(long cents) {
+        return append(new StringBuilder(12), cents).toString();
+    }
+
+    static StringBuilder append(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            if (cents == Long.MIN_VALUE) return sb.append("92233720368547758.08");
+            cents = -cents;
+        }
+        long units = cents / 100;
+        int frac = (int) (cents % 100);
+        sb.append(units).append('.');
+        if (frac < 10) sb.append('0');
+        return sb.append(frac);
+    }
+}
@@ -0,0 +1,485 @@
+package assignment2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cold tier for completed orders. Each archived order is one compact binary record
+ * (order, items, payments and delivery) appended to {@code orders.dat}, which is
+ * mapped 64 MiB at a time. Three ID-to-location indexes are mapped files as well,
+ * one {@code long} per ID: order ID to record offset (with the order's status), and
+ * payment or delivery ID to order ID. So an archived order costs no heap at all, and a
+ * lookup is an index read plus decoding one record.
+ * <p>
+ * Records are only ever appended, by {@link MarketService#checkpoint()} while
+ * mutations are stopped. When an archived order has to change again,
+ * {@link MarketService} loads it back into memory and {@link #thaw} flags its entry.
+ * The in-memory copy always takes precedence over the archived one: a thaw is not
+ * journaled, and on reopen the flags are rebuilt from the snapshot and journal
+ * replay. Space held by thawed records is not reclaimed.
+ * <p>
+ * Reads are safe from any thread; an entry is published with a release store after
+ * its record is written.
+ */
+final class OrderArchive implements Closeable {
+    private static final int MAGIC = 0x464D4152; // "FMAR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16; // magic, version, end of data
+    private static final int WINDOW_SHIFT = 26; // 64 MiB mappings of the data file
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    // Order entry: bits 0-47 record offset, 48-55 status ordinal, 62 thawed; 0 = never archived
+    private static final long OFFSET_MASK = (1L << 48) - 1;
+    private static final int STATUS_SHIFT = 48;
+    private static final long THAWED = 1L << 62;
+    private static final Order.Status[] STATUSES = Order.Status.values();
+    static final int MAX_COUNT = 0xFFFF; // items and payments per record, written as unsigned shorts
+
+    /** An archived order with its delivery (null if it never had one); payments are in the order's history. */
+    record Archived(Order order, Delivery delivery) {}
+
+    private final FileChannel data;
+    private final Slots orderIndex, paymentIndex, deliveryIndex;
+    private volatile MappedByteBuffer[] windows = new MappedByteBuffer[0];
+    private long end; // next append position; writer only
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    // Live (not thawed) entries, changed under this monitor
+    private volatile int orders, payments, deliveries;
+    private final int[] byStatus = new int[STATUSES.length];
+
+    private OrderArchive(Path dir, int orderBase, int paymentBase, int deliveryBase) throws IOException {
+        Files.createDirectories(dir);
+        data = FileChannel.open(dir.resolve("orders.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        orderIndex = new Slots(dir.resolve("orders.idx"), orderBase);
+        paymentIndex = new Slots(dir.resolve("payments.idx"), paymentBase);
+        deliveryIndex = new Slots(dir.resolve("deliveries.idx"), deliveryBase);
+    }
+
+    /**
+     * Opens (or creates) the archive in {@code dir}. Thaw flags from the last run are
+     * cleared, since the caller's recovery re-applies them, and entries pointing past
+     * the last completed append are dropped.
+     */
+    static OrderArchive open(Path dir, int orderBase, int paymentBase, int deliveryBase) throws IOException {
+        OrderArchive a = new OrderArchive(dir, orderBase, paymentBase, deliveryBase);
+        try {
+            a.load();
+        } catch (IOException | RuntimeException e) {
+            a.close();
+            throw e;
+        }
+        return a;
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = window(0);
+        if (header.getInt(0) == 0) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, HEADER_BYTES);
+        } else if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an order archive");
+        } else if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported order archive version " + header.getInt(4));
+        }
+        end = header.getLong(8);
+        // Readers index the windows array directly, so every window holding records is mapped up front
+        window((end - 1) >>> WINDOW_SHIFT);
+        int live = 0;
+        for (int id = orderIndex.base, hi = orderIndex.end(); id < hi; id++) {
+            long e = orderIndex.get(id);
+            if (e == 0) continue;
+            if ((e & OFFSET_MASK) >= end) {
+                orderIndex.set(id, 0);
+                continue;
+            }
+            if ((e & THAWED) != 0) orderIndex.set(id, e &= ~THAWED);
+            live++;
+            byStatus[status(e).ordinal()]++;
+        }
+        orders = live;
+        payments = countLive(paymentIndex);
+        deliveries = countLive(deliveryIndex);
+    }
+
+    private int countLive(Slots index) {
+        int live = 0;
+        for (int id = index.base, hi = index.end(); id < hi; id++) {
+            long orderId = index.get(id);
+            if (orderId != 0 && orderIndex.get((int) orderId) == 0) index.set(id, 0);
+            else if (orderId != 0) live++;
+        }
+        return live;
+    }
+
+    // --- Writes ---
+
+    /**
+     * Appends an order with its payments and delivery (null if none) and points the
+     * indexes at it, replacing an earlier, thawed copy. Not durable until {@link #force()}.
+     */
+    synchronized void append(Order order, Delivery delivery) throws IOException {
+        List<Payment> history = order.getPaymentHistory();
+        if (order.getItemCount() > MAX_COUNT || history.size() > MAX_COUNT) {
+            throw new IllegalArgumentException("Order " + order.getId() + " has too many items or payments to archive");
+        }
+        int len = encode(order, history, delivery);
+        if (len > WINDOW_SIZE) throw new IllegalStateException("Order " + order.getId() + " is too large to archive");
+        long pos = end;
+        // Records never straddle two mappings
+        if ((pos & (WINDOW_SIZE - 1)) + len > WINDOW_SIZE) pos = ((pos >>> WINDOW_SHIFT) + 1) << WINDOW_SHIFT;
+        window(pos >>> WINDOW_SHIFT).put((int) (pos & (WINDOW_SIZE - 1)), scratch, 0, len);
+        end = pos + len;
+        window(0).putLong(8, end);
+
+        long previous = orderIndex.get(order.getId());
+        if (previous != 0 && (previous & THAWED) == 0) drop(previous, decode(order.getId(), previous));
+        for (Payment p : history) paymentIndex.set(p.getId(), order.getId());
+        if (delivery != null) deliveryIndex.set(delivery.getId(), order.getId());
+        Order.Status status = order.getStatus();
+        orderIndex.set(order.getId(), pos | (long) status.ordinal() << STATUS_SHIFT);
+        orders++;
+        byStatus[status.ordinal()]++;
+        payments += history.size();
+        if (delivery != null) deliveries++;
+    }
+
+    /** Whether the order's item and payment counts fit the record format; larger orders stay in memory. */
+    static boolean fits(Order order) {
+        return order.getItemCount() <= MAX_COUNT && order.getPaymentHistory().size() <= MAX_COUNT;
+    }
+
+    /**
+     * Flags an archived order as brought back into memory, so listings and counts
+     * skip it, and returns it; null if it is not archived or already thawed.
+     */
+    synchronized Archived thaw(int orderId) {
+        long e = orderIndex.get(orderId);
+        if (e == 0 || (e & THAWED) != 0) return null;
+        Archived a = decode(orderId, e);
+        orderIndex.set(orderId, e | THAWED);
+        drop(e, a);
+        return a;
+    }
+
+    // Takes a live entry's order, payments and delivery out of the counts
+    private void drop(long entry, Archived a) {
+        orders--;
+        byStatus[status(entry).ordinal()]--;
+        payments -= a.order().getPaymentHistory().size();
+        if (a.delivery() != null) deliveries--;
+    }
+
+    /** Forces appended records, then the indexes pointing at them, to disk. */
+    synchronized void force() {
+        for (MappedByteBuffer w : windows) if (w != null) w.force();
+        orderIndex.force();
+        paymentIndex.force();
+        deliveryIndex.force();
+    }
+
+    // --- Reads ---
+
+    /** The archived order with its delivery, thawed or not; null if it was never archived. */
+    Archived read(int orderId) {
+        long e = orderIndex.get(orderId);
+        return e == 0 ? null : decode(orderId, e);
+    }
+
+    Order order(int orderId) {
+        Archived a = read(orderId);
+        return a == null ? null : a.order();
+    }
+
+    Payment payment(int paymentId) {
+        long orderId = paymentIndex.get(paymentId);
+        Archived a = orderId == 0 ? null : read((int) orderId);
+        if (a == null) return null;
+        for (Payment p : a.order().getPaymentHistory()) if (p.getId() == paymentId) return p;
+        return null;
+    }
+
+    Delivery delivery(int deliveryId) {
+        long orderId = deliveryIndex.get(deliveryId);
+        Archived a = orderId == 0 ? null : read((int) orderId);
+        return a == null ? null : a.delivery();
+    }
+
+    /** Orders archived and not thawed. */
+    int size() { return orders; }
+
+    synchronized int count(Order.Status status) { return byStatus[status.ordinal()]; }
+
+    /** IDs of the live archived orders in the given status, ascending. A scan of the order index. */
+    int[] idsWithStatus(Order.Status status) {
+        if (count(status) == 0) return new int[0];
+        int[] ids = new int[16];
+        int n = 0;
+        for (int id = orderIndex.base, hi = orderIndex.end(); id < hi; id++) {
+            long e = orderIndex.get(id);
+            if (e == 0 || (e & THAWED) != 0 || status(e) != status) continue;
+            if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+            ids[n++] = id;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * {@code hot} followed, in one ascending ID order, by the archived orders that
+     * are not in it: a live, weakly consistent view like {@link DenseStore#values()}.
+     */
+    Collection<Order> withOrders(DenseStore<Order> hot) {
+        return merged(hot, Order::getId, orderIndex, () -> orders, this::order);
+    }
+
+    Collection<Payment> withPayments(DenseStore<Payment> hot) {
+        return merged(hot, Payment::getId, paymentIndex, () -> payments, this::payment);
+    }
+
+    Collection<Delivery> withDeliveries(DenseStore<Delivery> hot) {
+        return merged(hot, Delivery::getId, deliveryIndex, () -> deliveries, this::delivery);
+    }
+
+    private <T> Collection<T> merged(DenseStore<T> hot, ToIntFunction<T> idOf, Slots index,
+                                     IntSupplier archived, IntFunction<T> load) {
+        return new AbstractCollection<>() {
+            @Override
+            public int size() { return hot.size() + archived.getAsInt(); }
+
+            @Override
+            public Iterator<T> iterator() {
+                Iterator<T> hotIt = hot.values().iterator();
+                int hi = index.end();
+                return new Iterator<T>() {
+                    private T nextHot = hotIt.hasNext() ? hotIt.next() : null;
+                    private int cold = nextLive(index.base);
+                    private T next = advance();
+
+                    private int nextLive(int from) {
+                        for (int id = from; id < hi; id++) {
+                            long e = index.get(id);
+                            if (e == 0) continue;
+                            long orderEntry = index == orderIndex ? e : orderIndex.get((int) e);
+                            if (orderEntry != 0 && (orderEntry & THAWED) == 0) return id;
+                        }
+                        return Integer.MAX_VALUE;
+                    }
+
+                    private T advance() {
+                        while (true) {
+                            int hotId = nextHot == null ? Integer.MAX_VALUE : idOf.applyAsInt(nextHot);
+                            if (hotId == Integer.MAX_VALUE && cold == Integer.MAX_VALUE) return null;
+                            if (hotId <= cold) {
+                                if (hotId == cold) cold = nextLive(cold + 1); // thawed meanwhile: the hot copy wins
+                                T v = nextHot;
+                                nextHot = hotIt.hasNext() ? hotIt.next() : null;
+                                return v;
+                            }
+                            T v = load.apply(cold);
+                            cold = nextLive(cold + 1);
+                            if (v != null) return v;
+                        }
+                    }
+
+                    @Override
+                    public boolean hasNext() { return next != null; }
+
+                    @Override
+                    public T next() {
+                        if (next == null) throw new NoSuchElementException();
+                        T v = next;
+                        next = advance();
+                        return v;
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (data; orderIndex; paymentIndex; deliveryIndex) {
+            windows = new MappedByteBuffer[0];
+        }
+    }
+
+    // --- Record format ---
+    // int orderId | int vendorId | long placedAt | byte status | long refunded
+    // | short items {int productId | int qty | long unitPrice | str name}
+    // | short payments {int id | long amount | long timestamp | str method | str reference ("" for none)}
+    // | byte hasDelivery [int id | long epochDay | byte status]
+    // str = unsigned short length + UTF-8 bytes
+
+    private static Order.Status status(long entry) { return STATUSES[(int) (entry >>> STATUS_SHIFT) & 0xFF]; }
+
+    private int encode(Order o, List<Payment> history, Delivery d) {
+        ByteBuffer b = scratch.clear();
+        b = room(b, 29);
+        b.putInt(o.getId()).putInt(o.getVendorId()).putLong(o.getPlacedAtMillis()).put((byte) o.getStatus().ordinal())
+                .putLong(o.getRefundedCents());
+        b.putShort((short) o.getItemCount());
+        for (int i = 0; i < o.getItemCount(); i++) {
+            OrderItem it = o.getItem(i);
+            b = room(b, 16);
+            b.putInt(it.getProductId()).putInt(it.getQuantity()).putLong(it.getUnitPriceCents());
+            b = putString(b, it.getProductName());
+        }
+        b = room(b, 2);
+        b.putShort((short) history.size());
+        for (Payment p : history) {
+            b = room(b, 20);
+            b.putInt(p.getId()).putLong(p.getAmountCents()).putLong(p.getTimestampMillis());
+            b = putString(b, p.getMethod());
+            b = putString(b, p.getReference() == null ? "" : p.getReference());
+        }
+        b = room(b, 14);
+        b.put((byte) (d == null ? 0 : 1));
+        if (d != null) b.putInt(d.getId()).putLong(d.getDate().toEpochDay()).put((byte) d.getStatus().ordinal());
+        scratch = b;
+        return b.position();
+    }
+
+    private ByteBuffer room(ByteBuffer b, int bytes) {
+        if (b.remaining() >= bytes) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.position() + bytes));
+        return bigger.put(b.flip());
+    }
+
+    private ByteBuffer putString(ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("String too long to archive");
+        b = room(b, 2 + bytes.length);
+        return b.putShort((short) bytes.length).put(bytes);
+    }
+
+    private Archived decode(int orderId, long entry) {
+        long pos = entry & OFFSET_MASK;
+        ByteBuffer in = windows[(int) (pos >>> WINDOW_SHIFT)].duplicate().position((int) (pos & (WINDOW_SIZE - 1)));
+        int id = in.getInt();
+        if (id != orderId) throw new IllegalStateException("Order archive entry for " + orderId + " points at order " + id);
+        int vendorId = in.getInt();
+        long placedAt = in.getLong();
+        Order.Status status = STATUSES[in.get()];
+        long refunded = in.getLong();
+        int n = in.getShort() & 0xFFFF;
+        List<OrderItem> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int pid = in.getInt();
+            int qty = in.getInt();
+            long price = in.getLong();
+            items.add(new OrderItem(pid, getString(in), qty, price));
+        }
+        Order o = new Order(id, vendorId, items, placedAt);
+        o.setStatus(status);
+        o.addRefund(refunded);
+        for (int k = in.getShort() & 0xFFFF; k > 0; k--) {
+            int pid = in.getInt();
+            long amount = in.getLong();
+            long ts = in.getLong();
+            String method = getString(in);
+            String ref = getString(in);
+            o.addPayment(new Payment(pid, id, amount, method, ts, ref.isEmpty() ? null : ref));
+        }
+        Delivery d = null;
+        if (in.get() != 0) {
+            d = new Delivery(in.getInt(), id, LocalDate.ofEpochDay(in.getLong()));
+            d.setStatus(Delivery.Status.values()[in.get()]);
+        }
+        return new Archived(o, d);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] b = new byte[in.getShort() & 0xFFFF];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer window(long n) throws IOException {
+        MappedByteBuffer[] ws = windows;
+        if (n < ws.length && ws[(int) n] != null) return ws[(int) n];
+        synchronized (this) {
+            ws = windows;
+            if (n >= ws.length) ws = Arrays.copyOf(ws, (int) n + 1);
+            for (int i = 0; i <= n; i++) {
+                if (ws[i] == null) ws[i] = data.map(FileChannel.MapMode.READ_WRITE, (long) i << WINDOW_SHIFT, WINDOW_SIZE);
+            }
+            windows = ws;
+            return ws[(int) n];
+        }
+    }
+
+    /** One {@code long} per ID in a file mapped 1 MiB at a time; 0 means no entry. */
+    private static final class Slots implements Closeable {
+        private static final int CHUNK_SHIFT = 17; // slots per mapping
+        private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+        private static final long CHUNK_BYTES = 8L << CHUNK_SHIFT;
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+        final int base;
+        private final FileChannel channel;
+        private volatile MappedByteBuffer[] chunks;
+        private volatile int end; // one past the highest slot that may be set
+
+        Slots(Path file, int base) throws IOException {
+            this.base = base;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int n = (int) ((channel.size() + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            MappedByteBuffer[] cs = new MappedByteBuffer[n];
+            for (int i = 0; i < n; i++) cs[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * CHUNK_BYTES, CHUNK_BYTES);
+            chunks = cs;
+            int hi = n << CHUNK_SHIFT;
+            while (hi > 0 && get(base + hi - 1) == 0) hi--;
+            end = base + hi;
+        }
+
+        int end() { return end; }
+
+        long get(int id) {
+            int idx = id - base;
+            if (idx < 0) return 0;
+            MappedByteBuffer[] cs = chunks;
+            int c = idx >>> CHUNK_SHIFT;
+            if (c >= cs.length) return 0;
+            return (long) LONGS.getAcquire(cs[c], (idx & CHUNK_MASK) << 3);
+        }
+
+        void set(int id, long value) {
+            int idx = id - base;
+            if (idx < 0) throw new IllegalArgumentException("ID " + id + " is below index base " + base);
+            LONGS.setRelease(chunk(idx >>> CHUNK_SHIFT), (idx & CHUNK_MASK) << 3, value);
+            if (id >= end) end = id + 1;
+        }
+
+        private synchronized MappedByteBuffer chunk(int c) {
+            MappedByteBuffer[] cs = chunks;
+            if (c < cs.length) return cs[c];
+            try {
+                cs = Arrays.copyOf(cs, c + 1);
+                for (int i = chunks.length; i <= c; i++) cs[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * CHUNK_BYTES, CHUNK_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks = cs;
+            return cs[c];
+        }
+
+        void force() { for (MappedByteBuffer c : chunks) c.force(); }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    }
+}
@@ -0,0 +1,116 @@
+package assignment2;
+
+import java.util.*;
+
+/**
+ * Non-interactive order placement. Safe to call from many threads at once:
+ * stock for every line item is reserved with CAS on the vendor's per-product
+ * counters, so orders for different products never contend and an order either
+ * reserves all of its lines or none of them.
+ */
+class OrderService {
+    private final DenseStore<Vendor> vendors;
+    private final DenseStore<Product> products;
+    private final DenseStore<Order> orders;
+    private final IdSequence orderIdGen;
+    private final OrderStatusListener statusListener;
+    private final MarketJournal journal; // null when running purely in memory
+    private final MarketMetrics metrics;
+    private final EventBus events;
+
+    OrderService(DenseStore<Vendor> vendors, DenseStore<Product> products, DenseStore<Order> orders, IdSequence orderIdGen,
+                 OrderStatusListener statusListener, MarketJournal journal, MarketMetrics metrics, EventBus events) {
+        this.vendors = vendors; this.products = products; this.orders = orders; this.orderIdGen = orderIdGen;
+        this.statusListener = statusListener; this.journal = journal; this.metrics = metrics; this.events = events;
+    }
+
+    /**
+     * Reserves stock for all lines and records a CONFIRMED order.
+     *
+     * @throws IllegalArgumentException if the vendor or a product is unknown, or stock is insufficient
+     */
+    public Order placeOrder(int vendorId, List<OrderLine> lines) {
+        Vendor vendor = vendors.get(vendorId);
+        if (vendor == null) throw new IllegalArgumentException("Invalid vendor.");
+        if (lines.isEmpty()) throw new IllegalArgumentException("No items selected.");
+
+        // Merge duplicate products and reserve in product order so rollbacks are deterministic
+        TreeMap<Integer, Integer> wanted = new TreeMap<>();
+        for (OrderLine l : lines) {
+            if (l.getQuantity() <= 0) throw new IllegalArgumentException("Quantity must be positive.");
+            Product prod = products.get(l.getProductId());
+            if (prod == null || prod.getVendorId() != vendorId) {
+                throw new IllegalArgumentException("Product " + l.getProductId() + " not found for this vendor.");
+            }
+            try {
+                wanted.merge(l.getProductId(), l.getQuantity(), Math::addExact);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Quantity too large for product " + l.getProductId() + ".");
+            }
+        }
+
+        List<Map.Entry<Integer, Integer>> reserved = new ArrayList<>(wanted.size());
+        for (Map.Entry<Integer, Integer> e : wanted.entrySet()) {
+            if (!vendor.tryReserve(e.getKey(), e.getValue())) {
+                for (Map.Entry<Integer, Integer> r : reserved) vendor.increaseStock(r.getKey(), r.getValue());
+                metrics.stockRejected(e.getKey());
+                throw new IllegalArgumentException("Insufficient stock for product " + e.getKey()
+                        + " (available " + vendor.getStockForProduct(e.getKey()) + ").");
+            }
+            reserved.add(e);
+        }
+
+        return record(vendorId, wanted);
+    }
+
+    /**
+     * Records a CONFIRMED order for lines whose stock the caller has already taken
+     * (a checked-out cart hold). Lines must be distinct products of this vendor.
+     */
+    Order recordReserved(int vendorId, List<OrderLine> lines) {
+        TreeMap<Integer, Integer> wanted = new TreeMap<>();
+        for (OrderLine l : lines) wanted.put(l.getProductId(), l.getQuantity());
+        return record(vendorId, wanted);
+    }
+
+    private Order record(int vendorId, SortedMap<Integer, Integer> wanted) {
+        List<OrderItem> items = new ArrayList<>(wanted.size());
+        for (Map.Entry<Integer, Integer> e : wanted.entrySet()) {
+            Product prod = products.get(e.getKey());
+            items.add(new OrderItem(prod.getId(), prod.getName(), e.getValue(), prod.getPriceCents()));
+        }
+        int oid = orderIdGen.next();
+        Order order = new Order(oid, vendorId, items);
+        // Journal before publishing so no later record can reference an unlogged order
+        if (journal != null) journal.orderPlaced(order);
+        orders.put(oid, order);
+        if (events.hasSubscribers()) {
+            int n = items.size();
+            int[] pids = new int[n], qtys = new int[n];
+            long[] prices = new long[n];
+            for (int i = 0; i < n; i++) {
+                OrderItem it = items.get(i);
+                pids[i] = it.getProductId();
+                qtys[i] = it.getQuantity();
+                prices[i] = it.getUnitPriceCents();
+            }
+            events.publish(new MarketEvent.OrderPlaced(oid, vendorId, order.getTotalCents(), pids, qtys, prices, order.getPlacedAtMillis()));
+        }
+        order.setStatusListener(statusListener);
+        order.setStatus(Order.Status.CONFIRMED);
+        return order;
+    }
+}
+
+class OrderLine {
+    private final int productId;
+    private final int quantity;
+
+    public OrderLine(int productId, int quantity) { this.productId = productId; this.quantity = quantity; }
+
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+
+    @Override
+    public String toString() { return productId + "x" + quantity; }
+}
@@ -0,0 +1,32 @@
+package assignment2;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index of order IDs by {@link Order.Status}. Registered as the status
+ * listener of every stored order, so it is updated on each {@code setStatus}
+ * transition and status listings cost O(result) rather than a scan of all orders.
+ */
+class OrderStatusIndex implements OrderStatusListener {
+    private final Map<Order.Status, Set<Integer>> byStatus = new EnumMap<>(Order.Status.class);
+
+    OrderStatusIndex() {
+        for (Order.Status s : Order.Status.values()) byStatus.put(s, ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public void onStatusChange(Order order, Order.Status from, Order.Status to) {
+        if (from == to) return;
+        if (from != null) byStatus.get(from).remove(order.getId());
+        byStatus.get(to).add(order.getId());
+    }
+
+    /** Drops an order from the index entirely, e.g. when it leaves the store. */
+    public void remove(Order order) { byStatus.get(order.getStatus()).remove(order.getId()); }
+
+    /** Live, read-only view of the order IDs currently in the given status. */
+    public Set<Integer> idsWithStatus(Order.Status status) { return Collections.unmodifiableSet(byStatus.get(status)); }
+
+    public int count(Order.Status status) { return byStatus.get(status).size(); }
+}
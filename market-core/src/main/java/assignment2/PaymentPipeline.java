@@ -0,0 +1,174 @@
+package assignment2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batched, idempotent settlement of terminal payments (end-of-day card/UPI files).
+ * <p>
+ * A batch is validated and de-duplicated by external reference (within the batch
+ * and against every reference the market has already accepted), then grouped by
+ * order. Each order's group is applied under one lock acquisition with the same
+ * capping rule as the counter flow, and the order's status is set once at the end.
+ * Large batches settle their order groups in parallel.
+ */
+class PaymentPipeline {
+    private static final int PARALLEL_THRESHOLD = 2048; // order groups
+
+    private final MarketService market;
+
+    PaymentPipeline(MarketService market) { this.market = market; }
+
+    public ReconciliationReport submit(List<PaymentInstruction> batch) {
+        return submit(batch, new ReconciliationReport());
+    }
+
+    /**
+     * Reads a settlement file of {@code reference,orderId,amount,method} lines (an
+     * optional header starting with "ref" and '#' comments are skipped) and submits it.
+     */
+    public ReconciliationReport submit(Path settlementFile) throws IOException {
+        ReconciliationReport report = new ReconciliationReport();
+        List<PaymentInstruction> batch = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(settlementFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || (lineNo == 1 && line.regionMatches(true, 0, "ref", 0, 3))) continue;
+                String[] f = line.split(",", -1);
+                try {
+                    if (f.length != 4) throw new IllegalArgumentException("expected 4 columns");
+                    batch.add(new PaymentInstruction(f[0].trim(), Integer.parseInt(f[1].trim()), Money.parseCents(f[2]), f[3].trim()));
+                } catch (IllegalArgumentException e) {
+                    report.received();
+                    report.reject(f[0].trim(), 0, "line " + lineNo + ": " + e.getMessage());
+                }
+            }
+        }
+        return submit(batch, report);
+    }
+
+    private ReconciliationReport submit(List<PaymentInstruction> batch, ReconciliationReport report) {
+        long t0 = market.metrics().start();
+        long start = System.nanoTime();
+        Map<Integer, List<PaymentInstruction>> byOrder = new HashMap<>();
+        Set<String> seen = new HashSet<>(batch.size() * 2);
+        for (PaymentInstruction p : batch) {
+            report.received();
+            String reason = validate(p);
+            if (reason != null) {
+                report.reject(p.externalRef(), p.orderId(), reason);
+            } else if (!seen.add(p.externalRef())) {
+                report.duplicate(p);
+            } else {
+                byOrder.computeIfAbsent(p.orderId(), k -> new ArrayList<>(2)).add(p);
+            }
+        }
+        if (byOrder.size() >= PARALLEL_THRESHOLD) {
+            byOrder.entrySet().parallelStream().forEach(e -> market.settlePayments(e.getKey(), e.getValue(), report));
+        } else {
+            byOrder.forEach((oid, group) -> market.settlePayments(oid, group, report));
+        }
+        report.finish(System.nanoTime() - start);
+        market.metrics().record(MarketMetrics.Op.SETTLE_PAYMENTS, t0, report.getRejected() == 0);
+        return report;
+    }
+
+    private static String validate(PaymentInstruction p) {
+        if (p.externalRef() == null || p.externalRef().isBlank()) return "Missing external reference.";
+        if (p.amountCents() <= 0) return "Payment amount must be positive.";
+        if (p.method() == null || p.method().isBlank()) return "Payment method is required.";
+        if (!MarketJournal.fits(p.externalRef()) || !MarketJournal.fits(p.method())) return "Reference or method is too long.";
+        return null;
+    }
+}
+
+/** One terminal payment from a settlement file. */
+record PaymentInstruction(String externalRef, int orderId, long amountCents, String method) {}
+
+/**
+ * Outcome of a settlement batch. Counters are safe to update from the parallel
+ * order groups; read them once {@link PaymentPipeline#submit} has returned.
+ */
+final class ReconciliationReport {
+    private static final int MAX_PRINTED_EXCEPTIONS = 20;
+
+    /** A payment that was not applied, and why. */
+    record Exception(String externalRef, int orderId, String reason) {}
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder capped = new LongAdder();
+    private final LongAdder appliedCents = new LongAdder();
+    private final LongAdder changeCents = new LongAdder();
+    private final LongAdder ordersPaid = new LongAdder();
+    private final LongAdder ordersPending = new LongAdder();
+    private final Queue<Exception> exceptions = new ConcurrentLinkedQueue<>();
+    private long elapsedNanos;
+
+    void received() { received.increment(); }
+
+    void applied(long cents) { applied.increment(); appliedCents.add(cents); }
+
+    /** The payment was applied but exceeded the amount due; the excess is returned as change. */
+    void capped(long excessCents) { capped.increment(); changeCents.add(excessCents); }
+
+    void duplicate(PaymentInstruction p) {
+        duplicates.increment();
+        exceptions.add(new Exception(p.externalRef(), p.orderId(), "Duplicate reference."));
+    }
+
+    void reject(String ref, int orderId, String reason) {
+        rejected.increment();
+        exceptions.add(new Exception(ref, orderId, reason));
+    }
+
+    void orderSettled(Order.Status status) {
+        if (status == Order.Status.PAID) ordersPaid.increment();
+        else ordersPending.increment();
+    }
+
+    void finish(long nanos) { elapsedNanos = nanos; }
+
+    public long getReceived() { return received.sum(); }
+    public long getApplied() { return applied.sum(); }
+    public long getDuplicates() { return duplicates.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getCapped() { return capped.sum(); }
+    public long getAppliedCents() { return appliedCents.sum(); }
+    public long getChangeCents() { return changeCents.sum(); }
+    public long getOrdersPaid() { return ordersPaid.sum(); }
+    public long getOrdersPending() { return ordersPending.sum(); }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public List<Exception> getExceptions() { return new ArrayList<>(exceptions); }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Settlement: ").append(getReceived()).append(" received, ").append(getApplied()).append(" applied (")
+          .append(Money.format(getAppliedCents())).append("), ").append(getDuplicates()).append(" duplicate, ")
+          .append(getRejected()).append(" rejected, ").append(getCapped()).append(" capped (change ")
+          .append(Money.format(getChangeCents())).append(")\n  orders now PAID: ").append(getOrdersPaid())
+          .append(", PAYMENT_PENDING: ").append(getOrdersPending())
+          .append("\n  elapsed ").append(elapsedNanos / 1_000_000).append(" ms");
+        int shown = 0;
+        for (Exception e : exceptions) {
+            if (shown++ == MAX_PRINTED_EXCEPTIONS) {
+                sb.append("\n  ... ").append(exceptions.size() - MAX_PRINTED_EXCEPTIONS).append(" more exceptions");
+                break;
+            }
+            sb.append("\n  ").append(e.externalRef()).append(" order ").append(e.orderId()).append(": ").append(e.reason());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package assignment2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Type-ahead search over product names across all vendors. Names are split into
+ * words (runs of letters and digits, lower-cased) and each word maps to the IDs of
+ * the products containing it in a sorted {@link ConcurrentSkipListMap}, so every
+ * word starting with a prefix is one contiguous range. A query matches products
+ * having, for each query word, a name word that starts with it: "org app" finds
+ * "Organic Apples".
+ * <p>
+ * Candidates come from the longest query word, the most selective on average, in
+ * order of the matched word (so an exact word comes before its longer extensions)
+ * until the limit is reached. Each posting list keeps prices beside the IDs, so the
+ * price filter scans arrays without touching the products; names are only read for
+ * the other query words, and stock is read from the vendor's inventory last, so
+ * stock changes need no index maintenance. Adding a product appends to one posting
+ * list per word. Products are never renamed or removed.
+ */
+final class ProductSearch {
+    static final int MAX_LIMIT = 1000;
+
+    // The products whose names contain one word, with their prices; appended under the
+    // monitor, read without it: size is published after the slots (and any grown arrays)
+    private static final class Postings {
+        volatile int[] ids = new int[2];
+        volatile long[] prices = new long[2];
+        volatile int size;
+
+        synchronized void add(int id, long priceCents) {
+            int n = size;
+            if (n > 0 && ids[n - 1] == id) return; // the word repeats in the name
+            int[] a = ids;
+            long[] b = prices;
+            if (n == a.length) {
+                a = Arrays.copyOf(a, n * 2);
+                b = Arrays.copyOf(b, n * 2);
+            }
+            a[n] = id;
+            b[n] = priceCents;
+            ids = a;
+            prices = b;
+            size = n + 1;
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Postings> index = new ConcurrentSkipListMap<>();
+    private final DenseStore<Product> products;
+    private final DenseStore<Vendor> vendors;
+
+    ProductSearch(DenseStore<Product> products, DenseStore<Vendor> vendors) {
+        this.products = products;
+        this.vendors = vendors;
+    }
+
+    void add(Product p) {
+        for (String w : words(p.getName())) index.computeIfAbsent(w, k -> new Postings()).add(p.getId(), p.getPriceCents());
+    }
+
+    int wordCount() { return index.size(); }
+
+    /**
+     * Up to {@code limit} products matching every word of {@code text}, priced within
+     * [{@code minCents}, {@code maxCents}] and, if {@code inStockOnly}, with stock left.
+     */
+    List<Product> search(String text, long minCents, long maxCents, boolean inStockOnly, int limit) {
+        List<String> terms = words(text);
+        List<Product> found = new ArrayList<>(Math.min(limit, 64));
+        if (terms.isEmpty() || limit <= 0) return found;
+        String lead = terms.get(0);
+        for (String t : terms) if (t.length() > lead.length()) lead = t;
+        Set<Integer> seen = limit > 32 ? new HashSet<>() : null;
+        for (Map.Entry<String, Postings> e : index.subMap(lead, true, lead + Character.MAX_VALUE, false).entrySet()) {
+            Postings ps = e.getValue();
+            int n = ps.size;
+            int[] ids = ps.ids;
+            long[] prices = ps.prices;
+            for (int i = 0; i < n; i++) {
+                if (prices[i] < minCents || prices[i] > maxCents) continue;
+                Product p = products.get(ids[i]);
+                if (p == null || (terms.size() > 1 && !matchesAll(p.getName(), terms, lead))) continue;
+                if (inStockOnly) {
+                    Vendor v = vendors.get(p.getVendorId());
+                    if (v == null || v.getStockForProduct(p.getId()) <= 0) continue;
+                }
+                // A name with several words extending the lead is listed under each; keep the first
+                if (seen != null ? !seen.add(p.getId()) : found.contains(p)) continue;
+                found.add(p);
+                if (found.size() == limit) return found;
+            }
+        }
+        return found;
+    }
+
+    /** Lower-cased runs of letters and digits. */
+    static List<String> words(String s) {
+        List<String> list = new ArrayList<>(4);
+        if (s == null) return list;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = s.length(); i <= n; i++) {
+            char c = i < n ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                list.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        return list;
+    }
+
+    private static boolean matchesAll(String name, List<String> terms, String lead) {
+        for (String t : terms) {
+            if (t != lead && wordStarting(name, t) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Offset of the first word of name that starts with prefix, or -1. */
+    private static int wordStarting(String name, String prefix) {
+        int last = name.length() - prefix.length();
+        for (int i = 0; i <= last; i++) {
+            if ((i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1))) && Character.isLetterOrDigit(name.charAt(i))
+                    && name.regionMatches(true, i, prefix, 0, prefix.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
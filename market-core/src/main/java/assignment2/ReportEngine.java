@@ -0,0 +1,367 @@
+package assignment2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Streams order and inventory listings as text, CSV or JSON. Rows are rendered
+ * straight into one reusable byte buffer (digits, money and dates by hand, ASCII
+ * strings copied without a charset encoder) that is written out in 64 KB chunks,
+ * so a report costs a handful of allocations however many rows it has. Placement
+ * times are shown in the local zone's offset as of the start of the report.
+ * <p>
+ * One engine may serve concurrent reports; all buffers are per call.
+ */
+class ReportEngine {
+    enum Format { TEXT, CSV, JSON }
+
+    private static final int CHUNK = 1 << 16;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final MarketService market;
+    private final ZoneId zone;
+
+    ReportEngine(MarketService market) { this(market, ZoneId.systemDefault()); }
+
+    ReportEngine(MarketService market, ZoneId zone) {
+        this.market = market;
+        this.zone = zone;
+    }
+
+    public long writeOrders(ReportQuery q, Format format, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return writeOrders(q, format, out);
+        }
+    }
+
+    public long writeInventory(ReportQuery q, Format format, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return writeInventory(q, format, out);
+        }
+    }
+
+    /** Writes the matching orders as UTF-8 and returns how many rows were written. Flushes, never closes, {@code out}. */
+    public long writeOrders(ReportQuery q, Format format, OutputStream out) throws IOException {
+        Sink sink = new Sink(out);
+        long offsetMillis = zone.getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        long fromMillis = q.from() == null ? Long.MIN_VALUE : q.from().atStartOfDay(zone).toInstant().toEpochMilli();
+        long toMillis = q.to() == null ? Long.MAX_VALUE : q.to().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        if (format == Format.CSV) sink.ascii("orderId,vendorId,status,placedAt,total,paid,due,refunded,items\n");
+        if (format == Format.JSON) sink.ascii("[\n");
+
+        long skipped = 0, written = 0;
+        if (q.statuses().isEmpty()) {
+            for (Order o : market.orders()) {
+                if (written == q.limit()) break;
+                if (!matches(o, q, fromMillis, toMillis)) continue;
+                if (skipped++ < q.offset()) continue;
+                orderRow(sink, o, format, offsetMillis, written++ == 0);
+                sink.maybeFlush();
+            }
+        } else {
+            for (int oid : market.orderIdsWithStatus(q.statuses().toArray(new Order.Status[0]))) {
+                if (written == q.limit()) break;
+                Order o = market.getOrder(oid);
+                if (o == null || !matches(o, q, fromMillis, toMillis)) continue;
+                if (skipped++ < q.offset()) continue;
+                orderRow(sink, o, format, offsetMillis, written++ == 0);
+                sink.maybeFlush();
+            }
+        }
+        if (format == Format.JSON) sink.ascii(written == 0 ? "]\n" : "\n]\n");
+        sink.finish();
+        return written;
+    }
+
+    /** Writes one row per vendor product (text: grouped under each vendor) and returns the product rows written. */
+    public long writeInventory(ReportQuery q, Format format, OutputStream out) throws IOException {
+        Sink sink = new Sink(out);
+        if (format == Format.CSV) sink.ascii("vendorId,vendor,productId,product,price,stock\n");
+        if (format == Format.JSON) sink.ascii("[\n");
+        long skipped = 0, written = 0;
+        for (Vendor v : market.vendors()) {
+            if (written == q.limit()) break;
+            if (q.vendorId() != 0 && v.getId() != q.vendorId()) continue;
+            boolean header = false;
+            for (int pid : v.getProductIds()) {
+                if (written == q.limit()) break;
+                Product p = market.getProduct(pid);
+                if (p == null || skipped++ < q.offset()) continue;
+                int stock = v.getStockForProduct(pid);
+                switch (format) {
+                    case TEXT -> {
+                        if (!header) {
+                            sink.ascii("Vendor[").integer(v.getId()).ascii("] ").utf8(v.getName()).ascii("\nProducts:\n");
+                            header = true;
+                        }
+                        sink.ascii("  Product[").integer(pid).ascii("] ").utf8(p.getName()).ascii(" (")
+                            .money(p.getPriceCents()).ascii(") | Stock: ").integer(stock).ascii('\n');
+                    }
+                    case CSV -> sink.integer(v.getId()).ascii(',').csv(v.getName()).ascii(',').integer(pid).ascii(',')
+                            .csv(p.getName()).ascii(',').money(p.getPriceCents()).ascii(',').integer(stock).ascii('\n');
+                    case JSON -> {
+                        if (written > 0) sink.ascii(",\n");
+                        sink.ascii("{\"vendorId\":").integer(v.getId()).ascii(",\"vendor\":").json(v.getName())
+                            .ascii(",\"productId\":").integer(pid).ascii(",\"product\":").json(p.getName())
+                            .ascii(",\"price\":").money(p.getPriceCents()).ascii(",\"stock\":").integer(stock).ascii('}');
+                    }
+                }
+                written++;
+                sink.maybeFlush();
+            }
+            if (header) sink.ascii('\n');
+        }
+        if (format == Format.JSON) sink.ascii(written == 0 ? "]\n" : "\n]\n");
+        sink.finish();
+        return written;
+    }
+
+    private static boolean matches(Order o, ReportQuery q, long fromMillis, long toMillis) {
+        if (q.vendorId() != 0 && o.getVendorId() != q.vendorId()) return false;
+        if (!q.statuses().isEmpty() && !q.statuses().contains(o.getStatus())) return false;
+        long t = o.getPlacedAtMillis();
+        return t >= fromMillis && t < toMillis;
+    }
+
+    private static void orderRow(Sink sink, Order o, Format format, long offsetMillis, boolean first) {
+        int n = o.getItemCount();
+        long placed = o.getPlacedAtMillis() + offsetMillis;
+        switch (format) {
+            case TEXT -> {
+                sink.ascii("Order[").integer(o.getId()).ascii("] Vendor=").integer(o.getVendorId())
+                    .ascii(" Status=").ascii(o.getStatus().name()).ascii(" Placed=").dateTime(placed, ' ')
+                    .ascii(" Total=").money(o.getTotalCents()).ascii(" Paid=").money(o.getPaidCents()).ascii(" Items=[");
+                for (int i = 0; i < n; i++) {
+                    OrderItem it = o.getItem(i);
+                    if (i > 0) sink.ascii(", ");
+                    sink.ascii('{').utf8(it.getProductName()).ascii('[').integer(it.getProductId()).ascii("] x")
+                        .integer(it.getQuantity()).ascii(" @").money(it.getUnitPriceCents()).ascii('}');
+                }
+                sink.ascii("]\n");
+            }
+            case CSV -> {
+                sink.integer(o.getId()).ascii(',').integer(o.getVendorId()).ascii(',').ascii(o.getStatus().name()).ascii(',')
+                    .dateTime(placed, 'T').ascii(',').money(o.getTotalCents()).ascii(',').money(o.getPaidCents()).ascii(',')
+                    .money(o.getAmountDueCents()).ascii(',').money(o.getRefundedCents()).ascii(',');
+                // Same productId:quantity;... shape the batch interpreter reads
+                for (int i = 0; i < n; i++) {
+                    OrderItem it = o.getItem(i);
+                    if (i > 0) sink.ascii(';');
+                    sink.integer(it.getProductId()).ascii(':').integer(it.getQuantity());
+                }
+                sink.ascii('\n');
+            }
+            case JSON -> {
+                if (!first) sink.ascii(",\n");
+                sink.ascii("{\"orderId\":").integer(o.getId()).ascii(",\"vendorId\":").integer(o.getVendorId())
+                    .ascii(",\"status\":\"").ascii(o.getStatus().name()).ascii("\",\"placedAt\":\"").dateTime(placed, 'T')
+                    .ascii("\",\"total\":").money(o.getTotalCents()).ascii(",\"paid\":").money(o.getPaidCents())
+                    .ascii(",\"due\":").money(o.getAmountDueCents()).ascii(",\"refunded\":").money(o.getRefundedCents())
+                    .ascii(",\"items\":[");
+                for (int i = 0; i < n; i++) {
+                    OrderItem it = o.getItem(i);
+                    if (i > 0) sink.ascii(',');
+                    sink.ascii("{\"productId\":").integer(it.getProductId()).ascii(",\"name\":").json(it.getProductName())
+                        .ascii(",\"quantity\":").integer(it.getQuantity()).ascii(",\"unitPrice\":").money(it.getUnitPriceCents()).ascii('}');
+                }
+                sink.ascii("]}");
+            }
+        }
+    }
+
+    /** Appends local epoch millis as {@code yyyy-MM-dd<sep>HH:mm} without going through java.time objects. */
+    static void appendDateTime(StringBuilder sb, long localMillis, char sep) {
+        long days = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int minuteOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / 60_000);
+        // Civil-from-days (H. Hinnant): proleptic Gregorian, era of 400 years
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        sb.append(year).append('-');
+        two(sb, month).append('-');
+        two(sb, day).append(sep);
+        two(sb, minuteOfDay / 60).append(':');
+        two(sb, minuteOfDay % 60);
+    }
+
+    private static StringBuilder two(StringBuilder sb, int v) {
+        return sb.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+    }
+
+    /**
+     * Reusable UTF-8 row buffer. Every append reserves its worst case first, so a
+     * single row may run past {@link #CHUNK}; {@link #maybeFlush} is called between rows.
+     */
+    private static final class Sink {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+        private final OutputStream out;
+        private byte[] buf = new byte[CHUNK + 4096];
+        private int pos;
+        // Orders cluster in time, so the rendered minute is usually the previous row's
+        private long cachedMinute = Long.MIN_VALUE;
+        private char cachedSep;
+        private final StringBuilder dateScratch = new StringBuilder(24);
+        private byte[] cachedDate = new byte[0];
+
+        Sink(OutputStream out) { this.out = out; }
+
+        void maybeFlush() throws IOException {
+            if (pos >= CHUNK) drain();
+        }
+
+        void finish() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        private void reserve(int n) {
+            if (pos + n > buf.length) buf = java.util.Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+
+        Sink ascii(char c) {
+            reserve(1);
+            buf[pos++] = (byte) c;
+            return this;
+        }
+
+        /** For literals and enum names, which are known to be ASCII. */
+        Sink ascii(String s) {
+            int n = s.length();
+            reserve(n);
+            for (int i = 0; i < n; i++) buf[pos++] = (byte) s.charAt(i);
+            return this;
+        }
+
+        Sink utf8(String s) {
+            int n = s.length();
+            reserve(n * 3);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else {
+                    // Rare: hand the rest of the string to the JDK encoder (handles surrogate pairs)
+                    byte[] rest = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                    reserve(rest.length);
+                    System.arraycopy(rest, 0, buf, pos, rest.length);
+                    pos += rest.length;
+                    break;
+                }
+            }
+            return this;
+        }
+
+        Sink csv(String s) {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) return utf8(s);
+            ascii('"');
+            int start = 0;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) == '"') {
+                    utf8(s.substring(start, i + 1)).ascii('"');
+                    start = i + 1;
+                }
+            }
+            return utf8(s.substring(start)).ascii('"');
+        }
+
+        Sink json(String s) {
+            ascii('"');
+            int n = s.length();
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    reserve(1);
+                    buf[pos++] = (byte) c;
+                } else if (c == '"' || c == '\\') {
+                    ascii('\\').ascii(c);
+                } else if (c < 0x20) {
+                    ascii("\\u00").ascii((char) HEX[c >> 4]).ascii((char) HEX[c & 0xF]);
+                } else {
+                    int end = Character.isHighSurrogate(c) && i + 1 < n ? i + 2 : i + 1;
+                    utf8(s.substring(i, end));
+                    i = end - 1;
+                }
+            }
+            return ascii('"');
+        }
+
+        Sink integer(int v) {
+            if (v < 0) {
+                if (v == Integer.MIN_VALUE) return ascii("-2147483648");
+                ascii('-');
+                v = -v;
+            }
+            reserve(10);
+            int len = digits(v);
+            int p = pos + len;
+            while (v >= 10) {
+                int q = v / 10;
+                buf[--p] = (byte) ('0' + (v - q * 10));
+                v = q;
+            }
+            buf[--p] = (byte) ('0' + v);
+            pos += len;
+            return this;
+        }
+
+        Sink money(long cents) {
+            if (cents < 0) {
+                if (cents == Long.MIN_VALUE) return ascii("-92233720368547758.08");
+                ascii('-');
+                cents = -cents;
+            }
+            long units = cents / 100;
+            int frac = (int) (cents - units * 100);
+            if (units <= Integer.MAX_VALUE) integer((int) units);
+            else ascii(Long.toString(units));
+            reserve(3);
+            buf[pos++] = '.';
+            buf[pos++] = (byte) ('0' + frac / 10);
+            buf[pos++] = (byte) ('0' + frac % 10);
+            return this;
+        }
+
+        Sink dateTime(long localMillis, char sep) {
+            long minute = Math.floorDiv(localMillis, 60_000L);
+            if (minute != cachedMinute || sep != cachedSep) {
+                dateScratch.setLength(0);
+                appendDateTime(dateScratch, localMillis, sep);
+                cachedDate = dateScratch.toString().getBytes(StandardCharsets.US_ASCII);
+                cachedMinute = minute;
+                cachedSep = sep;
+            }
+            reserve(cachedDate.length);
+            System.arraycopy(cachedDate, 0, buf, pos, cachedDate.length);
+            pos += cachedDate.length;
+            return this;
+        }
+
+        private static int digits(int v) {
+            int d = 1;
+            for (int x = 10; d < 10 && v >= x; x *= 10) d++;
+            return d;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package assignment2;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which orders a {@link ReportEngine} report includes. Filters combine with AND;
+ * paging applies after filtering, in ascending order ID.
+ *
+ * @param vendorId only this vendor's orders (and inventory); 0 for all vendors
+ * @param statuses only orders in one of these states; empty for any
+ * @param from     only orders placed on or after this local date; null for no bound
+ * @param to       only orders placed on or before this local date; null for no bound
+ * @param offset   matching rows to skip
+ * @param limit    maximum rows to write
+ */
+record ReportQuery(int vendorId, Set<Order.Status> statuses, LocalDate from, LocalDate to, int offset, int limit) {
+
+    static ReportQuery all() {
+        return new ReportQuery(0, EnumSet.noneOf(Order.Status.class), null, null, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads {@code vendor}, {@code status} (comma-separated), {@code from}, {@code to},
+     * {@code offset} and {@code limit} from command-line or query-string options;
+     * absent keys leave the filter open and {@code defaultLimit} applies without a limit.
+     *
+     * @throws IllegalArgumentException if a value does not parse
+     */
+    static ReportQuery fromOptions(Map<String, String> opts, int defaultLimit) {
+        ReportQuery q = all();
+        try {
+            if (opts.containsKey("vendor")) q = q.withVendor(Integer.parseInt(opts.get("vendor")));
+            if (opts.containsKey("status")) {
+                Set<Order.Status> statuses = EnumSet.noneOf(Order.Status.class);
+                for (String s : opts.get("status").split(",")) statuses.add(Order.Status.valueOf(s.trim().toUpperCase()));
+                q = q.withStatuses(statuses);
+            }
+            LocalDate from = opts.containsKey("from") ? LocalDate.parse(opts.get("from")) : null;
+            LocalDate to = opts.containsKey("to") ? LocalDate.parse(opts.get("to")) : null;
+            q = q.withPlacedBetween(from, to);
+            return q.withPage(Integer.parseInt(opts.getOrDefault("offset", "0")),
+                    opts.containsKey("limit") ? Integer.parseInt(opts.get("limit")) : defaultLimit);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    ReportQuery withVendor(int id) {
+        return new ReportQuery(id, statuses, from, to, offset, limit);
+    }
+
+    ReportQuery withStatuses(Set<Order.Status> s) {
+        return new ReportQuery(vendorId, s.isEmpty() ? EnumSet.noneOf(Order.Status.class) : EnumSet.copyOf(s), from, to, offset, limit);
+    }
+
+    ReportQuery withPlacedBetween(LocalDate first, LocalDate last) {
+        return new ReportQuery(vendorId, statuses, first, last, offset, limit);
+    }
+
+    ReportQuery withPage(int skip, int max) {
+        if (skip < 0 || max < 0) throw new IllegalArgumentException("Offset and limit cannot be negative.");
+        return new ReportQuery(vendorId, statuses, from, to, skip, max);
+    }
+}
@@ -0,0 +1,40 @@
+package assignment2;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of return requests awaiting a decision, oldest (lowest ID) first. Returns
+ * enter when they are requested or restored as PENDING_APPROVAL and leave when they
+ * are approved or denied, so review screens and bulk decisions never scan every
+ * return ever filed.
+ */
+class ReturnQueue {
+    private final NavigableSet<Integer> pending = new ConcurrentSkipListSet<>();
+    private final AtomicInteger size = new AtomicInteger(); // skip-list size() is a full walk
+
+    void add(int returnId) {
+        if (pending.add(returnId)) size.incrementAndGet();
+    }
+
+    void remove(int returnId) {
+        if (pending.remove(returnId)) size.decrementAndGet();
+    }
+
+    boolean contains(int returnId) { return pending.contains(returnId); }
+
+    int size() { return size.get(); }
+
+    /** Up to {@code max} pending return IDs, oldest first. */
+    int[] oldest(int max) {
+        int[] ids = new int[Math.min(max, size())];
+        int n = 0;
+        for (Integer id : pending) {
+            if (n == ids.length) break;
+            ids[n++] = id;
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+}
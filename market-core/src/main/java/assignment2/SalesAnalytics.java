@@ -0,0 +1,334 @@
+package assignment2;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sales rollups kept up to date from the {@link EventBus} instead of recomputed from
+ * order history: per vendor, per product, per vendor per local day, per hour and for
+ * the whole market, plus net-sales leaderboards of products and vendors. Lookups are
+ * array or hash gets, a top-N query walks the first N entries of a sorted index, and
+ * an hourly range is a sub-map view.
+ * <p>
+ * Every change is applied by one subscriber thread, so updates need neither atomic
+ * read-modify-writes nor striped adders: each figure has a single writer that
+ * publishes it with a release store, readers never lock, and figures read together
+ * may straddle one change. Leaderboards are updated once per batch of events.
+ * Reads trail the operations by the subscriber's lag; {@link #sync} waits until everything applied before the call is
+ * counted. On start the rollups are seeded from the market's current state in one
+ * pass, so nothing has to be replayed through the bus; seeded returns count in the
+ * hour their order was placed, as decisions are not timestamped.
+ */
+final class SalesAnalytics {
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    /** Running totals. Products carry units, sales and returns only: payments and refunds are per order. */
+    static final class Rollup {
+        private static final int ORDERS = 0, UNITS_SOLD = 1, SALES = 2, UNITS_RETURNED = 3, RETURNED = 4, REFUNDED = 5,
+                COLLECTED = 6, OUTSTANDING = 7;
+        // One writer: read back plainly, stored with release semantics (no fence on x86), read by anyone
+        private final AtomicLongArray figures = new AtomicLongArray(8);
+        // Writer-only bookkeeping
+        private final int id;
+        private long ranked = Long.MIN_VALUE; // net sales as entered on the leaderboard; MIN_VALUE before the first entry
+        private boolean dirty;
+        private long dayKey = -1; // vendor rollups: the vendor-day bucket last used
+        private Rollup day;
+
+        private Rollup(int id) { this.id = id; }
+
+        private void add(int figure, long delta) { figures.lazySet(figure, figures.getPlain(figure) + delta); }
+
+        public long getOrders() { return figures.get(ORDERS); }
+        public long getUnitsSold() { return figures.get(UNITS_SOLD); }
+        /** Order value as placed. */
+        public long getSalesCents() { return figures.get(SALES); }
+        public long getUnitsReturned() { return figures.get(UNITS_RETURNED); }
+        /** Order value taken off by approved returns. */
+        public long getReturnedCents() { return figures.get(RETURNED); }
+        public long getNetSalesCents() { return getSalesCents() - getReturnedCents(); }
+        public long getRefundedCents() { return figures.get(REFUNDED); }
+        /** Payments received less refunds paid. */
+        public long getCollectedCents() { return figures.get(COLLECTED); }
+        /** Net sales not yet collected; a time bucket holds the change during that bucket. */
+        public long getOutstandingCents() { return figures.get(OUTSTANDING); }
+
+        @Override
+        public String toString() {
+            return "orders=" + getOrders() + " units=" + getUnitsSold() + " sales=" + Money.format(getSalesCents())
+                    + " returned=" + getUnitsReturned() + "/" + Money.format(getReturnedCents())
+                    + " refunded=" + Money.format(getRefundedCents()) + " collected=" + Money.format(getCollectedCents())
+                    + " outstanding=" + Money.format(getOutstandingCents());
+        }
+    }
+
+    /** One leaderboard entry. */
+    record Rank(int id, long netSalesCents) {}
+
+    private static final Comparator<Rank> BY_NET_SALES = (a, b) -> a.netSalesCents != b.netSalesCents
+            ? Long.compare(b.netSalesCents, a.netSalesCents) : Integer.compare(a.id, b.id);
+    private static final Rollup EMPTY = new Rollup(0);
+    private static final String REFUND = MarketService.REFUND_METHOD;
+
+    private final ZoneId zone;
+    private final Rollup total = new Rollup(0);
+    private final DenseStore<Rollup> vendors;
+    private final DenseStore<Rollup> products;
+    private final ConcurrentHashMap<Long, Rollup> vendorDays = new ConcurrentHashMap<>(); // see dayKey
+    private final ConcurrentSkipListMap<Long, Rollup> hours = new ConcurrentSkipListMap<>(); // start of hour, epoch millis
+    private final ConcurrentSkipListSet<Rank> vendorBoard = new ConcurrentSkipListSet<>(BY_NET_SALES);
+    private final ConcurrentSkipListSet<Rank> productBoard = new ConcurrentSkipListSet<>(BY_NET_SALES);
+    private EventBus.Subscription subscription;
+    // Writer-only: rollups whose net sales changed since the leaderboards were last updated
+    private final List<Rollup> dirtyVendors = new ArrayList<>();
+    private final List<Rollup> dirtyProducts = new ArrayList<>();
+    // Writer-only: the hour bucket and local day of the last timestamp seen, so most events skip the lookups
+    private long hourStart = Long.MIN_VALUE;
+    private Rollup hour;
+    private long dayStart = 1, dayEnd = 0, epochDay;
+
+    SalesAnalytics(int vendorIdBase, int productIdBase, ZoneId zone) {
+        this.vendors = new DenseStore<>(vendorIdBase);
+        this.products = new DenseStore<>(productIdBase);
+        this.zone = zone;
+    }
+
+    /** Seeds from {@code market}'s current state, then follows {@code events}; call before the market takes requests. */
+    void start(MarketService market, EventBus events) {
+        seed(market);
+        rerank();
+        subscription = events.subscribe("sales-analytics", (e, seq, endOfBatch) -> {
+            apply(e);
+            if (endOfBatch) rerank();
+        });
+    }
+
+    /** Stops following the bus; totals keep their last values. */
+    void stop() {
+        if (subscription != null) subscription.close();
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} until every event published before this call
+     * has been applied; returns false on timeout or if not started.
+     */
+    boolean sync(long timeoutMillis) {
+        return subscription != null && subscription.awaitCaughtUp(timeoutMillis);
+    }
+
+    long lag() { return subscription == null ? 0 : subscription.lag(); }
+
+    // --- Queries ---
+
+    Rollup total() { return total; }
+
+    Rollup vendor(int vendorId) { return orEmpty(vendors.get(vendorId)); }
+
+    Rollup product(int productId) { return orEmpty(products.get(productId)); }
+
+    Rollup vendorOn(int vendorId, LocalDate day) {
+        return orEmpty(vendorDays.get(dayKey(vendorId, day.toEpochDay())));
+    }
+
+    /** Hourly buckets starting in [{@code fromMillis}, {@code toMillis}), keyed by the hour's start. */
+    NavigableMap<Long, Rollup> hourly(long fromMillis, long toMillis) {
+        return Collections.unmodifiableNavigableMap(hours.subMap(Math.floorDiv(fromMillis, HOUR_MILLIS) * HOUR_MILLIS, true, toMillis, false));
+    }
+
+    /** The {@code n} products with the highest net sales, as of the end of the last batch of events. */
+    List<Rank> topProducts(int n) { return top(productBoard, n); }
+
+    /** The {@code n} vendors with the highest net sales. */
+    List<Rank> topVendors(int n) { return top(vendorBoard, n); }
+
+    private static List<Rank> top(ConcurrentSkipListSet<Rank> board, int n) {
+        List<Rank> out = new ArrayList<>(Math.min(n, 64));
+        for (Rank r : board) {
+            if (out.size() >= n) break;
+            out.add(r);
+        }
+        return out;
+    }
+
+    private static Rollup orEmpty(Rollup r) { return r == null ? EMPTY : r; }
+
+    // --- Updates, on the subscriber thread (or the starting thread while seeding) ---
+
+    private void apply(MarketEvent e) {
+        if (e instanceof MarketEvent.OrderPlaced o) {
+            order(o.vendorId(), o.totalCents(), o.placedAtMillis(), true);
+            for (int i = 0; i < o.productIds().length; i++) {
+                line(o.vendorId(), o.productIds()[i], o.quantities()[i], o.quantities()[i] * o.unitPriceCents()[i], o.placedAtMillis());
+            }
+        } else if (e instanceof MarketEvent.PaymentRecorded p) {
+            payment(p.vendorId(), p.amountCents(), REFUND.equals(p.method()), p.atMillis());
+        } else if (e instanceof MarketEvent.ReturnDecided r && r.approved()) {
+            returned(r.vendorId(), r.productId(), r.quantity(), r.valueCents(), r.atMillis());
+        }
+    }
+
+    private void seed(MarketService market) {
+        for (Order o : market.orders()) {
+            // Items hold what is left after returns; approved returns below add back what they took
+            order(o.getVendorId(), o.getTotalCents(), o.getPlacedAtMillis(), true);
+            for (int i = 0, n = o.getItemCount(); i < n; i++) {
+                OrderItem it = o.getItem(i);
+                line(o.getVendorId(), it.getProductId(), it.getQuantity(), it.getLineTotalCents(), o.getPlacedAtMillis());
+            }
+        }
+        for (ReturnRequest rr : market.returns()) {
+            if (rr.getStatus() != ReturnRequest.Status.APPROVED) continue;
+            Order o = market.getOrder(rr.getOrderId());
+            OrderItem it = o == null ? null : o.findItem(rr.getProductId());
+            if (it == null) continue;
+            long value = rr.getQuantity() * it.getUnitPriceCents();
+            order(o.getVendorId(), value, o.getPlacedAtMillis(), false);
+            line(o.getVendorId(), rr.getProductId(), rr.getQuantity(), value, o.getPlacedAtMillis());
+            returned(o.getVendorId(), rr.getProductId(), rr.getQuantity(), value, o.getPlacedAtMillis());
+        }
+        for (Payment p : market.payments()) {
+            Order o = market.getOrder(p.getOrderId());
+            if (o != null) payment(o.getVendorId(), p.getAmountCents(), REFUND.equals(p.getMethod()), p.getTimestampMillis());
+        }
+    }
+
+    /** Order-level sales for an order placed at {@code at}; {@code newOrder} false adds value to an order already counted. */
+    private void order(int vendorId, long cents, long at, boolean newOrder) {
+        Rollup v = vendorRollup(vendorId);
+        sale(total, cents, newOrder);
+        sale(v, cents, newOrder);
+        sale(vendorDay(v, at), cents, newOrder);
+        sale(hour(at), cents, newOrder);
+        touch(v, dirtyVendors);
+    }
+
+    private static void sale(Rollup r, long cents, boolean newOrder) {
+        if (newOrder) r.add(Rollup.ORDERS, 1);
+        r.add(Rollup.SALES, cents);
+        r.add(Rollup.OUTSTANDING, cents);
+    }
+
+    /** Units of one order line (and their value, at product level). */
+    private void line(int vendorId, int productId, int qty, long cents, long at) {
+        Rollup v = vendorRollup(vendorId);
+        total.add(Rollup.UNITS_SOLD, qty);
+        v.add(Rollup.UNITS_SOLD, qty);
+        vendorDay(v, at).add(Rollup.UNITS_SOLD, qty);
+        hour(at).add(Rollup.UNITS_SOLD, qty);
+        Rollup p = productRollup(productId);
+        p.add(Rollup.UNITS_SOLD, qty);
+        p.add(Rollup.SALES, cents);
+        touch(p, dirtyProducts);
+    }
+
+    private void payment(int vendorId, long cents, boolean refund, long at) {
+        Rollup v = vendorRollup(vendorId);
+        paid(total, cents, refund);
+        paid(v, cents, refund);
+        paid(vendorDay(v, at), cents, refund);
+        paid(hour(at), cents, refund);
+    }
+
+    private static void paid(Rollup r, long cents, boolean refund) {
+        r.add(Rollup.COLLECTED, cents);
+        r.add(Rollup.OUTSTANDING, -cents);
+        if (refund) r.add(Rollup.REFUNDED, -cents);
+    }
+
+    private void returned(int vendorId, int productId, int qty, long value, long at) {
+        Rollup v = vendorRollup(vendorId);
+        returned(total, qty, value);
+        returned(v, qty, value);
+        returned(vendorDay(v, at), qty, value);
+        returned(hour(at), qty, value);
+        touch(v, dirtyVendors);
+        Rollup p = productRollup(productId);
+        p.add(Rollup.UNITS_RETURNED, qty);
+        p.add(Rollup.RETURNED, value);
+        touch(p, dirtyProducts);
+    }
+
+    private static void returned(Rollup r, int qty, long value) {
+        r.add(Rollup.UNITS_RETURNED, qty);
+        r.add(Rollup.RETURNED, value);
+        r.add(Rollup.OUTSTANDING, -value);
+    }
+
+    private static void touch(Rollup r, List<Rollup> dirty) {
+        if (r.dirty) return;
+        r.dirty = true;
+        dirty.add(r);
+    }
+
+    /** Moves every changed vendor and product to its new place on the leaderboards: O(log n) each. */
+    private void rerank() {
+        rerank(vendorBoard, dirtyVendors);
+        rerank(productBoard, dirtyProducts);
+    }
+
+    private static void rerank(ConcurrentSkipListSet<Rank> board, List<Rollup> dirty) {
+        for (Rollup r : dirty) {
+            r.dirty = false;
+            long net = r.getNetSalesCents();
+            if (net == r.ranked) continue;
+            // Add before removing, so a concurrent reader sees the entry twice rather than not at all
+            board.add(new Rank(r.id, net));
+            if (r.ranked != Long.MIN_VALUE) board.remove(new Rank(r.id, r.ranked));
+            r.ranked = net;
+        }
+        dirty.clear();
+    }
+
+    private Rollup vendorRollup(int vendorId) {
+        Rollup r = vendors.get(vendorId);
+        if (r == null) vendors.put(vendorId, r = new Rollup(vendorId));
+        return r;
+    }
+
+    private Rollup productRollup(int productId) {
+        Rollup r = products.get(productId);
+        if (r == null) products.put(productId, r = new Rollup(productId));
+        return r;
+    }
+
+    private Rollup vendorDay(Rollup vendor, long at) {
+        long key = dayKey(vendor.id, localDay(at));
+        if (vendor.dayKey != key) {
+            vendor.day = vendorDays.computeIfAbsent(key, k -> new Rollup(0));
+            vendor.dayKey = key;
+        }
+        return vendor.day;
+    }
+
+    // The day is masked to its low 32 bits, so days before 1970 do not sign-extend over the vendor
+    private static long dayKey(int vendorId, long epochDay) { return (long) vendorId << 32 | (epochDay & 0xFFFFFFFFL); }
+
+    private Rollup hour(long at) {
+        long start = Math.floorDiv(at, HOUR_MILLIS) * HOUR_MILLIS;
+        if (start != hourStart) {
+            hour = hours.computeIfAbsent(start, k -> new Rollup(0));
+            hourStart = start;
+        }
+        return hour;
+    }
+
+    private long localDay(long at) {
+        if (at < dayStart || at >= dayEnd) {
+            LocalDate d = LocalDate.ofInstant(Instant.ofEpochMilli(at), zone);
+            epochDay = d.toEpochDay();
+            dayStart = d.atStartOfDay(zone).toInstant().toEpochMilli();
+            dayEnd = d.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return epochDay;
+    }
+}
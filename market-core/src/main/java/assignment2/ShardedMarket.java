@@ -0,0 +1,303 @@
+package assignment2;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A market partitioned by vendor into independent shards, each with its own stores,
+ * ID blocks and writer thread (see {@link LocalShard}). New vendors are placed
+ * round-robin and everything else lives on its vendor's shard. Because every ID
+ * comes from a block leased in {@link IdLeases}, one lookup routes any ID to its
+ * shard, so callers use this much like a {@link MarketService}.
+ * <p>
+ * Queries across vendors (search, status listings, pending returns, delivery runs)
+ * go to every shard at once and the answers are merged. Shards only meet in
+ * {@link #holdCart}: a cart across vendors on several shards becomes one hold per
+ * shard, all taken or none. The router talks to shards only through
+ * {@link MarketShard}, so a shard can later move to its own process behind a
+ * transport without callers noticing.
+ * <p>
+ * This is an in-memory experiment: shards are not journaled, and the console,
+ * batch and HTTP front ends still run on a single {@link MarketService}.
+ */
+final class ShardedMarket implements AutoCloseable {
+    private final IdLeases leases;
+    private final MarketShard[] shards;
+    private final AtomicInteger nextVendorShard = new AtomicInteger();
+
+    ShardedMarket(int shardCount) { this(shardCount, IdLeases.DEFAULT_BLOCK_SIZE); }
+
+    ShardedMarket(int shardCount, int blockSize) {
+        if (shardCount <= 0) throw new IllegalArgumentException("Shard count must be positive.");
+        this.leases = new IdLeases(MarketService.idBases(), blockSize);
+        this.shards = new MarketShard[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new LocalShard(i, leases);
+    }
+
+    int shardCount() { return shards.length; }
+
+    MarketShard shard(int index) { return shards[index]; }
+
+    /** The shard holding the entity of {@code kind} (an {@link IdLeases} kind) with this ID, or null if there is none. */
+    MarketShard shardOf(int kind, int id) {
+        int s = leases.owner(kind, id);
+        return s < 0 ? null : shards[s];
+    }
+
+    // --- Writes ---
+
+    public MarketResult<Vendor> addVendor(MarketRequests.AddVendor req) {
+        return join(shards[Math.floorMod(nextVendorShard.getAndIncrement(), shards.length)].addVendor(req));
+    }
+
+    public MarketResult<Product> addProduct(MarketRequests.AddProduct req) {
+        MarketShard s = shardOf(IdLeases.VENDOR, req.vendorId());
+        return s == null ? MarketResult.fail("Invalid vendor ID.") : join(s.addProduct(req));
+    }
+
+    public MarketResult<Order> placeOrder(MarketRequests.PlaceOrder req) {
+        MarketShard s = shardOf(IdLeases.VENDOR, req.vendorId());
+        return s == null ? MarketResult.fail("Invalid vendor.") : join(s.placeOrder(req));
+    }
+
+    /**
+     * Holds the cart's lines on each shard their vendors live on. If any shard
+     * refuses, the holds already taken are released and its failure is returned.
+     */
+    public MarketResult<List<CartService.CartHold>> holdCart(MarketRequests.HoldCart req) {
+        Map<MarketShard, List<OrderLine>> byShard = new LinkedHashMap<>();
+        for (OrderLine l : req.lines()) {
+            MarketShard s = shardOf(IdLeases.PRODUCT, l.getProductId());
+            if (s == null) return MarketResult.fail("Product " + l.getProductId() + " not found.");
+            byShard.computeIfAbsent(s, k -> new ArrayList<>()).add(l);
+        }
+        if (byShard.isEmpty()) byShard.put(shards[0], req.lines()); // let the shard reject it
+        List<CompletableFuture<MarketResult<CartService.CartHold>>> pending = new ArrayList<>(byShard.size());
+        byShard.forEach((s, lines) -> pending.add(s.holdCart(new MarketRequests.HoldCart(lines, req.ttlMillis()))));
+        List<CartService.CartHold> holds = new ArrayList<>(pending.size());
+        String failure = null;
+        for (CompletableFuture<MarketResult<CartService.CartHold>> f : pending) {
+            MarketResult<CartService.CartHold> r = join(f);
+            if (r.isOk()) holds.add(r.getValue());
+            else if (failure == null) failure = r.getMessage();
+        }
+        if (failure == null) return MarketResult.ok(holds);
+        for (CartService.CartHold h : holds) releaseCart(h.getId());
+        return MarketResult.fail(failure);
+    }
+
+    public MarketResult<List<Order>> checkoutCart(int holdId) {
+        MarketShard s = shardOf(IdLeases.HOLD, holdId);
+        return s == null ? MarketResult.fail("Hold not found (it may have expired).") : join(s.checkoutCart(holdId));
+    }
+
+    public MarketResult<CartService.CartHold> releaseCart(int holdId) {
+        MarketShard s = shardOf(IdLeases.HOLD, holdId);
+        return s == null ? MarketResult.fail("Hold not found (it may have expired).") : join(s.releaseCart(holdId));
+    }
+
+    public MarketResult<PaymentReceipt> recordPayment(MarketRequests.RecordPayment req) {
+        MarketShard s = shardOf(IdLeases.ORDER, req.orderId());
+        return s == null ? MarketResult.fail("Order not found.") : join(s.recordPayment(req));
+    }
+
+    public MarketResult<Delivery> scheduleDelivery(MarketRequests.ScheduleDelivery req) {
+        MarketShard s = shardOf(IdLeases.ORDER, req.orderId());
+        return s == null ? MarketResult.fail("Order not found.") : join(s.scheduleDelivery(req));
+    }
+
+    /** Books every PAID order on every shard; see {@link MarketService#autoScheduleDeliveries}. */
+    public List<Delivery> autoScheduleDeliveries(LocalDate from) {
+        return concat(gather(s -> s.autoScheduleDeliveries(from)));
+    }
+
+    /** The day's routes from every shard, in ascending vendor ID. */
+    public List<DeliveryRoute> dispatchDeliveries(LocalDate day) {
+        List<DeliveryRoute> routes = concat(gather(s -> s.dispatchDeliveries(day)));
+        routes.sort(Comparator.comparingInt(DeliveryRoute::vendorId));
+        return routes;
+    }
+
+    public MarketResult<Delivery> completeDelivery(int deliveryId) {
+        MarketShard s = shardOf(IdLeases.DELIVERY, deliveryId);
+        return s == null ? MarketResult.fail("Delivery not found.") : join(s.completeDelivery(deliveryId));
+    }
+
+    public MarketResult<Integer> setDeliveryCapacity(int vendorId, int perDay) {
+        MarketShard s = shardOf(IdLeases.VENDOR, vendorId);
+        return s == null ? MarketResult.fail("Invalid vendor ID.") : join(s.setDeliveryCapacity(vendorId, perDay));
+    }
+
+    public MarketResult<ReturnReceipt> requestReturn(MarketRequests.RequestReturn req) {
+        MarketShard s = shardOf(IdLeases.ORDER, req.orderId());
+        return s == null ? MarketResult.fail("Order not found.") : join(s.requestReturn(req));
+    }
+
+    public MarketResult<ReturnReceipt> approveReturn(int returnId) {
+        MarketShard s = shardOf(IdLeases.RETURN, returnId);
+        return s == null ? MarketResult.fail("Return not found.") : join(s.approveReturn(returnId));
+    }
+
+    public MarketResult<ReturnRequest> denyReturn(int returnId) {
+        MarketShard s = shardOf(IdLeases.RETURN, returnId);
+        return s == null ? MarketResult.fail("Return not found.") : join(s.denyReturn(returnId));
+    }
+
+    public ReturnBatchReceipt approveReturns(int[] returnIds) { return decideReturns(returnIds, true); }
+
+    public ReturnBatchReceipt denyReturns(int[] returnIds) { return decideReturns(returnIds, false); }
+
+    // One batch per shard, all shards at once
+    private ReturnBatchReceipt decideReturns(int[] returnIds, boolean approve) {
+        List<String> failures = new ArrayList<>();
+        Map<MarketShard, List<Integer>> byShard = new LinkedHashMap<>();
+        for (int id : returnIds) {
+            MarketShard s = shardOf(IdLeases.RETURN, id);
+            if (s == null) failures.add("Return " + id + ": not found.");
+            else byShard.computeIfAbsent(s, k -> new ArrayList<>()).add(id);
+        }
+        List<CompletableFuture<ReturnBatchReceipt>> pending = new ArrayList<>(byShard.size());
+        byShard.forEach((s, ids) -> {
+            int[] batch = ids.stream().mapToInt(Integer::intValue).toArray();
+            pending.add(approve ? s.approveReturns(batch) : s.denyReturns(batch));
+        });
+        List<ReturnReceipt> decided = new ArrayList<>(returnIds.length);
+        long refunded = 0;
+        for (CompletableFuture<ReturnBatchReceipt> f : pending) {
+            ReturnBatchReceipt r = join(f);
+            decided.addAll(r.decided());
+            failures.addAll(r.failures());
+            refunded += r.refundCents();
+        }
+        return new ReturnBatchReceipt(decided, failures, refunded);
+    }
+
+    // --- Reads ---
+
+    public Vendor getVendor(int id) {
+        MarketShard s = shardOf(IdLeases.VENDOR, id);
+        return s == null ? null : join(s.getVendor(id));
+    }
+
+    public Product getProduct(int id) {
+        MarketShard s = shardOf(IdLeases.PRODUCT, id);
+        return s == null ? null : join(s.getProduct(id));
+    }
+
+    public Order getOrder(int id) {
+        MarketShard s = shardOf(IdLeases.ORDER, id);
+        return s == null ? null : join(s.getOrder(id));
+    }
+
+    public Payment getPayment(int id) {
+        MarketShard s = shardOf(IdLeases.PAYMENT, id);
+        return s == null ? null : join(s.getPayment(id));
+    }
+
+    public Delivery getDelivery(int id) {
+        MarketShard s = shardOf(IdLeases.DELIVERY, id);
+        return s == null ? null : join(s.getDelivery(id));
+    }
+
+    public ReturnRequest getReturn(int id) {
+        MarketShard s = shardOf(IdLeases.RETURN, id);
+        return s == null ? null : join(s.getReturn(id));
+    }
+
+    /** Every vendor, shard by shard. */
+    public List<Vendor> vendors() { return concat(gather(MarketShard::vendors)); }
+
+    public List<Product> productsForVendor(int vendorId) {
+        MarketShard s = shardOf(IdLeases.VENDOR, vendorId);
+        return s == null ? new ArrayList<>() : join(s.productsForVendor(vendorId));
+    }
+
+    /**
+     * Up to the limit of matching products, taking each shard's best matches in turn:
+     * every shard ranks its own products, and no shard's products crowd out the rest.
+     */
+    public List<Product> searchProducts(MarketRequests.SearchProducts req) {
+        return interleave(gather(s -> s.searchProducts(req)), Math.min(req.limit(), ProductSearch.MAX_LIMIT));
+    }
+
+    public List<Order> ordersWithStatus(Order.Status... statuses) { return concat(gather(s -> s.ordersWithStatus(statuses))); }
+
+    public int countWithStatus(Order.Status status) {
+        int n = 0;
+        for (int c : gather(s -> s.countWithStatus(status))) n += c;
+        return n;
+    }
+
+    /** Up to {@code max} returns awaiting a decision, oldest first within each shard, shards taken in turn. */
+    public List<ReturnRequest> pendingReturns(int max) { return interleave(gather(s -> s.pendingReturns(max)), max); }
+
+    /** Closes every shard, each after the writes already submitted to it. */
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (MarketShard s : shards) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+                else first.addSuppressed(e);
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // --- Scatter-gather ---
+
+    /** Sends the call to every shard, then waits for all the answers, in shard order. */
+    private <T> List<T> gather(Function<MarketShard, CompletableFuture<T>> call) {
+        List<CompletableFuture<T>> pending = new ArrayList<>(shards.length);
+        for (MarketShard s : shards) pending.add(call.apply(s));
+        List<T> answers = new ArrayList<>(shards.length);
+        for (CompletableFuture<T> f : pending) answers.add(join(f));
+        return answers;
+    }
+
+    private static <T> List<T> concat(List<List<T>> lists) {
+        int n = 0;
+        for (List<T> l : lists) n += l.size();
+        List<T> all = new ArrayList<>(n);
+        for (List<T> l : lists) all.addAll(l);
+        return all;
+    }
+
+    // First of each list, then second of each, ... up to limit
+    private static <T> List<T> interleave(List<List<T>> lists, int limit) {
+        List<T> merged = new ArrayList<>(Math.min(limit, 64));
+        for (int i = 0; merged.size() < limit; i++) {
+            boolean any = false;
+            for (List<T> l : lists) {
+                if (i >= l.size()) continue;
+                any = true;
+                merged.add(l.get(i));
+                if (merged.size() == limit) break;
+            }
+            if (!any) break;
+        }
+        return merged;
+    }
+
+    /** Waits for a shard's answer; an exception thrown by the shard is rethrown as is. */
+    private static <T> T join(CompletableFuture<T> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+}
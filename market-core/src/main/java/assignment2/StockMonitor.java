@@ -0,0 +1,251 @@
+package assignment2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Low-stock alerts and stock-out forecasts, kept up to date from the
+ * {@link EventBus}. Every {@link MarketEvent.StockChanged} is checked against its
+ * product's threshold as it arrives, so there are no scans of vendor inventories;
+ * a product that falls to or below its threshold raises one {@link Alert} and stays
+ * on the low list until it is restocked above it.
+ * <p>
+ * Sales velocity is an exponentially weighted rate over the units in
+ * {@link MarketEvent.OrderPlaced} lines: each sale adds {@code units / tau} and the
+ * rate decays by {@code exp(-dt / tau)} between sales, so it needs no buckets or
+ * timers and a quiet product's forecast drifts to zero on its own. {@code tau} is
+ * the half-life divided by ln 2. Projections divide the current level by that rate.
+ * <p>
+ * One subscriber thread applies all events; the order path only pays for the
+ * publish. State per product is a small object in a {@link DenseStore}, so a
+ * million SKUs cost tens of megabytes. Thresholds are configuration held in
+ * memory, not journaled.
+ */
+final class StockMonitor {
+    static final long DEFAULT_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int RECENT_ALERTS = 1000;
+    private static final int UNSET = -1;
+
+    /** A product that fell to or below its threshold. */
+    record Alert(int vendorId, int productId, int level, int threshold, long atMillis) {}
+
+    /**
+     * Where a product's stock is heading: {@code daysLeft} at the current sales rate
+     * (infinite without sales) and the units to order to cover lead time plus the
+     * review period.
+     */
+    record Replenishment(int vendorId, int productId, int level, int threshold, double unitsPerDay, double daysLeft,
+                         int suggestedUnits) {}
+
+    // Per product; written by the subscriber (thresholds by callers), read by anyone
+    private static final class Watch {
+        final int vendorId;
+        final int productId;
+        volatile int level;
+        volatile int threshold = UNSET;
+        volatile double rate; // units per millisecond as of lastSaleMillis
+        volatile long lastSaleMillis;
+        volatile long lowSinceMillis;
+        boolean low; // guarded by this
+
+        Watch(int vendorId, int productId, int level) { this.vendorId = vendorId; this.productId = productId; this.level = level; }
+    }
+
+    private final DenseStore<Watch> watches;
+    private final double tauMillis;
+    private final ConcurrentSkipListSet<Long> low = new ConcurrentSkipListSet<>(); // vendorId << 32 | productId
+    private final ArrayDeque<Alert> recent = new ArrayDeque<>(); // guarded by itself, oldest first
+    private volatile int defaultThreshold;
+    private volatile int leadTimeDays = 3;
+    private volatile int coverDays = 14;
+    private EventBus.Subscription subscription;
+
+    StockMonitor(int productIdBase, long halfLifeMillis) {
+        if (halfLifeMillis <= 0) throw new IllegalArgumentException("Half-life must be positive.");
+        this.watches = new DenseStore<>(productIdBase);
+        this.tauMillis = halfLifeMillis / Math.log(2);
+    }
+
+    /**
+     * Takes every product's current stock and replays order history into the sales
+     * rates, then follows {@code events}; call before the market takes requests.
+     */
+    void start(MarketService market, EventBus events) {
+        for (Vendor v : market.vendors()) {
+            for (int pid : v.getProductIds()) watches.put(pid, new Watch(v.getId(), pid, v.getStockForProduct(pid)));
+        }
+        for (Order o : market.orders()) {
+            for (int i = 0; i < o.getItemCount(); i++) {
+                OrderItem it = o.getItem(i);
+                Watch w = watches.get(it.getProductId());
+                if (w != null) sold(w, it.getQuantity(), o.getPlacedAtMillis());
+            }
+        }
+        for (Watch w : watches.values()) check(w, System.currentTimeMillis());
+        subscription = events.subscribe("stock-monitor", (e, seq, endOfBatch) -> apply(e));
+    }
+
+    /** Stops following the bus; levels and rates keep their last values. */
+    void stop() {
+        if (subscription != null) subscription.close();
+    }
+
+    /** Waits up to {@code timeoutMillis} until every event published before this call has been applied. */
+    boolean sync(long timeoutMillis) {
+        return subscription != null && subscription.awaitCaughtUp(timeoutMillis);
+    }
+
+    // --- Configuration ---
+
+    /**
+     * Alert when the product's stock is at or below {@code units}; -1 falls back to the
+     * default. {@code level} is the product's current stock, used if it has no state yet.
+     */
+    void setThreshold(int vendorId, int productId, int level, int units) {
+        if (units < UNSET) throw new IllegalArgumentException("Threshold cannot be negative.");
+        Watch w = watch(vendorId, productId, level);
+        w.threshold = units;
+        check(w, System.currentTimeMillis());
+    }
+
+    /** Threshold for products without their own; 0 (the initial value) alerts only when sold out. */
+    void setDefaultThreshold(int units) {
+        if (units < 0) throw new IllegalArgumentException("Threshold cannot be negative.");
+        defaultThreshold = units;
+        // Rare, operator-driven: re-evaluate products that have no threshold of their own
+        long now = System.currentTimeMillis();
+        for (Watch w : watches.values()) if (w.threshold == UNSET) check(w, now);
+    }
+
+    /** Days a reorder takes to arrive and days of sales it should cover beyond that. */
+    void setReorderPolicy(int leadTimeDays, int coverDays) {
+        if (leadTimeDays < 0 || coverDays <= 0) throw new IllegalArgumentException("Lead time cannot be negative and cover must be positive.");
+        this.leadTimeDays = leadTimeDays;
+        this.coverDays = coverDays;
+    }
+
+    int threshold(int productId) {
+        Watch w = watches.get(productId);
+        return w == null ? defaultThreshold : effectiveThreshold(w);
+    }
+
+    // --- Queries ---
+
+    /** Products of the vendor (0 for all) currently at or below their threshold, with the time each went low. */
+    List<Alert> lowStock(int vendorId) {
+        Iterable<Long> keys = vendorId == 0 ? low : low.subSet((long) vendorId << 32, (long) (vendorId + 1) << 32);
+        List<Alert> list = new ArrayList<>();
+        for (long key : keys) {
+            Watch w = watches.get((int) key);
+            if (w != null) list.add(new Alert(w.vendorId, w.productId, w.level, effectiveThreshold(w), w.lowSinceMillis));
+        }
+        return list;
+    }
+
+    int lowCount() { return low.size(); }
+
+    /** Up to {@code max} alerts, newest first. */
+    List<Alert> recentAlerts(int max) {
+        synchronized (recent) {
+            List<Alert> list = new ArrayList<>(Math.min(max, recent.size()));
+            var it = recent.descendingIterator();
+            while (it.hasNext() && list.size() < max) list.add(it.next());
+            return list;
+        }
+    }
+
+    /** Current sales rate of a product, in units per day. */
+    double unitsPerDay(int productId) {
+        Watch w = watches.get(productId);
+        return w == null ? 0 : rateAt(w, System.currentTimeMillis()) * DAY_MILLIS;
+    }
+
+    /**
+     * The vendor's products that will sell out within the lead time at their current
+     * rate, or are at or below their threshold, soonest stock-out first. Costs one
+     * lookup per product of this vendor.
+     */
+    List<Replenishment> replenishment(Vendor vendor, long nowMillis) {
+        int lead = leadTimeDays, cover = coverDays;
+        List<Replenishment> list = new ArrayList<>();
+        for (int pid : vendor.getProductIds()) {
+            Watch w = watches.get(pid);
+            if (w == null) continue;
+            int level = w.level, threshold = effectiveThreshold(w);
+            double perDay = rateAt(w, nowMillis) * DAY_MILLIS;
+            double daysLeft = perDay > 0 ? Math.max(0, level) / perDay : Double.POSITIVE_INFINITY;
+            if (daysLeft > lead && level > threshold) continue;
+            int target = Math.max(threshold + 1, (int) Math.ceil(perDay * (lead + cover)));
+            list.add(new Replenishment(vendor.getId(), pid, level, threshold, perDay, daysLeft, Math.max(0, target - level)));
+        }
+        list.sort(Comparator.comparingDouble(Replenishment::daysLeft).thenComparingInt(Replenishment::productId));
+        return list;
+    }
+
+    // --- Updates (subscriber thread) ---
+
+    private void apply(MarketEvent e) {
+        if (e instanceof MarketEvent.StockChanged s) {
+            Watch w = watch(s.vendorId(), s.productId(), s.level());
+            w.level = s.level();
+            check(w, System.currentTimeMillis());
+        } else if (e instanceof MarketEvent.OrderPlaced o) {
+            for (int i = 0; i < o.lineCount(); i++) {
+                sold(watch(o.vendorId(), o.productIds()[i], 0), o.quantities()[i], o.placedAtMillis());
+            }
+        }
+    }
+
+    private Watch watch(int vendorId, int productId, int level) {
+        Watch w = watches.get(productId);
+        if (w != null) return w;
+        synchronized (watches) {
+            w = watches.get(productId);
+            if (w == null) watches.put(productId, w = new Watch(vendorId, productId, level));
+            return w;
+        }
+    }
+
+    private void sold(Watch w, int units, long at) {
+        long dt = at - w.lastSaleMillis;
+        // Sales reach the bus slightly out of time order across threads; a late one is counted as simultaneous
+        double decayed = dt > 0 ? w.rate * Math.exp(-dt / tauMillis) : w.rate;
+        w.rate = decayed + units / tauMillis;
+        if (dt > 0) w.lastSaleMillis = at;
+    }
+
+    private double rateAt(Watch w, long now) {
+        long dt = now - w.lastSaleMillis;
+        return dt > 0 ? w.rate * Math.exp(-dt / tauMillis) : w.rate;
+    }
+
+    private int effectiveThreshold(Watch w) {
+        int t = w.threshold;
+        return t == UNSET ? defaultThreshold : t;
+    }
+
+    private void check(Watch w, long now) {
+        synchronized (w) {
+            int threshold = effectiveThreshold(w);
+            boolean isLow = w.level <= threshold;
+            if (isLow == w.low) return;
+            w.low = isLow;
+            long key = (long) w.vendorId << 32 | w.productId;
+            if (!isLow) {
+                low.remove(key);
+                return;
+            }
+            w.lowSinceMillis = now;
+            low.add(key);
+            synchronized (recent) {
+                if (recent.size() == RECENT_ALERTS) recent.removeFirst();
+                recent.addLast(new Alert(w.vendorId, w.productId, w.level, threshold, now));
+            }
+        }
+    }
+}
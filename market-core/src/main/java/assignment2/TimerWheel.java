@@ -0,0 +1,186 @@
+package assignment2;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel for large numbers of short-lived deadlines. Scheduling and
+ * cancelling are O(1) and lock-free for callers: they only enqueue, and the single
+ * ticker thread moves new timeouts into their bucket and unlinks cancelled ones. Each
+ * tick visits one bucket rather than every pending deadline, and a timeout fires on
+ * the first tick at or after its deadline.
+ * <p>
+ * The ticker thread is started by the first {@link #schedule} and expiry callbacks
+ * run on it, so they should be short. A callback that throws is counted and the
+ * exception kept for {@link #lastFailure}; the ticker carries on.
+ */
+final class TimerWheel<T> implements AutoCloseable {
+    private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+    /** Handle for one scheduled item. */
+    static final class Timeout<T> {
+        final T item;
+        final long deadlineMillis;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Owned by the ticker thread
+        private long deadlineTick;
+        private Timeout<T> prev, next;
+        private Bucket<T> bucket;
+
+        private Timeout(T item, long deadlineMillis) { this.item = item; this.deadlineMillis = deadlineMillis; }
+
+        boolean isExpired() { return state.get() == EXPIRED; }
+    }
+
+    // Intrusive doubly-linked list so a cancelled timeout is unlinked in O(1)
+    private static final class Bucket<T> {
+        Timeout<T> head, tail;
+
+        void add(Timeout<T> t) {
+            t.bucket = this;
+            t.prev = tail;
+            if (tail == null) head = t; else tail.next = t;
+            tail = t;
+        }
+
+        void remove(Timeout<T> t) {
+            if (t.prev == null) head = t.next; else t.prev.next = t.next;
+            if (t.next == null) tail = t.prev; else t.next.prev = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Bucket<T>[] buckets;
+    private final int mask;
+    private final Consumer<T> onExpiry;
+    private final LongSupplier clock;
+    private final Queue<Timeout<T>> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<T>> cancelled = new ConcurrentLinkedQueue<>();
+    private long nextTick = Long.MIN_VALUE; // guarded by this
+    private int size;                        // guarded by this
+    private volatile ScheduledExecutorService ticker;
+    private volatile boolean closed;
+    private final LongAdder failures = new LongAdder();
+    private volatile RuntimeException lastFailure;
+
+    TimerWheel(long tickMillis, int wheelSize, Consumer<T> onExpiry) {
+        this(tickMillis, wheelSize, onExpiry, System::currentTimeMillis);
+    }
+
+    TimerWheel(long tickMillis, int wheelSize, Consumer<T> onExpiry, LongSupplier clock) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Tick must be positive.");
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) throw new IllegalArgumentException("Wheel size must be a power of two.");
+        this.tickMillis = tickMillis;
+        this.buckets = newBuckets(wheelSize);
+        for (int i = 0; i < wheelSize; i++) buckets[i] = new Bucket<>();
+        this.mask = wheelSize - 1;
+        this.onExpiry = onExpiry;
+        this.clock = clock;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Bucket<T>[] newBuckets(int n) { return new Bucket[n]; }
+
+    long now() { return clock.getAsLong(); }
+
+    /** Arranges for {@code item} to be passed to the expiry callback once {@code deadlineMillis} has passed. */
+    Timeout<T> schedule(T item, long deadlineMillis) {
+        if (closed) throw new IllegalStateException("Timer wheel is closed.");
+        Timeout<T> t = new Timeout<>(item, deadlineMillis);
+        added.add(t);
+        if (ticker == null) startTicker();
+        return t;
+    }
+
+    /** Stops {@code t} from firing; false if it already fired or was cancelled. */
+    boolean cancel(Timeout<T> t) {
+        if (!t.state.compareAndSet(PENDING, CANCELLED)) return false;
+        cancelled.add(t);
+        return true;
+    }
+
+    /** Timeouts scheduled and neither fired nor cancelled, as of the last tick. */
+    synchronized int size() { return size; }
+
+    /** Expiry callbacks that threw. */
+    long failures() { return failures.sum(); }
+
+    /** The most recent exception thrown by an expiry callback, or null if none has. */
+    RuntimeException lastFailure() { return lastFailure; }
+
+    /**
+     * Runs every tick up to {@code nowMillis}: files newly scheduled timeouts, drops
+     * cancelled ones and fires those that are due. Called by the ticker thread; callable
+     * directly when driving the wheel by hand.
+     */
+    synchronized void advance(long nowMillis) {
+        long current = Math.floorDiv(nowMillis, tickMillis);
+        if (nextTick == Long.MIN_VALUE) nextTick = current;
+        for (Timeout<T> t; (t = added.poll()) != null; ) {
+            if (t.state.get() != PENDING) continue;
+            // Never file behind the cursor: an overdue timeout fires on this pass
+            t.deadlineTick = Math.max(Math.floorDiv(t.deadlineMillis, tickMillis), nextTick);
+            buckets[(int) (t.deadlineTick & mask)].add(t);
+            size++;
+        }
+        for (Timeout<T> t; (t = cancelled.poll()) != null; ) {
+            if (t.bucket != null) {
+                t.bucket.remove(t);
+                size--;
+            }
+        }
+        // After a stall, a full turn of the wheel visits every bucket once
+        long last = Math.min(current, nextTick + mask);
+        for (long tick = nextTick; tick <= last; tick++) expire(buckets[(int) (tick & mask)], current);
+        nextTick = Math.max(nextTick, current + 1);
+    }
+
+    private void expire(Bucket<T> bucket, long current) {
+        Timeout<T> t = bucket.head;
+        while (t != null) {
+            Timeout<T> next = t.next;
+            if (t.deadlineTick <= current) {
+                bucket.remove(t);
+                size--;
+                if (t.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        onExpiry.accept(t.item);
+                    } catch (RuntimeException e) {
+                        failures.increment();
+                        lastFailure = e;
+                    }
+                }
+            }
+            t = next;
+        }
+    }
+
+    private synchronized void startTicker() {
+        if (ticker != null || closed) return;
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, "timer-wheel");
+            th.setDaemon(true);
+            return th;
+        });
+        s.scheduleAtFixedRate(() -> advance(now()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        ticker = s;
+    }
+
+    /** Stops the ticker; pending timeouts never fire. */
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledExecutorService s;
+        synchronized (this) { s = ticker; }
+        if (s != null) s.shutdownNow();
+    }
+}
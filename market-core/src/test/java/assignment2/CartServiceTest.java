@@ -0,0 +1,85 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartServiceTest {
+    private static final int THREADS = 8;
+    private static final int HOLDS_PER_THREAD = 200;
+
+    /**
+     * Checkouts race the expiry wheel for holds whose TTL runs out around the time
+     * they are checked out. Each hold must end exactly one way: its units sold in an
+     * order, or handed back to stock by expiry, never both and never neither.
+     */
+    @Test
+    void checkoutAndExpiryNeverBothWin() throws Exception {
+        try (MarketService m = new MarketService()) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Cart Farm"))).getId();
+            int stock = THREADS * HOLDS_PER_THREAD * 2;
+            int product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Plums", 0.50, stock))).getId();
+            CountDownLatch go = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            int checkedOut = 0;
+            int missed = 0;
+            try {
+                List<Future<int[]>> done = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    done.add(pool.submit(() -> {
+                        go.await();
+                        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                        List<Integer> holds = new ArrayList<>(HOLDS_PER_THREAD);
+                        for (int i = 0; i < HOLDS_PER_THREAD; i++) {
+                            MarketRequests.HoldCart req = new MarketRequests.HoldCart(List.of(new OrderLine(product, 2)), 100 + rnd.nextInt(200));
+                            holds.add(TestMarkets.ok(m.holdCart(req)).getId());
+                        }
+                        Thread.sleep(150 + rnd.nextInt(100));
+                        int[] outcome = new int[2];
+                        for (int id : holds) outcome[m.checkoutCart(id).isOk() ? 0 : 1]++;
+                        return outcome;
+                    }));
+                }
+                go.countDown();
+                for (Future<int[]> f : done) {
+                    int[] outcome = f.get();
+                    checkedOut += outcome[0];
+                    missed += outcome[1];
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            // Holds not checked out in time expire within a tick or two of their TTL
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (m.heldStock(product) > 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            assertEquals(0, m.heldStock(product));
+            assertEquals(THREADS * HOLDS_PER_THREAD, checkedOut + missed);
+            assertEquals(checkedOut, m.orders().size());
+            assertEquals(missed, m.metrics().holdsExpired());
+            assertEquals(stock - 2 * checkedOut, m.getVendor(vendor).getStockForProduct(product));
+        }
+    }
+
+    @Test
+    void duplicateLinesThatOverflowAreRejectedWithoutTouchingStock() throws Exception {
+        try (MarketService m = new MarketService()) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Overflow Farm"))).getId();
+            int product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Chard", 1.00, 10))).getId();
+            List<OrderLine> lines = List.of(new OrderLine(product, Integer.MAX_VALUE), new OrderLine(product, 10));
+            MarketResult<CartService.CartHold> r = m.holdCart(new MarketRequests.HoldCart(lines, 60_000));
+            assertFalse(r.isOk());
+            assertEquals("Quantity too large for product " + product + ".", r.getMessage());
+            assertEquals(10, m.getVendor(vendor).getStockForProduct(product));
+            assertEquals(0, m.heldStock(product));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntCounterMapTest {
+    @Test
+    void decrementNeverGoesBelowZero() {
+        IntCounterMap m = new IntCounterMap();
+        m.addAndGet(7, 5);
+        assertEquals(2, m.tryDecrementAndGet(7, 3));
+        assertEquals(-1, m.tryDecrementAndGet(7, 3));
+        assertEquals(2, m.get(7));
+        assertEquals(-1, m.tryDecrementAndGet(8, 1), "absent keys count as zero");
+    }
+
+    @Test
+    void negativeQuantityIsRejected() {
+        IntCounterMap m = new IntCounterMap();
+        m.addAndGet(7, Integer.MAX_VALUE - 1);
+        assertThrows(IllegalArgumentException.class, () -> m.tryDecrementAndGet(7, -10));
+        assertThrows(IllegalArgumentException.class, () -> m.tryDecrementAndGet(8, -1));
+        assertEquals(Integer.MAX_VALUE - 1, m.get(7));
+    }
+}
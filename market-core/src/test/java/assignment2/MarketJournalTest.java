@@ -0,0 +1,184 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoveryRestoresEveryMutation() throws IOException {
+        List<String> before;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            TestMarkets.populate(m);
+            before = TestMarkets.describe(m);
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void checkpointPlusTailRecoversTheSameState() throws IOException {
+        List<String> before;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            TestMarkets.populate(m);
+            m.checkpoint();
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("After Checkpoint"))).getId();
+            TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Leeks", 3.00, 9)));
+            before = TestMarkets.describe(m);
+        }
+        try (Stream<Path> snapshots = Files.list(dir)) {
+            assertEquals(1, snapshots.filter(p -> p.getFileName().toString().startsWith("snapshot-")).count());
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedAndLaterWritesSurvive() throws IOException {
+        List<String> before;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            TestMarkets.populate(m);
+            before = TestMarkets.describe(m);
+        }
+        Path segment = lastSegment();
+        long intact = Files.size(segment);
+        // A record cut short by a crash: a length promising more bytes than were written
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, MarketJournal.VENDOR_ADDED, 0, 3, 'a'}));
+        }
+        List<String> after;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(before, TestMarkets.describe(m));
+            assertEquals(intact, Files.size(segment));
+            TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Opened After Crash")));
+            after = TestMarkets.describe(m);
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(after, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsReplay() throws IOException {
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("First")));
+            TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Second")));
+        }
+        Path segment = lastSegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 6] ^= 0x20; // inside the second record's name: its CRC no longer matches
+        Files.write(segment, bytes);
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(List.of("First"), m.vendors().stream().map(Vendor::getName).toList());
+        }
+    }
+
+    @Test
+    void deliveryCapacityIsEnforcedAfterRestart() throws IOException {
+        String day = LocalDate.now().plusDays(2).toString();
+        int vendor;
+        int product;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Small Van"))).getId();
+            product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Eggs", 4.00, 10))).getId();
+            TestMarkets.ok(m.setDeliveryCapacity(vendor, 1));
+            Order first = TestMarkets.order(m, vendor, new OrderLine(product, 1));
+            TestMarkets.ok(m.recordPayment(new MarketRequests.RecordPayment(first.getId(), 4.00, "cash")));
+            TestMarkets.ok(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(first.getId(), day)));
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(1, m.deliveryCapacity(vendor));
+            Order second = TestMarkets.order(m, vendor, new OrderLine(product, 1));
+            TestMarkets.ok(m.recordPayment(new MarketRequests.RecordPayment(second.getId(), 4.00, "cash")));
+            assertFalse(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(second.getId(), day)).isOk());
+        }
+    }
+
+    @Test
+    void rejectedBookingsUseUpNoDeliveryId() throws IOException {
+        String day = LocalDate.now().plusDays(2).toString();
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Tiny Van"))).getId();
+            int product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Honey", 4.00, 10))).getId();
+            TestMarkets.ok(m.setDeliveryCapacity(vendor, 1));
+            Order[] orders = new Order[3];
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = TestMarkets.order(m, vendor, new OrderLine(product, 1));
+                TestMarkets.ok(m.recordPayment(new MarketRequests.RecordPayment(orders[i].getId(), 4.00, "cash")));
+            }
+            String yesterday = LocalDate.now().minusDays(1).toString();
+            MarketResult<Delivery> past = m.scheduleDelivery(new MarketRequests.ScheduleDelivery(orders[0].getId(), yesterday));
+            assertFalse(past.isOk());
+            assertEquals("Delivery date " + yesterday + " is in the past.", past.getMessage());
+
+            int first = TestMarkets.ok(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(orders[0].getId(), day))).getId();
+            assertFalse(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(orders[1].getId(), day)).isOk());
+            String nextDay = LocalDate.now().plusDays(3).toString();
+            int second = TestMarkets.ok(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(orders[2].getId(), nextDay))).getId();
+            assertEquals(first + 1, second);
+        }
+    }
+
+    @Test
+    void rejectedWriteDoesNotLoseLaterOnes() throws IOException {
+        List<String> before;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Before")));
+            MarketResult<Vendor> huge = m.addVendor(new MarketRequests.AddVendor("x".repeat(70_000)));
+            assertFalse(huge.isOk());
+            assertEquals("Vendor name is too long.", huge.getMessage());
+            for (int i = 0; i < 5; i++) TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("After " + i)));
+            assertEquals(6, m.vendors().size());
+            before = TestMarkets.describe(m);
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void oversizedStringLeavesNoPartialRecord() throws IOException {
+        try (MarketService scratch = new MarketService(); MarketJournal journal = new MarketJournal(JournalConfig.defaults(dir))) {
+            journal.recover(scratch);
+            journal.start(scratch);
+            journal.vendorAdded(new Vendor(1000, "Kept"));
+            assertThrows(IllegalArgumentException.class, () -> journal.vendorAdded(new Vendor(1001, "\u00e9".repeat(40_000))));
+            journal.vendorAdded(new Vendor(1002, "Also kept"));
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(List.of("Kept", "Also kept"), m.vendors().stream().map(Vendor::getName).toList());
+        }
+    }
+
+    /** The newest segment holding records; opening the market may have started an empty one after it. */
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("journal-"))
+                    .filter(p -> p.toFile().length() > 0)
+                    .max(Comparator.comparingLong(MarketJournalTest::segmentNumber))
+                    .orElseThrow();
+        }
+    }
+
+    private static long segmentNumber(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+}
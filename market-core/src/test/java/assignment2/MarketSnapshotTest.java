@@ -0,0 +1,59 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketSnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportThenLoadRoundTrips() throws IOException {
+        Path file = dir.resolve("market.snap");
+        List<String> before;
+        try (MarketService m = new MarketService()) {
+            TestMarkets.populate(m);
+            before = TestMarkets.describe(m);
+            m.exportSnapshot(file);
+        }
+        try (MarketService m = MarketService.load(file)) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void importedMarketKeepsJournalingFromTheSnapshot() throws IOException {
+        Path file = dir.resolve("market.snap");
+        Path journal = dir.resolve("journal");
+        try (MarketService m = new MarketService()) {
+            TestMarkets.populate(m);
+            m.exportSnapshot(file);
+        }
+        List<String> before;
+        try (MarketService m = MarketService.importInto(JournalConfig.defaults(journal), file)) {
+            Vendor v = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Imported Later")));
+            assertTrue(v.getId() > 1001, "IDs continue after the snapshot's");
+            before = TestMarkets.describe(m);
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(journal))) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void importRefusesADirectoryThatAlreadyHoldsAMarket() throws IOException {
+        Path file = dir.resolve("market.snap");
+        Path journal = dir.resolve("journal");
+        try (MarketService m = MarketService.open(JournalConfig.defaults(journal))) {
+            TestMarkets.populate(m);
+            m.exportSnapshot(file);
+        }
+        assertThrows(IllegalStateException.class, () -> MarketService.importInto(JournalConfig.defaults(journal), file).close());
+    }
+}
@@ -0,0 +1,74 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderArchiveTest {
+    @TempDir
+    Path dir;
+
+    private JournalConfig config() { return JournalConfig.defaults(dir).withArchiveAfter(1); }
+
+    @Test
+    void archivedOrdersStayReadableAndThawWhenTouched() throws Exception {
+        List<String> before;
+        int delivered;
+        try (MarketService m = MarketService.open(config())) {
+            TestMarkets.populate(m);
+            delivered = m.ordersWithStatus(Order.Status.DELIVERED).get(0).getId();
+            before = TestMarkets.describe(m);
+            Thread.sleep(5); // past the one-millisecond archive age
+            m.checkpoint();
+            assertEquals(1, m.archivedOrderCount());
+            assertEquals(before, TestMarkets.describe(m), "archived orders are still listed and readable");
+        }
+
+        List<String> thawed;
+        try (MarketService m = MarketService.open(config())) {
+            assertEquals(1, m.archivedOrderCount());
+            assertEquals(before, TestMarkets.describe(m));
+            Order o = m.getOrder(delivered);
+            int product = o.getItems().get(0).getProductId();
+            // A return mutates the order, so it comes back into memory first
+            TestMarkets.ok(m.requestReturn(new MarketRequests.RequestReturn(delivered, product, 1, true)));
+            assertEquals(0, m.archivedOrderCount());
+            assertEquals(Order.Status.DELIVERED, m.getOrder(delivered).getStatus());
+            thawed = TestMarkets.describe(m);
+        }
+
+        try (MarketService m = MarketService.open(config())) {
+            assertEquals(thawed, TestMarkets.describe(m));
+        }
+    }
+
+    @Test
+    void ordersWithTooManyItemsAreRefusedWithoutCorruptingTheArchive() throws Exception {
+        List<OrderItem> items = new ArrayList<>();
+        for (int i = 0; i <= OrderArchive.MAX_COUNT; i++) items.add(new OrderItem(2000 + i, "Seed " + i, 1, 10L));
+        Order huge = new Order(3000, 1000, items);
+        huge.setStatus(Order.Status.CANCELLED);
+        Order small = new Order(3001, 1000, List.of(new OrderItem(2000, "Seed", 2, 10L)));
+        small.setStatus(Order.Status.CANCELLED);
+        assertFalse(OrderArchive.fits(huge));
+        assertTrue(OrderArchive.fits(small));
+        try (OrderArchive a = OrderArchive.open(dir, 3000, 4000, 5000)) {
+            assertThrows(IllegalArgumentException.class, () -> a.append(huge, null));
+            a.append(small, null);
+            a.force();
+        }
+        try (OrderArchive a = OrderArchive.open(dir, 3000, 4000, 5000)) {
+            assertNull(a.thaw(3000));
+            Order back = a.thaw(3001).order();
+            assertEquals(1, back.getItemCount());
+            assertEquals(2, back.getItem(0).getQuantity());
+            assertEquals(Order.Status.CANCELLED, back.getStatus());
+        }
+    }
+}
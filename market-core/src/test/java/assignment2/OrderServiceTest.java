@@ -0,0 +1,93 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderServiceTest {
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 2_000;
+    private static final int STOCK = 500;
+
+    /**
+     * 32 threads race multi-line orders against a few scarce products. Every unit sold
+     * must come out of stock exactly once: stock never goes negative, and the units in
+     * accepted orders add up to what left the shelf.
+     */
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        try (MarketService m = new MarketService()) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Contended Farm"))).getId();
+            int[] products = new int[4];
+            for (int i = 0; i < products.length; i++) {
+                products[i] = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Scarce " + i, 1.00, STOCK))).getId();
+            }
+            AtomicLongArray sold = new AtomicLongArray(products.length);
+            CountDownLatch go = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> done = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    done.add(pool.submit(() -> {
+                        go.await();
+                        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                        for (int a = 0; a < ATTEMPTS_PER_THREAD; a++) {
+                            int first = rnd.nextInt(products.length);
+                            int second = rnd.nextInt(products.length); // may repeat the first: lines are merged
+                            List<OrderLine> lines = List.of(new OrderLine(products[first], 1 + rnd.nextInt(3)),
+                                    new OrderLine(products[second], 1 + rnd.nextInt(2)));
+                            MarketResult<Order> r = m.placeOrder(new MarketRequests.PlaceOrder(vendor, lines));
+                            if (!r.isOk()) continue;
+                            for (OrderItem item : r.getValue().getItems()) {
+                                for (int i = 0; i < products.length; i++) {
+                                    if (products[i] == item.getProductId()) sold.addAndGet(i, item.getQuantity());
+                                }
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                go.countDown();
+                for (Future<?> f : done) f.get();
+            } finally {
+                pool.shutdown();
+            }
+
+            Vendor v = m.getVendor(vendor);
+            long unitsInOrders = 0;
+            for (Order o : m.orders()) for (OrderItem item : o.getItems()) unitsInOrders += item.getQuantity();
+            long totalSold = 0;
+            for (int i = 0; i < products.length; i++) {
+                int left = v.getStockForProduct(products[i]);
+                assertTrue(left >= 0, "stock went negative for product " + products[i]);
+                assertEquals(STOCK - left, sold.get(i), "units sold vs stock taken for product " + products[i]);
+                totalSold += sold.get(i);
+            }
+            assertEquals(totalSold, unitsInOrders);
+            assertTrue(totalSold > STOCK, "the race should have sold most of the stock");
+        }
+    }
+
+    @Test
+    void duplicateLinesThatOverflowAreRejectedWithoutTouchingStock() throws Exception {
+        try (MarketService m = new MarketService()) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Overflow Farm"))).getId();
+            int product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Kale", 1.00, 10))).getId();
+            List<OrderLine> lines = List.of(new OrderLine(product, Integer.MAX_VALUE), new OrderLine(product, 10));
+            MarketResult<Order> r = m.placeOrder(new MarketRequests.PlaceOrder(vendor, lines));
+            assertFalse(r.isOk());
+            assertEquals("Quantity too large for product " + product + ".", r.getMessage());
+            assertEquals(10, m.getVendor(vendor).getStockForProduct(product));
+            assertEquals(0, m.orders().size());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentPipelineTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * A payment whose journal write fails part-way through an order's group: the
+     * payments before it stay applied with a matching status, and its reference is
+     * not left claimed, so a retry goes through.
+     */
+    @Test
+    void failedJournalWriteLeavesReferenceFreeAndStatusConsistent() throws IOException {
+        List<String> before;
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            int vendor = TestMarkets.ok(m.addVendor(new MarketRequests.AddVendor("Settle Farm"))).getId();
+            int product = TestMarkets.ok(m.addProduct(new MarketRequests.AddProduct(vendor, "Squash", 10.00, 5))).getId();
+            Order o = TestMarkets.order(m, vendor, new OrderLine(product, 2));
+            // Called directly, past the pipeline's validation, so the journal rejects the second method
+            List<PaymentInstruction> group = List.of(
+                    new PaymentInstruction("ref-1", o.getId(), 500, "card"),
+                    new PaymentInstruction("ref-2", o.getId(), 500, "x".repeat(70_000)));
+            ReconciliationReport report = new ReconciliationReport();
+            assertThrows(IllegalArgumentException.class, () -> m.settlePayments(o.getId(), group, report));
+            assertEquals(Order.Status.PAYMENT_PENDING, m.getOrder(o.getId()).getStatus());
+            assertEquals(1500, m.getOrder(o.getId()).getAmountDueCents());
+            assertNotNull(m.findPaymentByReference("ref-1"));
+            assertNull(m.findPaymentByReference("ref-2"));
+
+            ReconciliationReport retry = new PaymentPipeline(m).submit(List.of(new PaymentInstruction("ref-2", o.getId(), 1500, "card")));
+            assertEquals(1, retry.getApplied());
+            assertEquals(0, retry.getDuplicates());
+            assertEquals(Order.Status.PAID, m.getOrder(o.getId()).getStatus());
+            before = TestMarkets.describe(m);
+        }
+        try (MarketService m = MarketService.open(JournalConfig.defaults(dir))) {
+            assertEquals(before, TestMarkets.describe(m));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesAnalyticsTest {
+    /** Days before 1970 have negative epoch days; each vendor still gets its own bucket for them. */
+    @Test
+    void vendorDaysBeforeTheEpochStaySeparate() throws Exception {
+        LocalDate day = LocalDate.of(1969, 12, 31);
+        long at = day.atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        SalesAnalytics analytics = new SalesAnalytics(1000, 2000, ZoneOffset.UTC);
+        try (MarketService m = new MarketService(); EventBus bus = new EventBus()) {
+            analytics.start(m, bus);
+            bus.publish(new MarketEvent.OrderPlaced(3000, 1000, 500, new int[]{2000}, new int[]{1}, new long[]{500}, at));
+            bus.publish(new MarketEvent.OrderPlaced(3001, 1001, 700, new int[]{2001}, new int[]{1}, new long[]{700}, at));
+            assertTrue(analytics.sync(5_000));
+            assertEquals(500, analytics.vendorOn(1000, day).getSalesCents());
+            assertEquals(700, analytics.vendorOn(1001, day).getSalesCents());
+            assertEquals(0, analytics.vendorOn(1000, day.plusDays(1)).getSalesCents());
+        } finally {
+            analytics.stop();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedMarketTest {
+    private static final int BLOCK = 4096; // smallest block, so tests cross block boundaries
+
+    @Test
+    void everyIdRoutesToItsVendorsShard() throws Exception {
+        try (ShardedMarket market = new ShardedMarket(3, BLOCK)) {
+            List<Vendor> vendors = new ArrayList<>();
+            for (int i = 0; i < 6; i++) vendors.add(TestMarkets.ok(market.addVendor(new MarketRequests.AddVendor("Vendor " + i))));
+            for (int i = 0; i < vendors.size(); i++) {
+                assertSame(market.shard(i % 3), market.shardOf(IdLeases.VENDOR, vendors.get(i).getId()), "round-robin placement");
+            }
+            for (Vendor v : vendors) {
+                MarketShard home = market.shardOf(IdLeases.VENDOR, v.getId());
+                Product p = TestMarkets.ok(market.addProduct(new MarketRequests.AddProduct(v.getId(), "Beans " + v.getId(), 3.00, 10)));
+                Order o = TestMarkets.ok(market.placeOrder(new MarketRequests.PlaceOrder(v.getId(), List.of(new OrderLine(p.getId(), 2)))));
+                PaymentReceipt paid = TestMarkets.ok(market.recordPayment(new MarketRequests.RecordPayment(o.getId(), 6.00, "card")));
+                assertSame(home, market.shardOf(IdLeases.PRODUCT, p.getId()));
+                assertSame(home, market.shardOf(IdLeases.ORDER, o.getId()));
+                assertSame(home, market.shardOf(IdLeases.PAYMENT, paid.payment().getId()));
+                assertEquals(Order.Status.PAID, market.getOrder(o.getId()).getStatus());
+                assertEquals(8, market.getVendor(v.getId()).getStockForProduct(p.getId()));
+            }
+            assertEquals(6, market.vendors().size());
+            assertEquals(6, market.countWithStatus(Order.Status.PAID));
+            assertNull(market.getOrder(999_999));
+            assertFalse(market.placeOrder(new MarketRequests.PlaceOrder(999, List.of(new OrderLine(2000, 1)))).isOk());
+        }
+    }
+
+    @Test
+    void crossShardCartIsAllOrNothing() throws Exception {
+        try (ShardedMarket market = new ShardedMarket(2, BLOCK)) {
+            int a = TestMarkets.ok(market.addVendor(new MarketRequests.AddVendor("A"))).getId();
+            int b = TestMarkets.ok(market.addVendor(new MarketRequests.AddVendor("B"))).getId();
+            assertNotSame(market.shardOf(IdLeases.VENDOR, a), market.shardOf(IdLeases.VENDOR, b));
+            int plenty = TestMarkets.ok(market.addProduct(new MarketRequests.AddProduct(a, "Plenty", 1.00, 100))).getId();
+            int scarce = TestMarkets.ok(market.addProduct(new MarketRequests.AddProduct(b, "Scarce", 1.00, 1))).getId();
+
+            MarketResult<List<CartService.CartHold>> refused = market.holdCart(new MarketRequests.HoldCart(
+                    List.of(new OrderLine(plenty, 5), new OrderLine(scarce, 2)), 60_000));
+            assertFalse(refused.isOk());
+            assertEquals(100, market.getVendor(a).getStockForProduct(plenty), "the hold taken on the other shard is released");
+
+            List<CartService.CartHold> holds = TestMarkets.ok(market.holdCart(new MarketRequests.HoldCart(
+                    List.of(new OrderLine(plenty, 5), new OrderLine(scarce, 1)), 60_000)));
+            assertEquals(2, holds.size());
+            for (CartService.CartHold h : holds) TestMarkets.ok(market.checkoutCart(h.getId()));
+            assertEquals(95, market.getVendor(a).getStockForProduct(plenty));
+            assertEquals(0, market.getVendor(b).getStockForProduct(scarce));
+            assertEquals(2, market.countWithStatus(Order.Status.CONFIRMED));
+        }
+    }
+
+    @Test
+    void concurrentOrdersAcrossBlockRefillsGetDistinctIds() throws Exception {
+        try (ShardedMarket market = new ShardedMarket(2, BLOCK)) {
+            int vendor = TestMarkets.ok(market.addVendor(new MarketRequests.AddVendor("Busy"))).getId();
+            int product = TestMarkets.ok(market.addProduct(new MarketRequests.AddProduct(vendor, "Bread", 1.00, 1_000_000))).getId();
+            int perThread = 3 * BLOCK;
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<List<Integer>>> done = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    done.add(pool.submit(() -> {
+                        List<Integer> ids = new ArrayList<>(perThread);
+                        for (int i = 0; i < perThread; i++) {
+                            ids.add(TestMarkets.ok(market.placeOrder(new MarketRequests.PlaceOrder(vendor, List.of(new OrderLine(product, 1))))).getId());
+                        }
+                        return ids;
+                    }));
+                }
+                Set<Integer> seen = new HashSet<>();
+                for (Future<List<Integer>> f : done) {
+                    for (int id : f.get()) {
+                        assertTrue(seen.add(id), "duplicate order ID " + id);
+                        assertNotNull(market.getOrder(id));
+                    }
+                }
+                assertEquals(4 * perThread, seen.size());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Many threads drawing from one sequence at a block boundary must neither repeat an ID nor skip a whole block. */
+    @Test
+    void sequenceLeasesOneBlockPerExhaustion() throws Exception {
+        IdLeases leases = new IdLeases(MarketService.idBases(), BLOCK);
+        IdSequence seq = new IdSequence(() -> leases.lease(IdLeases.ORDER, 0), BLOCK);
+        int threads = 8;
+        int perThread = 5 * BLOCK / threads;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    int[] ids = new int[perThread];
+                    for (int i = 0; i < perThread; i++) ids[i] = seq.next();
+                    return ids;
+                }));
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (Future<int[]> f : done) for (int id : f.get()) assertTrue(seen.add(id), "duplicate ID " + id);
+        } finally {
+            pool.shutdown();
+        }
+        // Exactly five blocks handed out, so the next lease is the sixth
+        assertEquals(MarketService.idBases()[IdLeases.ORDER] + 5 * BLOCK, leases.lease(IdLeases.ORDER, 0));
+    }
+}
@@ -0,0 +1,73 @@
+package assignment2;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Small markets for tests, and a text rendering of a market's state to compare two of them. */
+final class TestMarkets {
+    private TestMarkets() {}
+
+    /**
+     * Two vendors, one with its own delivery capacity, and three products, then orders
+     * that go through every journal record type: part and full payments, a delivery
+     * completed, a return approved with a refund, one denied and one left pending.
+     */
+    static void populate(MarketService m) {
+        int farm = ok(m.addVendor(new MarketRequests.AddVendor("Green Acres"))).getId();
+        int hill = ok(m.addVendor(new MarketRequests.AddVendor("Hill Farm"))).getId();
+        int apples = ok(m.addProduct(new MarketRequests.AddProduct(farm, "Honeycrisp Apples", 1.25, 100))).getId();
+        int pears = ok(m.addProduct(new MarketRequests.AddProduct(farm, "Pears", 2.00, 50))).getId();
+        int honey = ok(m.addProduct(new MarketRequests.AddProduct(hill, "Wildflower Honey", 7.50, 20))).getId();
+        ok(m.setDeliveryCapacity(hill, 3));
+
+        Order delivered = order(m, farm, new OrderLine(apples, 4), new OrderLine(pears, 2));
+        ok(m.recordPayment(new MarketRequests.RecordPayment(delivered.getId(), 5.00, "card")));
+        ok(m.recordPayment(new MarketRequests.RecordPayment(delivered.getId(), 4.00, "cash")));
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        ok(m.scheduleDelivery(new MarketRequests.ScheduleDelivery(delivered.getId(), tomorrow.toString())));
+        for (DeliveryRoute r : m.dispatchDeliveries(tomorrow)) {
+            for (Delivery d : r.stops()) ok(m.completeDelivery(d.getId()));
+        }
+
+        Order refunded = order(m, hill, new OrderLine(honey, 2));
+        ok(m.recordPayment(new MarketRequests.RecordPayment(refunded.getId(), 15.00, "card")));
+        ok(m.requestReturn(new MarketRequests.RequestReturn(refunded.getId(), honey, 1, true)));
+
+        Order unpaid = order(m, farm, new OrderLine(apples, 3), new OrderLine(pears, 1));
+        ok(m.requestReturn(new MarketRequests.RequestReturn(unpaid.getId(), apples, 1, false)));
+        ReturnReceipt denied = ok(m.requestReturn(new MarketRequests.RequestReturn(unpaid.getId(), pears, 1, false)));
+        ok(m.denyReturn(denied.request().getId()));
+    }
+
+    static Order order(MarketService m, int vendorId, OrderLine... lines) {
+        return ok(m.placeOrder(new MarketRequests.PlaceOrder(vendorId, List.of(lines))));
+    }
+
+    static <T> T ok(MarketResult<T> r) {
+        assertTrue(r.isOk(), () -> "Expected success: " + r);
+        return r.getValue();
+    }
+
+    /** Every entity with the fields recovery must bring back, one per line, in ID order. */
+    static List<String> describe(MarketService m) {
+        List<String> lines = new ArrayList<>();
+        lines.add("next IDs " + Arrays.toString(m.idPositions()));
+        for (Vendor v : m.vendors()) {
+            lines.add(v.toString());
+            for (int pid : v.getProductIds()) lines.add("  stock " + pid + " = " + v.getStockForProduct(pid));
+        }
+        for (Product p : m.products()) lines.add(p + " vendor " + p.getVendorId());
+        for (Order o : m.orders()) lines.add(o + " refunded " + o.getRefundedCents() + " placed " + o.getPlacedAtMillis());
+        for (Payment p : m.payments()) lines.add(p + " at " + p.getTimestampMillis() + " ref " + p.getReference());
+        for (Delivery d : m.deliveries()) lines.add(d.toString());
+        for (ReturnRequest r : m.returns()) lines.add(r.toString());
+        for (Order.Status s : Order.Status.values()) lines.add(s + " " + m.countWithStatus(s));
+        lines.add("pending returns " + m.pendingReturnCount());
+        lines.add("delivery capacities " + m.configuredDeliveryCapacities());
+        return lines;
+    }
+}
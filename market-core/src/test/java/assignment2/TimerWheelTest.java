@@ -0,0 +1,96 @@
+package assignment2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Drives the wheel by hand through {@link TimerWheel#advance}; the ticker thread never starts. */
+class TimerWheelTest {
+    private final List<String> fired = new ArrayList<>();
+
+    private TimerWheel<String> wheel() {
+        // A clock that stays at 0 keeps the ticker's own advances from firing anything
+        return new TimerWheel<>(10, 8, fired::add, () -> 0L);
+    }
+
+    @Test
+    void firesOnTheFirstTickAtOrAfterTheDeadline() {
+        try (TimerWheel<String> w = wheel()) {
+            w.advance(0);
+            w.schedule("a", 25);
+            w.schedule("b", 40);
+            w.advance(19);
+            assertEquals(List.of(), fired);
+            w.advance(20); // tick 2 holds deadline 25
+            assertEquals(List.of("a"), fired);
+            w.advance(45);
+            assertEquals(List.of("a", "b"), fired);
+            assertEquals(0, w.size());
+        }
+    }
+
+    @Test
+    void deadlinesBeyondOneTurnWaitForTheirTurn() {
+        try (TimerWheel<String> w = wheel()) {
+            w.advance(0);
+            w.schedule("far", 8 * 10 * 3 + 5); // three turns of an 8-bucket wheel away
+            for (long now = 10; now < 240; now += 10) w.advance(now);
+            assertEquals(List.of(), fired);
+            w.advance(240);
+            assertEquals(List.of("far"), fired);
+        }
+    }
+
+    @Test
+    void overdueAndStalledTimeoutsFireOnTheNextTick() {
+        try (TimerWheel<String> w = wheel()) {
+            w.advance(100);
+            w.schedule("late", 50);
+            w.schedule("later", 900);
+            w.advance(105); // tick 10 has already run
+            assertEquals(List.of(), fired);
+            w.advance(110);
+            assertEquals(List.of("late"), fired);
+            w.advance(5_000); // many turns stalled: every bucket is still visited once
+            assertEquals(List.of("late", "later"), fired);
+        }
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() {
+        try (TimerWheel<String> w = wheel()) {
+            w.advance(0);
+            TimerWheel.Timeout<String> kept = w.schedule("kept", 30);
+            TimerWheel.Timeout<String> dropped = w.schedule("dropped", 30);
+            w.advance(10);
+            assertEquals(2, w.size());
+            assertTrue(w.cancel(dropped));
+            assertFalse(w.cancel(dropped));
+            w.advance(30);
+            assertEquals(List.of("kept"), fired);
+            assertTrue(kept.isExpired());
+            assertFalse(dropped.isExpired());
+            assertFalse(w.cancel(kept), "a fired timeout cannot be cancelled");
+        }
+    }
+
+    @Test
+    void failingCallbackIsCountedAndKept() {
+        IllegalStateException boom = new IllegalStateException("boom");
+        try (TimerWheel<String> w = new TimerWheel<>(10, 8, s -> {
+            if (s.equals("bad")) throw boom;
+            fired.add(s);
+        }, () -> 0L)) {
+            w.advance(0);
+            w.schedule("bad", 10);
+            w.schedule("good", 10);
+            w.advance(10);
+            assertEquals(List.of("good"), fired);
+            assertEquals(1, w.failures());
+            assertSame(boom, w.lastFailure());
+        }
+    }
+}